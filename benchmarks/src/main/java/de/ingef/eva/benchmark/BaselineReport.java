@@ -0,0 +1,85 @@
+package de.ingef.eva.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JMH result files that were written with '-rf json'.
+ * Prints the change of every benchmark and exits with 1 if a benchmark became slower than the threshold.
+ * <p>
+ * Usage: java -cp benchmarks.jar de.ingef.eva.benchmark.BaselineReport baseline.json current.json [thresholdPercent]
+ */
+public class BaselineReport {
+
+	private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: BaselineReport <baseline.json> <current.json> [thresholdPercent]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+		Map<String, JsonNode> baseline = readResults(new File(args[0]));
+		Map<String, JsonNode> current = readResults(new File(args[1]));
+		int regressions = 0;
+		System.out.println(String.format("%-80s %14s %14s %9s  %s", "benchmark", "baseline", "current", "change", "unit"));
+		for(Map.Entry<String, JsonNode> result : current.entrySet()) {
+			JsonNode metric = result.getValue().get("primaryMetric");
+			double score = metric.get("score").asDouble();
+			String unit = metric.get("scoreUnit").asText();
+			JsonNode previous = baseline.get(result.getKey());
+			if(previous == null) {
+				System.out.println(String.format("%-80s %14s %14.2f %9s  %s", result.getKey(), "-", score, "new", unit));
+				continue;
+			}
+			JsonNode previousMetric = previous.get("primaryMetric");
+			double previousScore = previousMetric.get("score").asDouble();
+			double changePercent = previousScore == 0 ? 0 : (score - previousScore) / previousScore * 100;
+			//throughput improves with higher scores, all other modes with lower scores
+			double slowdownPercent = result.getValue().get("mode").asText().equals("thrpt") ? -changePercent : changePercent;
+			double error = Math.abs(metric.get("scoreError").asDouble(0)) + Math.abs(previousMetric.get("scoreError").asDouble(0));
+			boolean isRegression = slowdownPercent > threshold && Math.abs(score - previousScore) > error;
+			if(isRegression)
+				regressions++;
+			System.out.println(String.format("%-80s %14.2f %14.2f %+8.1f%%  %s%s", result.getKey(), previousScore, score, changePercent, unit, isRegression ? "  REGRESSION" : ""));
+		}
+		for(String removed : baseline.keySet()) {
+			if(!current.containsKey(removed))
+				System.out.println(String.format("%-80s %14s %14s %9s", removed, "", "-", "removed"));
+		}
+		System.out.println(regressions + " of " + current.size() + " benchmarks are more than " + threshold + "% slower than the baseline.");
+		System.exit(regressions == 0 ? 0 : 1);
+	}
+
+	/**
+	 * @return results by benchmark name and parameters
+	 */
+	private static Map<String, JsonNode> readResults(File file) throws IOException {
+		Map<String, JsonNode> results = new LinkedHashMap<>();
+		for(JsonNode result : new ObjectMapper().readTree(file))
+			results.put(createKey(result), result);
+		return results;
+	}
+
+	private static String createKey(JsonNode result) {
+		StringBuilder key = new StringBuilder(result.get("benchmark").asText().replace("de.ingef.eva.", ""));
+		JsonNode params = result.get("params");
+		if(params != null) {
+			Map<String, String> sortedParams = new TreeMap<>();
+			Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+			while(fields.hasNext()) {
+				Map.Entry<String, JsonNode> param = fields.next();
+				sortedParams.put(param.getKey(), param.getValue().asText());
+			}
+			sortedParams.forEach((name, value) -> key.append(" ").append(name).append("=").append(value));
+		}
+		return key.toString();
+	}
+}
@@ -0,0 +1,56 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calculates the hash of a single insurant
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	/**
+	 * Number of collected icd codes. Prescriptions are a third of that.
+	 */
+	@Param({"10", "300"})
+	private int codeCount;
+
+	private PidDataStore data;
+	private int slot;
+
+	@Setup
+	public void createEntry() {
+		data = new PidDataStore();
+		slot = data.add("10000042");
+		data.updateGender(slot, '1');
+		data.updateDob(slot, LocalDate.of(1950, 4, 1));
+		data.updateKgs(slot, "08111000");
+		for(int i = 0; i < codeCount; i++)
+			data.addIcd(slot, (char) ('A' + i % 26) + Integer.toString(10 + i % 90));
+		for(int i = 0; i < codeCount / 3; i++)
+			data.addPzn(slot, Integer.toString(1_000_000 + i * 37));
+	}
+
+	@Benchmark
+	public String hashPerPid() {
+		return DigestUtils.sha256Hex(data.createHashInput(slot));
+	}
+}
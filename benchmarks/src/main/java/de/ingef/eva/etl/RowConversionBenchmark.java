@@ -0,0 +1,58 @@
+package de.ingef.eva.etl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ingef.eva.configuration.SyntheticDataConfig;
+import de.ingef.eva.datasource.synthetic.SyntheticDatabase;
+
+/**
+ * Converts generated prescription rows into {@link Row}s.
+ * {@link #nextRow()} measures the generation alone and is the baseline of {@link #convertToRow()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowConversionBenchmark {
+
+	private static final String QUERY = "select a.Bezugsjahr, a.PID, a.Verordnungsdatum, a.Abgabedatum, a.PZN, a.Anzahl_Packungen, a.Bruttobetrag, a.ApothekenIK, a.BS_Nr, a.Arzt_LANR "
+			+ "from ACC_ADB.AVK_ADB_T_AM_EVO a  where a.bezugsjahr = 2017;";
+
+	private ResultSet result;
+	private ResultSetRowConverter converter;
+
+	@Setup(Level.Iteration)
+	public void executeQuery() throws SQLException {
+		SyntheticDataConfig config = new SyntheticDataConfig();
+		config.setRowsPerQuery(Long.MAX_VALUE);
+		result = new SyntheticDatabase(config).execute(QUERY);
+		converter = new ResultSetRowConverter();
+	}
+
+	@Benchmark
+	public boolean nextRow() throws SQLException {
+		return result.next();
+	}
+
+	@Benchmark
+	public Row convertToRow() throws SQLException {
+		result.next();
+		return converter.apply(result);
+	}
+}
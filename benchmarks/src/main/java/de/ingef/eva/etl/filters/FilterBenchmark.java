@@ -0,0 +1,73 @@
+package de.ingef.eva.etl.filters;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.etl.filters.Filter.FilterMode;
+
+/**
+ * Checks a prescription row against a pid exclusion set or a pzn pattern
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+	@Param({"SET", "REGEX"})
+	private String strategy;
+
+	private Filter filter;
+	private Row row;
+
+	@Setup
+	public void createFilter() {
+		filter = new Filter();
+		filter.setMode(FilterMode.EXCLUDE);
+		if(strategy.equals("SET")) {
+			Set<String> pids = IntStream.range(0, 100_000).mapToObj(i -> Integer.toString(20_000_000 + i)).collect(Collectors.toCollection(HashSet::new));
+			filter.setColumn("pid");
+			filter.setFilterStrategy(new SetFilterStrategy(pids));
+		} else {
+			RegExFilterStrategy pattern = new RegExFilterStrategy();
+			pattern.setRegexPattern("0{8}|9{8}|[0-9]{0,7}");
+			pattern.initialize(null, null);
+			filter.setColumn("pzn");
+			filter.setFilterStrategy(pattern);
+		}
+		RowElement[] columns = {
+				new SimpleRowElement("2017", TeradataColumnType.CHARACTER),
+				new SimpleRowElement("10000042", TeradataColumnType.CHARACTER),
+				new SimpleRowElement("01000370", TeradataColumnType.CHARACTER)
+		};
+		row = new Row("ACC_ADB", "AVK_ADB_T_AM_EVO", Arrays.asList(columns), RowSchema.of(Arrays.asList("bezugsjahr", "pid", "pzn")));
+	}
+
+	@Benchmark
+	public boolean isValid() {
+		return filter.isValid(row);
+	}
+}
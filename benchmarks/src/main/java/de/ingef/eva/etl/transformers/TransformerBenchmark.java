@@ -0,0 +1,159 @@
+package de.ingef.eva.etl.transformers;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ingef.eva.configuration.append.AppendOrder;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.etl.TransformerChain;
+import de.ingef.eva.utility.DateRange;
+
+/**
+ * Transforms a single row per call, once row by row and once with the plan compiled by {@link TransformerChain}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+
+	private static final int PZN_COUNT = 10_000;
+
+	@Param({"BS_KV", "PHARMACY_TYPE", "START_DATE", "STATIC_COLUMN", "PSEUDO_HASH", "FIX_MISSING_DATES", "DYNAMIC_COLUMNS", "DDD"})
+	private String transformerName;
+
+	private Transformer transformer;
+	private TransformerChain chain;
+	private Row row;
+
+	@Setup
+	public void createTransformer() {
+		switch(transformerName) {
+			case "BS_KV":
+				transformer = new BsKvMapperTransformer();
+				row = createPrescription();
+				break;
+			case "PHARMACY_TYPE":
+				transformer = new PharmacyTypeTransformer("", "AM_EVO");
+				row = createPrescription();
+				break;
+			case "START_DATE":
+				transformer = new StartDateTransformer("", "KH_Fall", "entlassungsdatum", "verweildauer", "aufnahmedatum");
+				row = createRow("ACC_ADB", "AVK_ADB_T_KH_Fall", Arrays.asList("pid", "entlassungsdatum", "verweildauer"), "10000042", "2017-03-14", "12");
+				break;
+			case "STATIC_COLUMN":
+				transformer = new StaticColumnAppenderTransformer("ACC_ADB", "", "quelle", "ADB", AppendOrder.LAST, Collections.emptyList());
+				row = createPrescription();
+				break;
+			case "PSEUDO_HASH":
+				transformer = new PseudoHashTransformer();
+				row = createRow("ACC_ADB", "AVK_ADB_T_Vers_Stamm", Arrays.asList("bezugsjahr", "pid", "geburtsjahr", "geschlecht"), "2017", "10000042", "1950", "1");
+				break;
+			case "FIX_MISSING_DATES":
+				transformer = new FixMissingDateEntries();
+				row = createRow("ACC_ADB", "AVK_ADB_T_Arzt_Fall", Arrays.asList("bezugsjahr", "pid", "vertrags_id", "behandl_quartal", "behandl_beginn", "behandl_ende"), "2017", "10000042", "KV", "3", "", "");
+				break;
+			case "DYNAMIC_COLUMNS":
+				transformer = createDynamicColumnAppender();
+				row = createPrescription();
+				break;
+			case "DDD":
+				transformer = createDDDTransformer();
+				row = createPrescription();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown transformer " + transformerName);
+		}
+		chain = new TransformerChain(Collections.singletonList(transformer));
+	}
+
+	@Benchmark
+	public Row transform() {
+		return transformer.transform(row);
+	}
+
+	@Benchmark
+	public Row compiled() {
+		return chain.apply(row);
+	}
+
+	private static Row createPrescription() {
+		return createRow(
+				"ACC_ADB",
+				"AVK_ADB_T_AM_EVO",
+				Arrays.asList("bezugsjahr", "pid", "verordnungsdatum", "pzn", "anzahl_packungen", "apothekenik", "bs_nr"),
+				"2017", "10000042", "2017-03-14", "01000370", "2", "300017161", "380001877"
+		);
+	}
+
+	private static Row createRow(String db, String table, List<String> columnNames, String... values) {
+		RowElement[] columns = new RowElement[values.length];
+		for(int i = 0; i < values.length; i++)
+			columns[i] = new SimpleRowElement(values[i], TeradataColumnType.CHARACTER);
+		return new Row(db, table, Arrays.asList(columns), RowSchema.of(columnNames));
+	}
+
+	private static Transformer createDynamicColumnAppender() {
+		List<RowElement> header = Arrays.asList(
+				new SimpleRowElement("atc", TeradataColumnType.VARCHAR),
+				new SimpleRowElement("hersteller", TeradataColumnType.VARCHAR)
+		);
+		Map<String, List<RowElement>> key2Columns = new HashMap<>(PZN_COUNT);
+		for(int i = 0; i < PZN_COUNT; i++) {
+			key2Columns.put(
+					createPzn(i),
+					Arrays.asList(new SimpleRowElement("N02BE0" + i % 10, TeradataColumnType.VARCHAR), new SimpleRowElement("H" + i % 300, TeradataColumnType.VARCHAR))
+			);
+		}
+		return new DynamicColumnAppender("", "AM_EVO", Collections.singletonList("pzn"), header, key2Columns);
+	}
+
+	private static Transformer createDDDTransformer() {
+		List<RowElement> columnNames = Arrays.asList(
+				new SimpleRowElement(WidoColumn.DDDPK.getLabel(), TeradataColumnType.CHARACTER),
+				new SimpleRowElement(WidoColumn.APPFORM.getLabel(), TeradataColumnType.CHARACTER),
+				new SimpleRowElement(WidoColumn.GENERIC.getLabel(), TeradataColumnType.CHARACTER)
+		);
+		Map<String, Map<String, RowElement>> pzn2Column2Value = new HashMap<>(PZN_COUNT);
+		Map<String, DateRange> pzn2ValidityDates = new HashMap<>(PZN_COUNT);
+		Map<String, Map<WidoColumn, RowElement>> pzn2MetaColumns = new HashMap<>(PZN_COUNT);
+		for(int i = 0; i < PZN_COUNT; i++) {
+			String pzn = createPzn(i);
+			Map<String, RowElement> values = new HashMap<>();
+			values.put(WidoColumn.DDDPK.getLabel(), new SimpleRowElement(Integer.toString(10_000 + i % 5_000), TeradataColumnType.CHARACTER));
+			values.put(WidoColumn.APPFORM.getLabel(), new SimpleRowElement("TABL", TeradataColumnType.CHARACTER));
+			values.put(WidoColumn.GENERIC.getLabel(), new SimpleRowElement(i % 2 == 0 ? "0" : "1", TeradataColumnType.CHARACTER));
+			pzn2Column2Value.put(pzn, values);
+			pzn2ValidityDates.put(pzn, new DateRange(LocalDate.of(2005, 1, 1), LocalDate.MAX));
+			pzn2MetaColumns.put(pzn, Collections.singletonMap(WidoColumn.PACK_SIZE, new SimpleRowElement(Integer.toString(10 * (1 + i % 10)), TeradataColumnType.CHARACTER)));
+		}
+		return new DDDTransformer("", "AM_EVO", "pzn", pzn2Column2Value, columnNames, pzn2ValidityDates, pzn2MetaColumns);
+	}
+
+	private static String createPzn(int i) {
+		return String.format("%08d", 1_000_000 + i * 37);
+	}
+}
@@ -0,0 +1,47 @@
+package de.ingef.eva.measures.cci;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scores the diagnoses of one insurant over four quarters
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CCICalculatorBenchmark {
+
+	private static final String[] DISEASE_CLASSES = {"mi", "chf", "pvd", "cevd", "dementia", "cpd", "diab", "renal", "cancer", "aids"};
+
+	private final CCICalculator calculator = new CCICalculator();
+	private List<QuarterEntry> data;
+
+	@Setup
+	public void createDiagnoses() {
+		data = new ArrayList<>();
+		for(int quarter = 1; quarter <= 4; quarter++) {
+			for(int i = 0; i < 20; i++)
+				data.add(new QuarterEntry(quarter, 2017, "I2" + i % 10, DISEASE_CLASSES[(quarter + i) % DISEASE_CLASSES.length], 1 + i % 6, "108036123"));
+		}
+	}
+
+	@Benchmark
+	public QuarterScoreResult calculateSlidingWindow() {
+		return calculator.calculateSlidingWindow(data, 2017, 1);
+	}
+}
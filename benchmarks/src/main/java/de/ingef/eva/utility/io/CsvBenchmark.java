@@ -0,0 +1,79 @@
+package de.ingef.eva.utility.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes and parses prescription lines without touching the disk. Scores are per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark {
+
+	private static final int LINE_COUNT = 1_000;
+	private static final String[] VALUES = {"2017", "10000042", "2017-03-14", "2017-03-15", "01000370", "2", "398.70", "300017161", "380001877", "000120668"};
+
+	private CsvWriter writer;
+	private String content;
+
+	@Setup
+	public void createContent() {
+		writer = new CsvWriter(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}, ";", "\n", null);
+		StringBuilder lines = new StringBuilder();
+		for(int i = 0; i < LINE_COUNT; i++)
+			lines.append(String.join(";", VALUES)).append('\n');
+		content = lines.toString();
+	}
+
+	@TearDown
+	public void closeWriter() throws IOException {
+		writer.close();
+	}
+
+	@Benchmark
+	public void writeLine() throws IOException {
+		for(String value : VALUES)
+			writer.addEntry(value);
+		writer.writeLine();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public long parseLines() throws IOException {
+		CsvReader reader = new CsvReader(new BufferedReader(new StringReader(content)), ";");
+		long fields = 0;
+		CsvRow row;
+		while((row = reader.nextRow()) != null)
+			fields += row.size();
+		reader.close();
+		return fields;
+	}
+}
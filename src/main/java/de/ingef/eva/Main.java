@@ -1,7 +1,9 @@
 package de.ingef.eva;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,11 +19,15 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import de.ingef.eva.configuration.Configuration;
 import de.ingef.eva.configuration.decoding.DecodingConfig;
+import de.ingef.eva.configuration.hashing.HashConfig;
+import de.ingef.eva.constant.OutputDirectory;
+import de.ingef.eva.constant.OutputDirectory.DirectoryType;
 import de.ingef.eva.constant.Templates;
 import de.ingef.eva.datasource.DataProcessor;
 import de.ingef.eva.datasource.DataSource;
 import de.ingef.eva.datasource.sql.SqlDataSource;
 import de.ingef.eva.etl.ETLPipeline;
+import de.ingef.eva.etl.filters.EmployeePidsFilterStrategy;
 import de.ingef.eva.etl.filters.Filter;
 import de.ingef.eva.etl.Merger;
 import de.ingef.eva.etl.transformers.Transformer;
@@ -32,8 +38,10 @@ import de.ingef.eva.measures.statistics.Statistics;
 import de.ingef.eva.query.JsonQuerySource;
 import de.ingef.eva.query.Query;
 import de.ingef.eva.services.ConnectionFactory;
+import de.ingef.eva.services.SyntheticConnectionFactory;
 import de.ingef.eva.services.TaskRunner;
 import de.ingef.eva.services.TeradataConnectionFactory;
+import de.ingef.eva.utility.Benchmark;
 import de.ingef.eva.utility.Helper;
 import de.ingef.eva.utility.io.IOManager;
 import de.ingef.eva.utility.Stopwatch;
@@ -47,6 +55,8 @@ public class Main {
 	private static final String MAKEDECODE_COMMAND = "makedecode";
 	private static final String MERGE_COMMAND = "merge";
 	private static final String HASH_COMMAND = "hash";
+	private static final String BENCH_COMMAND = "bench";
+	private static final String RESUME_OPTION = "resume";
 
 	public static void main(String[] args) {
 		Options options = createCliOptions();
@@ -68,6 +78,8 @@ public class Main {
 				merge(cmd);
 			} else if(cmd.hasOption(HASH_COMMAND)) {
 				createPidHashes(cmd);
+			} else if(cmd.hasOption(BENCH_COMMAND)) {
+				bench(cmd);
 			} else
 				new HelpFormatter().printHelp("java -jar eva-data.jar", options);
 		} catch (ParseException | IOException e) {
@@ -90,7 +102,9 @@ public class Main {
 	private static void charlsonscores(CommandLine cmd) throws JsonProcessingException, IOException {
 		Configuration configuration = Configuration.loadFromJson(cmd.getOptionValue("charlsonscores"));
 		exitIfInvalidCredentials(configuration);
-		CalculateCharlsonScores.calculate(configuration);
+		ConnectionFactory connectionFactory = createConnectionFactory(configuration);
+		CalculateCharlsonScores.calculate(configuration, connectionFactory);
+		connectionFactory.close();
 	}
 
 	private static void export(CommandLine cmd) throws JsonProcessingException, IOException {
@@ -99,20 +113,99 @@ public class Main {
 		sw.start();
 		Configuration config = Configuration.loadFromJson(cmd.getOptionValue(EXPORT_COMMAND));
 		TaskRunner taskRunner = new TaskRunner(config.getThreadCount());
-		ConnectionFactory connectionFactory = new TeradataConnectionFactory(config.getUser(), config.getPassword(), config.getFullConnectionUrl());
-		connectionFactory.initialize();
 		exitIfInvalidCredentials(config);
-		Collection<Query> queries = new JsonQuerySource(config).createQueries();
-		log.info("Setting up filters");
-		List<Filter> filters = config.getFilters();
-		filters.stream().forEach(filter -> filter.initialize(config));
+		ConnectionFactory connectionFactory = createConnectionFactory(config);
 		log.info("Setting up transformers");
 		List<Transformer> transformers = new TransformerFactory().create(config.getTransformers());
-		new ETLPipeline().run(queries, filters, transformers, IOManager.of(config), taskRunner, connectionFactory);
+		Collection<Query> queries = new JsonQuerySource(config, connectionFactory, transformers).createQueries();
+		log.info("Setting up filters");
+		List<Filter> filters = config.getFilters();
+		filters.stream().forEach(filter -> filter.initialize(config, connectionFactory));
+		new ETLPipeline().run(queries, filters, transformers, IOManager.of(config), taskRunner, connectionFactory, config.getPipeline(), cmd.hasOption(RESUME_OPTION));
+		connectionFactory.close();
 		sw.stop();
 		log.info("Export done in {}", sw.createReadableDelta());
 	}
 
+	/**
+	 * runs export, pid hashing and merge against generated rows and logs the throughput of each stage.
+	 * Hashing is skipped if the configuration has no hashing section.
+	 * @param cmd
+	 * @throws JsonProcessingException
+	 * @throws IOException
+	 */
+	private static void bench(CommandLine cmd) throws JsonProcessingException, IOException {
+		log.info("Starting benchmark on synthetic data");
+		Configuration config = Configuration.loadFromJson(cmd.getOptionValue(BENCH_COMMAND));
+		TaskRunner taskRunner = new TaskRunner(config.getThreadCount());
+		SyntheticConnectionFactory connectionFactory = new SyntheticConnectionFactory(config.getSynthetic(), config.getConnectionPool());
+		connectionFactory.initialize();
+		IOManager ioManager = IOManager.of(config);
+		List<Transformer> transformers = config.getTransformers() == null
+				? Collections.emptyList()
+				: new TransformerFactory().create(config.getTransformers());
+		Collection<Query> queries = new JsonQuerySource(config, connectionFactory, transformers).createQueries();
+		//employee pids are read from the database itself
+		List<Filter> filters = config.getFilters() == null
+				? Collections.emptyList()
+				: config.getFilters().stream().filter(filter -> !(filter.getFilterStrategy() instanceof EmployeePidsFilterStrategy)).collect(Collectors.toList());
+		filters.stream().forEach(filter -> filter.initialize(config, connectionFactory));
+		Benchmark benchmark = new Benchmark();
+		benchmark.measure(
+				"export",
+				() -> new ETLPipeline().run(queries, filters, transformers, ioManager, taskRunner, connectionFactory, config.getPipeline(), false),
+				connectionFactory::getRowCount,
+				() -> Benchmark.sizeOf(ioManager.getDirectory(DirectoryType.CACHE))
+		);
+		Path cacheDirectory = ioManager.getDirectory(DirectoryType.CACHE);
+		HashConfig hashing = config.getHashing();
+		if(hashing != null) {
+			//the hash reads the slices of its tables but writes only the base data again
+			long inputRows = Benchmark.countRows(cacheDirectory, file -> isHashInput(file, hashing));
+			long[] hashedRows = { 0 };
+			benchmark.measure(
+					"hash",
+					() -> {
+						hashing.calculateHashes(config, taskRunner, connectionFactory);
+						hashedRows[0] = inputRows;
+					},
+					() -> hashedRows[0],
+					() -> Benchmark.sizeOf(cacheDirectory)
+			);
+		}
+		connectionFactory.close();
+		Path productionDirectory = ioManager.getDirectory(DirectoryType.PRODUCTION);
+		benchmark.measure(
+				"merge",
+				() -> new Merger().run(config, ioManager),
+				() -> Benchmark.countRows(productionDirectory, file -> file.toString().endsWith(OutputDirectory.OUTPUT_FILE_EXTENSION) || file.toString().endsWith(OutputDirectory.COMPRESSED_OUTPUT_FILE_EXTENSION)),
+				() -> Benchmark.sizeOf(productionDirectory)
+		);
+		benchmark.logReport();
+	}
+
+	/**
+	 * @param file
+	 * @param hashing
+	 * @return whether the file is a slice of a table the hash is calculated from
+	 */
+	private static boolean isHashInput(Path file, HashConfig hashing) {
+		String fileName = file.getFileName().toString();
+		return fileName.endsWith(OutputDirectory.CACHE_FILE_EXTENSION) &&
+				hashing.getFileDescriptors().keySet().stream().anyMatch(table -> fileName.startsWith(table + "."));
+	}
+
+	/**
+	 * creates the session pool that is shared by all database accesses of a command
+	 * @param config
+	 * @return initialized connection factory
+	 */
+	private static ConnectionFactory createConnectionFactory(Configuration config) {
+		ConnectionFactory connectionFactory = new TeradataConnectionFactory(config.getUser(), config.getPassword(), config.getFullConnectionUrl(), config.getConnectionPool());
+		connectionFactory.initialize();
+		return connectionFactory;
+	}
+
 	private static void exitIfInvalidCredentials(Configuration config) {
 		if(!Helper.areCredentialsCorrect(config.getUser(), config.getPassword(), config.getFullConnectionUrl())) {
 			System.err.println("Invalid credentials.\n\tURL: " + config.getFullConnectionUrl() + "\n" +	"\tUser: " + config.getUser());
@@ -128,7 +221,9 @@ public class Main {
 		options.addOption(Option.builder(STATS_COMMAND).hasArg().argName("config.json").desc("create database content statistics").build());
 		options.addOption(Option.builder(EXPORT_COMMAND).hasArg().argName("config.json").desc("exports specified data from Teradata").build());
 		options.addOption(Option.builder(MERGE_COMMAND).hasArg().argName("config.json").desc("merge clean data slices").build());
+		options.addOption(Option.builder(RESUME_OPTION).desc("used with export. Skips slices that were completed by a previous export of the same queries").build());
 		options.addOption(Option.builder(HASH_COMMAND).hasArg().argName("config.json").desc("creates a file that contains mappings from pid to hashes").build());
+		options.addOption(Option.builder(BENCH_COMMAND).hasArg().argName("config.json").desc("runs export, hash and merge on generated rows instead of Teradata and reports their throughput").build());
 		
 		return options;
 	}
@@ -139,8 +234,9 @@ public class Main {
 		sw.start();
 		Configuration config = Configuration.loadFromJson(cmd.getOptionValue(HASH_COMMAND));
 		exitIfInvalidCredentials(config);
-		ConnectionFactory connectionFactory = new TeradataConnectionFactory(config.getUser(), config.getPassword(), config.getFullConnectionUrl());
+		ConnectionFactory connectionFactory = createConnectionFactory(config);
 		config.getHashing().calculateHashes(config, new TaskRunner(config.getThreadCount()), connectionFactory);
+		connectionFactory.close();
 		sw.stop();
 		log.info("Created hash mappings in {}", sw.createReadableDelta());
 	}
@@ -149,16 +245,18 @@ public class Main {
 		Stopwatch sw = new Stopwatch();
 		log.info("Starting pid decode creation");
 		sw.start();
+		ConnectionFactory connectionFactory = createConnectionFactory(configuration);
 		List<DecodingConfig> decodingConfigs = configuration.getDecode();
 		for(DecodingConfig dc : decodingConfigs) {
 			log.info("Processing {}", dc.getName());
 			String h2iks = dc.getH2iks().stream().map(h -> "'" + h + "'").collect(Collectors.joining(", "));
-			DataSource unfilteredPids = new SqlDataSource(String.format(Templates.Decoding.PID_DECODE_QUERY, h2iks, h2iks), dc.getName(), configuration);
-			DataSource excludedPids = new SqlDataSource(String.format(Templates.Decoding.INVALID_PIDS_QUERY, h2iks, h2iks), dc.getName(), configuration);
+			DataSource unfilteredPids = new SqlDataSource(String.format(Templates.Decoding.PID_DECODE_QUERY, h2iks, h2iks), dc.getName(), connectionFactory);
+			DataSource excludedPids = new SqlDataSource(String.format(Templates.Decoding.INVALID_PIDS_QUERY, h2iks, h2iks), dc.getName(), connectionFactory);
 			DataProcessor cleanPidProcessor = new ProcessPidDecode(IOManager.of(configuration));
 			cleanPidProcessor.process(unfilteredPids.fetchData(), excludedPids.fetchData());
 			log.info("{} completed", dc.getName());
 		}
+		connectionFactory.close();
 		sw.stop();
 		log.info("Created pid decodings in {}", sw.createReadableDelta());
 	}
@@ -167,7 +265,9 @@ public class Main {
 		log.info("Starting report creation");
 		Stopwatch sw = new Stopwatch();
 		sw.start();
-		new Statistics().createStatistics(configuration, IOManager.of(configuration));
+		ConnectionFactory connectionFactory = createConnectionFactory(configuration);
+		new Statistics().createStatistics(configuration, IOManager.of(configuration), connectionFactory);
+		connectionFactory.close();
 		sw.stop();
 		log.info("Reports created in {}", sw.createReadableDelta());
 
@@ -11,8 +11,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import de.ingef.eva.configuration.append.AppendConfiguration;
 import de.ingef.eva.configuration.cci.CCIConfig;
 import de.ingef.eva.configuration.decoding.DecodingConfig;
+import de.ingef.eva.configuration.export.PipelineConfig;
 import de.ingef.eva.configuration.export.SourceConfig;
 import de.ingef.eva.configuration.hashing.HashConfig;
+import de.ingef.eva.configuration.merge.MergeConfig;
 import de.ingef.eva.configuration.statistics.StatisticConfig;
 import de.ingef.eva.etl.filters.Filter;
 import lombok.Getter;
@@ -61,9 +63,17 @@ public class Configuration {
 	 */
 	private String reportDirectory;
 	/**
-	 * Number of threads to be used
+	 * Number of threads to be used. During export this is the number of concurrently fetched queries.
 	 */
 	private int threadCount;
+	/**
+	 * Thread budgets of the export stages
+	 */
+	private PipelineConfig pipeline;
+	/**
+	 * Limits of the database session pool
+	 */
+	private ConnectionPoolConfig connectionPool;
 	/**
 	 * View export definition
 	 */
@@ -93,6 +103,16 @@ public class Configuration {
 	 * Settings for hash calculation
 	 */
 	private HashConfig hashing;
+
+	/**
+	 * Settings for merging slices into production files
+	 */
+	private MergeConfig merge;
+
+	/**
+	 * Generated rows used by the benchmark instead of the database
+	 */
+	private SyntheticDataConfig synthetic;
 	
 	/**
 	 * Automatically filled.
@@ -106,6 +126,20 @@ public class Configuration {
 		config.fullConnectionUrl = config.getUrl() + config.getHost() + "/" + config.getParameters();
 		if(config.logDirectory == null || config.logDirectory.isEmpty())
 			config.logDirectory = "logs";
+		if(config.connectionPool == null)
+			config.connectionPool = new ConnectionPoolConfig();
+		if(config.connectionPool.getMaxSessions() < 1)
+			config.connectionPool.setMaxSessions(Math.max(1, config.threadCount) + 2);
+		if(config.merge == null)
+			config.merge = new MergeConfig();
+		if(config.synthetic == null)
+			config.synthetic = new SyntheticDataConfig();
+		if(config.pipeline == null)
+			config.pipeline = new PipelineConfig();
+		if(config.pipeline.getWriteThreadCount() < 1)
+			config.pipeline.setWriteThreadCount(Math.max(1, config.threadCount));
+		if(config.pipeline.getCompressThreadCount() < 1)
+			config.pipeline.setCompressThreadCount(Runtime.getRuntime().availableProcessors());
 		return config;
 	}
 }
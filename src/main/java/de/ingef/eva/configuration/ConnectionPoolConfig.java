@@ -0,0 +1,27 @@
+package de.ingef.eva.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Limits of the database session pool
+ */
+@Getter @Setter
+public class ConnectionPoolConfig {
+	/**
+	 * Maximum number of sessions that are open at the same time. Defaults to the thread count plus two.
+	 */
+	private int maxSessions = 0;
+	/**
+	 * Maximum time a caller waits for a free session. Values below 1 wait without limit.
+	 */
+	private int maxWaitSeconds = 0;
+	/**
+	 * Idle sessions are closed after this time
+	 */
+	private int idleTimeoutSeconds = 600;
+	/**
+	 * Time an idle session may take to confirm that it is still usable before it is handed out
+	 */
+	private int validationTimeoutSeconds = 5;
+}
@@ -1,7 +1,6 @@
 package de.ingef.eva.configuration;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -17,6 +16,7 @@ import de.ingef.eva.database.Column;
 import de.ingef.eva.database.Database;
 import de.ingef.eva.database.DatabaseSchema;
 import de.ingef.eva.database.Table;
+import de.ingef.eva.services.ConnectionFactory;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -25,14 +25,20 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class SchemaFactory {
 	
-	public DatabaseSchema createSchema(Configuration config) {
+	/**
+	 * fetches the columns of all configured tables
+	 * @param config
+	 * @param connectionFactory
+	 * @return
+	 */
+	public DatabaseSchema createSchema(Configuration config, ConnectionFactory connectionFactory) {
 		List<SourceConfig> sources = config.getSources();
 		if(sources == null || sources.isEmpty()) {
 			log.error("No sources specified.");
 			return null;
 		}
 		
-		return fetchSchema(config);
+		return fetchSchema(config, connectionFactory);
 	}
 	
 	private boolean isValidSource(SourceConfig source) {
@@ -43,12 +49,8 @@ public class SchemaFactory {
 		return view.getName() != null && !view.getName().isEmpty();
 	}
 	
-	private DatabaseSchema fetchSchema(Configuration config) {
-		try (Connection connection = DriverManager.getConnection(
-				config.getFullConnectionUrl(),
-				config.getUser(),
-				config.getPassword()
-				);
+	private DatabaseSchema fetchSchema(Configuration config, ConnectionFactory connectionFactory) {
+		try (Connection connection = connectionFactory.createConnection();
 				Statement stm = connection.createStatement();
 			) {
 			List<Database> databases =
@@ -0,0 +1,34 @@
+package de.ingef.eva.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Size and distribution of the generated rows that replace the database when benchmarking
+ */
+@Getter @Setter
+public class SyntheticDataConfig {
+	/**
+	 * Number of rows each export query returns
+	 */
+	private long rowsPerQuery = 100_000;
+	/**
+	 * Rows per query of single tables, e.g. "Arzt_Diagnose": 500000. Overrides rowsPerQuery.
+	 */
+	private Map<String, Long> tableRows = new HashMap<>();
+	/**
+	 * Number of distinct insurants
+	 */
+	private long pidCount = 1_000_000;
+	/**
+	 * Concentration of rows on few insurants, codes and pharmacies. 0 distributes rows uniformly, larger values prefer low ids.
+	 */
+	private double skew = 1.0;
+	/**
+	 * Seed of the generated values. Equal seeds and queries produce equal rows.
+	 */
+	private long seed = 42;
+}
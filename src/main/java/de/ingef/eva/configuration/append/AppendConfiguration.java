@@ -29,4 +29,9 @@ public class AppendConfiguration {
 	 */
 	private String endDateColumn;
 	private String dayColumn;
+	/**
+	 * lets the export query compute the column if the transformer supports it.
+	 * Supported by STATIC, BS_TO_KV, APO_TYPE and START_DATE.
+	 */
+	private boolean pushdown = false;
 }
@@ -0,0 +1,67 @@
+package de.ingef.eva.configuration.export;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Thread budgets and buffer sizes of the export stages.
+ * Rows are fetched by {@code threadCount} query threads, handed over in batches to the transform workers
+ * and finally encoded by the write workers which hand over blocks to the compression workers.
+ */
+@Getter @Setter
+public class PipelineConfig {
+	/**
+	 * Number of rows that are handed over between stages at once
+	 */
+	private int batchSize = 1000;
+	/**
+	 * Number of batches a single export may buffer before fetching is paused
+	 */
+	private int queueCapacity = 16;
+	/**
+	 * Number of threads that filter and transform rows
+	 */
+	private int transformThreadCount = 2;
+	/**
+	 * Number of threads that encode and compress slices. Defaults to the number of query threads.
+	 */
+	private int writeThreadCount = 0;
+	/**
+	 * Whether cache files are written as block gzip files whose members are compressed concurrently.
+	 * Otherwise each slice is compressed as a single gzip stream by its write thread.
+	 */
+	private boolean blockCompression = true;
+	/**
+	 * Number of threads that compress blocks of cache files. Defaults to the number of available processors.
+	 */
+	private int compressThreadCount = 0;
+	/**
+	 * Number of attempts to export a slice. A slice whose rows stop early is exported again from the start.
+	 */
+	private int sliceAttempts = 3;
+	/**
+	 * Wait before the second attempt of a slice. The wait doubles with every further attempt.
+	 */
+	private int retryBackoffSeconds = 30;
+	/**
+	 * Maximum number of queries of the same table that run at the same time. Values below 1 disable the limit.
+	 * Parts of year slices are limited per year instead. Parts of tables without year slices share the limit of the table.
+	 */
+	private int maxQueriesPerTable = 2;
+	/**
+	 * Maximum number of queries of the same database that run at the same time. Values below 1 disable the limit.
+	 */
+	private int maxQueriesPerDatabase = 0;
+	/**
+	 * Expected number of rows per table name. Used to order queries of tables that were not exported before.
+	 */
+	private Map<String, Long> tableRowEstimates = new HashMap<>();
+	/**
+	 * Merges queries of different datasets that only differ in their row conditions into a single query.
+	 * Each fetched row is written into the slices of all datasets it belongs to.
+	 */
+	private boolean fanOut = false;
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 
 import de.ingef.eva.configuration.export.sql.ColumnNode;
+import de.ingef.eva.configuration.export.sql.PartitionSliceNode;
 import de.ingef.eva.configuration.export.sql.SqlNode;
 import de.ingef.eva.configuration.export.sql.SqlNodeType;
 import de.ingef.eva.query.Query;
@@ -42,6 +43,10 @@ public class ViewConfig extends SqlNode {
 	 * Joins to add data to this table
 	 */
 	private List<JoinConfig> joins;
+	/**
+	 * Splits each year slice of this table into parts that are exported concurrently
+	 */
+	private PartitionSliceNode partitionSlice;
 		
 	public ViewConfig() {
 		super(SqlNodeType.TABLE);
@@ -53,6 +58,7 @@ public class ViewConfig extends SqlNode {
 		traverseJoins(builder);
 		traverseConditions(builder);
 		traverseGlobalConditions(builder, globalConditions);
+		builder.setPartitionSlice(partitionSlice);
 		return builder.buildQueries();
 	}
 
@@ -0,0 +1,43 @@
+package de.ingef.eva.configuration.export.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Splits a table into a fixed number of parts by the hash bucket of a column.
+ * Rows of the same value, e.g. all rows of a pid, end up in the same part.
+ */
+@Getter @Setter
+@JsonTypeName(value="HASH_PARTITION_SLICE")
+public class HashPartitionSlice extends PartitionSliceNode {
+
+	/**
+	 * Number of parts
+	 */
+	private final int partitionCount;
+
+	public HashPartitionSlice() {
+		this("pid", 4);
+	}
+
+	public HashPartitionSlice(String column, int partitionCount) {
+		super(SqlNodeType.HASH_PARTITION_SLICE, column);
+		this.partitionCount = partitionCount;
+	}
+
+	@Override
+	public List<SlicePartition> createPartitions(String columnReference) {
+		int count = Math.max(1, partitionCount);
+		//zero padded names keep the parts in order when file names are sorted
+		String nameFormat = "p%0" + Integer.toString(count - 1).length() + "d";
+		List<SlicePartition> partitions = new ArrayList<>(count);
+		for(int partition = 0; partition < count; partition++)
+			partitions.add(new SlicePartition(String.format(nameFormat, partition), "hashbucket(hashrow(" + columnReference + ")) mod " + count + " = " + partition));
+		return partitions;
+	}
+}
@@ -0,0 +1,27 @@
+package de.ingef.eva.configuration.export.sql;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Base class for splitting a table into parts that are exported by independent queries.
+ * Every row of the table belongs to exactly one part.
+ */
+@Getter
+public abstract class PartitionSliceNode extends SqlNode {
+
+	private final String column;
+
+	public PartitionSliceNode(SqlNodeType type, String column) {
+		super(type);
+		this.column = column;
+	}
+
+	/**
+	 * creates the conditions of all parts
+	 * @param columnReference aliased partition column, e.g. 'a.pid'
+	 * @return parts in the order they are merged
+	 */
+	public abstract List<SlicePartition> createPartitions(String columnReference);
+}
@@ -0,0 +1,42 @@
+package de.ingef.eva.configuration.export.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Splits a table into quarters of a date column.
+ * Rows without a date are exported with the first quarter.
+ */
+@Getter @Setter
+@JsonTypeName(value="QUARTER_SLICE")
+public class QuarterSlice extends PartitionSliceNode {
+
+	private static final int QUARTER_COUNT = 4;
+	private static final int MONTHS_PER_QUARTER = 3;
+
+	public QuarterSlice() {
+		this("");
+	}
+
+	public QuarterSlice(String dateColumn) {
+		super(SqlNodeType.QUARTER_SLICE, dateColumn);
+	}
+
+	@Override
+	public List<SlicePartition> createPartitions(String columnReference) {
+		List<SlicePartition> partitions = new ArrayList<>(QUARTER_COUNT);
+		for(int quarter = 1; quarter <= QUARTER_COUNT; quarter++) {
+			int lastMonth = quarter * MONTHS_PER_QUARTER;
+			String condition = "extract(month from " + columnReference + ") between " + (lastMonth - MONTHS_PER_QUARTER + 1) + " and " + lastMonth;
+			if(quarter == 1)
+				condition = "(" + condition + " or " + columnReference + " is null)";
+			partitions.add(new SlicePartition("q" + quarter, condition));
+		}
+		return partitions;
+	}
+}
@@ -0,0 +1,20 @@
+package de.ingef.eva.configuration.export.sql;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Part of a table that is exported by a separate query
+ */
+@Getter
+@RequiredArgsConstructor
+public class SlicePartition {
+	/**
+	 * Name that is added to the slice name, e.g. 'q1'
+	 */
+	private final String name;
+	/**
+	 * Sql condition that selects the rows of this part
+	 */
+	private final String condition;
+}
@@ -8,5 +8,7 @@ public enum SqlNodeType {
 	WHERE_INLINE,
 	WHERE_FILE,
 	FIXED_YEAR_SLICE,
-	DYNAMIC_YEAR_SLICE
+	DYNAMIC_YEAR_SLICE,
+	QUARTER_SLICE,
+	HASH_PARTITION_SLICE
 }
@@ -0,0 +1,33 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers distinct codes in the order of their first occurrence
+ */
+class CodeDictionary {
+
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final List<String> values = new ArrayList<>();
+
+	int encode(String value) {
+		Integer code = codes.get(value);
+		if(code != null)
+			return code;
+		int newCode = values.size();
+		values.add(value);
+		codes.put(value, newCode);
+		return newCode;
+	}
+
+	String decode(int code) {
+		return values.get(code);
+	}
+
+	int size() {
+		return values.size();
+	}
+}
@@ -1,27 +1,36 @@
 package de.ingef.eva.configuration.hashing;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.function.BiFunction;
-import java.util.function.BinaryOperator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.constant.OutputDirectory;
+import de.ingef.eva.etl.MergeManifest.SliceFingerprint;
+import de.ingef.eva.error.TaskExecutionException;
 import de.ingef.eva.services.ConnectionFactory;
 import de.ingef.eva.services.TaskRunner;
+import de.ingef.eva.tasks.Task;
 import de.ingef.eva.utility.DateFormatValidator;
+import de.ingef.eva.utility.Helper;
+import de.ingef.eva.utility.io.BlockGzipIndex;
 import de.ingef.eva.utility.io.CsvReader;
+import de.ingef.eva.utility.io.CsvRow;
 import de.ingef.eva.utility.io.CsvWriter;
+import de.ingef.eva.utility.io.ExternalSorter.RecordReader;
 import org.apache.commons.codec.digest.DigestUtils;
 
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
@@ -39,8 +48,6 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 @Log4j2
 public class HashConfig {
 
-	private static final String NO_ICD_VALUE = "0000";
-	private static final String NO_PZN_VALUE = "00000000";
 	private static final String PID_INDEX_NAME = "pidIndex";
 	//field names for vers_stamm table
 	private static final String DOB_INDEX_NAME = "dobIndex";
@@ -73,53 +80,102 @@ public class HashConfig {
 	 * file name to column name to column index map
 	 */
 	private Map<String, Map<String, Integer>> fileDescriptors;
+	/**
+	 * whether the data of all insurants is kept in memory or sorted by pid on disk
+	 */
+	private HashMode mode = HashMode.IN_MEMORY;
+	/**
+	 * number of rows sorted in memory per temporary run in external sort mode
+	 */
+	private int sortBufferSize = 1_000_000;
+	/**
+	 * number of runs merged at once in external sort mode
+	 */
+	private int maxFanIn = 128;
+	/**
+	 * directory for temporary runs in external sort mode. Defaults to the system temp directory.
+	 */
+	private String sortDirectory;
+	/**
+	 * keeps the collected data in a snapshot per dataset, so that following runs only read the newest year and changed files.
+	 * Files whose hashes did not change are not rewritten. Only used in memory mode. Disabled by default.
+	 */
+	private boolean incremental = false;
+
+	/**
+	 * Provides the hash for the pid of the next row that receives a hash
+	 */
+	@FunctionalInterface
+	private interface PidHasher {
+		String hash(String pid) throws IOException;
+	}
+
+	/**
+	 * Opens a data file for reading
+	 */
+	@FunctionalInterface
+	private interface SliceOpener {
+		CsvReader open(Path slice) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface LineProcessor {
+		String[] process(String[] columns) throws IOException;
+	}
+
+	/**
+	 * Tables the hash is calculated from in read order within a year
+	 */
+	@RequiredArgsConstructor
+	private enum Category {
+		BASE("vers_stamm"),
+		KGS("vers_region"),
+		ICD("arzt_diagnose"),
+		PZN("am_evo");
+
+		private final String keyword;
+
+		/**
+		 * @param fileName
+		 * @return empty if the file does not belong to any category
+		 */
+		public static Optional<Category> of(String fileName) {
+			String name = fileName.toLowerCase();
+			return Arrays.stream(values()).filter(category -> name.contains(category.keyword)).findFirst();
+		}
+	}
+
+	/**
+	 * Data file with the reader for its category
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	private static class DataFile {
+		private final Path path;
+		private final Function<HashDataSink, Consumer<CsvRow>> reader;
+		private final Predicate<CsvRow> filter;
+	}
 
 	@Getter
 	@RequiredArgsConstructor
 	private static class HashDataPaths {
 		private final String dataset;
 		private final Path rootPath;
+		private final Path directory;
 		private final List<Path> dataFiles = new ArrayList<>();
 
 		/**
 		 * sorts the collected paths inline using the following rules:
 		 * 	* first, sort paths by year, i.e. slices for 2010 preceed those for 2011 and so on
 		 * 	* second, apply category order: base data -> kgs -> icd -> pzn
+		 * 	* third, parts of a year slice, e.g. 'abc.2015.p01.csv.gz', follow in name order
 		 */
 		public List<Path> sortPathsByDataSliceAndYear() {
-			dataFiles.sort((pathA, pathB) -> {
-				//name schema is: abc.yyyy.csv.gz
-				String[] fileNamePartsA = pathA.toString().split(MATCH_DOT);
-				String[] fileNamePartsB = pathB.toString().split(MATCH_DOT);
-				int yearA = Integer.parseInt(fileNamePartsA[1]);
-				int yearB = Integer.parseInt(fileNamePartsB[1]);
-				String nameA = fileNamePartsA[0];
-				String nameB = fileNamePartsB[0];
-				if(yearA == yearB) {
-					if(nameA.equalsIgnoreCase(nameB))
-						return 0;
-					if(nameA.toLowerCase().contains("vers_stamm"))
-						return -1;
-					if(nameB.toLowerCase().contains("vers_stamm"))
-						return 1;
-
-					if(nameA.toLowerCase().contains("vers_region") && !nameB.contains("vers_stamm"))
-						return -1;
-					if(nameB.toLowerCase().contains("vers_region") && !nameA.contains("vers_stamm"))
-						return 1;
-
-					if(nameA.toLowerCase().contains("arzt_diagnose") && !nameB.contains("am_evo"))
-						return -1;
-					if(nameB.toLowerCase().contains("arzt_diagnose") && !(nameA.contains("vers_region") && nameA.contains("vers_stamm")))
-						return 1;
-
-					return 1;
-				} else if(yearA < yearB) {
-					return -1;
-				} else {
-					return 1;
-				}
-			});
+			dataFiles.sort(Comparator
+					.comparingInt(HashConfig::findYear)
+					.thenComparing(HashConfig::findCategory)
+					.thenComparing(path -> path.getFileName().toString())
+			);
 			return dataFiles;
 		}
 	}
@@ -152,7 +208,7 @@ public class HashConfig {
 			boolean isLeaf = Files.list(dir).filter(Files::isDirectory).count() == 0;
 			if(!isLeaf)
 				return FileVisitResult.CONTINUE;
-			HashDataPaths entry = new HashDataPaths(dir.getFileName().toString(), dir.subpath(0, dir.getNameCount() - 1));
+			HashDataPaths entry = new HashDataPaths(dir.getFileName().toString(), dir.subpath(0, dir.getNameCount() - 1), dir);
 			for(File file : dir.toFile().listFiles()) {
 				String fileName = file.getName().toLowerCase();
 				if(isInvalidFile(fileName))
@@ -162,6 +218,11 @@ public class HashConfig {
 				if(nameParts.length < 2 || nameParts[1].isEmpty())
 					continue;
 
+				//rows are combined by year, so slices that are only split into parts cannot be hashed
+				if(!nameParts[1].chars().allMatch(Character::isDigit)) {
+					log.error("Skipping hash calculation of dataset '{}'. Slice '{}' has no year.", dir.getFileName(), file.getName());
+					return FileVisitResult.CONTINUE;
+				}
 				int yearSlice = Integer.parseInt(nameParts[1]);
 				//calculation is based on specified year limits
 				if(yearSlice >= minYear && yearSlice <= maxYear)
@@ -179,155 +240,234 @@ public class HashConfig {
 		private boolean isInvalidFile(String fileName) {
 			return fileName.endsWith(TMP_FILE_EXTENSION) ||
 			fileName.endsWith(ORIGINAL_FILE_EXTENSION) ||
-			!(fileName.contains("vers_stamm") ||
-				fileName.contains("am_evo") ||
-				fileName.contains("arzt_diagnose") ||
-				fileName.contains("vers_region")
-			);
+			fileName.endsWith(OutputDirectory.BLOCK_INDEX_FILE_EXTENSION) ||
+			!Category.of(fileName).isPresent();
 		}
 	}
 
-	@Getter
-	@RequiredArgsConstructor
-	@EqualsAndHashCode(of={"pid"})
-	private static class DataEntry {
-		private final String pid;
-		private char gender = '9';
-		private LocalDate dob = LocalDate.MAX;
-		private LocalDate dod = LocalDate.MAX;
-		private String minKgs = "999999";
-		private String maxKgs = "000000";
-		private final List<String> icdCodes = new ArrayList<>(300);
-		private final List<String> pznCodes = new ArrayList<>(20);
-		
-		public void updateGender(char value) {
-			if(value < gender)
-				gender = value;
-		}
-		
-		public void updateDOB(LocalDate value) {
-			dob = takeMinimumDate(dob, value);
-		}
-		
-		public void updateDOD(LocalDate value) {
-			dod = takeMinimumDate(dod, value);
-		}
-		
-		public void addICDCode(String code) {
-			icdCodes.add(code);
-		}
-		
-		public void updateMinKgs(String value) {
-			minKgs = value.compareTo(minKgs) < 0 ? value : minKgs;
-		}
-		
-		public void updateMaxKgs(String value) {
-			maxKgs = value.compareTo(maxKgs) > 0 ? value : maxKgs;
-		}
-		
-		public void addPZN(String pzn) {
-			pznCodes.add(pzn);
-		}
-		
-		private LocalDate takeMinimumDate(LocalDate left, LocalDate right) {
-			return left.isBefore(right) ? left : right;
-		}
-
-		/**
-		 * @return true if no field has been changed
-		 */
-		private boolean isDefault() {
-			return gender == '9'
-					&& dob.isEqual(LocalDate.MAX)
-					&& dod.isEqual(LocalDate.MAX)
-					&& minKgs.equals("999999")
-					&& maxKgs.equals("000000")
-					&& icdCodes.isEmpty()
-					&& pznCodes.isEmpty();
-		}
+	/**
+	 * @param file data file named 'abc.yyyy.csv.gz' or 'abc.yyyy.part.csv.gz'
+	 * @return year of the slice
+	 */
+	private static int findYear(Path file) {
+		return Integer.parseInt(file.getFileName().toString().split(MATCH_DOT)[1]);
+	}
 
-		public char getGenderOrDefault() {
-			char g = getGender();
-			if(g == '9')
-				return '0';
-			return g;
-		}
+	private static Category findCategory(Path file) {
+		return Category
+				.of(file.getFileName().toString())
+				.orElseThrow(() -> new IllegalArgumentException("File '" + file + "' does not belong to any hash category"));
+	}
 
-		public LocalDate getDobOrDefault() {
-			return dob.isEqual(LocalDate.MAX)
-					? LocalDate.parse("1900-01-01")
-					: dob;
+	/**
+	 * calculates the hashes of all datasets in parallel
+	 * @param config
+	 * @param taskRunner runs one task per dataset
+	 * @param connectionFactory
+	 */
+	public void calculateHashes(Configuration config, TaskRunner taskRunner, ConnectionFactory connectionFactory) {
+		Map<String, HashDataPaths> hashFiles;
+		try {
+			hashFiles = findHashData(config.getCacheDirectory());
+		} catch (IOException e) {
+			log.error(e);
+			return;
 		}
-
-		public LocalDate getDodOrDefault() {
-			return dod.isEqual(LocalDate.MAX)
-					? LocalDate.parse("2999-12-31")
-					: dod;
+		//dataset tasks wait for the file readers, so these need their own threads
+		ExecutorService fileReaders = Helper.createThreadPool(config.getThreadCount(), true);
+		//file readers wait for the partition updates once too many rows are pending, so these need their own threads as well
+		ExecutorService partitionUpdaters = Helper.createThreadPool(config.getThreadCount(), true);
+		//readers wait for the decompressed blocks, so these are decompressed by another pool
+		ExecutorService decompressors = Helper.createThreadPool(config.getThreadCount(), true);
+		int readAhead = config.getThreadCount() * 2;
+		SliceOpener slices = path -> CsvReader.createGzipReader(path, ";", decompressors, readAhead);
+		int partitionCount = config.getThreadCount();
+		List<CompletableFuture<Void>> datasets = new ArrayList<>(hashFiles.size());
+		for(String dataset : hashFiles.keySet()) {
+			HashDataPaths entry = hashFiles.get(dataset);
+			List<Path> files = entry.sortPathsByDataSliceAndYear();
+			Task<Void> task = new Task<Void>("Hash", "Calculate pid hashes of dataset '" + dataset + "'") {
+				@Override
+				public Void execute() {
+					try {
+						if(mode == HashMode.EXTERNAL_SORT)
+							calculateSortedHashes(files, slices);
+						else if(incremental)
+							calculateHashesIncrementally(entry.getDirectory(), files, slices, fileReaders, partitionUpdaters, partitionCount);
+						else
+							calculateHashesInMemory(files, slices, fileReaders, partitionUpdaters, partitionCount);
+					} catch (IOException | UncheckedIOException e) {
+						throw new TaskExecutionException("Could not calculate hashes of dataset '" + dataset + "'.", e);
+					}
+					return null;
+				}
+			};
+			datasets.add(
+				taskRunner
+					.run(task)
+					.exceptionally(e -> {
+						log.error("Could not calculate hashes of dataset '{}'. ", dataset, e);
+						return null;
+					})
+			);
 		}
+		CompletableFuture.allOf(datasets.toArray(new CompletableFuture<?>[datasets.size()])).join();
+		fileReaders.shutdown();
+		partitionUpdaters.shutdown();
+		decompressors.shutdown();
+	}
 
-		public String getMinKgsOrDefault() {
-			return minKgs.equals("999999")
-					? "00000"
-					: minKgs;
-		}
+	private void calculateHashesInMemory(List<Path> files, SliceOpener slices, ExecutorService fileReaders, ExecutorService partitionUpdaters, int partitionCount) throws IOException {
+		PartitionedPidData data = new PartitionedPidData(partitionCount);
+		readHashDataConcurrently(createDataFiles(files), slices, data, fileReaders, partitionUpdaters, partitionCount);
+		log.info("Collected data of {} insurants", data.size());
+		appendHash(findModifiableFiles(files), slices, pid -> {
+			PidDataStore partition = data.getPartition(pid);
+			int slot = partition.find(pid);
+			return slot != -1
+					? partition.hash(slot)
+					: "";
+		}, false);
+	}
 
-		public String getMaxKgsOrDefault() {
-			return maxKgs.equals("000000")
-					? "00000"
-					: maxKgs;
+	/**
+	 * restores the data of all years but the newest from the snapshot of the dataset and reads only files that are not part of it.
+	 * The newest year is kept apart and combined with the restored data per insurant, so only insurants with rows in the newest year are hashed again.
+	 * @param directory dataset directory that holds the snapshot
+	 * @param files sorted data files
+	 * @param slices
+	 * @param fileReaders
+	 * @param partitionUpdaters
+	 * @param partitionCount
+	 * @throws IOException
+	 */
+	private void calculateHashesIncrementally(Path directory, List<Path> files, SliceOpener slices, ExecutorService fileReaders, ExecutorService partitionUpdaters, int partitionCount) throws IOException {
+		String settings = new TreeMap<>(fileDescriptors).toString();
+		Optional<PidHashSnapshot> snapshot = PidHashSnapshot
+				.load(directory)
+				.filter(content -> content.getSettings().equals(settings));
+		if(snapshot.isPresent() && snapshot.get().isHashed(createFingerprints(files))) {
+			log.info("Hashes of dataset '{}' are up to date", directory.getFileName());
+			return;
 		}
-
-		public List<String> getICDOrDefault() {
-			return icdCodes.isEmpty()
-					? Arrays.asList(NO_ICD_VALUE)
-					: icdCodes;
+		List<DataFile> dataFiles = createDataFiles(files);
+		//the newest year is read in every run. Files are sorted by year, so it is the block at the end.
+		int newestYear = files.isEmpty() ? 0 : findYear(files.get(files.size() - 1));
+		int collectedFileCount = (int) files.stream().filter(file -> findYear(file) < newestYear).count();
+		List<Path> dataPaths = dataFiles.stream().map(DataFile::getPath).collect(Collectors.toList());
+		PartitionedPidData collectedData = new PartitionedPidData(partitionCount);
+		int restoredFileCount = 0;
+		if(snapshot.isPresent() && snapshot.get().getCollectedFiles().size() <= collectedFileCount && snapshot.get().isCollectedFrom(createFingerprints(dataPaths))) {
+			PidHashSnapshot.readData(directory, collectedData);
+			restoredFileCount = snapshot.get().getCollectedFiles().size();
+			log.info("Restored data of {} insurants from the snapshot of dataset '{}'", collectedData.size(), directory.getFileName());
 		}
+		readHashDataConcurrently(dataFiles.subList(restoredFileCount, collectedFileCount), slices, collectedData, fileReaders, partitionUpdaters, partitionCount);
+		PartitionedPidData newestData = new PartitionedPidData(partitionCount);
+		readHashDataConcurrently(dataFiles.subList(collectedFileCount, dataFiles.size()), slices, newestData, fileReaders, partitionUpdaters, partitionCount);
+		log.info("Collected data of {} insurants and {} insurants of the newest year", collectedData.size(), newestData.size());
+		appendHash(findModifiableFiles(files), slices, pid -> {
+			PidDataStore collected = collectedData.getPartition(pid);
+			PidDataStore newest = newestData.getPartition(pid);
+			int collectedSlot = collected.find(pid);
+			int newestSlot = newest.find(pid);
+			if(newestSlot == -1)
+				return collectedSlot != -1 ? collected.hash(collectedSlot) : "";
+			if(collectedSlot == -1)
+				return newest.hash(newestSlot);
+			return DigestUtils.sha256Hex(collected.createHashInput(collectedSlot, newest, newestSlot));
+		}, true);
+		//fingerprints are taken after the hashes were written, as this modifies the base data files
+		new PidHashSnapshot(settings, createFingerprints(dataPaths.subList(0, collectedFileCount)), createFingerprints(files)).save(directory, collectedData);
+	}
 
-		public List<String> getPZNOrDefault() {
-			return pznCodes.isEmpty()
-					? Arrays.asList(NO_PZN_VALUE)
-					: pznCodes;
-		}
+	private List<SliceFingerprint> createFingerprints(List<Path> files) throws IOException {
+		List<SliceFingerprint> fingerprints = new ArrayList<>(files.size());
+		for(Path file : files)
+			fingerprints.add(new SliceFingerprint(file.getFileName().toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis(), null));
+		return fingerprints;
 	}
 
-	public void calculateHashes(Configuration config, TaskRunner taskRunner, ConnectionFactory connectionFactory) {
-		try {
-			Map<String, HashDataPaths> hashFiles = findHashData(config.getCacheDirectory());
-			for(String dataset : hashFiles.keySet()) {
-				HashDataPaths entry = hashFiles.get(dataset);
-				Map<String, DataEntry> data = readHashData(entry.sortPathsByDataSliceAndYear());
-				appendHash(entry, data);
+	/**
+	 * sorts the rows of all categories by pid into temporary runs and hashes one insurant at a time.
+	 * The hashes are sorted back into file order, so that they are joined with the rows of the modified files while these are rewritten.
+	 * @param files sorted data files
+	 * @param slices
+	 * @throws IOException
+	 */
+	private void calculateSortedHashes(List<Path> files, SliceOpener slices) throws IOException {
+		List<Path> modifiableFiles = findModifiableFiles(files);
+		Path runDirectory = Paths.get(sortDirectory != null ? sortDirectory : System.getProperty("java.io.tmpdir"));
+		try(SortedPidHashes sortedHashes = new SortedPidHashes(runDirectory, sortBufferSize, maxFanIn)) {
+			readHashData(files, slices, sortedHashes);
+			for(int fileIndex = 0; fileIndex < modifiableFiles.size(); fileIndex++)
+				readPids(slices.open(modifiableFiles.get(fileIndex)), fileIndex, sortedHashes);
+			try(RecordReader<SortedPidHashes.HashRecord> hashes = sortedHashes.calculateHashes()) {
+				appendHash(modifiableFiles, slices, pid -> {
+					SortedPidHashes.HashRecord next = hashes.next();
+					if(next == null || !next.getPid().equals(pid))
+						throw new IllegalStateException("Sorted hashes do not match the rows of the modified files at pid '" + pid + "'");
+					return next.getHash();
+				}, false);
 			}
-		} catch (IOException e) {
-			log.error(e);
 		}
 	}
 
-	private void appendHash(HashDataPaths entry, Map<String, DataEntry> data) throws IOException {
-		List<Path> modifiableFiles =
-				entry
-					.getDataFiles()
-					.stream()
-					.filter(path -> path.getFileName().toString().toLowerCase().contains("vers_stamm"))
-					.collect(Collectors.toList());
+	/**
+	 * requests a hash for each row of a file that receives hashes
+	 * @param reader
+	 * @param fileIndex
+	 * @param sortedHashes
+	 * @throws IOException
+	 */
+	private void readPids(CsvReader reader, int fileIndex, SortedPidHashes sortedHashes) throws IOException {
+		int pidColumnIndex = findColumnIndex(reader.nextRow().toArray(new String[0]), "pid");
+		long[] row = { 0 };
+		reader.forEachRow(columns -> sortedHashes.acceptLookup(fileIndex, row[0]++, columns.get(pidColumnIndex)));
+		reader.close();
+	}
+
+	private List<Path> findModifiableFiles(List<Path> files) {
+		return files
+				.stream()
+				.filter(path -> path.getFileName().toString().toLowerCase().contains("vers_stamm"))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * writes the hashes into the pid_hash column of the given files
+	 * @param modifiableFiles
+	 * @param slices
+	 * @param pidHasher
+	 * @param skipUnchanged whether files that already contain the current hashes are left as they are.
+	 * Rows before the first outdated hash are copied, so each row is hashed once.
+	 * @throws IOException
+	 */
+	private void appendHash(List<Path> modifiableFiles, SliceOpener slices, PidHasher pidHasher, boolean skipUnchanged) throws IOException {
 		log.info("Appending hashes");
 		for(Path path : modifiableFiles) {
+			long firstOutdatedRow = skipUnchanged ? findFirstOutdatedRow(slices.open(path), pidHasher) : 0;
+			if(firstOutdatedRow == -1) {
+				log.info("Hashes of {} are up to date", path);
+				continue;
+			}
 			log.info("Modifying {}", path);
-			BufferedReader reader = CsvReader.createGzipReader(path).getReader();
+			CsvReader reader = slices.open(path);
 			Path tmpFile = Paths.get(path.toString() + "." + TMP_FILE_EXTENSION);
 			CsvWriter writer = CsvWriter.createGzipWriter(tmpFile);
 			//check if hash column is already present
-			String[] columns = reader.readLine().split(";");
+			String[] columns = reader.nextRow().toArray(new String[0]);
 			Arrays.stream(columns).forEach(columnName -> writer.addEntry(columnName));
 			int hashColumnIndex = findColumnIndex(columns, PID_HASH_COLUMN_NAME);
 			if(hashColumnIndex == -1)
 				writer.addEntry(PID_HASH_COLUMN_NAME);
 			writer.writeLine();
 			int pidColumnIndex = findColumnIndex(columns, "pid");
-			Function<String[], String[]> lineProcessor = createLineProcessor(data, hashColumnIndex, pidColumnIndex);
-			String line;
-			while((line = reader.readLine()) != null) {
-				String[] modifiedLine = lineProcessor.apply(line.split(";", -1));
+			LineProcessor lineProcessor = createLineProcessor(pidHasher, hashColumnIndex, pidColumnIndex);
+			CsvRow row;
+			for(long rowIndex = 0; (row = reader.nextRow()) != null; rowIndex++) {
+				String[] line = row.toArray(new String[row.size()]);
+				String[] modifiedLine = rowIndex < firstOutdatedRow ? line : lineProcessor.process(line);
 				Arrays.stream(modifiedLine).forEach(value -> writer.addEntry(value));
 				writer.writeLine();
 			}
@@ -338,19 +478,44 @@ public class HashConfig {
 		}
 	}
 
+	/**
+	 * @param reader
+	 * @param pidHasher
+	 * @return index of the first row whose pid_hash differs from the current hash. 0 if the file has no pid_hash column
+	 * and -1 if all rows contain the current hashes.
+	 * @throws IOException
+	 */
+	private long findFirstOutdatedRow(CsvReader reader, PidHasher pidHasher) throws IOException {
+		try {
+			String[] columns = reader.nextRow().toArray(new String[0]);
+			int hashColumnIndex = findColumnIndex(columns, PID_HASH_COLUMN_NAME);
+			if(hashColumnIndex == -1)
+				return 0;
+			int pidColumnIndex = findColumnIndex(columns, "pid");
+			CsvRow row;
+			for(long rowIndex = 0; (row = reader.nextRow()) != null; rowIndex++) {
+				if(!row.get(hashColumnIndex).equals(pidHasher.hash(row.get(pidColumnIndex))))
+					return rowIndex;
+			}
+			return -1;
+		} finally {
+			reader.close();
+		}
+	}
+
 	private void swapFiles(Path path, Path tmpFile) throws IOException {
-		Files.move(path, Paths.get(path.toString() + "." + ORIGINAL_FILE_EXTENSION), REPLACE_EXISTING);
+		Path originalFile = Paths.get(path.toString() + "." + ORIGINAL_FILE_EXTENSION);
+		Files.move(path, originalFile, REPLACE_EXISTING);
+		//block offsets belong to the original content
+		BlockGzipIndex.move(path, originalFile);
 		Files.move(tmpFile, path);
 	}
 
-	private Function<String[], String[]> createLineProcessor(Map<String, DataEntry> mapping, int hashColumnIndex, int pidColumnIndex) {
+	private LineProcessor createLineProcessor(PidHasher pidHasher, int hashColumnIndex, int pidColumnIndex) {
 		return hashColumnIndex != -1
 			//update hash
 			? columns -> {
-				String pid = columns[pidColumnIndex];
-				columns[hashColumnIndex] = mapping.containsKey(pid)
-						? createHashMapping(mapping.get(pid))
-						: "";
+				columns[hashColumnIndex] = pidHasher.hash(columns[pidColumnIndex]);
 				return columns;
 			}
 			//create new column
@@ -359,9 +524,7 @@ public class HashConfig {
 				for(int i = 0; i < columns.length; i++) {
 					modified[i] = columns[i];
 				}
-				modified[columns.length] = mapping.containsKey(columns[pidColumnIndex])
-						? createHashMapping(mapping.get(columns[pidColumnIndex]))
-						: "";
+				modified[columns.length] = pidHasher.hash(columns[pidColumnIndex]);
 				return modified;
 			};
 	}
@@ -380,192 +543,158 @@ public class HashConfig {
 		return -1;
 	}
 
-	private Map<String, DataEntry> readHashData(List<Path> files) throws IOException {
-		int numberOfYearBlocks = files.size() / 4;
-		Map<String, DataEntry> collectedDataOverYears = new HashMap<>(300_000);
-		for(int blockIndex = 0; blockIndex < numberOfYearBlocks; blockIndex++) {
-			int offset = 4 * blockIndex;
-			Path baseFilePath = files.get(0 + offset);
-			log.info("Processing {}", baseFilePath);
-			String baseCommonName = baseFilePath.getFileName().toString().split(MATCH_DOT)[0];
-			Map<String, DataEntry> baseData = readData(
-					baseFilePath,
-					createBaseDataEntry(baseCommonName),
-					this::mergeBaseDataEntries
-			);
-			Path kgsFilePath = files.get(1 + offset);
-			log.info("Processing {}", kgsFilePath);
-			String kgsCommonName = kgsFilePath.getFileName().toString().split(MATCH_DOT)[0];
-			Map<String, DataEntry> kgsData = readData(
-					kgsFilePath,
-					createKgsDataEntry(kgsCommonName),
-					this::mergeKgsEntries
-			);
-			Path icdFilePath = files.get(2 + offset);
-			log.info("Processing {}", icdFilePath);
-			String icdCommonName = icdFilePath.getFileName().toString().split(MATCH_DOT)[0];
-			Map<String, DataEntry> icdData = readData(
-					icdFilePath,
-					createIcdEntry(icdCommonName),
-					this::mergeIcdEntries,
-					filterIcdEntries(icdCommonName)
-			);
-			Path pznFilePath = files.get(3 + offset);
-			log.info("Processing {}", pznFilePath);
-			String pznCommonName = pznFilePath.getFileName().toString().split(MATCH_DOT)[0];
-			Map<String, DataEntry> pznData = readData(
-					pznFilePath,
-					createPznEntry(pznCommonName),
-					this::mergePznEntry
-			);
-
-			aggregateData(collectedDataOverYears, baseData, this::mergeBaseDataEntries);
-			aggregateData(collectedDataOverYears, kgsData, this::mergeKgsEntries);
-			aggregateData(collectedDataOverYears, icdData, this::mergeIcdEntries);
-			aggregateData(collectedDataOverYears, pznData, this::mergePznEntry);
+	/**
+	 * passes the attributes of all insurants to the sink. Files are read in year order and rows in file order.
+	 * @param files sorted data files
+	 * @param slices
+	 * @param data
+	 * @throws IOException
+	 */
+	private void readHashData(List<Path> files, SliceOpener slices, HashDataSink data) throws IOException {
+		for(DataFile file : createDataFiles(files)) {
+			log.info("Processing {}", file.getPath());
+			readData(slices.open(file.getPath()), file.getReader().apply(data), file.getFilter());
 		}
-		return collectedDataOverYears;
 	}
 
 	/**
-	 * merges data into aggregator map
-	 * @param aggregator modifiable map
-	 * @param data data slice
-	 * @param merger merges entries for same keys properly
+	 * reads the files concurrently. Each file hands its rows in chunks per pid partition to the partitions while it is read.
+	 * The chunks are applied in file order, so the collected data equals that of a sequential read.
+	 * The number of rows read ahead of the partition updates is limited by the partitioned data.
+	 * @param files data files in read order
+	 * @param slices
+	 * @param data
+	 * @param fileReaders threads that read files
+	 * @param partitionUpdaters threads that update partitions
+	 * @param readAhead number of files that are read at the same time
+	 * @throws IOException
 	 */
-	private void aggregateData(Map<String, DataEntry> aggregator, Map<String, DataEntry> data, BiFunction<DataEntry, DataEntry, DataEntry> merger) {
-		data
-			.entrySet()
-			.stream()
-			.forEach(entry -> aggregator.merge(entry.getKey(), entry.getValue(), merger));
-	}
-
-	private DataEntry mergePznEntry(DataEntry e1, DataEntry e2) {
-		e1.getPznCodes().addAll(e2.getPznCodes());
-		return e1;
+	private void readHashDataConcurrently(List<DataFile> files, SliceOpener slices, PartitionedPidData data, ExecutorService fileReaders, ExecutorService partitionUpdaters, int readAhead) throws IOException {
+		Deque<CompletableFuture<Void>> pendingFiles = new ArrayDeque<>();
+		for(DataFile file : files) {
+			if(pendingFiles.size() >= readAhead)
+				awaitFile(pendingFiles.poll());
+			PartitionedPidData.Batch rows = data.createBatch(partitionUpdaters);
+			fileReaders.execute(() -> {
+				log.info("Processing {}", file.getPath());
+				try {
+					readData(slices.open(file.getPath()), file.getReader().apply(rows), file.getFilter());
+					rows.complete();
+				} catch (IOException | RuntimeException e) {
+					rows.fail(e);
+				}
+			});
+			pendingFiles.add(rows.getApplied());
+		}
+		while(!pendingFiles.isEmpty())
+			awaitFile(pendingFiles.poll());
 	}
 
-	private Function<List<String>, DataEntry> createPznEntry(String pznCommonName) {
-		return columns -> {
-			Map<String, Integer> columnIndices = fileDescriptors.get(pznCommonName);
-			int pidIndex = columnIndices.get(PID_INDEX_NAME);
-			int pznIndex = columnIndices.get(PZN_INDEX_NAME);
-			String pzn = columns.get(pznIndex);
-			DataEntry e = new DataEntry(columns.get(pidIndex));
-			e.addPZN(pzn);
-			return e;
-		};
+	private void awaitFile(CompletableFuture<Void> file) throws IOException {
+		try {
+			file.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw e;
+		}
 	}
 
-	private Predicate<List<String>> filterIcdEntries(String icdCommonName) {
-		return columns -> {
-			Map<String, Integer> columnIndices = fileDescriptors.get(icdCommonName);
-			int confidenceIndex = columnIndices.get(CONFIDENCE_INDEX_NAME);
-			int contractIndex = columnIndices.get(CONTRACT_INDEX_NAME);
-			return columns.get(confidenceIndex).equalsIgnoreCase(DIAGNOSIS_CONFIDENCE) &&
-					columns.get(contractIndex).equalsIgnoreCase(CONTRACT_TYPE);
-		};
+	/**
+	 * assigns the row readers to the files by their category
+	 * @param files sorted data files
+	 * @return files in read order
+	 */
+	private List<DataFile> createDataFiles(List<Path> files) {
+		List<DataFile> dataFiles = new ArrayList<>(files.size());
+		for(Path file : files) {
+			String commonName = file.getFileName().toString().split(MATCH_DOT)[0];
+			switch(findCategory(file)) {
+				case BASE:
+					dataFiles.add(new DataFile(file, data -> createBaseDataReader(commonName, data), columns -> true));
+					break;
+				case KGS:
+					dataFiles.add(new DataFile(file, data -> createKgsDataReader(commonName, data), columns -> true));
+					break;
+				case ICD:
+					dataFiles.add(new DataFile(file, data -> createIcdReader(commonName, data), filterIcdEntries(commonName)));
+					break;
+				default:
+					dataFiles.add(new DataFile(file, data -> createPznReader(commonName, data), columns -> true));
+			}
+		}
+		return dataFiles;
 	}
 
-	private DataEntry mergeIcdEntries(DataEntry e1, DataEntry e2) {
-		e1.getIcdCodes().addAll(e2.getIcdCodes());
-		return e1;
+	/**
+	 * @param commonName table name of a data file
+	 * @return column indices of the table
+	 */
+	private Map<String, Integer> findColumnIndices(String commonName) {
+		Map<String, Integer> columnIndices = fileDescriptors.get(commonName);
+		if(columnIndices == null)
+			throw new IllegalArgumentException("Missing file descriptor for '" + commonName + "'");
+		return columnIndices;
 	}
 
-	private Function<List<String>, DataEntry> createIcdEntry(String icdCommonName) {
-		return columns -> {
-			Map<String, Integer> columnIndices = fileDescriptors.get(icdCommonName);
-			int pidIndex = columnIndices.get(PID_INDEX_NAME);
-			int icdIndex = columnIndices.get(ICD_INDEX_NAME);
-
-			String icd = columns.get(icdIndex);
-			DataEntry e = new DataEntry(columns.get(pidIndex));
-			e.addICDCode(icd);
-			return e;
-		};
+	private Consumer<CsvRow> createPznReader(String pznCommonName, HashDataSink data) {
+		Map<String, Integer> columnIndices = findColumnIndices(pznCommonName);
+		int pidIndex = columnIndices.get(PID_INDEX_NAME);
+		int pznIndex = columnIndices.get(PZN_INDEX_NAME);
+		return columns -> data.acceptPzn(columns.get(pidIndex), columns.get(pznIndex));
 	}
 
-	private DataEntry mergeKgsEntries(DataEntry e1, DataEntry e2) {
-		e1.updateMinKgs(e2.getMinKgs());
-		e1.updateMaxKgs(e2.getMaxKgs());
-		return e1;
+	private Predicate<CsvRow> filterIcdEntries(String icdCommonName) {
+		Map<String, Integer> columnIndices = findColumnIndices(icdCommonName);
+		int confidenceIndex = columnIndices.get(CONFIDENCE_INDEX_NAME);
+		int contractIndex = columnIndices.get(CONTRACT_INDEX_NAME);
+		return columns -> columns.equalsIgnoreCase(confidenceIndex, DIAGNOSIS_CONFIDENCE) &&
+				columns.equalsIgnoreCase(contractIndex, CONTRACT_TYPE);
 	}
 
-	private Function<List<String>, DataEntry> createKgsDataEntry(String kgsCommonName) {
-		return columns -> {
-			Map<String, Integer> columnIndices = fileDescriptors.get(kgsCommonName);
-			int pidIndex = columnIndices.get(PID_INDEX_NAME);
-			int kgsIndex = columnIndices.get(KGS_INDEX_NAME);
-			String kgs = columns.get(kgsIndex);
-			DataEntry e = new DataEntry(columns.get(pidIndex));
-			e.updateMinKgs(kgs);
-			e.updateMaxKgs(kgs);
-			return e;
-		};
+	private Consumer<CsvRow> createIcdReader(String icdCommonName, HashDataSink data) {
+		Map<String, Integer> columnIndices = findColumnIndices(icdCommonName);
+		int pidIndex = columnIndices.get(PID_INDEX_NAME);
+		int icdIndex = columnIndices.get(ICD_INDEX_NAME);
+		return columns -> data.acceptIcd(columns.get(pidIndex), columns.get(icdIndex));
 	}
 
-	private DataEntry mergeBaseDataEntries(DataEntry e1, DataEntry e2) {
-		e1.updateDOD(e2.getDod());
-		e1.updateDOB(e2.getDob());
-		e1.updateGender(e2.getGender());
-		return e1;
+	private Consumer<CsvRow> createKgsDataReader(String kgsCommonName, HashDataSink data) {
+		Map<String, Integer> columnIndices = findColumnIndices(kgsCommonName);
+		int pidIndex = columnIndices.get(PID_INDEX_NAME);
+		int kgsIndex = columnIndices.get(KGS_INDEX_NAME);
+		return columns -> data.acceptKgs(columns.get(pidIndex), columns.get(kgsIndex));
 	}
 
-	private Function<List<String>, DataEntry> createBaseDataEntry(String baseCommonName) {
+	private Consumer<CsvRow> createBaseDataReader(String baseCommonName, HashDataSink data) {
+		Map<String, Integer> columnIndices = findColumnIndices(baseCommonName);
+		int pidIndex = columnIndices.get(PID_INDEX_NAME);
+		int dobIndex = columnIndices.get(DOB_INDEX_NAME);
+		int dodIndex = columnIndices.get(DOD_INDEX_NAME);
+		int genderIndex = columnIndices.get(GENDER_INDEX_NAME);
+		DateFormatValidator isoDateFormat = new DateFormatValidator("yyyy-MM-dd");
 		return columns -> {
-			Map<String, Integer> columnIndices = fileDescriptors.get(baseCommonName);
-			int pidIndex = columnIndices.get(PID_INDEX_NAME);
-			int dobIndex = columnIndices.get(DOB_INDEX_NAME);
-			int dodIndex = columnIndices.get(DOD_INDEX_NAME);
-			int genderIndex = columnIndices.get(GENDER_INDEX_NAME);
-			DataEntry e = new DataEntry(columns.get(pidIndex));
 			String gender = columns.get(genderIndex);
-			if(!gender.isEmpty())
-				e.updateGender(gender.charAt(0));
 			// do not update dates if not ISO date
-			DateFormatValidator isoDateFormat = new DateFormatValidator("yyyy-MM-dd");
 			String dodText = columns.get(dodIndex);
-			if (!dodText.isEmpty() && isoDateFormat.isValid(dodText))
-				e.updateDOD(LocalDate.parse(dodText));
 			String dobText = columns.get(dobIndex);
-			if (!dobText.isEmpty() && isoDateFormat.isValid(dobText))
-				e.updateDOB(LocalDate.parse(dobText));
-			return e;
+			data.acceptBaseData(
+					columns.get(pidIndex),
+					gender.isEmpty() ? PidDataStore.NO_GENDER : gender.charAt(0),
+					!dobText.isEmpty() && isoDateFormat.isValid(dobText) ? LocalDate.parse(dobText) : null,
+					!dodText.isEmpty() && isoDateFormat.isValid(dodText) ? LocalDate.parse(dodText) : null
+			);
 		};
 	}
 
-	/**
-	 * reads data from stream without filtering stream elements
-	 * @param baseFilePath
-	 * @param rowMapper
-	 * @param mapMerger
-	 * @return
-	 * @throws IOException
-	 */
-	private Map<String, DataEntry> readData(
-			Path baseFilePath,
-			Function<List<String>, DataEntry> rowMapper,
-			BinaryOperator<DataEntry> mapMerger
-	) throws IOException {
-		return readData(baseFilePath, rowMapper, mapMerger, columns -> true);
-	}
-
-	private Map<String, DataEntry> readData(
-			Path baseFilePath,
-			Function<List<String>, DataEntry> rowMapper,
-			BinaryOperator<DataEntry> mapMerger,
-			Predicate<List<String>>	rowFilter
-	) throws IOException {
-		CsvReader baseReader = CsvReader.createGzipReader(baseFilePath);
-		Map<String, DataEntry> baseData =
-				baseReader
-						.lines()
-						.skip(1)
-						.filter(rowFilter)
-						.map(rowMapper)
-						.collect(Collectors.toMap(entry -> entry.getPid(), entry -> entry, mapMerger));
+	private void readData(CsvReader baseReader, Consumer<CsvRow> rowReader, Predicate<CsvRow> rowFilter) throws IOException {
+		//skip header
+		baseReader.nextRow();
+		baseReader.forEachRow(columns -> {
+			if(rowFilter.test(columns))
+				rowReader.accept(columns);
+		});
 		baseReader.close();
-		return baseData;
 	}
 
 	private Map<String, HashDataPaths> findHashData(String cacheDirectory) throws IOException {
@@ -573,26 +702,4 @@ public class HashConfig {
 		Files.walkFileTree(Paths.get(cacheDirectory), fileFinder);
 		return fileFinder.getHashFiles();
 	}
-
-	private String createHashMapping(DataEntry pidData) {
-		return DigestUtils.sha256Hex(buildFullDataString(pidData));
-	}
-
-	private String buildFullDataString(DataEntry data) {
-		StringBuilder dataString = new StringBuilder();
-		dataString.append(data.getDobOrDefault());
-		dataString.append("_");
-		dataString.append(data.getDodOrDefault());
-		dataString.append("_");
-		dataString.append(data.getGenderOrDefault());
-		dataString.append("_");
-		dataString.append(data.getMinKgsOrDefault());
-		dataString.append("_");
-		dataString.append(data.getMaxKgsOrDefault());
-		dataString.append("_");
-		dataString.append(data.getICDOrDefault().stream().collect(Collectors.joining("_")));
-		dataString.append("_");
-		dataString.append(data.getPZNOrDefault().stream().collect(Collectors.joining("_")));
-		return dataString.toString();
-	}
 }
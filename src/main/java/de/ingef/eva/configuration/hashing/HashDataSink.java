@@ -0,0 +1,22 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.time.LocalDate;
+
+/**
+ * Receives the values of the rows that enter the pid hash in the order the rows are read
+ */
+interface HashDataSink {
+	/**
+	 * @param pid
+	 * @param gender first character of the gender or {@link PidDataStore#NO_GENDER} if it is empty
+	 * @param dob date of birth or null if it is not a valid date
+	 * @param dod date of death or null if it is not a valid date
+	 */
+	void acceptBaseData(String pid, char gender, LocalDate dob, LocalDate dod);
+
+	void acceptKgs(String pid, String kgs);
+
+	void acceptIcd(String pid, String icd);
+
+	void acceptPzn(String pid, String pzn);
+}
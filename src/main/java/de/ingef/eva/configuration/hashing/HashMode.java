@@ -0,0 +1,15 @@
+package de.ingef.eva.configuration.hashing;
+
+/**
+ * Way the data of the insurants is collected for the hash calculation
+ */
+public enum HashMode {
+	/**
+	 * Keeps the data of all insurants in memory
+	 */
+	IN_MEMORY,
+	/**
+	 * Sorts the rows by pid in temporary files and hashes one insurant at a time. Memory use depends on the sort buffer size only.
+	 */
+	EXTERNAL_SORT
+}
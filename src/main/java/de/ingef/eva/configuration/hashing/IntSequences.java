@@ -0,0 +1,106 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Appendable int sequences stored in chunks of a shared buffer.
+ * Each sequence is a linked list of segments whose size doubles up to a limit, so short sequences stay small.
+ * A segment starts with its capacity and the address of the following segment.
+ */
+class IntSequences {
+
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int HEADER_SIZE = 3;
+	private static final int INITIAL_SEGMENT_SIZE = 4;
+	private static final int MAX_SEGMENT_SIZE = 1024;
+	private static final long NO_SEGMENT = -1L;
+
+	private final List<int[]> chunks = new ArrayList<>();
+	private int chunkPosition = CHUNK_SIZE;
+	private long[] heads = new long[0];
+	private long[] tails = new long[0];
+	private int[] tailSizes = new int[0];
+
+	/**
+	 * appends a value to the sequence
+	 * @param sequence number of the sequence
+	 * @param value
+	 */
+	void add(int sequence, int value) {
+		ensureSequence(sequence);
+		long tail = tails[sequence];
+		if(tail == NO_SEGMENT) {
+			tail = allocate(INITIAL_SEGMENT_SIZE);
+			heads[sequence] = tail;
+			tails[sequence] = tail;
+		} else if(tailSizes[sequence] == read(tail)) {
+			long next = allocate(Math.min(read(tail) * 2, MAX_SEGMENT_SIZE));
+			write(tail + 1, (int) (next >>> 32));
+			write(tail + 2, (int) next);
+			tails[sequence] = next;
+			tailSizes[sequence] = 0;
+			tail = next;
+		}
+		write(tail + HEADER_SIZE + tailSizes[sequence]++, value);
+	}
+
+	boolean isEmpty(int sequence) {
+		return sequence >= heads.length || heads[sequence] == NO_SEGMENT;
+	}
+
+	/**
+	 * passes the values of the sequence in the order they were added
+	 * @param sequence
+	 * @param consumer
+	 */
+	void forEach(int sequence, IntConsumer consumer) {
+		if(isEmpty(sequence))
+			return;
+		long tail = tails[sequence];
+		for(long segment = heads[sequence]; segment != NO_SEGMENT; ) {
+			int count = segment == tail ? tailSizes[sequence] : read(segment);
+			for(int i = 0; i < count; i++)
+				consumer.accept(read(segment + HEADER_SIZE + i));
+			segment = segment == tail ? NO_SEGMENT : ((long) read(segment + 1) << 32) | (read(segment + 2) & 0xFFFFFFFFL);
+		}
+	}
+
+	private void ensureSequence(int sequence) {
+		if(sequence < heads.length)
+			return;
+		int oldLength = heads.length;
+		int newLength = Math.max(sequence + 1, oldLength * 2);
+		heads = Arrays.copyOf(heads, newLength);
+		tails = Arrays.copyOf(tails, newLength);
+		tailSizes = Arrays.copyOf(tailSizes, newLength);
+		Arrays.fill(heads, oldLength, newLength, NO_SEGMENT);
+		Arrays.fill(tails, oldLength, newLength, NO_SEGMENT);
+	}
+
+	/**
+	 * reserves a segment. Segments never span chunks.
+	 * @param capacity number of values
+	 * @return address of the segment
+	 */
+	private long allocate(int capacity) {
+		if(chunkPosition + HEADER_SIZE + capacity > CHUNK_SIZE) {
+			chunks.add(new int[CHUNK_SIZE]);
+			chunkPosition = 0;
+		}
+		long address = (long) (chunks.size() - 1) * CHUNK_SIZE + chunkPosition;
+		chunkPosition += HEADER_SIZE + capacity;
+		write(address, capacity);
+		return address;
+	}
+
+	private int read(long address) {
+		return chunks.get((int) (address / CHUNK_SIZE))[(int) (address % CHUNK_SIZE)];
+	}
+
+	private void write(long address, int value) {
+		chunks.get((int) (address / CHUNK_SIZE))[(int) (address % CHUNK_SIZE)] = value;
+	}
+}
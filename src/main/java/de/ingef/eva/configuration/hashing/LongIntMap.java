@@ -0,0 +1,105 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from non-negative long keys to int values. Collisions are resolved by linear probing.
+ */
+class LongIntMap {
+
+	private static final long EMPTY_KEY = -1L;
+	private static final float MAX_LOAD = 0.75f;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * @param expectedSize number of keys that fit without resizing
+	 */
+	LongIntMap(int expectedSize) {
+		allocate(Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD) + 1) - 1) << 1);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of positions of the table. Entries are iterated with {@link #keyAt(int)} and {@link #valueAt(int)}.
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * @param index position of the table
+	 * @return key at the position or -1 if the position is empty
+	 */
+	long keyAt(int index) {
+		return keys[index];
+	}
+
+	int valueAt(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param key non-negative key
+	 * @return value of the key or -1 if it is absent
+	 */
+	int get(long key) {
+		for(int i = indexOf(key); ; i = (i + 1) & mask) {
+			if(keys[i] == key)
+				return values[i];
+			if(keys[i] == EMPTY_KEY)
+				return -1;
+		}
+	}
+
+	/**
+	 * @param key non-negative key
+	 * @param value value that is stored if the key is absent
+	 * @return the present value or the given value if it was added
+	 */
+	int putIfAbsent(long key, int value) {
+		int i = indexOf(key);
+		for(; keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+			if(keys[i] == key)
+				return values[i];
+		}
+		keys[i] = key;
+		values[i] = value;
+		if(++size > keys.length * MAX_LOAD)
+			grow();
+		return value;
+	}
+
+	private int indexOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY_KEY);
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		for(int j = 0; j < oldKeys.length; j++) {
+			if(oldKeys[j] == EMPTY_KEY)
+				continue;
+			int i = indexOf(oldKeys[j]);
+			while(keys[i] != EMPTY_KEY)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Attributes of all insurants split into partitions by pid so that files can be read concurrently.
+ * Rows are handed to the partitions in chunks while a file is being read. Each partition is updated by one thread at a time
+ * and receives the chunks of the files in the order the files were added, so icd and pzn lists are the same as after a
+ * sequential read and no locks are needed.
+ */
+class PartitionedPidData {
+
+	/**
+	 * number of rows of a partition that are handed over at once
+	 */
+	static final int CHUNK_SIZE = 1 << 16;
+
+	private final PidDataStore[] partitions;
+	/**
+	 * Last update of each partition. New batches are chained after it.
+	 */
+	private final List<CompletableFuture<Void>> lastUpdates = new ArrayList<>();
+	private final int chunkSize;
+	private final long maxPendingRows;
+	/**
+	 * Rows that were handed over but not yet applied. Guarded by the lock of the partitions.
+	 */
+	private long pendingRows = 0;
+
+	/**
+	 * Rows of one file. Full chunks are applied to their partition while the file is still being read.
+	 * Used by the thread that reads the file.
+	 */
+	class Batch implements HashDataSink {
+		private final Executor executor;
+		/**
+		 * All updates of previously added batches
+		 */
+		private final CompletableFuture<Void> previousBatches;
+		private final Chunk[] chunks = new Chunk[partitions.length];
+		/**
+		 * Last handed over chunk of each partition
+		 */
+		private final CompletableFuture<?>[] tails = new CompletableFuture<?>[partitions.length];
+		/**
+		 * Completed once all chunks of a partition were applied
+		 */
+		private final CompletableFuture<Void>[] applied;
+		private long ownPendingRows = 0;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private Batch(Executor executor) {
+			this.executor = executor;
+			applied = new CompletableFuture[partitions.length];
+			for(int i = 0; i < partitions.length; i++) {
+				tails[i] = lastUpdates.get(i);
+				applied[i] = new CompletableFuture<>();
+				lastUpdates.set(i, applied[i]);
+			}
+			previousBatches = CompletableFuture.allOf(tails);
+			//a batch that waits for the row limit may proceed once it is the oldest
+			previousBatches.whenComplete((result, e) -> {
+				synchronized(partitions) {
+					partitions.notifyAll();
+				}
+			});
+		}
+
+		@Override
+		public void acceptBaseData(String pid, char gender, LocalDate dob, LocalDate dod) {
+			int partition = findPartition(pid, partitions.length);
+			findChunk(partition).addBaseData(pid, gender, dob, dod);
+			handOverIfFull(partition);
+		}
+
+		@Override
+		public void acceptKgs(String pid, String kgs) {
+			add(Chunk.KGS, pid, kgs);
+		}
+
+		@Override
+		public void acceptIcd(String pid, String icd) {
+			add(Chunk.ICD, pid, icd);
+		}
+
+		@Override
+		public void acceptPzn(String pid, String pzn) {
+			add(Chunk.PZN, pid, pzn);
+		}
+
+		/**
+		 * hands over the remaining rows after the file was read completely
+		 */
+		public void complete() {
+			for(int i = 0; i < partitions.length; i++) {
+				handOver(i);
+				CompletableFuture<Void> partitionApplied = applied[i];
+				tails[i].whenComplete((result, e) -> {
+					if(e != null)
+						partitionApplied.completeExceptionally(e);
+					else
+						partitionApplied.complete(null);
+				});
+			}
+		}
+
+		/**
+		 * discards the remaining rows. Batches that were added later fail as well.
+		 * @param cause error that occurred while reading the file
+		 */
+		public void fail(Throwable cause) {
+			for(int i = 0; i < partitions.length; i++) {
+				chunks[i] = null;
+				CompletableFuture<Void> partitionApplied = applied[i];
+				tails[i].whenComplete((result, e) -> partitionApplied.completeExceptionally(cause));
+			}
+		}
+
+		/**
+		 * @return completes when all partitions received the rows of the batch. Fails if reading the file or an earlier batch failed.
+		 */
+		public CompletableFuture<Void> getApplied() {
+			return CompletableFuture.allOf(applied);
+		}
+
+		private void add(byte type, String pid, String value) {
+			int partition = findPartition(pid, partitions.length);
+			findChunk(partition).add(type, pid, value);
+			handOverIfFull(partition);
+		}
+
+		private Chunk findChunk(int partition) {
+			if(chunks[partition] == null)
+				chunks[partition] = new Chunk(chunkSize);
+			return chunks[partition];
+		}
+
+		private void handOverIfFull(int partition) {
+			if(chunks[partition].size() >= chunkSize)
+				handOver(partition);
+		}
+
+		/**
+		 * chains the current chunk of the partition after the previously handed over chunk
+		 */
+		private void handOver(int partition) {
+			Chunk chunk = chunks[partition];
+			if(chunk == null || chunk.size() == 0)
+				return;
+			chunks[partition] = null;
+			reserve(chunk.size());
+			PidDataStore data = partitions[partition];
+			tails[partition] = tails[partition]
+					.thenRunAsync(() -> chunk.applyTo(data), executor)
+					.whenComplete((result, e) -> release(this, chunk.size()));
+		}
+
+		/**
+		 * waits until the rows fit into the limit of pending rows. The oldest batch does not wait for other batches,
+		 * since those may wait for it, so it only waits for its own rows.
+		 */
+		private void reserve(int rows) {
+			synchronized(partitions) {
+				try {
+					while(pendingRows > 0 && pendingRows + rows > maxPendingRows && (!previousBatches.isDone() || ownPendingRows > 0))
+						partitions.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for partition updates.", e);
+				}
+				pendingRows += rows;
+				ownPendingRows += rows;
+			}
+		}
+	}
+
+	/**
+	 * Rows of one partition in columns
+	 */
+	private static class Chunk {
+		private static final byte BASE = 0;
+		private static final byte KGS = 1;
+		private static final byte ICD = 2;
+		private static final byte PZN = 3;
+		private static final int INITIAL_CAPACITY = 1 << 10;
+		private static final int NO_DATE = Integer.MIN_VALUE;
+
+		private final int maxSize;
+		private byte[] types;
+		private String[] pids;
+		/**
+		 * kgs, icd or pzn. Only allocated once such a row was added.
+		 */
+		private String[] values;
+		/**
+		 * Base data. Only allocated once a base row was added.
+		 */
+		private char[] genders;
+		private int[] dobs;
+		private int[] dods;
+		private int size = 0;
+
+		public Chunk(int maxSize) {
+			this.maxSize = maxSize;
+			int capacity = Math.min(INITIAL_CAPACITY, maxSize);
+			types = new byte[capacity];
+			pids = new String[capacity];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public void add(byte type, String pid, String value) {
+			int row = addRow(type, pid);
+			if(values == null)
+				values = new String[types.length];
+			values[row] = value;
+		}
+
+		public void addBaseData(String pid, char gender, LocalDate dob, LocalDate dod) {
+			int row = addRow(BASE, pid);
+			if(genders == null) {
+				genders = new char[types.length];
+				dobs = new int[types.length];
+				dods = new int[types.length];
+			}
+			genders[row] = gender;
+			dobs[row] = dob != null ? (int) dob.toEpochDay() : NO_DATE;
+			dods[row] = dod != null ? (int) dod.toEpochDay() : NO_DATE;
+		}
+
+		public void applyTo(HashDataSink data) {
+			for(int row = 0; row < size; row++) {
+				switch(types[row]) {
+					case BASE:
+						data.acceptBaseData(pids[row], genders[row], toDate(dobs[row]), toDate(dods[row]));
+						break;
+					case KGS:
+						data.acceptKgs(pids[row], values[row]);
+						break;
+					case ICD:
+						data.acceptIcd(pids[row], values[row]);
+						break;
+					default:
+						data.acceptPzn(pids[row], values[row]);
+				}
+			}
+		}
+
+		private int addRow(byte type, String pid) {
+			if(size == types.length)
+				grow(Math.min(maxSize, size * 2));
+			types[size] = type;
+			pids[size] = pid;
+			return size++;
+		}
+
+		private void grow(int capacity) {
+			types = Arrays.copyOf(types, capacity);
+			pids = Arrays.copyOf(pids, capacity);
+			if(values != null)
+				values = Arrays.copyOf(values, capacity);
+			if(genders != null) {
+				genders = Arrays.copyOf(genders, capacity);
+				dobs = Arrays.copyOf(dobs, capacity);
+				dods = Arrays.copyOf(dods, capacity);
+			}
+		}
+
+		private static LocalDate toDate(int epochDay) {
+			return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+		}
+	}
+
+	/**
+	 * @param partitionCount number of partitions that are updated in parallel
+	 */
+	public PartitionedPidData(int partitionCount) {
+		this(partitionCount, CHUNK_SIZE, 4L * CHUNK_SIZE * Math.max(1, partitionCount));
+	}
+
+	/**
+	 * @param partitionCount number of partitions that are updated in parallel
+	 * @param chunkSize number of rows of a partition that are handed over at once
+	 * @param maxPendingRows number of rows that are read ahead of the partition updates
+	 */
+	public PartitionedPidData(int partitionCount, int chunkSize, long maxPendingRows) {
+		partitions = new PidDataStore[Math.max(1, partitionCount)];
+		for(int i = 0; i < partitions.length; i++) {
+			partitions[i] = new PidDataStore();
+			lastUpdates.add(CompletableFuture.completedFuture(null));
+		}
+		this.chunkSize = Math.max(1, chunkSize);
+		this.maxPendingRows = maxPendingRows;
+	}
+
+	/**
+	 * creates the batch of the next file. Its rows are applied after the rows of all previously created batches.
+	 * Must be called by a single thread.
+	 * @param executor runs the updates of the partitions. Must not be used by threads that fill batches,
+	 * since these wait for the updates once too many rows are pending.
+	 * @return empty batch for the rows of one file
+	 */
+	public Batch createBatch(Executor executor) {
+		return new Batch(executor);
+	}
+
+	/**
+	 * @return number of rows that were handed over but not yet applied
+	 */
+	long getPendingRows() {
+		synchronized(partitions) {
+			return pendingRows;
+		}
+	}
+
+	/**
+	 * @param pid
+	 * @return store that holds the insurant if it is known. Only complete after all batches were applied.
+	 */
+	public PidDataStore getPartition(String pid) {
+		return partitions[findPartition(pid, partitions.length)];
+	}
+
+	/**
+	 * @return number of insurants
+	 */
+	public int size() {
+		int size = 0;
+		for(PidDataStore data : partitions)
+			size += data.size();
+		return size;
+	}
+
+	/**
+	 * writes all insurants independent of the number of partitions
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size());
+		for(PidDataStore data : partitions)
+			data.writeEntries(out);
+	}
+
+	/**
+	 * adds the insurants written by {@link #write(DataOutput)}
+	 * @param in
+	 * @throws IOException
+	 */
+	public void read(DataInput in) throws IOException {
+		int count = in.readInt();
+		for(int i = 0; i < count; i++) {
+			String pid = in.readUTF();
+			getPartition(pid).readEntry(pid, in);
+		}
+	}
+
+	private void release(Batch batch, int rows) {
+		synchronized(partitions) {
+			pendingRows -= rows;
+			batch.ownPendingRows -= rows;
+			partitions.notifyAll();
+		}
+	}
+
+	private static int findPartition(String pid, int partitionCount) {
+		return Math.floorMod(pid.hashCode(), partitionCount);
+	}
+}
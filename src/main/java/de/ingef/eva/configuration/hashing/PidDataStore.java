@@ -0,0 +1,379 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Attributes of all insurants that enter the pid hash. Insurants are numbered in the order they are added.
+ * Numeric pids are kept as long keys, dates as epoch days and kgs, icd and pzn codes as numbers of dictionaries.
+ * Updates follow the rules of the former per-pid entries, so the hash input is unchanged.
+ * Calculated hashes are kept until the insurant is updated.
+ */
+class PidDataStore implements HashDataSink {
+
+	static final int NO_DATE = Integer.MAX_VALUE;
+	static final char NO_GENDER = '9';
+	static final String NO_MIN_KGS = "999999";
+	static final String NO_MAX_KGS = "000000";
+	static final String NO_ICD_VALUE = "0000";
+	static final String NO_PZN_VALUE = "00000000";
+	private static final String DEFAULT_DOB = "1900-01-01";
+	private static final String DEFAULT_DOD = "2999-12-31";
+	private static final char DEFAULT_GENDER = '0';
+	private static final String DEFAULT_KGS = "00000";
+	//longer numbers may exceed the long range
+	private static final int MAX_NUMERIC_PID_LENGTH = 18;
+	private static final int INITIAL_CAPACITY = 1 << 16;
+	private static final int DIGEST_LENGTH = 32;
+
+	private final LongIntMap numericPids = new LongIntMap(INITIAL_CAPACITY);
+	/**
+	 * Pids that do not round trip as a long, e.g. with leading zeros
+	 */
+	private final Map<String, Integer> otherPids = new HashMap<>();
+	private final CodeDictionary kgsCodes = new CodeDictionary();
+	private final CodeDictionary icdCodes = new CodeDictionary();
+	private final CodeDictionary pznCodes = new CodeDictionary();
+	private final IntSequences icds = new IntSequences();
+	private final IntSequences pzns = new IntSequences();
+	private final int noMinKgs = kgsCodes.encode(NO_MIN_KGS);
+	private final int noMaxKgs = kgsCodes.encode(NO_MAX_KGS);
+	private char[] genders = new char[INITIAL_CAPACITY];
+	private int[] dobs = new int[INITIAL_CAPACITY];
+	private int[] dods = new int[INITIAL_CAPACITY];
+	private int[] minKgs = new int[INITIAL_CAPACITY];
+	private int[] maxKgs = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	/**
+	 * Sha256 digests of the insurants in {@link #hashedSlots}. Allocated with the first hash.
+	 */
+	private byte[] digests;
+	private BitSet hashedSlots;
+
+	/**
+	 * @return number of insurants
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param pid
+	 * @return number of the insurant. Unknown pids are added.
+	 */
+	int add(String pid) {
+		if(isNumeric(pid)) {
+			int slot = numericPids.putIfAbsent(Long.parseLong(pid), size);
+			if(slot == size)
+				appendSlot();
+			return slot;
+		}
+		Integer slot = otherPids.putIfAbsent(pid, size);
+		if(slot != null)
+			return slot;
+		appendSlot();
+		return size - 1;
+	}
+
+	/**
+	 * @param pid
+	 * @return number of the insurant or -1 if it is unknown
+	 */
+	int find(String pid) {
+		if(isNumeric(pid))
+			return numericPids.get(Long.parseLong(pid));
+		return otherPids.getOrDefault(pid, -1);
+	}
+
+	@Override
+	public void acceptBaseData(String pid, char gender, LocalDate dob, LocalDate dod) {
+		int slot = add(pid);
+		updateGender(slot, gender);
+		if(dod != null)
+			updateDod(slot, dod);
+		if(dob != null)
+			updateDob(slot, dob);
+	}
+
+	@Override
+	public void acceptKgs(String pid, String kgs) {
+		updateKgs(add(pid), kgs);
+	}
+
+	@Override
+	public void acceptIcd(String pid, String icd) {
+		addIcd(add(pid), icd);
+	}
+
+	@Override
+	public void acceptPzn(String pid, String pzn) {
+		addPzn(add(pid), pzn);
+	}
+
+	void updateGender(int slot, char value) {
+		invalidateHash(slot);
+		if(value < genders[slot])
+			genders[slot] = value;
+	}
+
+	void updateDob(int slot, LocalDate value) {
+		invalidateHash(slot);
+		dobs[slot] = Math.min(dobs[slot], Math.toIntExact(value.toEpochDay()));
+	}
+
+	void updateDod(int slot, LocalDate value) {
+		invalidateHash(slot);
+		dods[slot] = Math.min(dods[slot], Math.toIntExact(value.toEpochDay()));
+	}
+
+	/**
+	 * widens the kgs range of the insurant
+	 * @param slot
+	 * @param kgs
+	 */
+	void updateKgs(int slot, String kgs) {
+		invalidateHash(slot);
+		int code = kgsCodes.encode(kgs);
+		if(kgs.compareTo(kgsCodes.decode(minKgs[slot])) < 0)
+			minKgs[slot] = code;
+		if(kgs.compareTo(kgsCodes.decode(maxKgs[slot])) > 0)
+			maxKgs[slot] = code;
+	}
+
+	void addIcd(int slot, String icd) {
+		invalidateHash(slot);
+		icds.add(slot, icdCodes.encode(icd));
+	}
+
+	void addPzn(int slot, String pzn) {
+		invalidateHash(slot);
+		pzns.add(slot, pznCodes.encode(pzn));
+	}
+
+	/**
+	 * @param slot
+	 * @return text the hash of the insurant is calculated from
+	 */
+	String createHashInput(int slot) {
+		StringBuilder dataString = new StringBuilder();
+		appendBaseFields(dataString, dobs[slot], dods[slot], genders[slot], kgsCodes.decode(minKgs[slot]), kgsCodes.decode(maxKgs[slot]));
+		if(appendCodes(dataString, icds, icdCodes, slot, true))
+			dataString.append(NO_ICD_VALUE);
+		dataString.append("_");
+		if(appendCodes(dataString, pzns, pznCodes, slot, true))
+			dataString.append(NO_PZN_VALUE);
+		return dataString.toString();
+	}
+
+	/**
+	 * combines the insurant with its entry in a store that holds the rows of later files
+	 * @param slot
+	 * @param later store filled from files that are read after the files of this store
+	 * @param laterSlot number of the insurant in the later store
+	 * @return text the hash is calculated from if the files of both stores are read into one store
+	 */
+	String createHashInput(int slot, PidDataStore later, int laterSlot) {
+		String earlierMinKgs = kgsCodes.decode(minKgs[slot]);
+		String laterMinKgs = later.kgsCodes.decode(later.minKgs[laterSlot]);
+		String earlierMaxKgs = kgsCodes.decode(maxKgs[slot]);
+		String laterMaxKgs = later.kgsCodes.decode(later.maxKgs[laterSlot]);
+		StringBuilder dataString = new StringBuilder();
+		appendBaseFields(
+				dataString,
+				Math.min(dobs[slot], later.dobs[laterSlot]),
+				Math.min(dods[slot], later.dods[laterSlot]),
+				(char) Math.min(genders[slot], later.genders[laterSlot]),
+				laterMinKgs.compareTo(earlierMinKgs) < 0 ? laterMinKgs : earlierMinKgs,
+				laterMaxKgs.compareTo(earlierMaxKgs) > 0 ? laterMaxKgs : earlierMaxKgs
+		);
+		boolean isEmpty = appendCodes(dataString, icds, icdCodes, slot, true);
+		if(appendCodes(dataString, later.icds, later.icdCodes, laterSlot, isEmpty))
+			dataString.append(NO_ICD_VALUE);
+		dataString.append("_");
+		isEmpty = appendCodes(dataString, pzns, pznCodes, slot, true);
+		if(appendCodes(dataString, later.pzns, later.pznCodes, laterSlot, isEmpty))
+			dataString.append(NO_PZN_VALUE);
+		return dataString.toString();
+	}
+
+	/**
+	 * @param slot
+	 * @return sha256 hex digest of the hash input. The digest is calculated once per update of the insurant.
+	 */
+	String hash(int slot) {
+		allocateDigests();
+		if(!hashedSlots.get(slot)) {
+			System.arraycopy(DigestUtils.sha256(createHashInput(slot)), 0, digests, slot * DIGEST_LENGTH, DIGEST_LENGTH);
+			hashedSlots.set(slot);
+		}
+		return Hex.encodeHexString(Arrays.copyOfRange(digests, slot * DIGEST_LENGTH, (slot + 1) * DIGEST_LENGTH));
+	}
+
+	/**
+	 * writes pid, attributes and calculated hash of every insurant
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeEntries(DataOutput out) throws IOException {
+		for(int i = 0; i < numericPids.capacity(); i++) {
+			long pid = numericPids.keyAt(i);
+			if(pid != -1)
+				writeEntry(out, Long.toString(pid), numericPids.valueAt(i));
+		}
+		for(Map.Entry<String, Integer> entry : otherPids.entrySet())
+			writeEntry(out, entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * adds an insurant written by {@link #writeEntries(DataOutput)}
+	 * @param pid pid of the entry that was already read
+	 * @param in
+	 * @throws IOException
+	 */
+	void readEntry(String pid, DataInput in) throws IOException {
+		int slot = add(pid);
+		genders[slot] = in.readChar();
+		dobs[slot] = in.readInt();
+		dods[slot] = in.readInt();
+		minKgs[slot] = kgsCodes.encode(in.readUTF());
+		maxKgs[slot] = kgsCodes.encode(in.readUTF());
+		readCodes(in, icds, icdCodes, slot);
+		readCodes(in, pzns, pznCodes, slot);
+		if(in.readBoolean()) {
+			allocateDigests();
+			in.readFully(digests, slot * DIGEST_LENGTH, DIGEST_LENGTH);
+			hashedSlots.set(slot);
+		}
+	}
+
+	private void writeEntry(DataOutput out, String pid, int slot) throws IOException {
+		out.writeUTF(pid);
+		out.writeChar(genders[slot]);
+		out.writeInt(dobs[slot]);
+		out.writeInt(dods[slot]);
+		out.writeUTF(kgsCodes.decode(minKgs[slot]));
+		out.writeUTF(kgsCodes.decode(maxKgs[slot]));
+		writeCodes(out, icds, icdCodes, slot);
+		writeCodes(out, pzns, pznCodes, slot);
+		boolean isHashed = hashedSlots != null && hashedSlots.get(slot);
+		out.writeBoolean(isHashed);
+		if(isHashed)
+			out.write(digests, slot * DIGEST_LENGTH, DIGEST_LENGTH);
+	}
+
+	private static void writeCodes(DataOutput out, IntSequences sequences, CodeDictionary dictionary, int slot) throws IOException {
+		int[] count = { 0 };
+		if(!sequences.isEmpty(slot))
+			sequences.forEach(slot, code -> count[0]++);
+		out.writeInt(count[0]);
+		if(count[0] == 0)
+			return;
+		String[] values = new String[count[0]];
+		int[] position = { 0 };
+		sequences.forEach(slot, code -> values[position[0]++] = dictionary.decode(code));
+		for(String value : values)
+			out.writeUTF(value);
+	}
+
+	private static void readCodes(DataInput in, IntSequences sequences, CodeDictionary dictionary, int slot) throws IOException {
+		int count = in.readInt();
+		for(int i = 0; i < count; i++)
+			sequences.add(slot, dictionary.encode(in.readUTF()));
+	}
+
+	private void allocateDigests() {
+		if(digests != null)
+			return;
+		digests = new byte[genders.length * DIGEST_LENGTH];
+		hashedSlots = new BitSet(genders.length);
+	}
+
+	private void invalidateHash(int slot) {
+		if(hashedSlots != null)
+			hashedSlots.clear(slot);
+	}
+
+	/**
+	 * appends dates, gender and kgs range followed by a separator. Unset values are replaced by their defaults.
+	 * @param dataString hash input
+	 * @param dob epoch day or {@link #NO_DATE}
+	 * @param dod epoch day or {@link #NO_DATE}
+	 * @param gender
+	 * @param minKgs
+	 * @param maxKgs
+	 */
+	static void appendBaseFields(StringBuilder dataString, int dob, int dod, char gender, String minKgs, String maxKgs) {
+		dataString.append(dob == NO_DATE ? DEFAULT_DOB : LocalDate.ofEpochDay(dob).toString());
+		dataString.append("_");
+		dataString.append(dod == NO_DATE ? DEFAULT_DOD : LocalDate.ofEpochDay(dod).toString());
+		dataString.append("_");
+		dataString.append(gender == NO_GENDER ? DEFAULT_GENDER : gender);
+		dataString.append("_");
+		dataString.append(minKgs.equals(NO_MIN_KGS) ? DEFAULT_KGS : minKgs);
+		dataString.append("_");
+		dataString.append(maxKgs.equals(NO_MAX_KGS) ? DEFAULT_KGS : maxKgs);
+		dataString.append("_");
+	}
+
+	/**
+	 * appends the codes of the insurant separated by underscores
+	 * @param isFirst whether no code was appended before
+	 * @return whether still no code was appended
+	 */
+	private static boolean appendCodes(StringBuilder dataString, IntSequences sequences, CodeDictionary dictionary, int slot, boolean isFirst) {
+		if(sequences.isEmpty(slot))
+			return isFirst;
+		boolean[] isFirstCode = { isFirst };
+		sequences.forEach(slot, code -> {
+			if(!isFirstCode[0])
+				dataString.append("_");
+			isFirstCode[0] = false;
+			dataString.append(dictionary.decode(code));
+		});
+		return false;
+	}
+
+	private void appendSlot() {
+		if(size == genders.length) {
+			int capacity = genders.length * 2;
+			genders = Arrays.copyOf(genders, capacity);
+			dobs = Arrays.copyOf(dobs, capacity);
+			dods = Arrays.copyOf(dods, capacity);
+			minKgs = Arrays.copyOf(minKgs, capacity);
+			maxKgs = Arrays.copyOf(maxKgs, capacity);
+			if(digests != null)
+				digests = Arrays.copyOf(digests, capacity * DIGEST_LENGTH);
+		}
+		genders[size] = NO_GENDER;
+		dobs[size] = NO_DATE;
+		dods[size] = NO_DATE;
+		minKgs[size] = noMinKgs;
+		maxKgs[size] = noMaxKgs;
+		size++;
+	}
+
+	/**
+	 * @param pid
+	 * @return true if the pid is the decimal representation of a long, i.e. without sign or leading zeros
+	 */
+	private static boolean isNumeric(String pid) {
+		int length = pid.length();
+		if(length == 0 || length > MAX_NUMERIC_PID_LENGTH || (length > 1 && pid.charAt(0) == '0'))
+			return false;
+		for(int i = 0; i < length; i++) {
+			char c = pid.charAt(i);
+			if(c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+}
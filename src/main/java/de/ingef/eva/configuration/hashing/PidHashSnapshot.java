@@ -0,0 +1,153 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.ingef.eva.etl.MergeManifest.SliceFingerprint;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Attributes and hashes of the insurants of a dataset that were collected from all but the newest year.
+ * Rows of the newest year are read again in every run, so that year may change without invalidating the snapshot.
+ * Stored next to the slices of the dataset. Cache files are recognized by their extension, so the snapshot is not taken for a slice.
+ */
+@Getter
+@RequiredArgsConstructor
+@Log4j2
+class PidHashSnapshot {
+
+	static final String FILE_NAME = "pid_hash.snapshot";
+	private static final String TMP_FILE_NAME = FILE_NAME + ".tmp";
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Description of the settings the attributes depend on, e.g. the column indices
+	 */
+	private final String settings;
+	/**
+	 * Files whose rows are contained in the snapshot in read order
+	 */
+	private final List<SliceFingerprint> collectedFiles;
+	/**
+	 * All data files of the dataset after the hashes were written
+	 */
+	private final List<SliceFingerprint> hashedFiles;
+
+	/**
+	 * reads the fingerprints of the snapshot without its data
+	 * @param directory dataset directory
+	 * @return empty if no snapshot exists or if it cannot be read
+	 */
+	public static Optional<PidHashSnapshot> load(Path directory) {
+		Path file = directory.resolve(FILE_NAME);
+		if(Files.notExists(file))
+			return Optional.empty();
+		try(DataInputStream in = open(file)) {
+			return Optional.of(readHeader(in));
+		} catch (IOException e) {
+			log.warn("Could not read pid hash snapshot '{}'. All files will be read. {}", file, e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * adds the insurants of the snapshot
+	 * @param directory dataset directory
+	 * @param data
+	 * @throws IOException
+	 */
+	public static void readData(Path directory, PartitionedPidData data) throws IOException {
+		try(DataInputStream in = open(directory.resolve(FILE_NAME))) {
+			readHeader(in);
+			data.read(in);
+		}
+	}
+
+	/**
+	 * replaces the snapshot of the dataset
+	 * @param directory dataset directory
+	 * @param data insurants collected from the files of the snapshot
+	 * @throws IOException
+	 */
+	public void save(Path directory, PartitionedPidData data) throws IOException {
+		Path tmpFile = directory.resolve(TMP_FILE_NAME);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmpFile), BUFFER_SIZE), BUFFER_SIZE))) {
+			out.writeInt(VERSION);
+			out.writeUTF(settings);
+			writeFingerprints(out, collectedFiles);
+			writeFingerprints(out, hashedFiles);
+			data.write(out);
+		}
+		Files.move(tmpFile, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param fingerprints current files in read order
+	 * @return whether the files of the snapshot are the first of the given files and unchanged
+	 */
+	public boolean isCollectedFrom(List<SliceFingerprint> fingerprints) {
+		return collectedFiles.size() <= fingerprints.size() && matches(collectedFiles, fingerprints.subList(0, collectedFiles.size()));
+	}
+
+	/**
+	 * @param fingerprints all current data files
+	 * @return whether no file changed since the hashes were written
+	 */
+	public boolean isHashed(List<SliceFingerprint> fingerprints) {
+		return matches(hashedFiles, fingerprints);
+	}
+
+	private static boolean matches(List<SliceFingerprint> recorded, List<SliceFingerprint> current) {
+		if(recorded.size() != current.size())
+			return false;
+		for(int i = 0; i < recorded.size(); i++) {
+			if(!recorded.get(i).matches(current.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static DataInputStream open(Path file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+	}
+
+	private static PidHashSnapshot readHeader(DataInput in) throws IOException {
+		int version = in.readInt();
+		if(version != VERSION)
+			throw new IOException("Unsupported snapshot version " + version);
+		return new PidHashSnapshot(in.readUTF(), readFingerprints(in), readFingerprints(in));
+	}
+
+	private static void writeFingerprints(DataOutput out, List<SliceFingerprint> fingerprints) throws IOException {
+		out.writeInt(fingerprints.size());
+		for(SliceFingerprint fingerprint : fingerprints) {
+			out.writeUTF(fingerprint.getFileName());
+			out.writeLong(fingerprint.getByteSize());
+			out.writeLong(fingerprint.getLastModified());
+		}
+	}
+
+	private static List<SliceFingerprint> readFingerprints(DataInput in) throws IOException {
+		int count = in.readInt();
+		List<SliceFingerprint> fingerprints = new ArrayList<>(count);
+		for(int i = 0; i < count; i++)
+			fingerprints.add(new SliceFingerprint(in.readUTF(), in.readLong(), in.readLong(), null));
+		return fingerprints;
+	}
+}
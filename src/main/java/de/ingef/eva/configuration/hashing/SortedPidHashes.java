@@ -0,0 +1,290 @@
+package de.ingef.eva.configuration.hashing;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import de.ingef.eva.utility.io.ExternalSorter;
+import de.ingef.eva.utility.io.ExternalSorter.RecordCodec;
+import de.ingef.eva.utility.io.ExternalSorter.RecordReader;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Calculates the pid hashes of a dataset with bounded memory.
+ * The rows of all categories are sorted by pid, so the attributes of one insurant are complete as soon as its group ends.
+ * The hashes are sorted back into the row order of the files that receive them.
+ * Only the groups of single insurants and the sort buffers are held in memory.
+ */
+@Log4j2
+class SortedPidHashes implements HashDataSink, Closeable {
+
+	private static final byte BASE = 0;
+	private static final byte KGS = 1;
+	private static final byte ICD = 2;
+	private static final byte PZN = 3;
+	private static final byte LOOKUP = 4;
+
+	private final ExternalSorter<PidRecord> records;
+	private final ExternalSorter<HashRecord> hashes;
+
+	/**
+	 * Single row of one of the categories or the position of a row that receives the hash. Rows of the same pid keep the order they were added in.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	private static class PidRecord {
+		private final byte type;
+		private final String pid;
+		private final char gender;
+		private final int dob;
+		private final int dod;
+		private final String value;
+		private final int fileIndex;
+		private final long row;
+	}
+
+	/**
+	 * Hash for a row of a file that receives hashes
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static class HashRecord {
+		private final int fileIndex;
+		private final long row;
+		private final String pid;
+		private final String hash;
+	}
+
+	/**
+	 * Attributes of the insurant whose rows are currently merged
+	 */
+	private static class PidGroup {
+		private final String pid;
+		private boolean hasData = false;
+		private char gender = PidDataStore.NO_GENDER;
+		private int dob = PidDataStore.NO_DATE;
+		private int dod = PidDataStore.NO_DATE;
+		private String minKgs = PidDataStore.NO_MIN_KGS;
+		private String maxKgs = PidDataStore.NO_MAX_KGS;
+		private final List<String> icds = new ArrayList<>();
+		private final List<String> pzns = new ArrayList<>();
+		private final List<PidRecord> lookups = new ArrayList<>();
+
+		public PidGroup(String pid) {
+			this.pid = pid;
+		}
+
+		public void add(PidRecord record) {
+			if(record.getType() == LOOKUP) {
+				lookups.add(record);
+				return;
+			}
+			hasData = true;
+			switch(record.getType()) {
+				case BASE:
+					gender = (char) Math.min(gender, record.getGender());
+					dob = Math.min(dob, record.getDob());
+					dod = Math.min(dod, record.getDod());
+					break;
+				case KGS:
+					if(record.getValue().compareTo(minKgs) < 0)
+						minKgs = record.getValue();
+					if(record.getValue().compareTo(maxKgs) > 0)
+						maxKgs = record.getValue();
+					break;
+				case ICD:
+					icds.add(record.getValue());
+					break;
+				default:
+					pzns.add(record.getValue());
+			}
+		}
+
+		/**
+		 * @return hash in the same format as {@link PidDataStore#createHashInput(int)} or an empty string if the insurant has no data
+		 */
+		public String createHash() {
+			if(!hasData)
+				return "";
+			StringBuilder dataString = new StringBuilder();
+			PidDataStore.appendBaseFields(dataString, dob, dod, gender, minKgs, maxKgs);
+			appendValues(dataString, icds, PidDataStore.NO_ICD_VALUE);
+			dataString.append("_");
+			appendValues(dataString, pzns, PidDataStore.NO_PZN_VALUE);
+			return DigestUtils.sha256Hex(dataString.toString());
+		}
+
+		private static void appendValues(StringBuilder dataString, List<String> values, String defaultValue) {
+			dataString.append(values.isEmpty() ? defaultValue : String.join("_", values));
+		}
+	}
+
+	/**
+	 * @param sortDirectory directory for the temporary runs
+	 * @param bufferSize number of rows that are sorted in memory
+	 * @param maxFanIn number of runs that are merged at once
+	 * @throws IOException
+	 */
+	public SortedPidHashes(Path sortDirectory, int bufferSize, int maxFanIn) throws IOException {
+		records = new ExternalSorter<>(sortDirectory, Comparator.comparing(PidRecord::getPid), new PidRecordCodec(), bufferSize, maxFanIn);
+		try {
+			hashes = new ExternalSorter<>(
+					sortDirectory,
+					Comparator.comparingInt(HashRecord::getFileIndex).thenComparingLong(HashRecord::getRow),
+					new HashRecordCodec(),
+					bufferSize,
+					maxFanIn
+			);
+		} catch (IOException e) {
+			records.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void acceptBaseData(String pid, char gender, LocalDate dob, LocalDate dod) {
+		add(new PidRecord(BASE, pid, gender, toEpochDay(dob), toEpochDay(dod), null, 0, 0));
+	}
+
+	@Override
+	public void acceptKgs(String pid, String kgs) {
+		add(new PidRecord(KGS, pid, PidDataStore.NO_GENDER, 0, 0, kgs, 0, 0));
+	}
+
+	@Override
+	public void acceptIcd(String pid, String icd) {
+		add(new PidRecord(ICD, pid, PidDataStore.NO_GENDER, 0, 0, icd, 0, 0));
+	}
+
+	@Override
+	public void acceptPzn(String pid, String pzn) {
+		add(new PidRecord(PZN, pid, PidDataStore.NO_GENDER, 0, 0, pzn, 0, 0));
+	}
+
+	/**
+	 * requests the hash for a row of a file that receives hashes
+	 * @param fileIndex index of the file
+	 * @param row row number without header
+	 * @param pid
+	 */
+	public void acceptLookup(int fileIndex, long row, String pid) {
+		add(new PidRecord(LOOKUP, pid, PidDataStore.NO_GENDER, 0, 0, null, fileIndex, row));
+	}
+
+	/**
+	 * hashes the insurants group by group
+	 * @return hashes of all requested rows ordered by file and row
+	 * @throws IOException
+	 */
+	public RecordReader<HashRecord> calculateHashes() throws IOException {
+		int groupCount = 0;
+		try(RecordReader<PidRecord> sortedRecords = records.sort()) {
+			PidGroup group = null;
+			for(PidRecord record = sortedRecords.next(); record != null; record = sortedRecords.next()) {
+				if(group == null || !group.pid.equals(record.getPid())) {
+					emitHashes(group);
+					group = new PidGroup(record.getPid());
+					groupCount++;
+				}
+				group.add(record);
+			}
+			emitHashes(group);
+		}
+		records.close();
+		log.info("Calculated hashes of {} insurants", groupCount);
+		return hashes.sort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			records.close();
+		} finally {
+			hashes.close();
+		}
+	}
+
+	private void emitHashes(PidGroup group) throws IOException {
+		if(group == null || group.lookups.isEmpty())
+			return;
+		String hash = group.createHash();
+		for(PidRecord lookup : group.lookups)
+			hashes.add(new HashRecord(lookup.getFileIndex(), lookup.getRow(), group.pid, hash));
+	}
+
+	/**
+	 * the sink interface does not declare exceptions, so write failures of the runs are rethrown unchecked
+	 */
+	private void add(PidRecord record) {
+		try {
+			records.add(record);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static int toEpochDay(LocalDate date) {
+		return date != null ? Math.toIntExact(date.toEpochDay()) : PidDataStore.NO_DATE;
+	}
+
+	private static class PidRecordCodec implements RecordCodec<PidRecord> {
+		@Override
+		public void write(DataOutput out, PidRecord record) throws IOException {
+			out.writeByte(record.getType());
+			out.writeUTF(record.getPid());
+			switch(record.getType()) {
+				case BASE:
+					out.writeChar(record.getGender());
+					out.writeInt(record.getDob());
+					out.writeInt(record.getDod());
+					break;
+				case LOOKUP:
+					out.writeInt(record.getFileIndex());
+					out.writeLong(record.getRow());
+					break;
+				default:
+					out.writeUTF(record.getValue());
+			}
+		}
+
+		@Override
+		public PidRecord read(DataInput in) throws IOException {
+			byte type = in.readByte();
+			String pid = in.readUTF();
+			switch(type) {
+				case BASE:
+					return new PidRecord(type, pid, in.readChar(), in.readInt(), in.readInt(), null, 0, 0);
+				case LOOKUP:
+					return new PidRecord(type, pid, PidDataStore.NO_GENDER, 0, 0, null, in.readInt(), in.readLong());
+				default:
+					return new PidRecord(type, pid, PidDataStore.NO_GENDER, 0, 0, in.readUTF(), 0, 0);
+			}
+		}
+	}
+
+	private static class HashRecordCodec implements RecordCodec<HashRecord> {
+		@Override
+		public void write(DataOutput out, HashRecord record) throws IOException {
+			out.writeInt(record.getFileIndex());
+			out.writeLong(record.getRow());
+			out.writeUTF(record.getPid());
+			out.writeUTF(record.getHash());
+		}
+
+		@Override
+		public HashRecord read(DataInput in) throws IOException {
+			return new HashRecord(in.readInt(), in.readLong(), in.readUTF(), in.readUTF());
+		}
+	}
+}
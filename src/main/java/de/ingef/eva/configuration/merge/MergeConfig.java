@@ -0,0 +1,19 @@
+package de.ingef.eva.configuration.merge;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Settings of the merge phase
+ */
+@Getter @Setter
+public class MergeConfig {
+	/**
+	 * Defaults to merging line by line
+	 */
+	private MergeMode mode = MergeMode.LINES;
+	/**
+	 * Skips production files whose slices are unchanged since the last merge and appends slices that were added after them
+	 */
+	private boolean incremental = true;
+}
@@ -0,0 +1,21 @@
+package de.ingef.eva.configuration.merge;
+
+/**
+ * Way slices are combined into production files
+ */
+public enum MergeMode {
+	/**
+	 * Slices are read and written line by line. Works with every cache file.
+	 */
+	LINES,
+	/**
+	 * Slices are decompressed and their bytes are copied without splitting them into lines.
+	 * The repeated header is skipped as a byte range.
+	 */
+	STREAM,
+	/**
+	 * Compressed slices are concatenated into a multi-member gzip file without decompression.
+	 * Production files end with '.csv.gz' in this mode.
+	 */
+	GZIP
+}
@@ -21,4 +21,12 @@ public class OutputDirectory {
 	
 	public static final String CACHE_FILE_EXTENSION = ".csv.gz";
 	public static final String OUTPUT_FILE_EXTENSION = ".csv";
+	/**
+	 * Extension of production files that are merged without decompression
+	 */
+	public static final String COMPRESSED_OUTPUT_FILE_EXTENSION = ".csv.gz";
+	/**
+	 * Extension of the sidecar file that stores the member offsets of a block gzip cache file
+	 */
+	public static final String BLOCK_INDEX_FILE_EXTENSION = ".idx";
 }
@@ -400,8 +400,10 @@ public final class Templates {
 	}
 	
 	public static final class Filter {
-		public static final String SELECT_EMPLOYEE_PIDS = "SELECT "
-			    + "CASE "
+		/**
+		 * Employee pid padded with zeros to ten digits
+		 */
+		private static final String EMPLOYEE_PID = "CASE "
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=1 THEN TRIM('000000000'||CAST(PID AS CHAR(1))) " 
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=2 THEN TRIM('00000000'||CAST(PID AS CHAR(2))) "
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=3 THEN TRIM('0000000'||CAST(PID AS CHAR(3))) "
@@ -412,10 +414,21 @@ public final class Templates {
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=8 THEN TRIM('00'||CAST(PID AS CHAR(8))) "   
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=9 THEN TRIM('0'||CAST(PID AS CHAR(9))) "    
 		        + "WHEN LENGTH(CAST(PID AS VARCHAR(10)))=10 THEN CAST(PID AS CHAR(10)) "
-		        + "END AS PID, "
+		        + "END";
+		private static final String EMPLOYEE_CONDITION = "(EGK_NR_MA<>'' OR KV_NUMMER_MA<>'')";
+
+		public static final String SELECT_EMPLOYEE_PIDS = "SELECT "
+			    + EMPLOYEE_PID + " AS PID, "
 		        + "H2ik "
 		        + "FROM ACC_ADB.AVK_ADB_PID_AKTUELL "
-		        + "WHERE (EGK_NR_MA<>'' OR KV_NUMMER_MA<>'');";
+		        + "WHERE " + EMPLOYEE_CONDITION + ";";
+		/**
+		 * Condition that is true if the referenced pid column contains an employee pid. Requires the column reference.
+		 */
+		public static final String EMPLOYEE_PID_EXISTS = "exists (select 1 "
+				+ "from ACC_ADB.AVK_ADB_PID_AKTUELL "
+				+ "where " + EMPLOYEE_CONDITION + " "
+				+ "and " + EMPLOYEE_PID + "=%s)";
 
 	}
 }
@@ -0,0 +1,51 @@
+package de.ingef.eva.data;
+
+import java.time.LocalDate;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Date column value stored as days since 1970-01-01. The text is only created when the value is written.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DateRowElement implements RowElement {
+
+	private final int epochDay;
+
+	@Override
+	@Deprecated
+	public int getIndex() {
+		return 0;
+	}
+
+	@Override
+	@Deprecated
+	public String getName() {
+		return null;
+	}
+
+	/**
+	 * @return date formatted as yyyy-MM-dd
+	 */
+	@Override
+	public String getContent() {
+		return asDate().toString();
+	}
+
+	@Override
+	public TeradataColumnType getType() {
+		return TeradataColumnType.DATE;
+	}
+
+	@Override
+	public LocalDate asDate() {
+		return LocalDate.ofEpochDay(epochDay);
+	}
+
+	@Override
+	public String toString() {
+		return "DateRowElement(" + getContent() + ")";
+	}
+}
@@ -0,0 +1,52 @@
+package de.ingef.eva.data;
+
+import java.math.BigDecimal;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Decimal column value whose unscaled value fits into a long. The text is only created when the value is written.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DecimalRowElement implements RowElement {
+
+	private final long unscaledValue;
+	private final int scale;
+
+	@Override
+	@Deprecated
+	public int getIndex() {
+		return 0;
+	}
+
+	@Override
+	@Deprecated
+	public String getName() {
+		return null;
+	}
+
+	/**
+	 * @return same text as {@link BigDecimal#toPlainString()}, so small values are not written in exponent notation
+	 */
+	@Override
+	public String getContent() {
+		return BigDecimal.valueOf(unscaledValue, scale).toPlainString();
+	}
+
+	@Override
+	public TeradataColumnType getType() {
+		return TeradataColumnType.DECIMAL;
+	}
+
+	@Override
+	public double asDouble() {
+		return BigDecimal.valueOf(unscaledValue, scale).doubleValue();
+	}
+
+	@Override
+	public String toString() {
+		return "DecimalRowElement(" + getContent() + ")";
+	}
+}
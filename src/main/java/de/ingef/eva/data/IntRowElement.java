@@ -0,0 +1,47 @@
+package de.ingef.eva.data;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Integer column value. The text is only created when the value is written.
+ */
+@Getter
+@RequiredArgsConstructor
+public class IntRowElement implements RowElement {
+
+	private final int value;
+	private final TeradataColumnType type;
+
+	@Override
+	@Deprecated
+	public int getIndex() {
+		return 0;
+	}
+
+	@Override
+	@Deprecated
+	public String getName() {
+		return null;
+	}
+
+	@Override
+	public String getContent() {
+		return Integer.toString(value);
+	}
+
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "IntRowElement(type=" + type + ", value=" + value + ")";
+	}
+}
@@ -0,0 +1,47 @@
+package de.ingef.eva.data;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bigint column value. The text is only created when the value is written.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LongRowElement implements RowElement {
+
+	private final long value;
+	private final TeradataColumnType type;
+
+	@Override
+	@Deprecated
+	public int getIndex() {
+		return 0;
+	}
+
+	@Override
+	@Deprecated
+	public String getName() {
+		return null;
+	}
+
+	@Override
+	public String getContent() {
+		return Long.toString(value);
+	}
+
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "LongRowElement(type=" + type + ", value=" + value + ")";
+	}
+}
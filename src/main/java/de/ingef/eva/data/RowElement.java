@@ -1,5 +1,7 @@
 package de.ingef.eva.data;
 
+import java.time.LocalDate;
+
 public interface RowElement {
 
 	@Deprecated
@@ -8,4 +10,28 @@ public interface RowElement {
 	public String getName();
 	public String getContent();
 	public TeradataColumnType getType();
+
+	/**
+	 * @return content as date in the format yyyy-MM-dd. Date elements return their value without parsing.
+	 * @throws java.time.format.DateTimeParseException if the content is not a date
+	 */
+	public default LocalDate asDate() {
+		return LocalDate.parse(getContent());
+	}
+
+	/**
+	 * @return content as number. Numeric elements return their value without parsing.
+	 * @throws NumberFormatException if the content is not a number
+	 */
+	public default double asDouble() {
+		return Double.parseDouble(getContent());
+	}
+
+	/**
+	 * @return content as integer. Integer elements return their value without parsing.
+	 * @throws NumberFormatException if the content is not an integer
+	 */
+	public default long asLong() {
+		return Long.parseLong(getContent());
+	}
 }
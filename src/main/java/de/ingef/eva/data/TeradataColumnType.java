@@ -85,6 +85,7 @@ public enum TeradataColumnType {
 		case "VARBYTE":
 			return VARBYTE;
 		case "CHARACTER":
+		case "CHAR":
 			return CHARACTER;
 		case "CLOB":
 			return CLOB;
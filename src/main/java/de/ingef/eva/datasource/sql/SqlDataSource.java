@@ -1,14 +1,13 @@
 package de.ingef.eva.datasource.sql;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 import de.ingef.eva.data.DataTable;
 import de.ingef.eva.datasource.DataSource;
-import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.services.ConnectionFactory;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
@@ -17,33 +16,37 @@ public class SqlDataSource implements DataSource {
 
 	private final String query;
 	private final String name;
-	private final Configuration config;
+	private final ConnectionFactory connectionFactory;
 
 	/**
 	 * executes the specified query and converts it to a data table
 	 */
 	@Override
 	public DataTable fetchData() {
+		Connection conn = null;
 		try {
-			Class.forName("com.teradata.jdbc.TeraDriver");
-			try {
-				Connection conn = DriverManager.getConnection(
-						config.getFullConnectionUrl(),
-						config.getUser(),
-						config.getPassword()
-				);
-				Statement statement = conn.createStatement();
-				log.info("Executing query: {}", query);
-				ResultSet result = statement.executeQuery(query);
-				return new SqlDataTable(result, result.getMetaData(), name);
-			} catch (SQLException e) {
-				log.error("Could not open connection or creating query.\n\tReason: {}", e.getMessage());
-			  }
-			} catch (ClassNotFoundException e) {
-			log.error("Did not found Teradata JDBC driver.");
+			conn = connectionFactory.createConnection();
+			Statement statement = conn.createStatement();
+			log.info("Executing query: {}", query);
+			ResultSet result = statement.executeQuery(query);
+			//the data table returns the connection once it is closed
+			return new SqlDataTable(conn, result, result.getMetaData(), name);
+		} catch (SQLException e) {
+			log.error("Could not open connection or creating query.\n\tReason: {}", e.getMessage());
+			closeConnection(conn);
 		}
 		
 		return null;
 	}
 
+	private void closeConnection(Connection conn) {
+		if(conn == null)
+			return;
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			log.error("Could not close connection. {}", e);
+		}
+	}
+
 }
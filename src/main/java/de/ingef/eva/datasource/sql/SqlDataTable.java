@@ -1,8 +1,10 @@
 package de.ingef.eva.datasource.sql;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,6 +22,7 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class SqlDataTable implements DataTable {
 
+	private final Connection connection;
 	private final ResultSet resultSet;
 	private final ResultSetMetaData metaData;
 	@Getter
@@ -73,9 +76,19 @@ public class SqlDataTable implements DataTable {
 	@Override
 	public void close() throws DataTableOperationException {
 		try {
+			Statement statement = resultSet.getStatement();
 			resultSet.close();
-			resultSet.getStatement().close();
-			resultSet.getStatement().getConnection().close();
+			statement.close();
+		} catch (SQLException e) {
+			throw new DataTableOperationException("Could not close data table.", e);
+		} finally {
+			closeConnection();
+		}
+	}
+
+	private void closeConnection() throws DataTableOperationException {
+		try {
+			connection.close();
 		} catch (SQLException e) {
 			throw new DataTableOperationException("Could not close data table.", e);
 		}
@@ -0,0 +1,321 @@
+package de.ingef.eva.datasource.synthetic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.ingef.eva.configuration.SyntheticDataConfig;
+import de.ingef.eva.datasource.synthetic.SyntheticTable.SyntheticColumn;
+import de.ingef.eva.datasource.synthetic.SyntheticTable.SyntheticRow;
+import de.ingef.eva.query.creation.FanOutQuery;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Answers the queries of the export with generated rows instead of a Teradata database.
+ * Supports 'help column' lookups and selects of the tables known to {@link SyntheticTable}.
+ * Row conditions are not evaluated: every select returns the configured number of rows.
+ * Computed columns return their literal value, routing flags are always set and other expressions are empty.
+ * Instances are thread-safe.
+ */
+public class SyntheticDatabase {
+
+	private static final Pattern HELP_COLUMN = Pattern.compile("^\\s*help\\s+column\\s+(\\w+)\\.(\\w+)\\.\\*", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SOURCE_TABLE = Pattern.compile("\\sfrom\\s+(\\w+)\\.(\\w+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern YEAR_CONDITION = Pattern.compile("bezugsjahr\\s*=\\s*(\\d{4})", Pattern.CASE_INSENSITIVE);
+	private static final Pattern COMPUTED_COLUMN = Pattern.compile("(?s)(.*)\\s+as\\s+\"([^\"]+)\"\\s*$", Pattern.CASE_INSENSITIVE);
+	private static final Pattern LITERAL = Pattern.compile("^'([^']*)'$");
+	private static final int DEFAULT_YEAR = 2017;
+
+	private final SyntheticDataConfig config;
+	private final AtomicLong rowCount = new AtomicLong();
+
+	public SyntheticDatabase(SyntheticDataConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * @return connection whose statements are answered by this database
+	 */
+	public Connection connect() {
+		boolean[] isClosed = new boolean[1];
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+				case "createStatement":
+					return createStatement(null);
+				case "prepareStatement":
+					return createStatement((String) args[0]);
+				case "isValid":
+					return !isClosed[0];
+				case "isClosed":
+					return isClosed[0];
+				case "close":
+					isClosed[0] = true;
+					return null;
+				case "setAutoCommit":
+				case "commit":
+				case "rollback":
+					return null;
+				case "getAutoCommit":
+					return true;
+				default:
+					return unsupported(proxy, method.getName(), args);
+			}
+		});
+	}
+
+	/**
+	 * @return number of generated data rows including rows of unfinished queries
+	 */
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	/**
+	 * @param sql statement to answer
+	 * @return generated rows
+	 * @throws SQLException if the statement reads an unknown table
+	 */
+	public ResultSet execute(String sql) throws SQLException {
+		Matcher help = HELP_COLUMN.matcher(sql);
+		if(help.find())
+			return describe(help.group(2));
+		Matcher source = SOURCE_TABLE.matcher(sql);
+		if(!source.find())
+			throw new SQLException("Unsupported statement: " + sql);
+		SyntheticTable table = SyntheticTable
+				.find(source.group(2))
+				.orElseThrow(() -> new SQLException("Object '" + source.group(1) + "." + source.group(2) + "' does not exist."));
+		return select(sql, table, source.start());
+	}
+
+	private Statement createStatement(String preparedSql) {
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { preparedSql == null ? Statement.class : PreparedStatement.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+				case "executeQuery":
+					return execute(preparedSql == null ? (String) args[0] : preparedSql);
+				case "setFetchSize":
+				case "setQueryTimeout":
+				case "close":
+					return null;
+				case "isClosed":
+					return false;
+				default:
+					return unsupported(proxy, method.getName(), args);
+			}
+		});
+	}
+
+	/**
+	 * lists the columns of the table as name and type code
+	 */
+	private ResultSet describe(String tableName) throws SQLException {
+		SyntheticTable table = SyntheticTable
+				.find(tableName)
+				.orElseThrow(() -> new SQLException("Object '" + tableName + "' does not exist."));
+		Iterator<SyntheticColumn> columns = table.getColumns().iterator();
+		List<ResultColumn> layout = Arrays.asList(
+				new ResultColumn("Column Name", Types.VARCHAR, "VARCHAR", null),
+				new ResultColumn("Type", Types.CHAR, "CHAR", null)
+		);
+		return createResultSet(layout, () -> {
+			if(!columns.hasNext())
+				return null;
+			SyntheticColumn column = columns.next();
+			return new Object[] { column.getName(), column.getTypeCode() };
+		});
+	}
+
+	private ResultSet select(String sql, SyntheticTable table, int fromIndex) {
+		Matcher year = YEAR_CONDITION.matcher(sql);
+		SplittableRandom random = new SplittableRandom(config.getSeed() ^ sql.hashCode());
+		SyntheticRow row = new SyntheticRow(random, year.find() ? Integer.parseInt(year.group(1)) : DEFAULT_YEAR, Math.max(1, config.getPidCount()), Math.max(0, config.getSkew()));
+		List<ResultColumn> layout = new ArrayList<>();
+		for(String item : splitSelectList(sql.substring(sql.toLowerCase().indexOf("select") + "select".length(), fromIndex)))
+			layout.add(createResultColumn(table, item));
+		long rows = findRowCount(table);
+		long[] remaining = { rows };
+		return createResultSet(layout, () -> {
+			if(remaining[0] == 0)
+				return null;
+			remaining[0]--;
+			rowCount.incrementAndGet();
+			row.advance();
+			Object[] values = new Object[layout.size()];
+			for(int i = 0; i < values.length; i++)
+				values[i] = layout.get(i).getGenerator().next(row);
+			return values;
+		});
+	}
+
+	private long findRowCount(SyntheticTable table) {
+		for(Map.Entry<String, Long> tableRows : config.getTableRows().entrySet()) {
+			if(tableRows.getKey().equalsIgnoreCase(table.getName()))
+				return tableRows.getValue();
+		}
+		return config.getRowsPerQuery();
+	}
+
+	/**
+	 * splits the select list at commas outside of parentheses and quotes
+	 */
+	private List<String> splitSelectList(String selectList) {
+		List<String> items = new ArrayList<>();
+		int depth = 0;
+		boolean isQuoted = false;
+		int start = 0;
+		for(int i = 0; i < selectList.length(); i++) {
+			char c = selectList.charAt(i);
+			if(c == '\'')
+				isQuoted = !isQuoted;
+			else if(!isQuoted && c == '(')
+				depth++;
+			else if(!isQuoted && c == ')')
+				depth--;
+			else if(!isQuoted && depth == 0 && c == ',') {
+				items.add(selectList.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		items.add(selectList.substring(start).trim());
+		return items;
+	}
+
+	private ResultColumn createResultColumn(SyntheticTable table, String item) {
+		Matcher computed = COMPUTED_COLUMN.matcher(item);
+		if(computed.matches()) {
+			String label = computed.group(2);
+			if(label.startsWith(FanOutQuery.ROUTE_COLUMN_PREFIX))
+				return new ResultColumn(label, Types.INTEGER, "INTEGER", row -> 1);
+			Matcher literal = LITERAL.matcher(computed.group(1).trim());
+			String value = literal.matches() ? literal.group(1) : "";
+			return new ResultColumn(label, Types.VARCHAR, "VARCHAR", row -> value);
+		}
+		String columnName = item.substring(item.lastIndexOf('.') + 1).trim();
+		return table
+				.findColumn(columnName)
+				.map(column -> new ResultColumn(columnName, column.getJdbcType(), column.getTypeName(), column.getGenerator()))
+				.orElseGet(() -> new ResultColumn(columnName, Types.VARCHAR, "VARCHAR", row -> null));
+	}
+
+	private ResultSet createResultSet(List<ResultColumn> layout, Supplier<Object[]> rows) {
+		ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+				case "getColumnCount":
+					return layout.size();
+				case "getColumnLabel":
+				case "getColumnName":
+					return layout.get((int) args[0] - 1).getLabel();
+				case "getColumnType":
+					return layout.get((int) args[0] - 1).getJdbcType();
+				case "getColumnTypeName":
+					return layout.get((int) args[0] - 1).getTypeName();
+				default:
+					return unsupported(proxy, method.getName(), args);
+			}
+		});
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new GeneratedRows(metaData, rows));
+	}
+
+	private static Object unsupported(Object proxy, String methodName, Object[] args) throws SQLException {
+		switch(methodName) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Synthetic" + proxy.getClass().getInterfaces()[0].getSimpleName();
+			default:
+				throw new SQLFeatureNotSupportedException(methodName + " is not supported by the synthetic database.");
+		}
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class ResultColumn {
+		private final String label;
+		private final int jdbcType;
+		private final String typeName;
+		private final SyntheticTable.ValueGenerator generator;
+	}
+
+	/**
+	 * Result set over generated rows. Only forward reading by column index is supported.
+	 */
+	@RequiredArgsConstructor
+	private static class GeneratedRows implements InvocationHandler {
+		private final ResultSetMetaData metaData;
+		private final Supplier<Object[]> rows;
+		private Object[] current;
+		private boolean wasNull;
+		private boolean isClosed;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+				case "next":
+					current = isClosed ? null : rows.get();
+					return current != null;
+				case "getMetaData":
+					return metaData;
+				case "wasNull":
+					return wasNull;
+				case "close":
+					isClosed = true;
+					return null;
+				case "isClosed":
+					return isClosed;
+				case "setFetchSize":
+					return null;
+				case "getString":
+					Object text = read(args[0]);
+					return text == null ? null : text.toString();
+				case "getInt":
+					Object integer = read(args[0]);
+					return integer == null ? 0 : ((Number) integer).intValue();
+				case "getLong":
+					Object number = read(args[0]);
+					return number == null ? 0L : ((Number) number).longValue();
+				case "getDate":
+					return (Date) read(args[0]);
+				case "getBigDecimal":
+					Object decimal = read(args[0]);
+					return decimal == null || decimal instanceof BigDecimal ? decimal : new BigDecimal(decimal.toString());
+				case "getObject":
+					return read(args[0]);
+				default:
+					return unsupported(proxy, method.getName(), args);
+			}
+		}
+
+		private Object read(Object columnIndex) throws SQLException {
+			if(!(columnIndex instanceof Integer))
+				throw new SQLFeatureNotSupportedException("Columns can only be read by index.");
+			if(current == null)
+				throw new SQLException("Result set is not positioned on a row.");
+			Object value = current[(int) columnIndex - 1];
+			wasNull = value == null;
+			return value;
+		}
+	}
+}
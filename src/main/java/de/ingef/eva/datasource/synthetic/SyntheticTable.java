@@ -0,0 +1,220 @@
+package de.ingef.eva.datasource.synthetic;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Column layout and value distribution of a generated table.
+ * Tables are found by the end of their name so that the views of all databases share one layout.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SyntheticTable {
+
+	private static final String[] DIAGNOSIS_CONFIDENCES = {"G", "G", "G", "G", "G", "G", "V", "Z", "A"};
+	private static final String[] LOCALISATIONS = {"R", "L", "B"};
+
+	private static final List<SyntheticTable> TABLES = Arrays.asList(
+			new SyntheticTable("Vers_Stamm", Arrays.asList(
+					new SyntheticColumn("Bezugsjahr", "I2", row -> row.getYear()),
+					new SyntheticColumn("PID", "CV", row -> Long.toString(row.getPid())),
+					new SyntheticColumn("Geburtsjahr", "I2", row -> 1920 + (int) (row.getPid() % 95)),
+					new SyntheticColumn("Geschlecht", "CF", row -> row.getPid() % 2 == 0 ? "1" : "2"),
+					new SyntheticColumn("Todesdatum", "DA", row -> row.getRandom().nextInt(100) == 0 ? row.nextDate() : null),
+					new SyntheticColumn("Versichertentage", "I2", row -> row.getRandom().nextInt(10) == 0 ? 1 + row.getRandom().nextInt(365) : 365),
+					new SyntheticColumn("KV", "CF", row -> pad(1 + row.getPid() % 17, 2))
+			)),
+			new SyntheticTable("Vers_Region", Arrays.asList(
+					new SyntheticColumn("Bezugsjahr", "I2", row -> row.getYear()),
+					new SyntheticColumn("PID", "CV", row -> Long.toString(row.getPid())),
+					new SyntheticColumn("KGS", "CV", row -> pad(1_001_000 + row.nextSkewed(400) * 40_037, 8)),
+					new SyntheticColumn("Versichertentage", "I2", row -> row.getRandom().nextInt(10) == 0 ? 1 + row.getRandom().nextInt(365) : 365)
+			)),
+			new SyntheticTable("Arzt_Diagnose", Arrays.asList(
+					new SyntheticColumn("Bezugsjahr", "I2", row -> row.getYear()),
+					new SyntheticColumn("Fall_ID", "I8", row -> row.getRandom().nextLong(Long.MAX_VALUE)),
+					new SyntheticColumn("PID", "CV", row -> Long.toString(row.getPid())),
+					new SyntheticColumn("Behandl_Quartal", "I1", row -> 1 + row.getRandom().nextInt(4)),
+					new SyntheticColumn("Behandl_Beginn", "DA", SyntheticRow::nextDate),
+					new SyntheticColumn("Behandl_Ende", "DA", SyntheticRow::nextDate),
+					new SyntheticColumn("ICD", "CV", row -> createIcdCode(row.nextSkewed(2600))),
+					new SyntheticColumn("Diagnosesicherheit", "CF", row -> DIAGNOSIS_CONFIDENCES[row.getRandom().nextInt(DIAGNOSIS_CONFIDENCES.length)]),
+					new SyntheticColumn("Lokalisation", "CF", row -> row.getRandom().nextInt(5) == 0 ? LOCALISATIONS[row.getRandom().nextInt(LOCALISATIONS.length)] : null),
+					new SyntheticColumn("Vertrags_ID", "CV", row -> "V" + row.nextSkewed(50))
+			)),
+			new SyntheticTable("AM_EVO", Arrays.asList(
+					new SyntheticColumn("Bezugsjahr", "I2", row -> row.getYear()),
+					new SyntheticColumn("PID", "CV", row -> Long.toString(row.getPid())),
+					new SyntheticColumn("Verordnungsdatum", "DA", SyntheticRow::nextDate),
+					new SyntheticColumn("Abgabedatum", "DA", SyntheticRow::nextDate),
+					new SyntheticColumn("PZN", "CV", row -> pad(1_000_000 + row.nextSkewed(20_000) * 37, 8)),
+					new SyntheticColumn("Anzahl_Packungen", "I2", row -> row.getRandom().nextInt(5) == 0 ? 2 + row.getRandom().nextInt(3) : 1),
+					new SyntheticColumn("Bruttobetrag", "D", row -> BigDecimal.valueOf(100 + row.getRandom().nextInt(50_000), 2)),
+					new SyntheticColumn("ApothekenIK", "CV", row -> "30" + pad(row.nextSkewed(5_000) * 131, 7)),
+					new SyntheticColumn("BS_Nr", "CV", row -> pad(1 + row.getRandom().nextInt(99), 2) + pad(row.nextSkewed(50_000), 7)),
+					new SyntheticColumn("Arzt_LANR", "CV", row -> pad(row.nextSkewed(100_000) * 97, 9))
+			))
+	);
+
+	/**
+	 * Suffix of the view names that use this layout
+	 */
+	private final String name;
+	private final List<SyntheticColumn> columns;
+
+	/**
+	 * @param tableName view name as used in queries, e.g. AVK_ADB_T_AM_EVO
+	 * @return empty if no layout exists for the view
+	 */
+	public static Optional<SyntheticTable> find(String tableName) {
+		String lowerCaseName = tableName.toLowerCase();
+		return TABLES
+				.stream()
+				.filter(table -> lowerCaseName.endsWith(table.getName().toLowerCase()))
+				.findFirst();
+	}
+
+	/**
+	 * @param columnName case-insensitive column name
+	 * @return empty if the table has no such column
+	 */
+	public Optional<SyntheticColumn> findColumn(String columnName) {
+		return columns
+				.stream()
+				.filter(column -> column.getName().equalsIgnoreCase(columnName))
+				.findFirst();
+	}
+
+	/**
+	 * creates codes like 'E11.9' whose chapter and number follow the rank
+	 */
+	private static String createIcdCode(int rank) {
+		return (char) ('A' + rank % 26) + pad(rank / 26 % 100, 2) + "." + rank % 10;
+	}
+
+	/**
+	 * formats the value with leading zeros
+	 */
+	private static String pad(long value, int width) {
+		String digits = Long.toString(value);
+		if(digits.length() >= width)
+			return digits;
+		StringBuilder padded = new StringBuilder(width);
+		for(int i = digits.length(); i < width; i++)
+			padded.append('0');
+		return padded.append(digits).toString();
+	}
+
+	@FunctionalInterface
+	public interface ValueGenerator {
+		/**
+		 * @param row row that is generated
+		 * @return value as returned by the jdbc getter of the column type or null
+		 */
+		Object next(SyntheticRow row);
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class SyntheticColumn {
+		private final String name;
+		/**
+		 * Teradata type code as reported by 'help column'
+		 */
+		private final String typeCode;
+		private final ValueGenerator generator;
+
+		public int getJdbcType() {
+			switch(typeCode) {
+				case "CF":
+					return Types.CHAR;
+				case "I":
+					return Types.INTEGER;
+				case "I1":
+					return Types.TINYINT;
+				case "I2":
+					return Types.SMALLINT;
+				case "I8":
+					return Types.BIGINT;
+				case "DA":
+					return Types.DATE;
+				case "D":
+					return Types.DECIMAL;
+				default:
+					return Types.VARCHAR;
+			}
+		}
+
+		public String getTypeName() {
+			switch(typeCode) {
+				case "CF":
+					return "CHAR";
+				case "I":
+					return "INTEGER";
+				case "I1":
+					return "BYTEINT";
+				case "I2":
+					return "SMALLINT";
+				case "I8":
+					return "BIGINT";
+				case "DA":
+					return "DATE";
+				case "D":
+					return "DECIMAL";
+				default:
+					return "VARCHAR";
+			}
+		}
+	}
+
+	/**
+	 * State of the row that is currently generated. All columns of a row belong to the same insurant.
+	 */
+	@Getter
+	public static class SyntheticRow {
+		private final SplittableRandom random;
+		private final int year;
+		private final long pidCount;
+		private final double skew;
+		private long pid;
+
+		public SyntheticRow(SplittableRandom random, int year, long pidCount, double skew) {
+			this.random = random;
+			this.year = year;
+			this.pidCount = pidCount;
+			this.skew = skew;
+		}
+
+		/**
+		 * moves to the next row
+		 */
+		public void advance() {
+			pid = 10_000_000L + nextSkewed(pidCount);
+		}
+
+		/**
+		 * @param size number of distinct values
+		 * @return value between 0 and size. Low values are drawn more often the larger the skew is.
+		 */
+		public int nextSkewed(int size) {
+			return (int) nextSkewed((long) size);
+		}
+
+		private long nextSkewed(long size) {
+			return Math.min(size - 1, (long) (size * Math.pow(random.nextDouble(), 1 + skew)));
+		}
+
+		public Date nextDate() {
+			return Date.valueOf(LocalDate.ofYearDay(year, 1 + random.nextInt(365)));
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package de.ingef.eva.error;
+
+/**
+ * Signals that the rows of a query stopped before the end of its result, e.g. because the connection dropped.
+ * Rows that were already received are incomplete and must not be published.
+ */
+public class PartialSliceException extends TaskExecutionException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PartialSliceException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * @param e
+	 * @return true if the given exception or one of its causes is a partial slice exception
+	 */
+	public static boolean isCauseOf(Throwable e) {
+		for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if(cause instanceof PartialSliceException)
+				return true;
+		}
+		return false;
+	}
+}
@@ -3,13 +3,11 @@ package de.ingef.eva.etl;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -18,18 +16,19 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import de.ingef.eva.configuration.export.PipelineConfig;
 import de.ingef.eva.constant.OutputDirectory;
 import de.ingef.eva.constant.OutputDirectory.DirectoryType;
-import de.ingef.eva.data.RowElement;
-import de.ingef.eva.data.SimpleRowElement;
-import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.error.PartialSliceException;
 import de.ingef.eva.etl.filters.Filter;
 import de.ingef.eva.etl.transformers.Transformer;
 import de.ingef.eva.query.Query;
 import de.ingef.eva.services.ConnectionFactory;
 import de.ingef.eva.services.TaskRunner;
 import de.ingef.eva.tasks.SqlTask;
-import de.ingef.eva.tasks.WriteFileTask;
+import de.ingef.eva.tasks.Task;
+import de.ingef.eva.utility.Stopwatch;
+import de.ingef.eva.utility.io.BlockGzipIndex;
 import de.ingef.eva.utility.io.CsvWriter;
 import de.ingef.eva.utility.io.IOManager;
 import de.ingef.eva.utility.progress.ProgressBar;
@@ -41,167 +40,267 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class ETLPipeline {
 	
-	public void run(Collection<Query> queries, List<Filter> filters, List<Transformer> transformers, IOManager ioManager, TaskRunner taskRunner, ConnectionFactory connectionFactory) {
+	private static final String TMP_FILE_EXTENSION = ".tmp";
+	
+	/**
+	 * exports the given queries into the cache directory
+	 * @param queries
+	 * @param filters
+	 * @param transformers
+	 * @param ioManager
+	 * @param taskRunner
+	 * @param connectionFactory
+	 * @param pipelineConfig
+	 * @param resume whether slices of a previous export are kept if their manifest entry matches the query
+	 */
+	public void run(Collection<Query> queries, List<Filter> filters, List<Transformer> transformers, IOManager ioManager, TaskRunner taskRunner, ConnectionFactory connectionFactory, PipelineConfig pipelineConfig, boolean resume) {
 		ProgressBar progress = new ProgressBar(queries.size());
 		CountDownLatch countdown = new CountDownLatch(queries.size());
-		Predicate<Row> rowFilter = createRowFilter(filters);
-		Function<Row, Row> rowTransformer = createRowTransformer(transformers);
-		log.info("Dispatching export tasks");
+		Predicate<Row> rowFilter = new FilterChain(filters);
+		//transformers are compiled per table and row layout when the first row of a slice arrives
+		Function<Row, Row> rowTransformer = new TransformerChain(transformers);
+		StagedExport stages = new StagedExport(pipelineConfig);
+		ExportManifest manifest = ExportManifest.load(ioManager.getDirectory(DirectoryType.CACHE));
+		List<ExportJob> jobs = new ArrayList<>(queries.size());
 		for(Query q : queries) {
-			startExport(q, taskRunner, connectionFactory, rowFilter, rowTransformer, ioManager, progress, countdown);
+			Path sliceFile = resolveSliceFile(ioManager, q);
+			if(resume && manifest.isComplete(q, sliceFile)) {
+				log.info("Skipping '{}' because it was already exported.", sliceFile);
+				makeProgress(progress, countdown);
+				continue;
+			}
+			jobs.add(new ExportJob(q, sliceFile));
 		}
+		new SliceCostEstimator(manifest, pipelineConfig.getTableRowEstimates()).estimate(jobs);
+		//queries of several datasets that read the same rows are fetched once
+		List<ExportJob> scans = pipelineConfig.isFanOut() ? new ScanPlanner().merge(jobs) : jobs;
+		ExportScheduler scheduler = new ExportScheduler(scans, taskRunner.getPoolSize(), pipelineConfig.getMaxQueriesPerTable(), pipelineConfig.getMaxQueriesPerDatabase());
+		log.info("Scheduling {} export tasks on {} threads ({} without previous export). Predicted duration: {}",
+				scans.size(), taskRunner.getPoolSize(), scans.stream().filter(ExportJob::isEstimated).count(), Stopwatch.formatDuration(scheduler.predictMakespan()));
+		log.info("Dispatching export tasks");
+		long backoffMillis = TimeUnit.SECONDS.toMillis(pipelineConfig.getRetryBackoffSeconds());
+		scheduler.start(job -> startExport(job, scheduler, taskRunner, pipelineConfig.getSliceAttempts(), backoffMillis, connectionFactory, rowFilter, rowTransformer, stages, manifest, progress, countdown));
 		try {
 			countdown.await(3, TimeUnit.DAYS);
 		} catch (InterruptedException e) {
 			log.error("Export tasks did not terminate normally. {}", e);
 		}
+		stages.shutdown();
+		logSummary(jobs);
+	}
+
+	/**
+	 * logs the number of slices per outcome and names all slices that were not exported
+	 * @param jobs
+	 */
+	private void logSummary(List<ExportJob> jobs) {
+		Map<SliceStatus, Integer> statusCounts = new EnumMap<>(SliceStatus.class);
+		for(ExportJob job : jobs) {
+			if(job.getStatus() == null) {
+				log.error("Slice '{}' did not finish.", job.getSliceFile());
+				continue;
+			}
+			statusCounts.merge(job.getStatus(), 1, Integer::sum);
+			if(job.getStatus() == SliceStatus.PARTIAL)
+				log.error("Slice '{}' was cut off on every attempt and is missing.", job.getSliceFile());
+			else if(job.getStatus() == SliceStatus.FAILED)
+				log.error("Slice '{}' could not be exported.", job.getSliceFile());
+		}
+		log.info("Exported slices: {}", statusCounts);
 	}
 		
 	/**
-	 * creates asynchronous task to run the export
-	 * @param q
+	 * creates asynchronous task to run the export. Query and export are retried together
+	 * so that a slice whose rows stop early is fetched again from the start.
+	 * @param job query and final location of the exported slice
+	 * @param scheduler starts the next job once this job has ended
 	 * @param taskRunner
+	 * @param attempts number of attempts
+	 * @param backoffMillis wait before the first retry
 	 * @param connectionFactory
 	 * @param rowFilter
 	 * @param rowTransformer
-	 * @param ioManager
+	 * @param stages transform and write stages shared by all exports
+	 * @param manifest completed slices
 	 * @param progressBar
 	 * @param countdown
 	 */
-	private void startExport(Query q, TaskRunner taskRunner, ConnectionFactory connectionFactory, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, IOManager ioManager, ProgressBar progressBar, CountDownLatch countdown) {
+	private void startExport(ExportJob job, ExportScheduler scheduler, TaskRunner taskRunner, int attempts, long backoffMillis, ConnectionFactory connectionFactory, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, StagedExport stages, ExportManifest manifest, ProgressBar progressBar, CountDownLatch countdown) {
+		Query q = job.getQuery();
+		Task<SliceStatus> exportTask = new Task<SliceStatus>("Export Query", q.getDescription()) {
+			@Override
+			public SliceStatus execute() {
+				Stream<Row> rowStream = new SqlTask("Export Query", q, connectionFactory, new ResultSetRowConverter()).execute();
+				//rows are fetched on the query thread while filtering, transformation and compression run in the stage workers
+				if(job.isFanOut())
+					return processFanOut(job, rowFilter, rowTransformer, stages, manifest, rowStream);
+				return processStream(job, rowFilter, rowTransformer, stages, manifest, rowStream);
+			}
+		};
 		taskRunner
-			.run(new SqlTask("Export Query", q, connectionFactory, this::convertToRow), 3)
-			.thenAccept(rowStream -> processStream(q, rowFilter, rowTransformer, ioManager, rowStream))
-			.thenAccept(arg -> {
-				makeProgress(progressBar, countdown);
+			.run(exportTask, attempts, backoffMillis)
+			.thenAccept(status -> {
+				finishJob(job, status, scheduler, progressBar, countdown);
 			})
 			.exceptionally(e -> {
 				log.error("Export error occurred for query: DB: {}, Dataset: {}, Table: {}, Slice: {}, Query: {}", q.getDbName(), q.getDatasetName(), q.getTableName(), q.getSliceName(), q.getQuery(), e);
-				makeProgress(progressBar, countdown);
+				finishJob(job, PartialSliceException.isCauseOf(e) ? SliceStatus.PARTIAL : SliceStatus.FAILED, scheduler, progressBar, countdown);
 				return null;
 			});
 	}
 
-	private void processStream(Query q, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, IOManager ioManager, Stream<Row> rowStream) {
-		CsvWriter writer = createWriter(ioManager, q);
-		log.info("Start writing to file: '{}'", writer.getAttachedFile());
-		new WriteFileTask(writer, rowStream, rowFilter, rowTransformer).execute();
-		if(!writer.isNewFile()) {
-			log.info("File '{}' created.", writer.getAttachedFile());
-		} else {
-			try {
-				Files.delete(writer.getAttachedFile());
-				log.warn("File '{}' was empty and was removed.", writer.getAttachedFile());
-			} catch (IOException e) {
-				log.error("Could not remove file '{}'. {}", writer.getAttachedFile(), e);
-			}
+	/**
+	 * sets the outcome of the job and of its routes that have none yet and starts the next job
+	 */
+	private void finishJob(ExportJob job, SliceStatus status, ExportScheduler scheduler, ProgressBar progressBar, CountDownLatch countdown) {
+		job.setStatus(status);
+		for(ExportJob route : job.getRoutes()) {
+			if(route.getStatus() == null)
+				route.setStatus(status);
 		}
+		scheduler.finish(job);
+		for(int i = 0, slices = Math.max(1, job.getRoutes().size()); i < slices; i++)
+			makeProgress(progressBar, countdown);
 	}
 
 	/**
-	 * indicates that a pipeline has finished
-	 * @param progressBar
-	 * @param countdown
+	 * writes the slice into a temporary file which replaces the slice file once all rows were written.
+	 * The temporary file is removed if the rows stop early.
+	 * @return outcome of the export
 	 */
-	private void makeProgress(ProgressBar progressBar, CountDownLatch countdown) {
-		progressBar.increase();
-		countdown.countDown();
+	private SliceStatus processStream(ExportJob job, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, StagedExport stages, ExportManifest manifest, Stream<Row> rowStream) {
+		Path sliceFile = job.getSliceFile();
+		Path tmpFile = Paths.get(sliceFile.toString() + TMP_FILE_EXTENSION);
+		CsvWriter writer = createWriter(stages, tmpFile);
+		log.info("Start writing to file: '{}'", sliceFile);
+		boolean isWritten;
+		try {
+			isWritten = stages.export(rowStream, rowFilter, rowTransformer, writer);
+		} catch (RuntimeException e) {
+			deleteSlice(tmpFile);
+			throw e;
+		}
+		if(!isWritten) {
+			deleteSlice(tmpFile);
+			log.error("File '{}' could not be completed.", sliceFile);
+			return SliceStatus.FAILED;
+		}
+		return publishSlice(job, job.getStartTime(), writer, tmpFile, manifest);
 	}
-	
+
 	/**
-	 * creates a function that applies filters to rows
-	 * @param filters
-	 * @return
+	 * writes the rows of a merged query into the slices of its routes
+	 * @return failed if any slice could not be written
 	 */
-	private Predicate<Row> createRowFilter(List<Filter> filters) {
-		return (Row row) -> {
-			for(Filter f : filters) {
-				if(!f.isValid(row)) {
-					return false;
-				}
-			}
-			return true;
-		};
+	private SliceStatus processFanOut(ExportJob job, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, StagedExport stages, ExportManifest manifest, Stream<Row> rowStream) {
+		List<ExportJob> routes = job.getRoutes();
+		List<Path> tmpFiles = new ArrayList<>(routes.size());
+		List<CsvWriter> writers = new ArrayList<>(routes.size());
+		for(ExportJob route : routes) {
+			Path tmpFile = Paths.get(route.getSliceFile().toString() + TMP_FILE_EXTENSION);
+			tmpFiles.add(tmpFile);
+			writers.add(createWriter(stages, tmpFile));
+			log.info("Start writing to file: '{}'", route.getSliceFile());
+		}
+		boolean isWritten;
+		try {
+			isWritten = stages.export(rowStream, new FanOutRouter(routes.size()), rowFilter, rowTransformer, writers);
+		} catch (RuntimeException e) {
+			tmpFiles.forEach(this::deleteSlice);
+			throw e;
+		}
+		if(!isWritten) {
+			tmpFiles.forEach(this::deleteSlice);
+			log.error("Files of datasets '{}' could not be completed.", job.getQuery().getDatasetName());
+			return SliceStatus.FAILED;
+		}
+		SliceStatus status = SliceStatus.COMPLETE;
+		for(int i = 0; i < routes.size(); i++) {
+			ExportJob route = routes.get(i);
+			route.setStatus(publishSlice(route, job.getStartTime(), writers.get(i), tmpFiles.get(i), manifest));
+			if(route.getStatus() == SliceStatus.FAILED)
+				status = SliceStatus.FAILED;
+		}
+		return status;
 	}
-	
+
 	/**
-	 * creates a function that applies transformers to row
-	 * @param transformers
-	 * @return
+	 * replaces the slice file by the written temporary file and records the slice in the manifest.
+	 * Empty slices are removed.
+	 * @param job
+	 * @param startTime time the query was started at
+	 * @param writer closed writer of the temporary file
+	 * @param tmpFile
+	 * @param manifest
+	 * @return outcome of the export
 	 */
-	private Function<Row, Row> createRowTransformer(List<Transformer> transformers) {
-		return (Row row) -> {
-			Row transformed = row;
-			for(Transformer t : transformers) {
-				transformed = t.transform(transformed);
+	private SliceStatus publishSlice(ExportJob job, long startTime, CsvWriter writer, Path tmpFile, ExportManifest manifest) {
+		Query q = job.getQuery();
+		Path sliceFile = job.getSliceFile();
+		try {
+			if(!writer.isNewFile()) {
+				Files.move(tmpFile, sliceFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				BlockGzipIndex.move(tmpFile, sliceFile);
+				manifest.record(q, sliceFile, writer.getLineCount() - 1, writer.getChecksum(), System.currentTimeMillis() - startTime);
+				log.info("File '{}' created.", sliceFile);
+				return SliceStatus.COMPLETE;
+			} else {
+				deleteSlice(tmpFile);
+				deleteSlice(sliceFile);
+				manifest.record(q, sliceFile, 0, writer.getChecksum(), System.currentTimeMillis() - startTime);
+				log.warn("File '{}' was empty and was removed.", sliceFile);
+				return SliceStatus.EMPTY;
 			}
-			return transformed;
-		};
+		} catch (IOException e) {
+			log.error("Could not move '{}' to '{}'. {}", tmpFile, sliceFile, e);
+			return SliceStatus.FAILED;
+		}
 	}
-	
-	/**
-	 * evaluates a result set from a database and creates a row object
-	 * @param result
-	 * @return
-	 */
-	private Row convertToRow(ResultSet result) {
+
+	private void deleteSlice(Path file) {
 		try {
-			ResultSetMetaData metaData = result.getMetaData();
-			int columnCount = metaData.getColumnCount();
-		
-			List<RowElement> columns = new ArrayList<>(columnCount);
-			for(int columnIndex = 1; columnIndex <= columnCount; columnIndex++) {
-				//perform null checks on raw data from database
-				//otherwise threads stall and program does not terminate
-				String value = result.getString(columnIndex) == null ? "" : cleanValue(result.getString(columnIndex));
-				TeradataColumnType type = TeradataColumnType.fromTypeName(metaData.getColumnLabel(columnIndex));
-				columns.add(new SimpleRowElement(value, type));
-			}
-			Map<String,Integer> columnNames2Index = createColumnIndexLookup(metaData);
-			
-			Row row = new Row();
-			row.setColumns(columns);
-			row.setColumnName2Index(columnNames2Index);
-			return row;
-		} catch (SQLException e) {
-			log.error("Could not convert result set to row. {}", e);
+			Files.deleteIfExists(file);
+			BlockGzipIndex.deleteIfExists(file);
+		} catch (IOException e) {
+			log.error("Could not remove file '{}'. {}", file, e);
 		}
-		Row row = new Row();
-		row.setDb("");
-		row.setTable("");
-		row.setColumnName2Index(Collections.emptyMap());
-		row.setColumns(Collections.emptyList());
-		return row;
+	}
+
+	/**
+	 * indicates that a pipeline has finished
+	 * @param progressBar
+	 * @param countdown
+	 */
+	private void makeProgress(ProgressBar progressBar, CountDownLatch countdown) {
+		progressBar.increase();
+		countdown.countDown();
 	}
 	
 	/**
-	 * removes semicolons and quotation marks from the given string
-	 * @param value
-	 * @return a cleaned string
+	 * creates a gzip csv writer for the given file
+	 * @param stages
+	 * @param file
+	 * @return
 	 */
-	private String cleanValue(String value) {
-		return value
-				.replaceAll(";", "_")
-				.replaceAll("\"","")
-				.trim();
+	private CsvWriter createWriter(StagedExport stages, Path file) {
+		try {
+			return stages.createWriter(file);
+		} catch (IOException e) {
+			log.error("Could not create writer for file '{}'. {}", file, e);
+		}
+		return null;
 	}
 
 	/**
-	 * creates a gzip csv writer with the expected output file
+	 * determines the cache file of the given query
 	 * @param ioManager
 	 * @param q
 	 * @return
 	 */
-	private CsvWriter createWriter(IOManager ioManager, Query q) {
+	private Path resolveSliceFile(IOManager ioManager, Query q) {
 		String dbShortName = createDbShortName(q.getDbName());
 		Path root = ioManager.createSubdirectories(DirectoryType.CACHE, dbShortName, q.getDatasetName());
-		String fileName = createOutputFileName(q);
-		try {
-			return CsvWriter.createGzipWriter(root.resolve(fileName));
-		} catch (IOException e) {
-			log.error("Could not create writer for file '{}'. {}", fileName, e);
-		}
-		return null;
+		return root.resolve(createOutputFileName(q));
 	}
 
 	private String createOutputFileName(Query q) {
@@ -213,13 +312,4 @@ public class ETLPipeline {
 			return dbName.split("_")[1];
 		return dbName;
 	}
-	
-	private Map<String, Integer> createColumnIndexLookup(ResultSetMetaData metaData) throws SQLException {
-		int count = metaData.getColumnCount();
-		Map<String,Integer> map = new HashMap<>(count);
-		for(int i = 0; i < count; i++) {
-			map.put(metaData.getColumnLabel(i + 1).toLowerCase(), i);
-		}
-		return map;
-	}
 }
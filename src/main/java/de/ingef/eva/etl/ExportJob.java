@@ -0,0 +1,81 @@
+package de.ingef.eva.etl;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import de.ingef.eva.query.Query;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Query that is exported into a single slice file
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExportJob {
+	private final Query query;
+	/**
+	 * Final location of the exported slice. Null if the query is written into the slices of its routes.
+	 */
+	private final Path sliceFile;
+	/**
+	 * Jobs whose slices are written from the rows of this query. Empty if the query has its own slice.
+	 */
+	private final List<ExportJob> routes;
+	/**
+	 * Expected time needed to export the slice
+	 */
+	@Setter
+	private long expectedMillis;
+	/**
+	 * Whether the expected time is derived from other slices because the slice was not exported before
+	 */
+	@Setter
+	private boolean isEstimated;
+	/**
+	 * Time the export was started at
+	 */
+	@Setter
+	private long startTime;
+	/**
+	 * Outcome of the export. Null while the export is running.
+	 */
+	@Setter
+	private volatile SliceStatus status;
+
+	public ExportJob(Query query, Path sliceFile) {
+		this(query, sliceFile, Collections.emptyList());
+	}
+
+	/**
+	 * creates a job that writes the rows of the query into the slices of the given jobs
+	 * @param query
+	 * @param routes
+	 */
+	public ExportJob(Query query, List<ExportJob> routes) {
+		this(query, null, routes);
+	}
+
+	public boolean isFanOut() {
+		return !routes.isEmpty();
+	}
+
+	public String getTableKey() {
+		return query.getDbName() + "." + query.getTableName();
+	}
+
+	/**
+	 * @return key of the limit of concurrent queries per table. Parts of a year slice, e.g. '2015.q1', are limited per year,
+	 * so that a partitioned table is exported with more sessions than an unpartitioned one.
+	 */
+	public String getLimitKey() {
+		String slice = query.getSliceName();
+		int partSeparator = slice != null ? slice.indexOf('.') : -1;
+		return partSeparator != -1
+				? getTableKey() + "." + slice.substring(0, partSeparator)
+				: getTableKey();
+	}
+}
@@ -0,0 +1,154 @@
+package de.ingef.eva.etl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import de.ingef.eva.query.Query;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Records completed slices of the cache directory.
+ * An entry is added once a slice was written completely and moved to its final location,
+ * so a resumed export only has to fetch slices without a matching entry.
+ */
+@Log4j2
+public class ExportManifest {
+
+	public static final String FILE_NAME = "export_manifest.json";
+	private static final TypeReference<TreeMap<String, SliceEntry>> ENTRIES_TYPE = new TypeReference<TreeMap<String, SliceEntry>>() {};
+
+	private final Path cacheDirectory;
+	private final Map<String, SliceEntry> slices;
+	private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	@Getter @Setter
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class SliceEntry {
+		/**
+		 * SHA-256 of the query text
+		 */
+		private String queryHash;
+		/**
+		 * Number of data rows without header
+		 */
+		private long rowCount;
+		/**
+		 * Size of the cache file. Empty slices have no file and a size of zero.
+		 */
+		private long byteSize;
+		/**
+		 * CRC32 of the uncompressed file content
+		 */
+		private String checksum;
+		/**
+		 * Time from starting the query until the slice was published. Zero if unknown.
+		 */
+		private long durationMillis;
+	}
+
+	private ExportManifest(Path cacheDirectory, Map<String, SliceEntry> slices) {
+		this.cacheDirectory = cacheDirectory;
+		this.slices = slices;
+	}
+
+	/**
+	 * reads the manifest of the given cache directory
+	 * @param cacheDirectory
+	 * @return an empty manifest if none exists or if it cannot be read
+	 */
+	public static ExportManifest load(Path cacheDirectory) {
+		Path manifestFile = cacheDirectory.resolve(FILE_NAME);
+		ExportManifest manifest = new ExportManifest(cacheDirectory, new TreeMap<>());
+		if(Files.notExists(manifestFile))
+			return manifest;
+		try {
+			manifest.slices.putAll(manifest.mapper.readValue(manifestFile.toFile(), ENTRIES_TYPE));
+		} catch (IOException e) {
+			log.warn("Could not read export manifest '{}'. All slices will be exported. {}", manifestFile, e);
+		}
+		return manifest;
+	}
+
+	/**
+	 * checks whether the slice was already exported with the same query and whether its file is still unchanged
+	 * @param q
+	 * @param sliceFile final location of the slice
+	 * @return true if the slice does not need to be exported again
+	 */
+	public synchronized boolean isComplete(Query q, Path sliceFile) {
+		SliceEntry entry = slices.get(createKey(sliceFile));
+		if(entry == null || !entry.getQueryHash().equals(hashQuery(q)))
+			return false;
+		try {
+			if(entry.getRowCount() == 0)
+				return Files.notExists(sliceFile);
+			return Files.exists(sliceFile) && Files.size(sliceFile) == entry.getByteSize();
+		} catch (IOException e) {
+			log.warn("Could not check slice '{}'. {}", sliceFile, e);
+			return false;
+		}
+	}
+
+	/**
+	 * looks up the entry of a slice regardless of the query it was exported with
+	 * @param sliceFile final location of the slice
+	 * @return entry of the last completed export of the slice
+	 */
+	public synchronized Optional<SliceEntry> findEntry(Path sliceFile) {
+		return Optional.ofNullable(slices.get(createKey(sliceFile)));
+	}
+
+	public void record(Query q, Path sliceFile, long rowCount, long checksum) {
+		record(q, sliceFile, rowCount, checksum, 0);
+	}
+
+	/**
+	 * adds or replaces the entry of a finished slice and persists the manifest
+	 * @param q exported query
+	 * @param sliceFile final location of the slice. Empty slices do not have a file.
+	 * @param rowCount number of data rows
+	 * @param checksum CRC32 of the uncompressed content
+	 * @param durationMillis time needed to export the slice
+	 */
+	public synchronized void record(Query q, Path sliceFile, long rowCount, long checksum, long durationMillis) {
+		try {
+			long byteSize = Files.exists(sliceFile) ? Files.size(sliceFile) : 0;
+			slices.put(createKey(sliceFile), new SliceEntry(hashQuery(q), rowCount, byteSize, Long.toHexString(checksum), durationMillis));
+			save();
+		} catch (IOException e) {
+			log.error("Could not update export manifest for slice '{}'. {}", sliceFile, e);
+		}
+	}
+
+	private void save() throws IOException {
+		Path manifestFile = cacheDirectory.resolve(FILE_NAME);
+		Path tmpFile = Paths.get(manifestFile.toString() + ".tmp");
+		mapper.writeValue(tmpFile.toFile(), slices);
+		Files.move(tmpFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String createKey(Path sliceFile) {
+		return cacheDirectory.toAbsolutePath().normalize().relativize(sliceFile.toAbsolutePath().normalize()).toString().replace('\\', '/');
+	}
+
+	private static String hashQuery(Query q) {
+		return DigestUtils.sha256Hex(q.getQuery());
+	}
+}
@@ -0,0 +1,157 @@
+package de.ingef.eva.etl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Starts export jobs longest-expected-first so that long slices do not end up running alone at the end of an export.
+ * At most {@code slotCount} jobs run at the same time. Jobs of a table or database that reached its limit of concurrent
+ * queries are deferred in favor of the next longest job of another table.
+ * Instances are thread-safe.
+ */
+public class ExportScheduler {
+
+	private final List<ExportJob> pending;
+	private final Slots slots;
+	private Consumer<ExportJob> launcher;
+
+	/**
+	 * @param jobs jobs with expected durations
+	 * @param slotCount number of jobs that run at the same time
+	 * @param maxJobsPerTable limit of concurrent jobs of the same table. Values below 1 disable the limit.
+	 * @param maxJobsPerDatabase limit of concurrent jobs of the same database. Values below 1 disable the limit.
+	 */
+	public ExportScheduler(Collection<ExportJob> jobs, int slotCount, int maxJobsPerTable, int maxJobsPerDatabase) {
+		pending = new ArrayList<>(jobs);
+		pending.sort(Comparator.comparingLong(ExportJob::getExpectedMillis).reversed());
+		slots = new Slots(Math.max(1, slotCount), maxJobsPerTable, maxJobsPerDatabase);
+	}
+
+	/**
+	 * simulates the schedule of the pending jobs with their expected durations
+	 * @return expected time until all pending jobs are finished
+	 */
+	public synchronized long predictMakespan() {
+		List<ExportJob> remaining = new ArrayList<>(pending);
+		Slots simulatedSlots = slots.createEmpty();
+		PriorityQueue<RunningJob> running = new PriorityQueue<>(Comparator.comparingLong(RunningJob::getEnd));
+		long now = 0;
+		while(!remaining.isEmpty() || !running.isEmpty()) {
+			for(ExportJob job = simulatedSlots.acquireNext(remaining); job != null; job = simulatedSlots.acquireNext(remaining))
+				running.add(new RunningJob(job, now + job.getExpectedMillis()));
+			RunningJob finished = running.poll();
+			now = finished.getEnd();
+			simulatedSlots.release(finished.getJob());
+		}
+		return now;
+	}
+
+	/**
+	 * starts as many jobs as slots are free
+	 * @param launcher starts a job asynchronously. {@link #finish(ExportJob)} must be called once the job has ended.
+	 */
+	public void start(Consumer<ExportJob> launcher) {
+		List<ExportJob> startable;
+		synchronized(this) {
+			this.launcher = launcher;
+			startable = acquireStartableJobs();
+		}
+		launch(startable);
+	}
+
+	/**
+	 * releases the slot of a finished or failed job and starts the next jobs
+	 * @param job
+	 */
+	public void finish(ExportJob job) {
+		List<ExportJob> startable;
+		synchronized(this) {
+			slots.release(job);
+			startable = acquireStartableJobs();
+		}
+		launch(startable);
+	}
+
+	private List<ExportJob> acquireStartableJobs() {
+		List<ExportJob> startable = new ArrayList<>();
+		for(ExportJob job = slots.acquireNext(pending); job != null; job = slots.acquireNext(pending))
+			startable.add(job);
+		return startable;
+	}
+
+	//jobs are launched outside of the lock since a launched job may finish on the calling thread
+	private void launch(List<ExportJob> jobs) {
+		for(ExportJob job : jobs) {
+			job.setStartTime(System.currentTimeMillis());
+			launcher.accept(job);
+		}
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class RunningJob {
+		private final ExportJob job;
+		private final long end;
+	}
+
+	/**
+	 * Counts running jobs in total, per table and per database
+	 */
+	@RequiredArgsConstructor
+	private static class Slots {
+		private final int slotCount;
+		private final int maxJobsPerTable;
+		private final int maxJobsPerDatabase;
+		private final Map<String, Integer> runningPerTable = new HashMap<>();
+		private final Map<String, Integer> runningPerDatabase = new HashMap<>();
+		private int running = 0;
+
+		/**
+		 * removes the first job that may run now from the given list and occupies a slot for it
+		 * @param jobs
+		 * @return null if no slot is free or all jobs hit a limit
+		 */
+		public ExportJob acquireNext(List<ExportJob> jobs) {
+			if(running >= slotCount)
+				return null;
+			for(Iterator<ExportJob> iter = jobs.iterator(); iter.hasNext();) {
+				ExportJob job = iter.next();
+				if(isBelowLimit(runningPerTable, job.getLimitKey(), maxJobsPerTable) && isBelowLimit(runningPerDatabase, job.getQuery().getDbName(), maxJobsPerDatabase)) {
+					iter.remove();
+					running++;
+					runningPerTable.merge(job.getLimitKey(), 1, Integer::sum);
+					runningPerDatabase.merge(job.getQuery().getDbName(), 1, Integer::sum);
+					return job;
+				}
+			}
+			return null;
+		}
+
+		public void release(ExportJob job) {
+			running--;
+			runningPerTable.merge(job.getLimitKey(), -1, Integer::sum);
+			runningPerDatabase.merge(job.getQuery().getDbName(), -1, Integer::sum);
+		}
+
+		/**
+		 * @return slots with the same limits and without running jobs
+		 */
+		public Slots createEmpty() {
+			return new Slots(slotCount, maxJobsPerTable, maxJobsPerDatabase);
+		}
+
+		private boolean isBelowLimit(Map<String, Integer> runningJobs, String key, int limit) {
+			return limit < 1 || runningJobs.getOrDefault(key, 0) < limit;
+		}
+	}
+}
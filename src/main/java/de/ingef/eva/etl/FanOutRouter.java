@@ -0,0 +1,58 @@
+package de.ingef.eva.etl;
+
+import java.util.List;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.query.creation.FanOutQuery;
+
+/**
+ * Routes the rows of a {@link FanOutQuery} by its routing columns. The routing columns are the last columns of a row.
+ * Instances are thread-safe.
+ */
+public class FanOutRouter implements RowRouter {
+
+	private final int routeCount;
+	/**
+	 * Most recent fetched layout and its layout without routing columns
+	 */
+	private volatile RowSchema[] lastSchemas;
+
+	public FanOutRouter(int routeCount) {
+		if(routeCount > Long.SIZE)
+			throw new IllegalArgumentException("At most " + Long.SIZE + " routes are supported but " + routeCount + " were requested.");
+		this.routeCount = routeCount;
+	}
+
+	@Override
+	public int getRouteCount() {
+		return routeCount;
+	}
+
+	@Override
+	public long route(Row row) {
+		List<RowElement> columns = row.getColumns();
+		int firstRoute = columns.size() - routeCount;
+		long routes = 0;
+		for(int i = 0; i < routeCount; i++) {
+			if(columns.get(firstRoute + i).asLong() == 1)
+				routes |= 1L << i;
+		}
+		return routes;
+	}
+
+	@Override
+	public Row strip(Row row) {
+		List<RowElement> columns = row.getColumns();
+		return new Row(row.getDb(), row.getTable(), columns.subList(0, columns.size() - routeCount), stripSchema(row.getSchema()));
+	}
+
+	private RowSchema stripSchema(RowSchema schema) {
+		RowSchema[] schemas = lastSchemas;
+		if(schemas != null && schemas[0] == schema)
+			return schemas[1];
+		List<String> columnNames = schema.getColumnNames();
+		RowSchema stripped = RowSchema.of(columnNames.subList(0, columnNames.size() - routeCount));
+		lastSchemas = new RowSchema[] { schema, stripped };
+		return stripped;
+	}
+}
@@ -0,0 +1,116 @@
+package de.ingef.eva.etl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.filters.Filter.CompiledFilter;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Applies the configured filters to rows.
+ * For every combination of db, table and row layout the filters are compiled once.
+ * Filters that do not apply to such rows are dropped and the remaining ones are bound to their column position,
+ * so rows are checked without any column lookups.
+ * Instances are thread-safe.
+ */
+public class FilterChain implements Predicate<Row> {
+
+	private static final CompiledFilter ACCEPT_ALL = columns -> true;
+
+	private final List<Filter> filters;
+	private final ConcurrentMap<PlanKey, Plan> plans = new ConcurrentHashMap<>();
+	/**
+	 * Plan of the most recent row layout. Rows of a slice share their layout so that most rows do not need a lookup.
+	 */
+	private volatile Plan lastPlan;
+
+	public FilterChain(List<Filter> filters) {
+		this.filters = new ArrayList<>(filters);
+	}
+
+	@Override
+	public boolean test(Row row) {
+		Plan plan = lastPlan;
+		if(plan == null || !plan.isCompiledFor(row)) {
+			plan = plans.computeIfAbsent(new PlanKey(row.getDb(), row.getTable(), row.getSchema()), this::compile);
+			lastPlan = plan;
+		}
+		List<RowElement> columns = row.getColumns();
+		//rows that do not match their layout are left to the filters
+		if(columns.size() != plan.getKey().getSchema().size())
+			return interpret(row);
+		return plan.getFilter().isValid(columns);
+	}
+
+	private boolean interpret(Row row) {
+		for(Filter f : filters) {
+			if(!f.isValid(row))
+				return false;
+		}
+		return true;
+	}
+
+	private Plan compile(PlanKey key) {
+		List<CompiledFilter> applicable = new ArrayList<>(filters.size());
+		for(Filter f : filters) {
+			CompiledFilter compiled = f.compile(key.getDb(), key.getTable(), key.getSchema());
+			if(compiled != null)
+				applicable.add(compiled);
+		}
+		return new Plan(key, combine(applicable));
+	}
+
+	/**
+	 * collapses the filters into a single check
+	 */
+	private static CompiledFilter combine(List<CompiledFilter> applicable) {
+		if(applicable.isEmpty())
+			return ACCEPT_ALL;
+		if(applicable.size() == 1)
+			return applicable.get(0);
+		if(applicable.size() == 2) {
+			CompiledFilter first = applicable.get(0);
+			CompiledFilter second = applicable.get(1);
+			return columns -> first.isValid(columns) && second.isValid(columns);
+		}
+		CompiledFilter[] steps = applicable.toArray(new CompiledFilter[applicable.size()]);
+		return columns -> {
+			for(CompiledFilter step : steps) {
+				if(!step.isValid(columns))
+					return false;
+			}
+			return true;
+		};
+	}
+
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	@Getter
+	private static class PlanKey {
+		private final String db;
+		private final String table;
+		private final RowSchema schema;
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class Plan {
+		private final PlanKey key;
+		private final CompiledFilter filter;
+
+		public boolean isCompiledFor(Row row) {
+			return key.getSchema() == row.getSchema() && equals(key.getTable(), row.getTable()) && equals(key.getDb(), row.getDb());
+		}
+
+		private boolean equals(String expected, String actual) {
+			return expected == null ? actual == null : expected.equals(actual);
+		}
+	}
+}
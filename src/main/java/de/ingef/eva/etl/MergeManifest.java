@@ -0,0 +1,214 @@
+package de.ingef.eva.etl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import de.ingef.eva.configuration.merge.MergeMode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Records the slices each production file was merged from.
+ * A merge only has to rebuild files whose slices changed and may append slices that were added after the recorded ones.
+ */
+@Log4j2
+public class MergeManifest {
+
+	public static final String FILE_NAME = "merge_manifest.json";
+	private static final TypeReference<TreeMap<String, MergeEntry>> ENTRIES_TYPE = new TypeReference<TreeMap<String, MergeEntry>>() {};
+
+	private final Path productionDirectory;
+	private final Map<String, MergeEntry> files;
+	private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	@Getter @Setter
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class MergeEntry {
+		private MergeMode mode;
+		/**
+		 * Size of the merged file
+		 */
+		private long byteSize;
+		/**
+		 * Merged slices in file order
+		 */
+		private List<SliceFingerprint> slices;
+	}
+
+	@Getter @Setter
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class SliceFingerprint {
+		private String fileName;
+		private long byteSize;
+		private long lastModified;
+		/**
+		 * CRC32 of the uncompressed content as recorded by the {@link ExportManifest}. Null if the slice is unknown to it.
+		 */
+		private String checksum;
+
+		/**
+		 * @param other
+		 * @return true if both describe the same content. Checksums are preferred over modification times so that re-exported but equal slices match.
+		 */
+		public boolean matches(SliceFingerprint other) {
+			if(!fileName.equals(other.fileName) || byteSize != other.byteSize)
+				return false;
+			if(checksum != null && other.checksum != null)
+				return checksum.equals(other.checksum);
+			return lastModified == other.lastModified;
+		}
+	}
+
+	/**
+	 * Outcome of comparing the current slices with the recorded ones
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class MergePlan {
+		/**
+		 * Slices that need to be merged. Empty if the file is up to date.
+		 */
+		private final List<Path> slices;
+		/**
+		 * Whether the slices are appended to the existing file
+		 */
+		private final boolean isAppend;
+
+		public boolean isUpToDate() {
+			return slices.isEmpty();
+		}
+	}
+
+	private MergeManifest(Path productionDirectory, Map<String, MergeEntry> files) {
+		this.productionDirectory = productionDirectory;
+		this.files = files;
+	}
+
+	/**
+	 * reads the manifest of the given production directory
+	 * @param productionDirectory
+	 * @return an empty manifest if none exists or if it cannot be read
+	 */
+	public static MergeManifest load(Path productionDirectory) {
+		Path manifestFile = productionDirectory.resolve(FILE_NAME);
+		MergeManifest manifest = new MergeManifest(productionDirectory, new TreeMap<>());
+		if(Files.notExists(manifestFile))
+			return manifest;
+		try {
+			manifest.files.putAll(manifest.mapper.readValue(manifestFile.toFile(), ENTRIES_TYPE));
+		} catch (IOException e) {
+			log.warn("Could not read merge manifest '{}'. All files will be merged. {}", manifestFile, e);
+		}
+		return manifest;
+	}
+
+	/**
+	 * decides which slices have to be merged into the target
+	 * @param target production file
+	 * @param mode
+	 * @param slices non-empty slices in file order
+	 * @param fingerprints fingerprints of the slices
+	 * @return all slices if the file has to be rebuilt, the added slices if they can be appended or none if the file is up to date
+	 */
+	public synchronized MergePlan plan(Path target, MergeMode mode, List<Path> slices, List<SliceFingerprint> fingerprints) {
+		MergeEntry entry = files.get(createKey(target));
+		if(entry == null || entry.getMode() != mode || entry.getSlices().isEmpty() || !hasSize(target, entry.getByteSize()))
+			return new MergePlan(slices, false);
+		List<SliceFingerprint> merged = entry.getSlices();
+		if(merged.size() > fingerprints.size())
+			return new MergePlan(slices, false);
+		for(int i = 0; i < merged.size(); i++) {
+			if(!merged.get(i).matches(fingerprints.get(i)))
+				return new MergePlan(slices, false);
+		}
+		return new MergePlan(new ArrayList<>(slices.subList(merged.size(), slices.size())), true);
+	}
+
+	/**
+	 * removes the entry of a file that is about to be rebuilt so that an interrupted merge is never taken as complete
+	 * @param target production file
+	 */
+	public synchronized void invalidate(Path target) {
+		if(files.remove(createKey(target)) == null)
+			return;
+		try {
+			save();
+		} catch (IOException e) {
+			log.error("Could not update merge manifest for '{}'. {}", target, e);
+		}
+	}
+
+	/**
+	 * adds or replaces the entry of a merged file and persists the manifest
+	 * @param target production file
+	 * @param mode
+	 * @param fingerprints all slices the file consists of
+	 */
+	public synchronized void record(Path target, MergeMode mode, List<SliceFingerprint> fingerprints) {
+		try {
+			files.put(createKey(target), new MergeEntry(mode, Files.size(target), fingerprints));
+			save();
+		} catch (IOException e) {
+			log.error("Could not update merge manifest for '{}'. {}", target, e);
+		}
+	}
+
+	/**
+	 * @param exportManifest provides the checksums of exported slices
+	 * @param slice cache file
+	 * @return fingerprint of the slice
+	 * @throws IOException
+	 */
+	public static SliceFingerprint createFingerprint(ExportManifest exportManifest, Path slice) throws IOException {
+		Optional<String> checksum = exportManifest
+				.findEntry(slice)
+				.filter(entry -> entry.getByteSize() == sizeOf(slice))
+				.map(ExportManifest.SliceEntry::getChecksum);
+		return new SliceFingerprint(
+				slice.getFileName().toString(),
+				Files.size(slice),
+				Files.getLastModifiedTime(slice).toMillis(),
+				checksum.orElse(null)
+		);
+	}
+
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static boolean hasSize(Path file, long byteSize) {
+		return Files.exists(file) && sizeOf(file) == byteSize;
+	}
+
+	private void save() throws IOException {
+		Path manifestFile = productionDirectory.resolve(FILE_NAME);
+		Path tmpFile = Paths.get(manifestFile.toString() + ".tmp");
+		mapper.writeValue(tmpFile.toFile(), files);
+		Files.move(tmpFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String createKey(Path target) {
+		return productionDirectory.toAbsolutePath().normalize().relativize(target.toAbsolutePath().normalize()).toString().replace('\\', '/');
+	}
+}
@@ -2,29 +2,47 @@ package de.ingef.eva.etl;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.configuration.merge.MergeMode;
 import de.ingef.eva.constant.OutputDirectory;
 import de.ingef.eva.constant.OutputDirectory.DirectoryType;
+import de.ingef.eva.etl.MergeManifest.MergePlan;
+import de.ingef.eva.etl.MergeManifest.SliceFingerprint;
 import de.ingef.eva.utility.Helper;
+import de.ingef.eva.utility.io.BlockGzipIndex;
+import de.ingef.eva.utility.io.BlockGzipInputStream;
 import de.ingef.eva.utility.io.IOManager;
 import de.ingef.eva.utility.progress.ProgressBar;
 import lombok.Getter;
@@ -32,13 +50,44 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
 /**
- * Merges table year slices into one file
+ * Merges table year slices into one file.
+ * Depending on the {@link MergeMode} slices are merged line by line, as decompressed bytes or as concatenated gzip members.
+ * Slices of a dataset are converted concurrently into temporary parts which are appended in year order.
  * @author Martin.Wettig
  *
  */
 @Log4j2
 public class Merger {
 	
+	private static final int COPY_BUFFER_SIZE = 1 << 16;
+	/**
+	 * Extension of the temporary files that hold converted slices until they are appended
+	 */
+	private static final String PART_FILE_EXTENSION = ".part";
+	
+	/**
+	 * Decompresses members of block gzip slices ahead of the merge threads
+	 */
+	private ExecutorService decompressors;
+	private int readAhead;
+	/**
+	 * Convert the slices of a dataset concurrently
+	 */
+	private ExecutorService sliceReaders;
+	/**
+	 * Number of slices of a dataset that are converted ahead of the appended one
+	 */
+	private int sliceReadAhead;
+	/**
+	 * Provides the checksums of the slices
+	 */
+	private ExportManifest exportManifest;
+	/**
+	 * Null if every file is merged from scratch
+	 */
+	private MergeManifest mergeManifest;
+	private MergeMode mode;
+	
 	private static class DatasetLeafDirectory implements FileVisitor<Path> {
 		
 		@Getter
@@ -98,12 +147,21 @@ public class Merger {
 	public void run(Configuration config, IOManager ioManager) {		
 		try {
 			ExecutorService threadPool = Helper.createThreadPool(config.getThreadCount(), true);
+			decompressors = Helper.createThreadPool(config.getThreadCount(), true);
+			readAhead = config.getThreadCount() * 2;
+			sliceReaders = Helper.createThreadPool(config.getThreadCount(), true);
+			sliceReadAhead = Math.max(1, config.getThreadCount());
+			mode = config.getMerge().getMode();
+			exportManifest = ExportManifest.load(ioManager.getDirectory(DirectoryType.CACHE));
+			mergeManifest = config.getMerge().isIncremental() ? MergeManifest.load(ioManager.getDirectory(DirectoryType.PRODUCTION)) : null;
 			List<Path> datasetLeaves = readDatasetDirectories(ioManager.getDirectory(DirectoryType.CACHE));
 			List<Dataset> datasets = findDatasets(datasetLeaves, createSliceSelectionLookup(config));
 			ProgressBar progress = new ProgressBar(datasets.size());
 			createMergeTasks(ioManager, datasets, threadPool, progress);
 			threadPool.shutdown();
 			threadPool.awaitTermination(3, TimeUnit.DAYS);
+			sliceReaders.shutdown();
+			decompressors.shutdown();
 		} catch(IOException e) {
 			log.error("Could not parse datasets. {}", e);
 		} catch (InterruptedException e) {
@@ -145,40 +203,20 @@ public class Merger {
 			}
 			Path directory = ioManager.createSubdirectories(DirectoryType.PRODUCTION, ds.getDb(), ds.getDatasetName());
 			CompletableFuture.supplyAsync(() -> {
-					BufferedWriter writer = null;
 					try {
-						writer = Files.newBufferedWriter(directory.resolve(ds.getFileName() + OutputDirectory.OUTPUT_FILE_EXTENSION), OutputDirectory.DATA_CHARSET);
-						boolean wasHeaderWritten = false;
-						for(Path slice : ds.getFiles()) {
-							if(sliceIsEmpty(slice)) {
-								log.warn("Skipping '{}' from '{}' because file is empty.", slice.getFileName().toString(), ds.getDatasetName());
-								continue;
-							}
-							BufferedReader reader = createSliceReader(slice);
-							//remove header if it was already written
-							if(wasHeaderWritten) {
-								reader.readLine();
-							} else {
-								writer.write(reader.readLine());
-								writer.write("\n");
-								wasHeaderWritten = true;
-							}
-							String line = null;
-							while( (line = reader.readLine()) != null) {
-								writer.write(line);
-								writer.write("\n");
-							}
-							reader.close();
+						switch(mode) {
+							case GZIP:
+								appendSlices(ds, directory.resolve(ds.getFileName() + OutputDirectory.COMPRESSED_OUTPUT_FILE_EXTENSION), this::compressSlice);
+								break;
+							case STREAM:
+								appendSlices(ds, directory.resolve(ds.getFileName() + OutputDirectory.OUTPUT_FILE_EXTENSION), this::decompressSlice);
+								break;
+							default:
+								appendSlices(ds, directory.resolve(ds.getFileName() + OutputDirectory.OUTPUT_FILE_EXTENSION), this::splitSliceLines);
 						}
 					} catch (IOException e) {
 						throw new RuntimeException(e);
 					} finally {
-						try {
-							if(writer != null)
-								writer.close();
-						} catch (IOException e) {
-							log.error("Could not close merge output. {}", e);
-						}
 						progressBar.increase();
 					}
 					return null;
@@ -191,9 +229,228 @@ public class Merger {
 		}
 	}
 
-	private BufferedReader createSliceReader(Path slice) throws IOException {
-		GZIPInputStream zippedInput = new GZIPInputStream(Files.newInputStream(slice));
-		return new BufferedReader(new InputStreamReader(zippedInput, OutputDirectory.DATA_CHARSET));
+	/**
+	 * Converts a slice into the part of the merged file
+	 */
+	@FunctionalInterface
+	private interface SliceConverter {
+		/**
+		 * @param slice cache file
+		 * @param skipHeader whether the header is omitted
+		 * @param partFile temporary file that may receive the converted content
+		 * @return file range that is appended to the merged file
+		 * @throws IOException
+		 */
+		SlicePart convert(Path slice, boolean skipHeader, Path partFile) throws IOException;
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class SlicePart {
+		private final Path file;
+		private final long offset;
+		private final boolean isTemporary;
+	}
+
+	/**
+	 * converts the slices concurrently by the slice readers and appends the parts to the target in slice order.
+	 * At most {@link #sliceReadAhead} parts of a dataset exist at the same time.
+	 * With a merge manifest unchanged files are skipped and added slices are appended to the existing file.
+	 * @param ds
+	 * @param target merged file
+	 * @param converter
+	 * @throws IOException
+	 */
+	private void appendSlices(Dataset ds, Path target, SliceConverter converter) throws IOException {
+		List<Path> slices = new ArrayList<>(ds.getFiles().size());
+		for(Path slice : ds.getFiles()) {
+			if(sliceIsEmpty(slice))
+				log.warn("Skipping '{}' from '{}' because file is empty.", slice.getFileName().toString(), ds.getDatasetName());
+			else
+				slices.add(slice);
+		}
+		List<SliceFingerprint> fingerprints = new ArrayList<>(slices.size());
+		for(Path slice : slices)
+			fingerprints.add(MergeManifest.createFingerprint(exportManifest, slice));
+		MergePlan plan = mergeManifest == null ? new MergePlan(slices, false) : mergeManifest.plan(target, mode, slices, fingerprints);
+		if(plan.isUpToDate()) {
+			log.info("Skipping '{}' from '{}' because its slices are unchanged.", ds.getFileName(), ds.getDatasetName());
+			return;
+		}
+		if(plan.isAppend())
+			log.info("Appending {} new slices to '{}' from '{}'.", plan.getSlices().size(), ds.getFileName(), ds.getDatasetName());
+		else if(mergeManifest != null)
+			mergeManifest.invalidate(target);
+		List<Path> mergedSlices = plan.getSlices();
+		Deque<CompletableFuture<SlicePart>> pendingParts = new ArrayDeque<>();
+		int nextSlice = 0;
+		OpenOption[] openOptions = plan.isAppend()
+				? new OpenOption[] { StandardOpenOption.WRITE, StandardOpenOption.APPEND }
+				: new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE };
+		try(FileChannel out = FileChannel.open(target, openOptions)) {
+			while(nextSlice < mergedSlices.size() || !pendingParts.isEmpty()) {
+				while(pendingParts.size() < sliceReadAhead && nextSlice < mergedSlices.size()) {
+					Path slice = mergedSlices.get(nextSlice);
+					//only the first slice of a file contributes the header
+					boolean skipHeader = plan.isAppend() || nextSlice > 0;
+					Path partFile = target.resolveSibling(target.getFileName() + "." + nextSlice + PART_FILE_EXTENSION);
+					pendingParts.add(CompletableFuture.supplyAsync(() -> {
+						try {
+							return converter.convert(slice, skipHeader, partFile);
+						} catch (IOException e) {
+							throw new CompletionException(e);
+						}
+					}, sliceReaders));
+					nextSlice++;
+				}
+				SlicePart part = awaitPart(pendingParts.poll());
+				try {
+					transfer(part.getFile(), part.getOffset(), out);
+				} finally {
+					if(part.isTemporary())
+						Files.deleteIfExists(part.getFile());
+				}
+			}
+		} finally {
+			discardParts(pendingParts);
+		}
+		if(mergeManifest != null)
+			mergeManifest.record(target, mode, fingerprints);
+	}
+
+	private SlicePart awaitPart(CompletableFuture<SlicePart> part) throws IOException {
+		try {
+			return part.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * removes the temporary files of parts that were not appended because the merge failed
+	 * @param pendingParts
+	 */
+	private void discardParts(Deque<CompletableFuture<SlicePart>> pendingParts) {
+		for(CompletableFuture<SlicePart> pendingPart : pendingParts) {
+			try {
+				SlicePart part = pendingPart.join();
+				if(part.isTemporary())
+					Files.deleteIfExists(part.getFile());
+			} catch (CompletionException | IOException e) {
+				log.error("Could not remove part file. {}", e);
+			}
+		}
+	}
+
+	/**
+	 * decompresses the slice and rewrites it line by line with linux line endings
+	 */
+	private SlicePart splitSliceLines(Path slice, boolean skipHeader, Path partFile) throws IOException {
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(openSliceContent(slice, skipHeader), OutputDirectory.DATA_CHARSET));
+			BufferedWriter writer = Files.newBufferedWriter(partFile, OutputDirectory.DATA_CHARSET)) {
+			String line = null;
+			while( (line = reader.readLine()) != null) {
+				writer.write(line);
+				writer.write("\n");
+			}
+		}
+		return new SlicePart(partFile, 0, true);
+	}
+
+	/**
+	 * copies the decompressed bytes of the slice. Headers that are stored in a member of their own are not decompressed at all.
+	 */
+	private SlicePart decompressSlice(Path slice, boolean skipHeader, Path partFile) throws IOException {
+		try(InputStream in = openSliceContent(slice, skipHeader); OutputStream out = Files.newOutputStream(partFile)) {
+			copy(in, out);
+		}
+		return new SlicePart(partFile, 0, true);
+	}
+
+	/**
+	 * uses the compressed slice as it is. Data members of block gzip slices are used without their header member.
+	 * Slices whose header is not a member of its own are decompressed and the data is compressed into a new member.
+	 */
+	private SlicePart compressSlice(Path slice, boolean skipHeader, Path partFile) throws IOException {
+		if(!skipHeader)
+			return new SlicePart(slice, 0, false);
+		Optional<BlockGzipIndex> index = BlockGzipIndex.read(slice);
+		if(index.isPresent() && hasHeaderMember(slice, index.get()))
+			return new SlicePart(slice, index.get().getCompressedOffsets()[1], false);
+		try(InputStream in = openSliceContent(slice, true); OutputStream out = new GZIPOutputStream(Files.newOutputStream(partFile), COPY_BUFFER_SIZE)) {
+			copy(in, out);
+		}
+		return new SlicePart(partFile, 0, true);
+	}
+
+	private void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[COPY_BUFFER_SIZE];
+		int count;
+		while((count = in.read(buffer)) > 0)
+			out.write(buffer, 0, count);
+	}
+
+	private void transfer(Path slice, long position, FileChannel out) throws IOException {
+		try(FileChannel in = FileChannel.open(slice, StandardOpenOption.READ)) {
+			long size = in.size();
+			while(position < size)
+				position += in.transferTo(position, size - position, out);
+		}
+	}
+
+	/**
+	 * opens the decompressed content of the slice
+	 * @param slice
+	 * @param skipHeader whether the first line is omitted
+	 * @return
+	 * @throws IOException
+	 */
+	private InputStream openSliceContent(Path slice, boolean skipHeader) throws IOException {
+		Optional<BlockGzipIndex> index = BlockGzipIndex.read(slice);
+		if(index.isPresent() && skipHeader && hasHeaderMember(slice, index.get()))
+			return new BlockGzipInputStream(slice, index.get(), 1, decompressors, readAhead);
+		InputStream in = index.isPresent()
+				? new BlockGzipInputStream(slice, index.get(), decompressors, readAhead)
+				: new GZIPInputStream(Files.newInputStream(slice), COPY_BUFFER_SIZE);
+		if(skipHeader) {
+			int b;
+			do {
+				b = in.read();
+			} while(b >= 0 && b != '\n');
+		}
+		return in;
+	}
+
+	/**
+	 * checks whether the first member of the slice holds exactly the header line
+	 */
+	private boolean hasHeaderMember(Path slice, BlockGzipIndex index) throws IOException {
+		if(index.getBlockCount() < 2)
+			return false;
+		ByteBuffer member = ByteBuffer.allocate((int) index.getCompressedSize(0));
+		try(FileChannel in = FileChannel.open(slice, StandardOpenOption.READ)) {
+			while(member.hasRemaining()) {
+				if(in.read(member, member.position()) < 0)
+					return false;
+			}
+		}
+		byte[] header = new byte[index.getUncompressedSize(0)];
+		try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(member.array()))) {
+			int read = 0;
+			while(read < header.length) {
+				int count = in.read(header, read, header.length - read);
+				if(count < 0)
+					return false;
+				read += count;
+			}
+		}
+		for(int i = 0; i < header.length; i++) {
+			if(header[i] == '\n')
+				return i == header.length - 1;
+		}
+		return false;
 	}
 
 	private boolean sliceIsEmpty(Path slice) throws IOException {
@@ -251,6 +508,8 @@ public class Merger {
 				commonName2dataset.put(commonName, ds);
 			}
 		}
+		//slice names start with the year followed by the part, e.g. 'table.2015.q1', so that sorted files recombine in order
+		commonName2dataset.values().forEach(ds -> ds.getFiles().sort(Comparator.comparing(file -> file.getFileName().toString())));
 		return new ArrayList<>(commonName2dataset.values());
 	}
 
@@ -0,0 +1,145 @@
+package de.ingef.eva.etl;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import de.ingef.eva.data.DateRowElement;
+import de.ingef.eva.data.DecimalRowElement;
+import de.ingef.eva.data.IntRowElement;
+import de.ingef.eva.data.LongRowElement;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.error.PartialSliceException;
+import de.ingef.eva.utility.io.CsvValueSanitizer;
+
+/**
+ * Converts the current result set row into a {@link Row}.
+ * Columns are read with the getter matching their jdbc type so that numbers and dates are kept as primitives
+ * and are only formatted when written.
+ */
+class ResultSetRowConverter implements Function<ResultSet, Row> {
+
+	@FunctionalInterface
+	private interface ColumnReader {
+		RowElement read(ResultSet result, int columnIndex) throws SQLException;
+	}
+
+	private ResultSet source;
+	private RowSchema schema;
+	private ColumnReader[] readers;
+	//removes semicolons and quotation marks from values
+	private final CsvValueSanitizer sanitizer = new CsvValueSanitizer();
+
+	@Override
+	public Row apply(ResultSet result) {
+		try {
+			if(result != source)
+				readMetaData(result);
+			List<RowElement> columns = new ArrayList<>(readers.length);
+			for(int columnIndex = 1; columnIndex <= readers.length; columnIndex++) {
+				//perform null checks on raw data from database
+				//otherwise threads stall and program does not terminate
+				columns.add(readers[columnIndex - 1].read(result, columnIndex));
+			}
+			Row row = new Row();
+			row.setColumns(columns);
+			row.setSchema(schema);
+			return row;
+		} catch (SQLException e) {
+			throw new PartialSliceException("Could not convert result set to row.", e);
+		}
+	}
+
+	private void readMetaData(ResultSet result) throws SQLException {
+		ResultSetMetaData metaData = result.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		List<String> columnNames = new ArrayList<>(columnCount);
+		readers = new ColumnReader[columnCount];
+		for(int columnIndex = 1; columnIndex <= columnCount; columnIndex++) {
+			columnNames.add(metaData.getColumnLabel(columnIndex).toLowerCase());
+			readers[columnIndex - 1] = createReader(metaData, columnIndex);
+		}
+		schema = RowSchema.of(columnNames);
+		source = result;
+	}
+
+	/**
+	 * selects the getter for the column based on its jdbc type
+	 * @param metaData
+	 * @param columnIndex
+	 * @return
+	 * @throws SQLException
+	 */
+	private ColumnReader createReader(ResultSetMetaData metaData, int columnIndex) throws SQLException {
+		switch(metaData.getColumnType(columnIndex)) {
+		case Types.TINYINT:
+			return createIntReader(TeradataColumnType.BYTEINT);
+		case Types.SMALLINT:
+			return createIntReader(TeradataColumnType.SMALLINT);
+		case Types.INTEGER:
+			return createIntReader(TeradataColumnType.INTEGER);
+		case Types.BIGINT:
+			return createLongReader();
+		case Types.DATE:
+			return createDateReader();
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return createDecimalReader();
+		default:
+			return createStringReader(TeradataColumnType.fromTypeName(metaData.getColumnTypeName(columnIndex)));
+		}
+	}
+
+	private ColumnReader createIntReader(TeradataColumnType type) {
+		RowElement empty = new SimpleRowElement("", type);
+		return (result, columnIndex) -> {
+			int value = result.getInt(columnIndex);
+			return result.wasNull() ? empty : new IntRowElement(value, type);
+		};
+	}
+
+	private ColumnReader createLongReader() {
+		RowElement empty = new SimpleRowElement("", TeradataColumnType.BIGINT);
+		return (result, columnIndex) -> {
+			long value = result.getLong(columnIndex);
+			return result.wasNull() ? empty : new LongRowElement(value, TeradataColumnType.BIGINT);
+		};
+	}
+
+	private ColumnReader createDateReader() {
+		RowElement empty = new SimpleRowElement("", TeradataColumnType.DATE);
+		return (result, columnIndex) -> {
+			Date value = result.getDate(columnIndex);
+			return value == null ? empty : new DateRowElement((int) value.toLocalDate().toEpochDay());
+		};
+	}
+
+	private ColumnReader createDecimalReader() {
+		RowElement empty = new SimpleRowElement("", TeradataColumnType.DECIMAL);
+		return (result, columnIndex) -> {
+			BigDecimal value = result.getBigDecimal(columnIndex);
+			if(value == null)
+				return empty;
+			//values exceeding a long keep their text representation
+			if(value.unscaledValue().bitLength() < Long.SIZE)
+				return new DecimalRowElement(value.unscaledValue().longValue(), value.scale());
+			return new SimpleRowElement(value.toPlainString(), TeradataColumnType.DECIMAL);
+		};
+	}
+
+	private ColumnReader createStringReader(TeradataColumnType type) {
+		RowElement empty = new SimpleRowElement("", type);
+		return (result, columnIndex) -> {
+			String value = result.getString(columnIndex);
+			return value == null ? empty : new SimpleRowElement(sanitizer.clean(value), type);
+		};
+	}
+}
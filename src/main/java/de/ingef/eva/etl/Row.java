@@ -19,5 +19,20 @@ public class Row {
 	private String db;
 	private String table;
 	private List<RowElement> columns;
-	private Map<String,Integer> columnName2Index;
+	/**
+	 * Column layout shared with all rows of the same shape
+	 */
+	private RowSchema schema = RowSchema.EMPTY;
+
+	public Row(String db, String table, List<RowElement> columns, Map<String,Integer> columnName2Index) {
+		this(db, table, columns, RowSchema.of(columnName2Index));
+	}
+
+	public Map<String,Integer> getColumnName2Index() {
+		return schema.getColumnName2Index();
+	}
+
+	public void setColumnName2Index(Map<String,Integer> columnName2Index) {
+		schema = RowSchema.of(columnName2Index);
+	}
 }
@@ -0,0 +1,44 @@
+package de.ingef.eva.etl;
+
+/**
+ * Distributes the rows of a query onto the files that are written from it
+ */
+public interface RowRouter {
+
+	/**
+	 * Writes all rows into a single file
+	 */
+	public static final RowRouter SINGLE_FILE = new RowRouter() {
+		@Override
+		public int getRouteCount() {
+			return 1;
+		}
+
+		@Override
+		public long route(Row row) {
+			return 1L;
+		}
+
+		@Override
+		public Row strip(Row row) {
+			return row;
+		}
+	};
+
+	/**
+	 * @return number of files. At most 64 files are supported.
+	 */
+	public int getRouteCount();
+
+	/**
+	 * @param row fetched row
+	 * @return bit i is set if the row is written into file i
+	 */
+	public long route(Row row);
+
+	/**
+	 * @param row fetched row
+	 * @return row without the columns that are only used for routing
+	 */
+	public Row strip(Row row);
+}
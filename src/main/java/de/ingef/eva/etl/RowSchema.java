@@ -0,0 +1,139 @@
+package de.ingef.eva.etl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.Getter;
+
+/**
+ * Immutable column layout that is shared by all rows of a query.
+ * Instances are interned, i.e. equal column lists resolve to the same object.
+ * Layouts derived by appending or prepending columns are cached in the originating schema
+ * so that transformers do not rebuild column index lookups for every row.
+ */
+public final class RowSchema {
+
+	private static final ConcurrentMap<List<String>, RowSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+	public static final RowSchema EMPTY = of(Collections.emptyList());
+
+	/**
+	 * Column names ordered by their position in the row
+	 */
+	@Getter
+	private final List<String> columnNames;
+	/**
+	 * Column name to zero-based position lookup
+	 */
+	@Getter
+	private final Map<String, Integer> columnName2Index;
+
+	private final ConcurrentMap<String, RowSchema> appendedColumn = new ConcurrentHashMap<>();
+	private final ConcurrentMap<List<String>, RowSchema> appendedColumns = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, RowSchema> prependedColumn = new ConcurrentHashMap<>();
+
+	private RowSchema(List<String> columnNames) {
+		this.columnNames = columnNames;
+		Map<String, Integer> indices = new HashMap<>(columnNames.size());
+		for(int i = 0; i < columnNames.size(); i++) {
+			indices.put(columnNames.get(i), i);
+		}
+		columnName2Index = Collections.unmodifiableMap(indices);
+	}
+
+	/**
+	 * finds the interned schema for the given column names
+	 * @param columnNames names ordered by column position
+	 * @return shared schema instance
+	 */
+	public static RowSchema of(List<String> columnNames) {
+		RowSchema schema = SCHEMAS.get(columnNames);
+		if(schema != null)
+			return schema;
+		List<String> names = Collections.unmodifiableList(new ArrayList<>(columnNames));
+		return SCHEMAS.computeIfAbsent(names, RowSchema::new);
+	}
+
+	/**
+	 * creates a schema from a column name to index lookup
+	 * @param columnName2Index zero-based column indices
+	 * @return shared schema instance
+	 */
+	public static RowSchema of(Map<String, Integer> columnName2Index) {
+		int size = columnName2Index.values().stream().mapToInt(index -> index + 1).max().orElse(0);
+		String[] names = new String[size];
+		columnName2Index.forEach((name, index) -> names[index] = name);
+		return of(Arrays.asList(names));
+	}
+
+	/**
+	 * @param columnName
+	 * @return zero-based column index or -1 if the column does not exist
+	 */
+	public int indexOf(String columnName) {
+		Integer index = columnName2Index.get(columnName);
+		return index == null ? -1 : index;
+	}
+
+	public boolean hasColumn(String columnName) {
+		return columnName2Index.containsKey(columnName);
+	}
+
+	public int size() {
+		return columnNames.size();
+	}
+
+	/**
+	 * @param columnName name of the new last column
+	 * @return schema with the given column added after all existing columns
+	 */
+	public RowSchema append(String columnName) {
+		RowSchema schema = appendedColumn.get(columnName);
+		if(schema != null)
+			return schema;
+		return appendedColumn.computeIfAbsent(columnName, name -> append(Collections.singletonList(name)));
+	}
+
+	/**
+	 * @param newColumnNames names of the new columns in their order
+	 * @return schema with the given columns added after all existing columns
+	 */
+	public RowSchema append(List<String> newColumnNames) {
+		RowSchema schema = appendedColumns.get(newColumnNames);
+		if(schema != null)
+			return schema;
+		return appendedColumns.computeIfAbsent(new ArrayList<>(newColumnNames), names -> {
+			List<String> extended = new ArrayList<>(columnNames.size() + names.size());
+			extended.addAll(columnNames);
+			extended.addAll(names);
+			return of(extended);
+		});
+	}
+
+	/**
+	 * @param columnName name of the new first column
+	 * @return schema with the given column inserted before all existing columns
+	 */
+	public RowSchema prepend(String columnName) {
+		RowSchema schema = prependedColumn.get(columnName);
+		if(schema != null)
+			return schema;
+		return prependedColumn.computeIfAbsent(columnName, name -> {
+			List<String> extended = new ArrayList<>(columnNames.size() + 1);
+			extended.add(name);
+			extended.addAll(columnNames);
+			return of(extended);
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "RowSchema" + columnNames;
+	}
+}
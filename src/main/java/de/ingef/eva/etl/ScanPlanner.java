@@ -0,0 +1,91 @@
+package de.ingef.eva.etl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.ingef.eva.query.Query;
+import de.ingef.eva.query.creation.FanOutQuery;
+import de.ingef.eva.query.creation.SimpleQuery;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Merges export jobs that read the same table, slice and columns and only differ in their row conditions.
+ * The merged job fetches the rows once and writes them into the slices of the original jobs.
+ */
+@Log4j2
+public class ScanPlanner {
+
+	/**
+	 * Maximum number of jobs merged into one query. Limited by the routes a {@link RowRouter} supports.
+	 */
+	private static final int MAX_ROUTES = Long.SIZE;
+
+	/**
+	 * @param jobs jobs with their expected duration
+	 * @return merged and unchanged jobs. Merged jobs are expected to take as long as their longest route.
+	 */
+	public List<ExportJob> merge(List<ExportJob> jobs) {
+		Map<String, List<ExportJob>> jobsPerScan = new LinkedHashMap<>();
+		List<ExportJob> planned = new ArrayList<>(jobs.size());
+		for(ExportJob job : jobs) {
+			String scanKey = createScanKey(job.getQuery());
+			if(scanKey == null)
+				planned.add(job);
+			else
+				jobsPerScan.computeIfAbsent(scanKey, key -> new ArrayList<>()).add(job);
+		}
+		int mergedJobs = 0;
+		int fanOutJobs = 0;
+		for(List<ExportJob> scanJobs : jobsPerScan.values()) {
+			for(int from = 0; from < scanJobs.size(); from += MAX_ROUTES) {
+				List<ExportJob> routes = scanJobs.subList(from, Math.min(scanJobs.size(), from + MAX_ROUTES));
+				if(routes.size() == 1 || hasSharedSlice(routes)) {
+					planned.addAll(routes);
+					continue;
+				}
+				planned.add(createFanOutJob(routes));
+				mergedJobs += routes.size();
+				fanOutJobs++;
+			}
+		}
+		log.info("Merged {} of {} export queries into {} shared table scans.", mergedJobs, jobs.size(), fanOutJobs);
+		return planned;
+	}
+
+	private String createScanKey(Query query) {
+		if(!(query instanceof SimpleQuery))
+			return null;
+		return ((SimpleQuery) query).createScanKey();
+	}
+
+	/**
+	 * @return true if two jobs write the same file
+	 */
+	private boolean hasSharedSlice(List<ExportJob> routes) {
+		Set<Object> sliceFiles = new HashSet<>();
+		for(ExportJob route : routes) {
+			if(!sliceFiles.add(route.getSliceFile()))
+				return true;
+		}
+		return false;
+	}
+
+	private ExportJob createFanOutJob(List<ExportJob> routes) {
+		List<SimpleQuery> queries = new ArrayList<>(routes.size());
+		long expectedMillis = 0;
+		boolean isEstimated = false;
+		for(ExportJob route : routes) {
+			queries.add((SimpleQuery) route.getQuery());
+			expectedMillis = Math.max(expectedMillis, route.getExpectedMillis());
+			isEstimated |= route.isEstimated();
+		}
+		ExportJob job = new ExportJob(FanOutQuery.of(queries), new ArrayList<>(routes));
+		job.setExpectedMillis(expectedMillis);
+		job.setEstimated(isEstimated);
+		return job;
+	}
+}
@@ -0,0 +1,96 @@
+package de.ingef.eva.etl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import de.ingef.eva.etl.ExportManifest.SliceEntry;
+
+/**
+ * Predicts how long the export of a slice takes.
+ * Slices that were exported before are expected to take as long as last time.
+ * Other slices are estimated from the exported slices of the same table, from configured table sizes
+ * or from the average of all known slices in this order.
+ */
+public class SliceCostEstimator {
+
+	/**
+	 * Throughput that is assumed as long as no export recorded its duration
+	 */
+	private static final double DEFAULT_MILLIS_PER_ROW = 0.01;
+	/**
+	 * Duration of slices if nothing is known about any slice
+	 */
+	private static final long DEFAULT_MILLIS = 60_000;
+
+	private final ExportManifest manifest;
+	private final Map<String, Long> tableRowEstimates = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * @param manifest slices of previous exports
+	 * @param tableRowEstimates expected number of rows per table name
+	 */
+	public SliceCostEstimator(ExportManifest manifest, Map<String, Long> tableRowEstimates) {
+		this.manifest = manifest;
+		if(tableRowEstimates != null)
+			this.tableRowEstimates.putAll(tableRowEstimates);
+	}
+
+	/**
+	 * sets the expected duration of the given jobs
+	 * @param jobs
+	 */
+	public void estimate(List<ExportJob> jobs) {
+		Map<ExportJob, SliceEntry> history = new HashMap<>();
+		for(ExportJob job : jobs) {
+			Optional<SliceEntry> entry = manifest.findEntry(job.getSliceFile());
+			if(entry.isPresent())
+				history.put(job, entry.get());
+		}
+		double millisPerRow = calculateMillisPerRow(history.values());
+		Map<String, long[]> measuredPerTable = new HashMap<>();
+		Map<String, Integer> slicesPerTable = new HashMap<>();
+		long measuredTotal = 0;
+		for(ExportJob job : jobs) {
+			slicesPerTable.merge(job.getTableKey(), 1, Integer::sum);
+			SliceEntry entry = history.get(job);
+			if(entry == null)
+				continue;
+			long millis = entry.getDurationMillis() > 0 ? entry.getDurationMillis() : (long) (entry.getRowCount() * millisPerRow);
+			job.setExpectedMillis(millis);
+			job.setEstimated(false);
+			long[] sumAndCount = measuredPerTable.computeIfAbsent(job.getTableKey(), key -> new long[2]);
+			sumAndCount[0] += millis;
+			sumAndCount[1]++;
+			measuredTotal += millis;
+		}
+		long averageMillis = history.isEmpty() ? DEFAULT_MILLIS : measuredTotal / history.size();
+		for(ExportJob job : jobs) {
+			if(history.containsKey(job))
+				continue;
+			job.setEstimated(true);
+			long[] sumAndCount = measuredPerTable.get(job.getTableKey());
+			Long tableRows = tableRowEstimates.get(job.getQuery().getTableName());
+			if(sumAndCount != null)
+				job.setExpectedMillis(sumAndCount[0] / sumAndCount[1]);
+			else if(tableRows != null)
+				job.setExpectedMillis((long) (tableRows * millisPerRow / slicesPerTable.get(job.getTableKey())));
+			else
+				job.setExpectedMillis(averageMillis);
+		}
+	}
+
+	private double calculateMillisPerRow(Iterable<SliceEntry> entries) {
+		long rows = 0;
+		long millis = 0;
+		for(SliceEntry entry : entries) {
+			if(entry.getDurationMillis() <= 0 || entry.getRowCount() <= 0)
+				continue;
+			rows += entry.getRowCount();
+			millis += entry.getDurationMillis();
+		}
+		return rows == 0 ? DEFAULT_MILLIS_PER_ROW : (double) millis / rows;
+	}
+}
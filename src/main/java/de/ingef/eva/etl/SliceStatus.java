@@ -0,0 +1,23 @@
+package de.ingef.eva.etl;
+
+/**
+ * Outcome of a slice export
+ */
+public enum SliceStatus {
+	/**
+	 * Slice was written and published
+	 */
+	COMPLETE,
+	/**
+	 * Query returned no rows. No file is published.
+	 */
+	EMPTY,
+	/**
+	 * Rows stopped in the middle of the result on every attempt. The incomplete rows were discarded.
+	 */
+	PARTIAL,
+	/**
+	 * Query or file creation failed
+	 */
+	FAILED
+}
@@ -0,0 +1,230 @@
+package de.ingef.eva.etl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import de.ingef.eva.configuration.export.PipelineConfig;
+import de.ingef.eva.error.TaskExecutionException;
+import de.ingef.eva.tasks.WriteFileTask;
+import de.ingef.eva.utility.Helper;
+import de.ingef.eva.utility.io.CsvWriter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Decouples fetching, transforming and writing of slices.
+ * The calling thread fetches rows and groups them into batches. Batches are filtered and transformed by the transform workers
+ * while a write worker encodes and compresses the results in fetch order.
+ * Each slice buffers at most {@link PipelineConfig#getQueueCapacity()} batches so that a slow stage pauses the fetch.
+ */
+@Log4j2
+public class StagedExport {
+
+	private static final CompletableFuture<List<List<Row>>> END_OF_SLICE = CompletableFuture.completedFuture(Collections.emptyList());
+
+	private final ExecutorService transformWorkers;
+	private final ExecutorService writeWorkers;
+	private final ExecutorService compressWorkers;
+	private final int compressThreadCount;
+	private final int batchSize;
+	private final int queueCapacity;
+
+	public StagedExport(PipelineConfig config) {
+		transformWorkers = Helper.createThreadPool(config.getTransformThreadCount(), true);
+		writeWorkers = Helper.createThreadPool(config.getWriteThreadCount(), true);
+		compressThreadCount = Math.max(1, config.getCompressThreadCount());
+		compressWorkers = config.isBlockCompression() ? Helper.createThreadPool(compressThreadCount, true) : null;
+		batchSize = config.getBatchSize();
+		queueCapacity = config.getQueueCapacity();
+	}
+
+	/**
+	 * creates the writer of a cache file. With block compression enabled the file is compressed by the shared compression workers.
+	 * @param file cache file
+	 * @return writer instance
+	 * @throws IOException
+	 */
+	public CsvWriter createWriter(Path file) throws IOException {
+		if(compressWorkers == null)
+			return CsvWriter.createGzipWriter(file);
+		//keep every compression thread busy while the next blocks are encoded
+		return CsvWriter.createBlockGzipWriter(file, compressWorkers, compressThreadCount * 2);
+	}
+
+	/**
+	 * exports a single slice. Rows are consumed on the calling thread and the method returns once the slice has been written.
+	 * @param rows fetched rows
+	 * @param rowFilter
+	 * @param rowTransformer
+	 * @param writer slice output
+	 * @return true if the writer was closed properly
+	 */
+	public boolean export(Stream<Row> rows, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, CsvWriter writer) {
+		return export(rows, RowRouter.SINGLE_FILE, rowFilter, rowTransformer, Collections.singletonList(writer));
+	}
+
+	/**
+	 * exports the rows of a query into several slices. Rows are filtered and transformed once and are then written into each slice they are routed to.
+	 * All slices are written by a single write worker, so a query never waits for a second worker.
+	 * @param rows fetched rows
+	 * @param router
+	 * @param rowFilter
+	 * @param rowTransformer
+	 * @param writers slice outputs ordered by route
+	 * @return true if all writers were closed properly
+	 */
+	public boolean export(Stream<Row> rows, RowRouter router, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer, List<CsvWriter> writers) {
+		BlockingQueue<CompletableFuture<List<List<Row>>>> batches = new ArrayBlockingQueue<>(queueCapacity);
+		CompletableFuture<Boolean> written = CompletableFuture.supplyAsync(() -> write(writers, batches), writeWorkers);
+		try {
+			Iterator<Row> fetchedRows = rows.iterator();
+			List<Row> batch = new ArrayList<>(batchSize);
+			while(fetchedRows.hasNext() && !written.isDone()) {
+				batch.add(fetchedRows.next());
+				if(batch.size() == batchSize) {
+					enqueue(batches, transformBatch(batch, router, rowFilter, rowTransformer), written);
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+			if(!batch.isEmpty())
+				enqueue(batches, transformBatch(batch, router, rowFilter, rowTransformer), written);
+			enqueue(batches, END_OF_SLICE, written);
+		} catch (RuntimeException e) {
+			//release the writers which otherwise wait for the end of the slice
+			CompletableFuture<List<List<Row>>> failedBatch = new CompletableFuture<>();
+			failedBatch.completeExceptionally(e);
+			enqueue(batches, failedBatch, written);
+			//the writers must have released the files before the caller removes or recreates them
+			awaitQuietly(written);
+			throw e;
+		} finally {
+			rows.close();
+		}
+		return written.join();
+	}
+
+	private void awaitQuietly(CompletableFuture<Boolean> written) {
+		try {
+			written.join();
+		} catch (RuntimeException e) {
+			//the failure of the fetch is reported instead
+		}
+	}
+
+	/**
+	 * stops all stage workers
+	 */
+	public void shutdown() {
+		transformWorkers.shutdown();
+		writeWorkers.shutdown();
+		if(compressWorkers != null)
+			compressWorkers.shutdown();
+	}
+
+	private CompletableFuture<List<List<Row>>> transformBatch(List<Row> batch, RowRouter router, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer) {
+		return CompletableFuture.supplyAsync(() -> {
+			int routeCount = router.getRouteCount();
+			List<List<Row>> routed = new ArrayList<>(routeCount);
+			for(int i = 0; i < routeCount; i++)
+				routed.add(new ArrayList<>(routeCount == 1 ? batch.size() : 16));
+			for(Row row : batch) {
+				long routes = router.route(row);
+				if(routes == 0)
+					continue;
+				Row stripped = router.strip(row);
+				if(!rowFilter.test(stripped))
+					continue;
+				Row transformed = rowTransformer.apply(stripped);
+				for(int i = 0; i < routeCount; i++) {
+					if((routes & (1L << i)) != 0)
+						routed.get(i).add(transformed);
+				}
+			}
+			return routed;
+		}, transformWorkers);
+	}
+
+	/**
+	 * writes the batches in fetch order until the end of the slice
+	 * @param writers
+	 * @param batches
+	 * @return true if all writers were closed properly
+	 */
+	private boolean write(List<CsvWriter> writers, BlockingQueue<CompletableFuture<List<List<Row>>>> batches) {
+		try {
+			for(CompletableFuture<List<List<Row>>> batch = take(batches); batch != END_OF_SLICE; batch = take(batches)) {
+				List<List<Row>> routed = batch.join();
+				for(int i = 0; i < writers.size(); i++) {
+					CsvWriter writer = writers.get(i);
+					for(Row row : routed.get(i))
+						WriteFileTask.writeRow(writer, row);
+				}
+			}
+		} catch (IOException e) {
+			closeQuietly(writers);
+			throw new TaskExecutionException("File creation failed.", e);
+		} catch (RuntimeException e) {
+			//release the files. Their content is incomplete and is discarded by the caller.
+			closeQuietly(writers);
+			throw e;
+		}
+		boolean isClosed = true;
+		for(CsvWriter writer : writers) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log.error("Could not close writer of '{}'. {}", writer.getAttachedFile(), e);
+				isClosed = false;
+			}
+		}
+		return isClosed;
+	}
+
+	private void closeQuietly(List<CsvWriter> writers) {
+		for(CsvWriter writer : writers) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log.error("Could not close writer of '{}'. {}", writer.getAttachedFile(), e);
+			}
+		}
+	}
+
+	private CompletableFuture<List<List<Row>>> take(BlockingQueue<CompletableFuture<List<List<Row>>>> batches) {
+		try {
+			return batches.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TaskExecutionException("Interrupted while waiting for transformed rows.", e);
+		}
+	}
+
+	/**
+	 * blocks until the batch was accepted or the writer stopped
+	 * @param batches
+	 * @param batch
+	 * @param written
+	 */
+	private void enqueue(BlockingQueue<CompletableFuture<List<List<Row>>>> batches, CompletableFuture<List<List<Row>>> batch, CompletableFuture<Boolean> written) {
+		try {
+			while(!batches.offer(batch, 1, TimeUnit.SECONDS)) {
+				if(written.isDone())
+					return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TaskExecutionException("Interrupted while handing over rows to the writer.", e);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package de.ingef.eva.etl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.etl.transformers.CompiledTransformer;
+import de.ingef.eva.etl.transformers.Transformer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Applies the configured transformers to rows.
+ * For every combination of db, table and row layout the transformers are compiled once into a plan.
+ * The plan only contains transformers that change such rows and knows the final layout,
+ * so each row is written into a single value array of the final width.
+ * If a transformer cannot be compiled for a layout, its rows are transformed one transformer at a time.
+ * Instances are thread-safe.
+ */
+public class TransformerChain implements Function<Row, Row> {
+
+	private final List<Transformer> transformers;
+	private final ConcurrentMap<PlanKey, Plan> plans = new ConcurrentHashMap<>();
+	/**
+	 * Plan of the most recent row layout. Rows of a slice share their layout so that most rows do not need a lookup.
+	 */
+	private volatile Plan lastPlan;
+
+	public TransformerChain(List<Transformer> transformers) {
+		this.transformers = new ArrayList<>(transformers);
+	}
+
+	@Override
+	public Row apply(Row row) {
+		Plan plan = lastPlan;
+		if(plan == null || !plan.isCompiledFor(row)) {
+			plan = plans.computeIfAbsent(new PlanKey(row.getDb(), row.getTable(), row.getSchema()), this::compile);
+			lastPlan = plan;
+		}
+		return plan.transform(row);
+	}
+
+	/**
+	 * applies all transformers one after another
+	 */
+	private Row interpret(Row row) {
+		Row transformed = row;
+		for(Transformer t : transformers) {
+			transformed = t.transform(transformed);
+		}
+		return transformed;
+	}
+
+	private Plan compile(PlanKey key) {
+		if(key.getDb() == null || key.getTable() == null)
+			return new Plan(key, null, null, null, 0);
+		List<CompiledTransformer> steps = new ArrayList<>(transformers.size());
+		RowSchema schema = key.getSchema();
+		for(Transformer t : transformers) {
+			CompiledTransformer step = t.compile(key.getDb(), key.getTable(), schema);
+			if(step == null)
+				return new Plan(key, null, null, null, 0);
+			if(step == CompiledTransformer.SKIP)
+				continue;
+			steps.add(step);
+			schema = step.getOutputSchema();
+		}
+		//each step addresses its columns relative to the columns prepended by later steps
+		int[] offsets = new int[steps.size()];
+		int prepended = 0;
+		for(int i = steps.size() - 1; i >= 0; i--) {
+			offsets[i] = prepended;
+			prepended += steps.get(i).getPrependedColumns();
+		}
+		return new Plan(key, steps.toArray(new CompiledTransformer[steps.size()]), offsets, schema, prepended);
+	}
+
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	@Getter
+	private static class PlanKey {
+		private final String db;
+		private final String table;
+		private final RowSchema schema;
+	}
+
+	@RequiredArgsConstructor
+	private class Plan {
+		private final PlanKey key;
+		/**
+		 * Transformers that change rows. Null if rows are interpreted.
+		 */
+		private final CompiledTransformer[] steps;
+		private final int[] offsets;
+		private final RowSchema outputSchema;
+		/**
+		 * Position of the first input column in the output row
+		 */
+		private final int inputOffset;
+
+		public boolean isCompiledFor(Row row) {
+			return key.getSchema() == row.getSchema() && equals(key.getTable(), row.getTable()) && equals(key.getDb(), row.getDb());
+		}
+
+		public Row transform(Row row) {
+			if(steps == null)
+				return interpret(row);
+			if(steps.length == 0)
+				return row;
+			List<RowElement> columns = row.getColumns();
+			//rows that do not match their layout are left to the transformers
+			if(columns.size() != key.getSchema().size())
+				return interpret(row);
+			RowElement[] values = new RowElement[outputSchema.size()];
+			for(int i = 0; i < columns.size(); i++)
+				values[inputOffset + i] = columns.get(i);
+			for(int i = 0; i < steps.length; i++)
+				steps[i].apply(values, offsets[i]);
+			return new Row(row.getDb(), row.getTable(), Arrays.asList(values), outputSchema);
+		}
+
+		private boolean equals(String expected, String actual) {
+			return expected == null ? actual == null : expected.equals(actual);
+		}
+	}
+}
@@ -21,8 +21,8 @@ import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.services.ConnectionFactory;
 import de.ingef.eva.utility.SqlRunner;
-import de.ingef.eva.utility.Helper;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -46,13 +46,21 @@ public class EmployeePidsFilterStrategy extends FilterStrategy {
 	}
 
 	@Override
-	public void initialize(Configuration config) {
-		Connection conn = Helper.createConnectionWithErrorHandling(config.getUser(), config.getPassword(), config.getFullConnectionUrl());
-		List<Row> pidList = new SqlRunner().run(conn, "ADB", "AVK_ADB_PID_AKTUELL", Templates.Filter.SELECT_EMPLOYEE_PIDS, this::extractColumnValue, this::createIndexMap);
-		try {
-			conn.close();
+	public String createSqlCondition(String columnReference) {
+		return String.format(Templates.Filter.EMPLOYEE_PID_EXISTS, columnReference);
+	}
+
+	/**
+	 * reads the employee pids with a session of the given factory
+	 * @throws IllegalStateException if no session could be opened, as the pids of employees would be exported otherwise
+	 */
+	@Override
+	public void initialize(Configuration config, ConnectionFactory connectionFactory) {
+		List<Row> pidList;
+		try(Connection conn = connectionFactory.createConnection()) {
+			pidList = new SqlRunner().run(conn, "ADB", "AVK_ADB_PID_AKTUELL", Templates.Filter.SELECT_EMPLOYEE_PIDS, this::extractColumnValue, this::createIndexMap);
 		} catch (SQLException e) {
-			log.error("Could not close connection for employee filter. {}", e);
+			throw new IllegalStateException("Could not read employee pids.", e);
 		}
 		strategy = new SetFilterStrategy(
 			pidList
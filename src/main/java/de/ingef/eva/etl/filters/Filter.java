@@ -1,18 +1,28 @@
 package de.ingef.eva.etl.filters;
 
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.data.RowElement;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.services.ConnectionFactory;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
 
 /**
  * Filter base class
  */
 @Getter @Setter
 @NoArgsConstructor
+@Log4j2
 public class Filter {
 
 	/**
@@ -43,6 +53,23 @@ public class Filter {
 	 * Determines if values validated by the filter strategy are accepted and passed on in the pipeline
 	 */
 	private FilterMode mode;
+	/**
+	 * Evaluates the filter in the export query if the filter strategy supports it.
+	 * Rows are still checked after the export for tables that could not be filtered by the database.
+	 */
+	private boolean pushdown = false;
+	/**
+	 * Tables whose export queries contain the sql condition of this filter
+	 */
+	@JsonIgnore
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private final Set<String> pushedDownTables = new HashSet<>();
+	/**
+	 * Tables whose rows contain the filtered column, but at least one export query could not take the sql condition
+	 */
+	@JsonIgnore
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private final Set<String> checkedTables = new HashSet<>();
 	
 	public static final Filter NOP_FILTER = new NOPFilter();
 	
@@ -61,28 +88,122 @@ public class Filter {
 		public boolean isValid(Row row) {
 			return true;
 		}
-		
+
+		@Override
+		public CompiledFilter compile(String rowDb, String rowTable, RowSchema schema) {
+			return null;
+		}
+
+		@Override
+		public String createSqlCondition(String columnReference) {
+			return null;
+		}
 	}
-	
+
+	/**
+	 * Filter that is bound to the column position of one table layout
+	 */
+	@FunctionalInterface
+	public interface CompiledFilter {
+		/**
+		 * @param columns row values ordered as in the compiled layout
+		 * @return true if the row is passed on
+		 */
+		boolean isValid(List<RowElement> columns);
+	}
+
 	public boolean isValid(Row row) {
-		Map<String,Integer> columnIndices = row.getColumnName2Index();
 		//do not process row
 		//  if column is not present
-		//  if database is not set, empty or does not match
-		//  if table is not set, empty or does not match
+		//  if database is set and does not match
+		//  if table is set and does not match
 		//  both database and table are optional fields
-		if(!columnIndices.containsKey(column) &&
-			(database == null || database.isEmpty() || !database.equalsIgnoreCase(row.getDb())) &&
-			(table == null || table.isEmpty() || !table.equalsIgnoreCase(row.getTable()))
-		)
+		Integer columnIndex = row.getColumnName2Index().get(column);
+		if(columnIndex == null || !appliesTo(row.getDb(), row.getTable()) || isFilteredByDatabase(row.getDb(), row.getTable()))
 			return true;
-		
-		int columnIndex = columnIndices.get(column);
 		boolean isValid = filterStrategy.isValid(row.getColumns().get(columnIndex).getContent());
 		return mode == FilterMode.INCLUDE ? isValid : !isValid;
 	}
-	
-	public void initialize(Configuration config) {
-		filterStrategy.initialize(config);
+
+	/**
+	 * binds the filter to the column position of rows with the given table and layout
+	 * @param rowDb
+	 * @param rowTable
+	 * @param schema
+	 * @return null if the filter does not apply to such rows or the database already filtered them
+	 */
+	public CompiledFilter compile(String rowDb, String rowTable, RowSchema schema) {
+		int columnIndex = schema.indexOf(column);
+		if(columnIndex == -1 || !appliesTo(rowDb, rowTable) || isFilteredByDatabase(rowDb, rowTable))
+			return null;
+		FilterStrategy strategy = filterStrategy;
+		boolean acceptsValid = mode == FilterMode.INCLUDE;
+		return columns -> strategy.isValid(columns.get(columnIndex).getContent()) == acceptsValid;
+	}
+
+	/**
+	 * creates the sql condition that is fulfilled by the rows passed on by this filter
+	 * @param columnReference qualified name of the filtered column
+	 * @return null if the filter cannot be evaluated by the database
+	 */
+	public String createSqlCondition(String columnReference) {
+		String condition = filterStrategy.createSqlCondition(columnReference);
+		if(condition == null)
+			return null;
+		return mode == FilterMode.INCLUDE ? condition : "not " + condition;
+	}
+
+	/**
+	 * @param rowDb
+	 * @param rowTable
+	 * @return true if database and table are either not restricted or match
+	 */
+	public boolean appliesTo(String rowDb, String rowTable) {
+		return matches(database, rowDb) && matches(table, rowTable);
+	}
+
+	private boolean matches(String expected, String actual) {
+		return expected == null || expected.isEmpty() || expected.equalsIgnoreCase(actual);
+	}
+
+	/**
+	 * records that the export queries of the table contain the sql condition of this filter
+	 * @param rowDb
+	 * @param rowTable
+	 */
+	public void addPushedDownTable(String rowDb, String rowTable) {
+		pushedDownTables.add(createTableKey(rowDb, rowTable));
+	}
+
+	/**
+	 * records that rows of the table contain the filtered column without being filtered by the database
+	 * @param rowDb
+	 * @param rowTable
+	 */
+	public void addCheckedTable(String rowDb, String rowTable) {
+		checkedTables.add(createTableKey(rowDb, rowTable));
+	}
+
+	private boolean isFilteredByDatabase(String rowDb, String rowTable) {
+		String key = createTableKey(rowDb, rowTable);
+		return pushedDownTables.contains(key) && !checkedTables.contains(key);
+	}
+
+	private static String createTableKey(String rowDb, String rowTable) {
+		return (rowDb + "." + rowTable).toLowerCase();
+	}
+
+	/**
+	 * initializes the filter strategy unless the export queries of all tables that contain the filtered column evaluate the filter.
+	 * Call this after the queries were created.
+	 * @param config
+	 * @param connectionFactory
+	 */
+	public void initialize(Configuration config, ConnectionFactory connectionFactory) {
+		if(pushdown && !pushedDownTables.isEmpty() && checkedTables.isEmpty()) {
+			log.info("Filter '{}' is evaluated by the export queries only", name);
+			return;
+		}
+		filterStrategy.initialize(config, connectionFactory);
 	}
 }
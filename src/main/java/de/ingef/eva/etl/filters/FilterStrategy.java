@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
 import de.ingef.eva.configuration.Configuration;
 import de.ingef.eva.configuration.FilterStrategyType;
 import de.ingef.eva.configuration.export.sql.SqlNodeTypeIdResolver;
+import de.ingef.eva.services.ConnectionFactory;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
@@ -28,6 +29,17 @@ public abstract class FilterStrategy {
 	/**
 	 * initializes strategy subtypes.
 	 * This must be called before using {@code isValid}
+	 * @param config
+	 * @param connectionFactory sessions for strategies that read their values from the database
 	 */
-	public void initialize(Configuration config) {}
+	public void initialize(Configuration config, ConnectionFactory connectionFactory) {}
+
+	/**
+	 * creates a sql condition that holds for the values accepted by {@code isValid}
+	 * @param columnReference qualified column name, e.g. a.pid
+	 * @return null if the strategy cannot be evaluated by the database
+	 */
+	public String createSqlCondition(String columnReference) {
+		return null;
+	}
 }
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonTypeName;
 
 import de.ingef.eva.configuration.Configuration;
 import de.ingef.eva.configuration.FilterStrategyType;
+import de.ingef.eva.services.ConnectionFactory;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -35,7 +36,7 @@ public class RegExFilterStrategy extends FilterStrategy {
 	}
 
 	@Override
-	public void initialize(Configuration config) {
+	public void initialize(Configuration config, ConnectionFactory connectionFactory) {
 		regex = Pattern.compile(regexPattern);
 	}
 }
@@ -1,21 +1,25 @@
 package de.ingef.eva.etl.transformers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 
 /**
  * Betriebsst\u00e4ttennummer to KV id mapper
  */
 public class BsKvMapperTransformer extends Transformer {
 
+	private static final String KV_COLUMN = "kv";
+	private static final RowElement EMPTY_KV = new SimpleRowElement("", TeradataColumnType.CHARACTER);
+
 	public BsKvMapperTransformer(String db, String table) {
 		super(db, table);
 	}
@@ -29,17 +33,70 @@ public class BsKvMapperTransformer extends Transformer {
 		//only process evo tables
 		if(!row.getTable().toLowerCase().endsWith("evo"))
 			return row;
-		Map<String, Integer> columnName2Index = row.getColumnName2Index();
+		if(isPushdown() && row.getSchema().hasColumn(KV_COLUMN))
+			return row;
+		int bsNoIndex = row.getSchema().indexOf("bs_nr");
 		//if bs_nr column does not exist
-		if(!columnName2Index.containsKey("bs_nr"))
-			return appendEmptyKv(row);
-				
-		String bsNo = row.getColumns().get(columnName2Index.get("bs_nr")).getContent();
-		if(bsNo == null || bsNo.isEmpty() ||  bsNo.length() < 2)
+		if(bsNoIndex == -1)
 			return appendEmptyKv(row);
 		
-		String majorKv = mapSubKvToMajorKv(extractSubKvFromBsNo(bsNo));
-		return createTransformedRow(row, majorKv);
+		return createTransformedRow(row, mapBsNoToKv(row.getColumns().get(bsNoIndex).getContent()));
+	}
+	
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(!rowTable.toLowerCase().endsWith("evo") || isPushdown() && schema.hasColumn(KV_COLUMN))
+			return CompiledTransformer.SKIP;
+		int bsNoIndex = schema.indexOf("bs_nr");
+		int kvIndex = schema.size();
+		if(bsNoIndex == -1)
+			return CompiledTransformer.appending(schema, KV_COLUMN, (values, offset) -> values[offset + kvIndex] = EMPTY_KV);
+		return CompiledTransformer.appending(
+				schema,
+				KV_COLUMN,
+				(values, offset) -> values[offset + kvIndex] = new SimpleRowElement(mapBsNoToKv(values[offset + bsNoIndex].getContent()), TeradataColumnType.CHARACTER)
+		);
+	}
+	
+	@Override
+	public ComputedColumn pushDown(String rowDb, String rowTable, RowSchema schema, Map<String, SqlColumn> columns) {
+		if(!isPushdown())
+			return super.pushDown(rowDb, rowTable, schema, columns);
+		if(!rowTable.toLowerCase().endsWith("evo") || schema.hasColumn(KV_COLUMN))
+			return ComputedColumn.SKIP;
+		SqlColumn bsNo = columns.get("bs_nr");
+		if(bsNo == null)
+			return ComputedColumn.appended(KV_COLUMN, "''", TeradataColumnType.VARCHAR);
+		String bsNoText = bsNo.toTrimmedText();
+		if(bsNoText == null)
+			return null;
+		return ComputedColumn.appended(KV_COLUMN, createKvExpression(bsNoText), TeradataColumnType.VARCHAR);
+	}
+
+	/**
+	 * translates the mapping of the first two digits into a case expression
+	 * @param bsNo expression of the trimmed bs_nr
+	 * @return
+	 */
+	private String createKvExpression(String bsNo) {
+		Map<String, List<String>> kv2Prefixes = new TreeMap<>();
+		for(int subKv = 0; subKv < 100; subKv++) {
+			String kv = mapSubKvToMajorKv(subKv);
+			if(!kv.isEmpty())
+				kv2Prefixes.computeIfAbsent(kv, key -> new ArrayList<>()).add(String.format("'%02d'", subKv));
+		}
+		String prefix = "substr(" + bsNo + ", 1, 2)";
+		return kv2Prefixes
+				.entrySet()
+				.stream()
+				.map(entry -> "when " + prefix + " in (" + String.join(", ", entry.getValue()) + ") then '" + entry.getKey() + "'")
+				.collect(Collectors.joining(" ", "case ", " else '' end"));
+	}
+	
+	private String mapBsNoToKv(String bsNo) {
+		if(bsNo == null || bsNo.isEmpty() ||  bsNo.length() < 2)
+			return "";
+		return mapSubKvToMajorKv(extractSubKvFromBsNo(bsNo));
 	}
 
 	private int extractSubKvFromBsNo(String bsNo) {
@@ -52,8 +109,7 @@ public class BsKvMapperTransformer extends Transformer {
 	
 	private Row createTransformedRow(Row original, String kv) {
 		List<RowElement> columns = createNewColumns(original.getColumns(), kv);
-		Map<String, Integer> columnName2Index = createNewIndices(original.getColumnName2Index());
-		return new Row(original.getDb(), original.getTable(), columns, columnName2Index);
+		return new Row(original.getDb(), original.getTable(), columns, original.getSchema().append(KV_COLUMN));
 	}
 	
 	private List<RowElement> createNewColumns(List<RowElement> original, String value) {
@@ -63,13 +119,6 @@ public class BsKvMapperTransformer extends Transformer {
 		return transformed;
 	}
 	
-	private Map<String, Integer> createNewIndices(Map<String, Integer> indicies) {
-		Map<String, Integer> transformed = new HashMap<>(indicies);
-		Optional<Integer> maxIndex = transformed.values().stream().max(Integer::compare);
-		transformed.put("kv", maxIndex.get() + 1);
-		return transformed;
-	}
-	
 	private String mapSubKvToMajorKv(int subKv) {
 		switch(subKv) {
 			case 1:
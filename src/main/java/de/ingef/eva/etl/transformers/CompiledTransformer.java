@@ -0,0 +1,56 @@
+package de.ingef.eva.etl.transformers;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.etl.RowSchema;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Transformer that is bound to the rows of one table and column layout.
+ * All checks that only depend on the table and layout are done once when the transformer is compiled.
+ * Compiled transformers only prepend or append columns and may replace values in place.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CompiledTransformer {
+
+	/**
+	 * Marks transformers that do not change rows of the compiled layout
+	 */
+	public static final CompiledTransformer SKIP = new CompiledTransformer(null, 0, (values, offset) -> {});
+
+	/**
+	 * Layout of transformed rows
+	 */
+	private final RowSchema outputSchema;
+	/**
+	 * Number of columns inserted in front of the input columns
+	 */
+	private final int prependedColumns;
+	private final ValueComputation computation;
+
+	/**
+	 * computes the values of a single row
+	 * @param values row values. The column at position i of the output layout is stored at {@code offset + i}.
+	 * @param offset
+	 */
+	public void apply(RowElement[] values, int offset) {
+		computation.apply(values, offset);
+	}
+
+	/**
+	 * creates a transformer that appends a single column
+	 * @param input layout of processed rows
+	 * @param columnName name of the appended column
+	 * @param computation computes values of a row
+	 * @return compiled transformer
+	 */
+	public static CompiledTransformer appending(RowSchema input, String columnName, ValueComputation computation) {
+		return new CompiledTransformer(input.append(columnName), 0, computation);
+	}
+
+	@FunctionalInterface
+	public interface ValueComputation {
+		void apply(RowElement[] values, int offset);
+	}
+}
@@ -0,0 +1,44 @@
+package de.ingef.eva.etl.transformers;
+
+import de.ingef.eva.data.TeradataColumnType;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Column that is added to the select list of an export query instead of being computed by a transformer
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ComputedColumn {
+
+	/**
+	 * Marks transformers that do not change rows of a table and layout
+	 */
+	public static final ComputedColumn SKIP = new ComputedColumn(null, null, false);
+
+	/**
+	 * Lowercase column name
+	 */
+	private final String name;
+	private final SqlColumn value;
+	/**
+	 * True if the column is inserted in front of the other columns
+	 */
+	private final boolean isPrepended;
+
+	public static ComputedColumn appended(String name, String expression, TeradataColumnType type) {
+		return new ComputedColumn(name, new SqlColumn(expression, type), false);
+	}
+
+	public static ComputedColumn prepended(String name, String expression, TeradataColumnType type) {
+		return new ComputedColumn(name, new SqlColumn(expression, type), true);
+	}
+
+	/**
+	 * @return select list entry of the column
+	 */
+	public String render() {
+		return value.getExpression() + " as \"" + name + "\"";
+	}
+}
@@ -1,8 +1,6 @@
 package de.ingef.eva.etl.transformers;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -22,7 +20,9 @@ import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.utility.DateRange;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import de.ingef.eva.utility.Helper;
+import de.ingef.eva.utility.io.CsvReader;
 
 /**
  * Appends columns loaded from a wido file to the end of the row
@@ -34,11 +34,13 @@ public class DDDTransformer extends Transformer {
 	private final String keyColumn;
 	private final Map<String, Map<String, RowElement>> pzn2Column2Value;
 	private final List<RowElement> additionalColumnNames;
+	private final List<String> additionalColumnLabels;
 	private final Map<String, DateRange> pzn2ValidityDates;
 	private final Map<String, Map<WidoColumn, RowElement>> pzn2MetaColumns;
 	private static final String PACKAGE_COUNT_COLUMN_NAME = "Anzahl_Packungen".toLowerCase();
 	private static final String PRESCRIPTION_DATE_COLUMN_NAME = "Verordnungsdatum".toLowerCase();
 	private static final String IS_CLASSIFIED_COLUMN_NAME = "IS_CLASSIFIED";
+	private static final String CALCULATED_AMOUNT_COLUMN_NAME = "Menge_berechnet";
 	private static final DateTimeFormatter WIDO_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
 	private static final int EXPECTED_PZN_LENGTH = 8;
 	
@@ -54,6 +56,7 @@ public class DDDTransformer extends Transformer {
 		this.keyColumn = keyColumn;
 		this.pzn2Column2Value = pzn2Column2Value;
 		this.additionalColumnNames = additionalColumnNames;
+		this.additionalColumnLabels = additionalColumnNames.stream().map(RowElement::getContent).collect(Collectors.toList());
 		this.pzn2ValidityDates = pzn2ValidityDates;
 		this.pzn2MetaColumns = pznMetaColumns;
 	}
@@ -71,55 +74,96 @@ public class DDDTransformer extends Transformer {
 		int keyIndex = row.getColumnName2Index().get(keyColumn.toLowerCase());
 		String keyValue = row.getColumns().get(keyIndex).getContent();
 		List<RowElement> columns = transformColumns(row.getColumns(), keyValue);
-		Map<String, Integer> columnIndices = transformColumnIndices(row.getColumnName2Index());
+		RowSchema schema = row.getSchema().append(additionalColumnLabels);
 		DateRange validityDates = pzn2ValidityDates.get(keyValue);
-		deriveCalculatedColumns(columns, columnIndices, validityDates);
-		return new Row(row.getDb(), row.getTable(), columns, columnIndices);
+		schema = deriveCalculatedColumns(columns, schema, validityDates);
+		return new Row(row.getDb(), row.getTable(), columns, schema);
 	}
 
-	private void deriveCalculatedColumns(List<RowElement> columns, Map<String, Integer> columnIndices, DateRange validityDates) {
+	/**
+	 * calculates ddd and package amount if the package count is present
+	 * @return schema of the row including calculated columns
+	 */
+	private RowSchema deriveCalculatedColumns(List<RowElement> columns, RowSchema schema, DateRange validityDates) {
+		Map<String, Integer> columnIndices = schema.getColumnName2Index();
 		if(columnIndices.containsKey(PACKAGE_COUNT_COLUMN_NAME)) {
-			double packageCount = Double.parseDouble(columns.get(columnIndices.get(PACKAGE_COUNT_COLUMN_NAME)).getContent());
-			calculateDDD(columns, columnIndices, validityDates, packageCount);
-			calculateActualPackageSize(columns, columnIndices, validityDates, packageCount);
+			double packageCount = columns.get(columnIndices.get(PACKAGE_COUNT_COLUMN_NAME)).asDouble();
+			//a missing prescription date only fails if the validity has to be checked
+			Integer prescriptionDateIndex = columnIndices.get(PRESCRIPTION_DATE_COLUMN_NAME);
+			LocalDate prescriptionDate = validityDates == null || prescriptionDateIndex == null ? null : columns.get(prescriptionDateIndex).asDate();
+			int dddIndex = columnIndices.get(WidoColumn.DDDPK.getLabel());
+			RowElement ddd = calculateDDD(columns.get(dddIndex), validityDates, packageCount, prescriptionDate);
+			if(ddd != null)
+				columns.set(dddIndex, ddd);
+			String pzn = columns.get(columnIndices.get("pzn")).getContent();
+			columns.add(calculateActualPackageSize(pzn, validityDates, packageCount, prescriptionDate));
+			return schema.append(CALCULATED_AMOUNT_COLUMN_NAME);
 		}
+		return schema;
 	}
 
-	private void calculateDDD(List<RowElement> columns, Map<String, Integer> columnIndices, DateRange validityDates, double packageCount) {
-		int dddIndex = columnIndices.get(WidoColumn.DDDPK.getLabel());
-		RowElement dddElement = columns.get(dddIndex);
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(!canProcessRow(rowDb, rowTable))
+			return CompiledTransformer.SKIP;
+		int keyIndex = schema.indexOf(keyColumn.toLowerCase());
+		if(keyIndex == -1)
+			return CompiledTransformer.SKIP;
+		int firstNewColumn = schema.size();
+		RowSchema extended = schema.append(additionalColumnLabels);
+		int packageCountIndex = extended.indexOf(PACKAGE_COUNT_COLUMN_NAME);
+		if(packageCountIndex == -1)
+			return new CompiledTransformer(extended, 0, (values, offset) -> appendColumns(values, offset + firstNewColumn, values[offset + keyIndex].getContent()));
+		int dddIndex = extended.indexOf(WidoColumn.DDDPK.getLabel());
+		int pznIndex = extended.indexOf("pzn");
+		int prescriptionDateIndex = extended.indexOf(PRESCRIPTION_DATE_COLUMN_NAME);
+		//incomplete layouts fail in the row by row transformation
+		if(dddIndex == -1 || pznIndex == -1 || prescriptionDateIndex == -1)
+			return null;
+		int calculatedAmountIndex = extended.size();
+		return CompiledTransformer.appending(extended, CALCULATED_AMOUNT_COLUMN_NAME, (values, offset) -> {
+			String keyValue = values[offset + keyIndex].getContent();
+			appendColumns(values, offset + firstNewColumn, keyValue);
+			DateRange validityDates = pzn2ValidityDates.get(keyValue);
+			double packageCount = values[offset + packageCountIndex].asDouble();
+			LocalDate prescriptionDate = validityDates == null ? null : values[offset + prescriptionDateIndex].asDate();
+			RowElement ddd = calculateDDD(values[offset + dddIndex], validityDates, packageCount, prescriptionDate);
+			if(ddd != null)
+				values[offset + dddIndex] = ddd;
+			values[offset + calculatedAmountIndex] = calculateActualPackageSize(values[offset + pznIndex].getContent(), validityDates, packageCount, prescriptionDate);
+		});
+	}
+
+	/**
+	 * @return calculated ddd or null if the ddd is unknown
+	 */
+	private RowElement calculateDDD(RowElement dddElement, DateRange validityDates, double packageCount, LocalDate prescriptionDate) {
 		String numberString = dddElement.getContent();
-		if(!numberString.isEmpty()) {
-			int ddd = Integer.parseInt(numberString);
-			double result = ddd/1000.0 * packageCount;
-			result = ensureValidValue(result, columns, columnIndices, validityDates);
-			columns.set(dddIndex, new SimpleRowElement(Double.toString(result), dddElement.getType()));
-		}
+		if(numberString.isEmpty())
+			return null;
+		int ddd = Integer.parseInt(numberString);
+		double result = ddd/1000.0 * packageCount;
+		result = ensureValidValue(result, prescriptionDate, validityDates);
+		return new SimpleRowElement(Double.toString(result), dddElement.getType());
 	}
 	
-	private void calculateActualPackageSize(List<RowElement> columns, Map<String, Integer> columnIndices, DateRange validityDates, double packageCount) {
-		String pzn = columns.get(columnIndices.get("pzn")).getContent();
+	private RowElement calculateActualPackageSize(String pzn, DateRange validityDates, double packageCount, LocalDate prescriptionDate) {
 		if(!pzn2MetaColumns.containsKey(pzn) ||
 			!pzn2MetaColumns.get(pzn).containsKey(WidoColumn.PACK_SIZE) ||
 			pzn2MetaColumns.get(pzn).get(WidoColumn.PACK_SIZE).getContent().isEmpty()) {
-			columns.add(new SimpleRowElement("", TeradataColumnType.DECIMAL));
-			columnIndices.put("Menge_berechnet", columns.size() - 1);
-			return;
+			return new SimpleRowElement("", TeradataColumnType.DECIMAL);
 		}
 		String packSizeString = pzn2MetaColumns.get(pzn).get(WidoColumn.PACK_SIZE).getContent();
 		int packSize = Integer.parseInt(packSizeString);
 		double result = packSize/10.0 * packageCount;
-		result = ensureValidValue(result, columns, columnIndices, validityDates);
-		columns.add(new SimpleRowElement(Double.toString(result), TeradataColumnType.DECIMAL));
-		columnIndices.put("Menge_berechnet", columns.size() - 1);
+		result = ensureValidValue(result, prescriptionDate, validityDates);
+		return new SimpleRowElement(Double.toString(result), TeradataColumnType.DECIMAL);
 	}
 
-	private double ensureValidValue(double preliminaryValue, List<RowElement> columns, Map<String, Integer> columnIndices, DateRange validityDates) {
+	private double ensureValidValue(double preliminaryValue, LocalDate prescriptionDate, DateRange validityDates) {
 		//pzn without date entry are always valid
 		if(validityDates == null) return preliminaryValue;
 		
-		int prescriptionDateIndex = columnIndices.get(PRESCRIPTION_DATE_COLUMN_NAME);
-		LocalDate prescriptionDate = LocalDate.parse(columns.get(prescriptionDateIndex).getContent());
 		boolean isValidAdmissionDate = !validityDates.getStart().isEqual(LocalDate.MIN);
 		boolean isValidRetirementDate = !validityDates.getEnd().isEqual(LocalDate.MAX);
 		//drug was admitted and not retired
@@ -139,14 +183,16 @@ public class DDDTransformer extends Transformer {
 		return 0.0;
 	}
 
-	private Map<String, Integer> transformColumnIndices(Map<String, Integer> columnName2Index) {
-		Map<String, Integer> transformedIndices = new HashMap<>(columnName2Index.size() + additionalColumnNames.size());
-		columnName2Index.forEach((column,index) -> transformedIndices.put(column, index));
-		IntStream
-			.range(0, additionalColumnNames.size())
-			//first empty position is at columnName2Index.size() and is pushed forwards by adding the index
-			.forEachOrdered(i -> transformedIndices.put(additionalColumnNames.get(i).getContent(), i + columnName2Index.size()));
-		return transformedIndices;
+	/**
+	 * writes the appended columns of the given key into consecutive slots
+	 */
+	private void appendColumns(RowElement[] values, int firstSlot, String keyValue) {
+		Map<String,RowElement> column2Value = pzn2Column2Value.get(keyValue);
+		for(int i = 0; i < additionalColumnLabels.size(); i++) {
+			values[firstSlot + i] = column2Value == null
+					? new SimpleRowElement("", TeradataColumnType.CHARACTER)
+					: takeValueOrCreateEmpty(additionalColumnLabels.get(i), column2Value);
+		}
 	}
 
 	private List<RowElement> transformColumns(List<RowElement> columns, String keyValue) {
@@ -181,7 +227,7 @@ public class DDDTransformer extends Transformer {
 		HashSet<String> orderedColumnNames = new LinkedHashSet<>();
 		Set<AppendColumnConfig> metaColumns = new HashSet<>();
 		for(AppendSourceConfig source : sources) {
-			BufferedReader reader = Files.newBufferedReader(source.getFile());
+			CsvReader reader = CsvReader.createReader(source.getFile());
 			additionalColumns.add(mapKeyOntoData(source.getColumns(), reader, source.getKeyColumnIndex()));
 			reader.close();
 			extractDataColumns(orderedColumnNames, source);
@@ -341,26 +387,18 @@ public class DDDTransformer extends Transformer {
 	 * @return a map key to column values
 	 * @throws IOException
 	 */
-	private static Map<String, Map<String, RowElement>> mapKeyOntoData(List<AppendColumnConfig> columnConfig, BufferedReader reader, int keyIndex) throws IOException {
+	private static Map<String, Map<String, RowElement>> mapKeyOntoData(List<AppendColumnConfig> columnConfig, CsvReader reader, int keyIndex) throws IOException {
 		Map<String, Map<String, RowElement>> pzn2Column2Data = new HashMap<>();
-		String line = null;
-		while((line = reader.readLine()) != null) {
-			if(line.isEmpty()) continue;
-			String[] values = line.split(";", -1);
+		if(columnConfig.isEmpty())
+			return pzn2Column2Data;
+		reader.forEachRow(values -> {
+			String pzn = Helper.addPaddingZeros(values.get(keyIndex), EXPECTED_PZN_LENGTH);
+			Map<String,RowElement> column2Data = pzn2Column2Data.computeIfAbsent(pzn, key -> new HashMap<>());
 			for(AppendColumnConfig config : columnConfig) {
-				String pzn = Helper.addPaddingZeros(values[keyIndex], EXPECTED_PZN_LENGTH);
-				if(pzn2Column2Data.containsKey(pzn)) {
-					Map<String,RowElement> column2Data = pzn2Column2Data.get(pzn);
-					RowElement element = new SimpleRowElement(values[config.getIndex()], TeradataColumnType.ANY);
-					column2Data.put(config.getColumn().getLabel(), element);
-				} else {
-					Map<String,RowElement> column2Data = new HashMap<>();
-					RowElement element = new SimpleRowElement(values[config.getIndex()], TeradataColumnType.ANY);
-					column2Data.put(config.getColumn().getLabel(), element);
-					pzn2Column2Data.put(pzn, column2Data);
-				}
+				RowElement element = new SimpleRowElement(values.get(config.getIndex()), TeradataColumnType.ANY);
+				column2Data.put(config.getColumn().getLabel(), element);
 			}
-		}
+		});
 		return pzn2Column2Data;
 	}
 
@@ -3,7 +3,6 @@ package de.ingef.eva.etl.transformers;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -16,6 +15,7 @@ import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -37,23 +37,35 @@ public class DynamicColumnAppender extends Transformer {
 	 */
 	private List<RowElement> columnNames;
 
+	/**
+	 * Column header labels in their appended order
+	 */
+	private List<String> columnLabels;
+
 	/**
 	 * Appended data
 	 */
 	private Map<String, List<RowElement>> newColumns;
+
+	/**
+	 * Whether every mapping provides a value for each header column
+	 */
+	private boolean hasCompleteMappings;
 	
 	public DynamicColumnAppender(String db, String table, List<String> keyNames, List<RowElement> header, Map<String, List<RowElement>> key2Columns) {
 		super(db, table);
 		newColumns = key2Columns;
 		columnNames = header;
 		keyColumns = keyNames;
+		columnLabels = header.stream().map(RowElement::getContent).collect(Collectors.toList());
+		hasCompleteMappings = key2Columns.values().stream().allMatch(columns -> columns.size() == header.size());
 	}
 
 	@Override
 	public Row transform(Row row) {
 		if(!canProcessRow(row.getDb(), row.getTable()))
 			return row;
-		Map<String, Integer> transformedIndices = transformIndices(row.getColumnName2Index());
+		RowSchema transformedSchema = row.getSchema().append(columnLabels);
 		List<RowElement> transformedColumns;
 		
 		if(row.getColumnName2Index().keySet().containsAll(keyColumns)) {
@@ -62,7 +74,30 @@ public class DynamicColumnAppender extends Transformer {
 			transformedColumns = emptyColumns();
 		}
 		
-		return new Row(row.getDb(), row.getTable(), transformedColumns, transformedIndices);
+		return new Row(row.getDb(), row.getTable(), transformedColumns, transformedSchema);
+	}
+
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(!canProcessRow(rowDb, rowTable))
+			return CompiledTransformer.SKIP;
+		//rows with missing keys or incomplete mappings change their width and are transformed row by row
+		if(!hasCompleteMappings || !schema.getColumnName2Index().keySet().containsAll(keyColumns))
+			return null;
+		int[] keyIndices = keyColumns.stream().mapToInt(schema::indexOf).toArray();
+		RowElement[] empty = emptyColumns().toArray(new RowElement[0]);
+		int firstNewColumn = schema.size();
+		return new CompiledTransformer(schema.append(columnLabels), 0, (values, offset) -> {
+			StringBuilder key = new StringBuilder();
+			for(int i = 0; i < keyIndices.length; i++) {
+				if(i > 0)
+					key.append(KEY_VALUE_DELIMITER);
+				key.append(values[offset + keyIndices[i]].getContent());
+			}
+			List<RowElement> appended = newColumns.get(key.toString());
+			for(int i = 0; i < empty.length; i++)
+				values[offset + firstNewColumn + i] = appended != null ? appended.get(i) : empty[i];
+		});
 	}
 
 	private String createOrderedCombinedKey(Row row) {
@@ -90,14 +125,6 @@ public class DynamicColumnAppender extends Transformer {
 				.collect(Collectors.toList());
 	}
 	
-	private Map<String, Integer> transformIndices(Map<String, Integer> columnName2Index) {
-		Map<String, Integer> transformed = new HashMap<>(columnName2Index);
-		int nextIndex = columnName2Index.size();
-		for(RowElement columnName : columnNames)
-			transformed.put(columnName.getContent(), nextIndex++);
-		return transformed;
-	}
-
 	public static Transformer of(AppendConfiguration config) {
 		try {
 			List<String> lines = Files.newBufferedReader(config.getFile(), OutputDirectory.DATA_CHARSET).lines().collect(Collectors.toList());
@@ -3,10 +3,10 @@ package de.ingef.eva.etl.transformers;
 import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import de.ingef.eva.etl.transformers.Transformer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,8 +45,38 @@ public class FixMissingDateEntries extends Transformer {
             return row;
 
         List<RowElement> transformedColumns = transformColumns(row.getColumns(), row.getColumnName2Index());
-        Map<String, Integer> transformedIndices = new HashMap<>(row.getColumnName2Index());
-        return new Row(row.getDb(), row.getTable(), transformedColumns, transformedIndices);
+        return new Row(row.getDb(), row.getTable(), transformedColumns, row.getSchema());
+    }
+
+    @Override
+    public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+        if(!canProcessRow(rowDb, rowTable))
+            return CompiledTransformer.SKIP;
+        //check mandatory columns
+        if(!schema.hasColumn(CONTRACT_COLUMN) ||
+                !schema.hasColumn(QUARTER_COLUMN) ||
+                !schema.hasColumn(START_DATE_COLUMN) ||
+                !schema.hasColumn(END_DATE_COLUMN) ||
+                !schema.hasColumn(YEAR_COLUMN)
+        )
+            return CompiledTransformer.SKIP;
+        int contractIndex = schema.indexOf(CONTRACT_COLUMN);
+        int yearIndex = schema.indexOf(YEAR_COLUMN);
+        int quarterIndex = schema.indexOf(QUARTER_COLUMN);
+        int startDateIndex = schema.indexOf(START_DATE_COLUMN);
+        int endDateIndex = schema.indexOf(END_DATE_COLUMN);
+        return new CompiledTransformer(schema, 0, (values, offset) -> {
+            if(!values[offset + contractIndex].getContent().equalsIgnoreCase(CONTRACT_ID))
+                return;
+            String year = values[offset + yearIndex].getContent();
+            String quarter = values[offset + quarterIndex].getContent();
+            RowElement startDate = values[offset + startDateIndex];
+            RowElement endDate = values[offset + endDateIndex];
+            if(startDate.getContent().isEmpty())
+                values[offset + startDateIndex] = new SimpleRowElement(year + findStartDate(quarter), startDate.getType());
+            if(endDate.getContent().isEmpty())
+                values[offset + endDateIndex] = new SimpleRowElement(year + findEndDate(quarter), endDate.getType());
+        });
     }
 
     private List<RowElement> transformColumns(List<RowElement> columns, Map<String, Integer> indices) {
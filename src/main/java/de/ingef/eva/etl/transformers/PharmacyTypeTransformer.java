@@ -1,7 +1,6 @@
 package de.ingef.eva.etl.transformers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -9,6 +8,7 @@ import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 
 /**
  * Appends a separate column that denote a pharmacy category (hospital, pharmacy, miscellaneous)
@@ -28,16 +28,48 @@ public class PharmacyTypeTransformer extends Transformer {
 	
 	@Override
 	public Row transform(Row row) {
-		if(!canProcessRow(row.getDb(), row.getTable()))
+		if(!canProcessRow(row.getDb(), row.getTable()) || isPushdown() && row.getSchema().hasColumn(PHARMACY_TYPE_COLUMN))
 			return row;
-		Map<String, Integer> columnIndices = row.getColumnName2Index();
-		if(!columnIndices.containsKey(PHARMACY_IK_COLUMN))
+		int pharmacyIkIndex = row.getSchema().indexOf(PHARMACY_IK_COLUMN);
+		if(pharmacyIkIndex == -1)
 			return row;
-		String pharmacyType = mapToType(row.getColumns().get(columnIndices.get(PHARMACY_IK_COLUMN)).getContent());
+		String pharmacyType = mapToType(row.getColumns().get(pharmacyIkIndex).getContent());
 		
 		return createRow(row, pharmacyType);
 	}
 	
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(!canProcessRow(rowDb, rowTable) || isPushdown() && schema.hasColumn(PHARMACY_TYPE_COLUMN))
+			return CompiledTransformer.SKIP;
+		int pharmacyIkIndex = schema.indexOf(PHARMACY_IK_COLUMN);
+		if(pharmacyIkIndex == -1)
+			return CompiledTransformer.SKIP;
+		int typeIndex = schema.size();
+		return CompiledTransformer.appending(
+				schema,
+				PHARMACY_TYPE_COLUMN,
+				(values, offset) -> values[offset + typeIndex] = new SimpleRowElement(mapToType(values[offset + pharmacyIkIndex].getContent()), TeradataColumnType.CHARACTER)
+		);
+	}
+	
+	@Override
+	public ComputedColumn pushDown(String rowDb, String rowTable, RowSchema schema, Map<String, SqlColumn> columns) {
+		if(!isPushdown())
+			return super.pushDown(rowDb, rowTable, schema, columns);
+		SqlColumn pharmacyIk = columns.get(PHARMACY_IK_COLUMN);
+		if(!canProcessRow(rowDb, rowTable) || schema.hasColumn(PHARMACY_TYPE_COLUMN) || pharmacyIk == null)
+			return ComputedColumn.SKIP;
+		String ik = pharmacyIk.toTrimmedText();
+		if(ik == null)
+			return null;
+		String prefix = "substr(" + ik + ", 1, 2)";
+		String expression = "case when coalesce(" + ik + ", '') = '' then '" + EMPTY_DEFAULT + "' "
+				+ "when " + prefix + " in ('" + HOSPITAL_TYPE + "', '" + PHARMACY_TYPE + "') then " + prefix + " "
+				+ "else '" + MISCELLANEOUS_TYPE + "' end";
+		return ComputedColumn.appended(PHARMACY_TYPE_COLUMN, expression, TeradataColumnType.VARCHAR);
+	}
+	
 	private String extractPrefix(String ik) {
 		return ik.substring(0, 2);
 	}
@@ -61,11 +93,10 @@ public class PharmacyTypeTransformer extends Transformer {
 	}
 	
 	private Row createRow(Row row, String pharmacyType) {
-		List<RowElement> newColumns = new ArrayList<>(row.getColumns());
+		List<RowElement> newColumns = new ArrayList<>(row.getColumns().size() + 1);
+		newColumns.addAll(row.getColumns());
 		newColumns.add(new SimpleRowElement(pharmacyType, TeradataColumnType.CHARACTER));
-		Map<String, Integer> newIndices = new HashMap<>(row.getColumnName2Index());
-		newIndices.put(PHARMACY_TYPE_COLUMN, newColumns.size() - 1);
 		
-		return new Row(row.getDb(), row.getTable(), newColumns, newIndices);
+		return new Row(row.getDb(), row.getTable(), newColumns, row.getSchema().append(PHARMACY_TYPE_COLUMN));
 	}
 }
@@ -4,12 +4,11 @@ import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Workaround for adding a hash column to vers_stamm.
@@ -28,11 +27,26 @@ public class PseudoHashTransformer extends Transformer {
         if(!canProcessRow(row.getDb(), row.getTable()))
             return row;
 
-        Map<String, Integer> transformedIndices = transformIndices(row.getColumnName2Index());
         int pidIndex = row.getColumnName2Index().get("pid");
         String hash = DigestUtils.sha256Hex(row.getColumns().get(pidIndex).getContent());
         List<RowElement> transformedColumns = transformColumns(row.getColumns(), hash);
-        return new Row(row.getDb(), row.getTable(), transformedColumns, transformedIndices);
+        return new Row(row.getDb(), row.getTable(), transformedColumns, row.getSchema().append(PID_HASH_COLUMN_NAME));
+    }
+
+    @Override
+    public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+        if(!canProcessRow(rowDb, rowTable))
+            return CompiledTransformer.SKIP;
+        int pidIndex = schema.indexOf("pid");
+        //rows without pid fail in the row by row transformation
+        if(pidIndex == -1)
+            return null;
+        int hashIndex = schema.size();
+        return CompiledTransformer.appending(
+                schema,
+                PID_HASH_COLUMN_NAME,
+                (values, offset) -> values[offset + hashIndex] = new SimpleRowElement(DigestUtils.sha256Hex(values[offset + pidIndex].getContent()), TeradataColumnType.VARCHAR)
+        );
     }
 
     private List<RowElement> transformColumns(List<RowElement> columns, String hash) {
@@ -41,11 +55,4 @@ public class PseudoHashTransformer extends Transformer {
         transformedColumns.add(new SimpleRowElement(hash, TeradataColumnType.VARCHAR));
         return transformedColumns;
     }
-
-    private Map<String, Integer> transformIndices(Map<String, Integer> columnName2Index) {
-        Map<String, Integer> transformedIndices = new HashMap<>(columnName2Index.size() + 1);
-        transformedIndices.putAll(columnName2Index);
-        transformedIndices.put(PID_HASH_COLUMN_NAME, columnName2Index.size());
-        return transformedIndices;
-    }
 }
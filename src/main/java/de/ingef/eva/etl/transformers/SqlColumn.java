@@ -0,0 +1,41 @@
+package de.ingef.eva.etl.transformers;
+
+import de.ingef.eva.data.TeradataColumnType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Column of an export query as seen by transformers that are computed by the database
+ */
+@Getter
+@RequiredArgsConstructor
+public class SqlColumn {
+
+	/**
+	 * Sql expression of the column, e.g. a.bs_nr
+	 */
+	private final String expression;
+	private final TeradataColumnType type;
+
+	/**
+	 * @return expression of the trimmed column text or null if the database formats values of this type differently
+	 */
+	public String toTrimmedText() {
+		switch(type) {
+		case CHARACTER:
+		case VARCHAR:
+			return "trim(" + expression + ")";
+		case BYTEINT:
+		case SMALLINT:
+		case INTEGER:
+		case BIGINT:
+			return "trim(cast(" + expression + " as varchar(20)))";
+		default:
+			return null;
+		}
+	}
+
+	public boolean isInteger() {
+		return type == TeradataColumnType.BYTEINT || type == TeradataColumnType.SMALLINT || type == TeradataColumnType.INTEGER || type == TeradataColumnType.BIGINT;
+	}
+}
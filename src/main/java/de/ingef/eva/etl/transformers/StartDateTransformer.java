@@ -2,15 +2,15 @@ package de.ingef.eva.etl.transformers;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
+import de.ingef.eva.data.DateRowElement;
 import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 
 /**
  * Based on an end date and an day count column a start date is calculated
@@ -41,47 +41,109 @@ public class StartDateTransformer extends Transformer {
 	
 	@Override
 	public Row transform(Row row) {
-		if(!canProcessRow(row.getDb(), row.getTable()))
+		if(!canProcessRow(row.getDb(), row.getTable()) || isPushdown() && row.getSchema().hasColumn(outputColumn))
 			return row;
-		Optional<Map.Entry<String, Integer>> endDateColumnIndex =
-				row.getColumnName2Index().entrySet().stream().filter(entry -> entry.getKey().equalsIgnoreCase(endDateColumn)).findFirst();
-		Optional<Map.Entry<String, Integer>> dayColumnIndex =
-				row.getColumnName2Index().entrySet().stream().filter(entry -> entry.getKey().equalsIgnoreCase(dayColumn)).findFirst();
-		if(!endDateColumnIndex.isPresent() || !dayColumnIndex.isPresent())
+		int endDateColumnIndex = findColumnIgnoreCase(row.getSchema(), endDateColumn);
+		int dayColumnIndex = findColumnIgnoreCase(row.getSchema(), dayColumn);
+		if(endDateColumnIndex == -1 || dayColumnIndex == -1)
 			return createEmptyStartDateRow(row);
 
-		LocalDate endDate = LocalDate.parse(row.getColumns().get(endDateColumnIndex.get().getValue()).getContent());
-		int kgDays = parseDayCount(row, dayColumnIndex);
-		LocalDate startDate = kgDays > 0
+		LocalDate startDate = calculateStartDate(row.getColumns().get(endDateColumnIndex), row.getColumns().get(dayColumnIndex));
+		return new Row(row.getDb(), row.getTable(), transformColumns(row.getColumns(), startDate.toString()), row.getSchema().append(outputColumn));
+	}
+
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(!canProcessRow(rowDb, rowTable) || isPushdown() && schema.hasColumn(outputColumn))
+			return CompiledTransformer.SKIP;
+		int endDateColumnIndex = findColumnIgnoreCase(schema, endDateColumn);
+		int dayColumnIndex = findColumnIgnoreCase(schema, dayColumn);
+		int startDateIndex = schema.size();
+		if(endDateColumnIndex == -1 || dayColumnIndex == -1) {
+			RowElement empty = new SimpleRowElement("", TeradataColumnType.CHARACTER);
+			return CompiledTransformer.appending(schema, outputColumn, (values, offset) -> values[offset + startDateIndex] = empty);
+		}
+		return CompiledTransformer.appending(
+				schema,
+				outputColumn,
+				(values, offset) -> {
+					LocalDate startDate = calculateStartDate(values[offset + endDateColumnIndex], values[offset + dayColumnIndex]);
+					values[offset + startDateIndex] = new DateRowElement((int) startDate.toEpochDay());
+				}
+		);
+	}
+
+	@Override
+	public ComputedColumn pushDown(String rowDb, String rowTable, RowSchema schema, Map<String, SqlColumn> columns) {
+		if(!isPushdown())
+			return super.pushDown(rowDb, rowTable, schema, columns);
+		if(!canProcessRow(rowDb, rowTable) || schema.hasColumn(outputColumn))
+			return ComputedColumn.SKIP;
+		//exported column names are lowercase
+		if(!outputColumn.equals(outputColumn.toLowerCase()))
+			return null;
+		int endDateColumnIndex = findColumnIgnoreCase(schema, endDateColumn);
+		int dayColumnIndex = findColumnIgnoreCase(schema, dayColumn);
+		if(endDateColumnIndex == -1 || dayColumnIndex == -1)
+			return ComputedColumn.appended(outputColumn, "''", TeradataColumnType.VARCHAR);
+		SqlColumn endDate = columns.get(schema.getColumnNames().get(endDateColumnIndex));
+		SqlColumn dayCount = columns.get(schema.getColumnNames().get(dayColumnIndex));
+		//text columns would have to be parsed like the transformer does
+		if(endDate == null || dayCount == null || endDate.getType() != TeradataColumnType.DATE || !dayCount.isInteger())
+			return null;
+		String expression = "case when " + dayCount.getExpression() + " > 0 "
+				+ "then " + endDate.getExpression() + " - " + dayCount.getExpression() + " + 1 "
+				+ "else " + endDate.getExpression() + " end";
+		return ComputedColumn.appended(outputColumn, expression, TeradataColumnType.DATE);
+	}
+
+	/**
+	 * typed date and number columns are used as is, other columns are parsed
+	 * @param endDateValue
+	 * @param dayCountValue
+	 * @return
+	 */
+	private LocalDate calculateStartDate(RowElement endDateValue, RowElement dayCountValue) {
+		LocalDate endDate = endDateValue.asDate();
+		int kgDays = parseDayCount(dayCountValue);
+		return kgDays > 0
 			? endDate.minusDays(kgDays).plusDays(1)
 			: endDate;
+	}
 
-		return new Row(row.getDb(), row.getTable(), transformColumns(row.getColumns(), startDate.toString()), transformIndices(row.getColumnName2Index()));
+	/**
+	 * searches a column by name ignoring case. An exact match is tried first to avoid scanning all columns.
+	 * @param schema
+	 * @param columnName
+	 * @return column index or -1 if the column does not exist
+	 */
+	private int findColumnIgnoreCase(RowSchema schema, String columnName) {
+		int index = schema.indexOf(columnName);
+		if(index != -1)
+			return index;
+		List<String> columnNames = schema.getColumnNames();
+		for(int i = 0; i < columnNames.size(); i++) {
+			if(columnName.equalsIgnoreCase(columnNames.get(i)))
+				return i;
+		}
+		return -1;
 	}
 
 	/**
-	 * tries to convert a string as int
-	 * @param row
-	 * @param dayColumnIndex
-	 * @return parsed number or zero if string is not a number
+	 * tries to convert a column value as int
+	 * @param dayCount
+	 * @return parsed number or zero if value is not an int
 	 */
-	private int parseDayCount(Row row, Optional<Map.Entry<String, Integer>> dayColumnIndex) {
+	private int parseDayCount(RowElement dayCount) {
 		try {
-			return Integer.parseInt(row.getColumns().get(dayColumnIndex.get().getValue()).getContent());
-		} catch (NumberFormatException e) {
+			return Math.toIntExact(dayCount.asLong());
+		} catch (NumberFormatException | ArithmeticException e) {
 			return 0;
 		}
 	}
 
 	private Row createEmptyStartDateRow(Row row) {
-		return new Row(row.getDb(), row.getTable(), transformColumns(row.getColumns(), ""), transformIndices(row.getColumnName2Index()));
-	}
-	
-	private Map<String, Integer> transformIndices(Map<String, Integer> oldIndices) {
-		Map<String, Integer> transformed = new HashMap<>(oldIndices.size());
-		transformed.putAll(oldIndices);
-		transformed.put(outputColumn, oldIndices.size());
-		return transformed;
+		return new Row(row.getDb(), row.getTable(), transformColumns(row.getColumns(), ""), row.getSchema().append(outputColumn));
 	}
 	
 	private List<RowElement> transformColumns(List<RowElement> columns, String value) {
@@ -1,7 +1,6 @@
 package de.ingef.eva.etl.transformers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -10,6 +9,8 @@ import de.ingef.eva.data.RowElement;
 import de.ingef.eva.data.SimpleRowElement;
 import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.utility.io.CsvValueSanitizer;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -48,42 +49,64 @@ public class StaticColumnAppenderTransformer extends Transformer {
 	
 	@Override
 	public Row transform(Row row) {
-		if(skip(row))
+		if(skip(row.getDb(), row.getTable()))
 			return row;
 		
 		List<RowElement> columns = row.getColumns();
-		Map<String,Integer> indices = row.getColumnName2Index();
-		if(hasColumnAlready(indices)) {
+		if(hasColumnAlready(row.getSchema())) {
 			return row;
 		}
 		List<RowElement> transformed = new ArrayList<>(columns.size() + 1);
 		
-		Map<String,Integer> transformedIndices = new HashMap<>(indices.size() + 1);
+		RowSchema transformedSchema;
 		if(order == AppendOrder.FIRST) {
 			transformed.add(new SimpleRowElement(value, TeradataColumnType.CHARACTER));
 			transformed.addAll(columns);
-			transformedIndices.put(valueName, 0);
-			indices.forEach((column,index) -> transformedIndices.put(column, index + 1)); 
+			transformedSchema = row.getSchema().prepend(valueName);
 		} else {
 			transformed.addAll(columns);
 			transformed.add(new SimpleRowElement(value, TeradataColumnType.CHARACTER));
-			transformedIndices.putAll(indices);
-			//size equals the index of the newly added column
-			transformedIndices.put(valueName, indices.size());
+			transformedSchema = row.getSchema().append(valueName);
 		}
 		
-		return new Row(row.getDb(), row.getTable(), transformed, transformedIndices);
+		return new Row(row.getDb(), row.getTable(), transformed, transformedSchema);
 	}
 
-	private boolean skip(Row row) {
-		String rowTable = row.getTable().toLowerCase();
+	@Override
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		if(skip(rowDb, rowTable) || hasColumnAlready(schema))
+			return CompiledTransformer.SKIP;
+		RowElement element = new SimpleRowElement(value, TeradataColumnType.CHARACTER);
+		if(order == AppendOrder.FIRST)
+			return new CompiledTransformer(schema.prepend(valueName), 1, (values, offset) -> values[offset] = element);
+		int valueIndex = schema.size();
+		return CompiledTransformer.appending(schema, valueName, (values, offset) -> values[offset + valueIndex] = element);
+	}
+
+	@Override
+	public ComputedColumn pushDown(String rowDb, String rowTable, RowSchema schema, Map<String, SqlColumn> columns) {
+		if(!isPushdown())
+			return super.pushDown(rowDb, rowTable, schema, columns);
+		if(skip(rowDb, rowTable) || hasColumnAlready(schema))
+			return ComputedColumn.SKIP;
+		//exported names are lowercase and exported values are cleaned
+		if(!valueName.equals(valueName.toLowerCase()) || value == null || !value.equals(new CsvValueSanitizer().clean(value)))
+			return null;
+		String literal = "'" + value.replace("'", "''") + "'";
+		return order == AppendOrder.FIRST
+				? ComputedColumn.prepended(valueName, literal, TeradataColumnType.VARCHAR)
+				: ComputedColumn.appended(valueName, literal, TeradataColumnType.VARCHAR);
+	}
+
+	private boolean skip(String rowDb, String rowTable) {
+		String table = rowTable.toLowerCase();
 		if(excludeTables != null && !excludeTables.isEmpty())
-			return excludeTables.stream().map(table -> table.toLowerCase()).anyMatch(tablePart -> rowTable.contains(tablePart));
+			return excludeTables.stream().map(excluded -> excluded.toLowerCase()).anyMatch(tablePart -> table.contains(tablePart));
 				
-		return !canProcessRow(row.getDb(), row.getTable());
+		return !canProcessRow(rowDb, rowTable);
 	}
 
-	private boolean hasColumnAlready(Map<String,Integer> columns) {
-		return columns.containsKey(valueName);
+	private boolean hasColumnAlready(RowSchema schema) {
+		return schema.hasColumn(valueName);
 	}
 }
@@ -1,7 +1,12 @@
 package de.ingef.eva.etl.transformers;
 
+import java.util.Map;
+
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 /**
  * Base class for transformers
@@ -11,6 +16,12 @@ public abstract class Transformer {
 	
 	private final String db;
 	private final String table;
+	/**
+	 * Lets the export query compute the transformation if the transformer supports it.
+	 * Rows that already contain the computed column are left unchanged.
+	 */
+	@Getter @Setter
+	private boolean pushdown = false;
 	
 	public static class NOPTransformer extends Transformer {
 		
@@ -23,10 +34,37 @@ public abstract class Transformer {
 			return row;
 		}
 		
+		@Override
+		public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+			return CompiledTransformer.SKIP;
+		}
 	}
 	
 	public abstract Row transform(Row row);
 	
+	/**
+	 * binds the transformer to rows of the given table and layout
+	 * @param rowDb
+	 * @param rowTable
+	 * @param schema layout of the rows before this transformer is applied
+	 * @return {@link CompiledTransformer#SKIP} if such rows remain unchanged or null if the transformer has to be applied row by row using {@link #transform(Row)}
+	 */
+	public CompiledTransformer compile(String rowDb, String rowTable, RowSchema schema) {
+		return null;
+	}
+	
+	/**
+	 * describes the transformation of rows of the given table and layout as a column computed by the export query
+	 * @param rowDb
+	 * @param rowTable
+	 * @param schema layout of the rows before this transformer is applied
+	 * @param columns query column of each column name of the layout
+	 * @return {@link ComputedColumn#SKIP} if such rows remain unchanged or null if the database cannot compute the transformation
+	 */
+	public ComputedColumn pushDown(String rowDb, String rowTable, RowSchema schema, Map<String, SqlColumn> columns) {
+		return compile(rowDb, rowTable, schema) == CompiledTransformer.SKIP ? ComputedColumn.SKIP : null;
+	}
+	
 	protected boolean canProcessRow(String rowDb, String rowTable) {
 		boolean isTablePresent = table != null && !table.isEmpty();
 		boolean isDbPresent = db != null && !db.isEmpty();
@@ -15,7 +15,11 @@ import lombok.extern.log4j.Log4j2;
 public class TransformerFactory {
 	
 	public List<Transformer> create(List<AppendConfiguration> appendConfigs) {
-		return appendConfigs.stream().map(config -> of(config)).collect(Collectors.toList());
+		return appendConfigs.stream().map(config -> {
+			Transformer transformer = of(config);
+			transformer.setPushdown(config.isPushdown());
+			return transformer;
+		}).collect(Collectors.toList());
 	}
 	
 	private Transformer of(AppendConfiguration config) {
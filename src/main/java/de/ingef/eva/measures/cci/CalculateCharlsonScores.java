@@ -7,7 +7,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -25,6 +24,7 @@ import java.util.stream.Collectors;
 import de.ingef.eva.configuration.Configuration;
 import de.ingef.eva.configuration.cci.CCISource;
 import de.ingef.eva.constant.Templates;
+import de.ingef.eva.services.ConnectionFactory;
 import de.ingef.eva.utility.io.CsvWriter;
 import de.ingef.eva.utility.Helper;
 import lombok.Getter;
@@ -70,9 +70,9 @@ public final class CalculateCharlsonScores {
 	private static final Map<Integer,String> quarter2BeginDate = new HashMap<>();
 	private static final Map<Integer,String> quarter2EndDate = new HashMap<>();
 		
-	public static void calculate(Configuration config) {
+	public static void calculate(Configuration config, ConnectionFactory connectionFactory) {
 		initializeQuarterLimits();
-		Connection conn = createICDPatterns(config);
+		Connection conn = createICDPatterns(config, connectionFactory);
 		Collection<QuarterInterval> quarters = generateQuarters(config.getCci().getStartYear(), config.getCci().getEndYear());
 		Collection<QuarterQuery> quarterQueries = createQuarterwiseSlicedQueries(config, quarters);
 		
@@ -80,7 +80,7 @@ public final class CalculateCharlsonScores {
 		int threadCount = Math.min(quarterQueries.size(), config.getThreadCount());
 		ExecutorService threadPool = Helper.createThreadPool(threadCount, true);
 		CountDownLatch cdl = new CountDownLatch(quarterQueries.size());
-		executeQueries(config, quarterQueries, threadPool, cdl);
+		executeQueries(config, connectionFactory, quarterQueries, threadPool, cdl);
 		try {
 			cdl.await();
 		} catch (InterruptedException e) {
@@ -114,7 +114,7 @@ public final class CalculateCharlsonScores {
 		return quarterQueries;
 	}
 
-	private static void executeQueries(Configuration config, Collection<QuarterQuery> queries, ExecutorService threadPool, CountDownLatch cdl) {
+	private static void executeQueries(Configuration config, ConnectionFactory connectionFactory, Collection<QuarterQuery> queries, ExecutorService threadPool, CountDownLatch cdl) {
 		System.out.println("Calculating scores");
 		queries
 			.stream()
@@ -128,9 +128,8 @@ public final class CalculateCharlsonScores {
 								Files.createDirectories(filePath);
 							}
 							Path file = filePath.resolve("cci_" + query.getTable() + "." + query.getStartYear() + query.getStartQuarter() +".csv");
-							Class.forName("com.teradata.jdbc.TeraDriver");
 							try (
-								Connection conn = DriverManager.getConnection(config.getFullConnectionUrl(), config.getUser(), config.getPassword());
+								Connection conn = connectionFactory.createConnection();
 								PreparedStatement ps = conn.prepareStatement(query.getQuery());
 								ResultSet result = ps.executeQuery();
 							) {
@@ -141,8 +140,6 @@ public final class CalculateCharlsonScores {
 							} catch (SQLException e) {
 								throw new RuntimeException("Could not execute query: '"+ query.getQuery() +"'", e);
 							}
-						} catch (ClassNotFoundException e) {
-							throw new RuntimeException("Could not load Teradata JDBC driver", e);
 						} catch (IOException e1) {
 							throw new RuntimeException("Could not create output path", e1);
 						} finally {
@@ -186,37 +183,32 @@ public final class CalculateCharlsonScores {
 	/**
 	 * sets up the temporary icd table
 	 * @param config
+	 * @param connectionFactory
 	 * @return connection used to create the temp table
 	 */
-	private static Connection createICDPatterns(Configuration config) {
+	private static Connection createICDPatterns(Configuration config, ConnectionFactory connectionFactory) {
 		Connection conn = null;
+		Statement query = null;
 		try {
-			Class.forName("com.teradata.jdbc.TeraDriver");
-			Statement query = null;
+			conn = connectionFactory.createConnection();
+			query = conn.createStatement();
+			createICDPatternTable(config, query);
+			List<CCIEntry> values = readCCIEntriesFromFile(config.getCci().getCciFile());
+			insertICDPatterns(config, query, values);
+		} catch (SQLException e) {
+			log.error("Could not open connection or creating query.\n\tReason: ", e);
+		} catch (IOException e1) {
+			log.error("Could not write charlsonscores.csv.\n\tReason: ", e1);
+		} finally {
 			try {
-				conn = DriverManager.getConnection(config.getFullConnectionUrl(), config.getUser(), config.getPassword());
-				query = conn.createStatement();
-				createICDPatternTable(config, query);
-				List<CCIEntry> values = readCCIEntriesFromFile(config.getCci().getCciFile());
-				insertICDPatterns(config, query, values);
-			} catch (SQLException e) {
-				log.error("Could not open connection or creating query.\n\tReason: ", e);
-			} catch (IOException e1) {
-				log.error("Could not write charlsonscores.csv.\n\tReason: ", e1);
-			} finally {
-				try {
-					if(query != null && !query.isClosed()) {
-						query.close();
-					}
-				} catch(SQLException e) {
-					log.error("Could not close statement. ", e);
+				if(query != null && !query.isClosed()) {
+					query.close();
 				}
+			} catch(SQLException e) {
+				log.error("Could not close statement. ", e);
 			}
-			return conn; 
-		} catch (ClassNotFoundException e) {
-			log.error("Did not found Teradata JDBC driver.");
 		}
-		return conn;		
+		return conn;
 	}
 	
 	private static List<CCIEntry> readCCIEntriesFromFile(Path path) throws IOException {
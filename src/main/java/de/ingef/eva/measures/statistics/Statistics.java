@@ -6,7 +6,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,6 +19,7 @@ import de.ingef.eva.configuration.statistics.StatisticDatasetConfig;
 import de.ingef.eva.constant.OutputDirectory.DirectoryType;
 import de.ingef.eva.constant.Templates;
 import de.ingef.eva.measures.cci.Quarter;
+import de.ingef.eva.services.ConnectionFactory;
 import de.ingef.eva.utility.Helper;
 import de.ingef.eva.utility.io.IOManager;
 import de.ingef.eva.utility.QuarterCount;
@@ -89,8 +89,8 @@ public class Statistics {
 		private final List<String> morbiHeader;
 	}
 	
-	public void createStatistics(Configuration config, IOManager ioManager) {
-		try (Connection conn = DriverManager.getConnection(config.getFullConnectionUrl(), config.getUser(), config.getPassword())) {
+	public void createStatistics(Configuration config, IOManager ioManager, ConnectionFactory connectionFactory) {
+		try (Connection conn = connectionFactory.createConnection()) {
 			StatisticsCalculator calculator = new StatisticsCalculator();
 			RegionalStatisticCalculator regionalCalculator = new RegionalStatisticCalculator();
 			List<StatisticDatasetConfig> statisticsConfigs = config.getStatistics().getDatasets();
@@ -1,15 +1,17 @@
 package de.ingef.eva.query;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import de.ingef.eva.configuration.Configuration;
 import de.ingef.eva.configuration.SchemaFactory;
 import de.ingef.eva.database.DatabaseSchema;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.transformers.Transformer;
 import de.ingef.eva.query.creation.QueryCreator;
 import de.ingef.eva.query.creation.SimpleQueryCreator;
+import de.ingef.eva.services.ConnectionFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
@@ -22,19 +24,25 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class JsonQuerySource implements QuerySource {
 	private final Configuration configuration;
+	private final ConnectionFactory connectionFactory;
+	/**
+	 * Transformers of the exported rows whose columns may be computed by the queries
+	 */
+	private final List<Transformer> transformers;
 	
 	@Override
 	public Collection<Query> createQueries() {
 		log.info("Creating database schema lookup");
-		DatabaseSchema schema = new SchemaFactory().createSchema(configuration);
+		DatabaseSchema schema = new SchemaFactory().createSchema(configuration, connectionFactory);
 		QueryCreator queryCreator = new SimpleQueryCreator(schema);
+		if(configuration.getFilters() != null)
+			queryCreator.setPushdownFilters(configuration.getFilters().stream().filter(Filter::isPushdown).collect(Collectors.toList()));
+		queryCreator.setTransformers(transformers);
 		log.info("Creating queries");
-		List<Query> queries = configuration.getSources()
+		//the export orders queries by their expected duration and limits concurrent queries of a table
+		return configuration.getSources()
 				.stream()
 				.flatMap(source -> source.traverse(queryCreator).stream())
 				.collect(Collectors.toList());
-		//avoid runs of queries accessing the same table
-		Collections.shuffle(queries);
-		return queries;
 	}
 }
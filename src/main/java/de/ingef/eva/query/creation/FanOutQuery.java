@@ -0,0 +1,100 @@
+package de.ingef.eva.query.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.ingef.eva.query.Query;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Single query that selects the rows of several queries which only differ in their row conditions.
+ * For each merged query a routing column is appended that is 1 if the row belongs to that query and 0 otherwise.
+ */
+@Getter @Setter
+public class FanOutQuery implements Query {
+
+	public static final String ROUTE_COLUMN_PREFIX = "eva_route_";
+
+	private String name;
+	private String query;
+	private String dbName;
+	private String tableName;
+	private String sliceName;
+	/**
+	 * Names of the merged datasets
+	 */
+	private String datasetName;
+	/**
+	 * Merged queries ordered by their routing column
+	 */
+	private final List<SimpleQuery> members;
+
+	private FanOutQuery(List<SimpleQuery> members) {
+		this.members = new ArrayList<>(members);
+		SimpleQuery first = members.get(0);
+		dbName = first.getDbName();
+		tableName = first.getTableName();
+		sliceName = first.getSliceName();
+		datasetName = members.stream().map(SimpleQuery::getDatasetName).collect(Collectors.joining("+"));
+		query = render();
+	}
+
+	/**
+	 * merges queries with the same scan key
+	 * @param members queries whose {@link SimpleQuery#createScanKey()} is equal
+	 * @return merged query
+	 */
+	public static FanOutQuery of(List<SimpleQuery> members) {
+		return new FanOutQuery(members);
+	}
+
+	private String render() {
+		SimpleQuery first = members.get(0);
+		StringBuilder select = new StringBuilder()
+				.append("select ")
+				.append(first.getSelectList());
+		List<String> rowConditions = new ArrayList<>(members.size());
+		boolean selectsAllRows = false;
+		for(int i = 0; i < members.size(); i++) {
+			String rowCondition = members.get(i).getRowCondition();
+			select.append(", ");
+			if(rowCondition.isEmpty()) {
+				selectsAllRows = true;
+				select.append("1");
+			} else {
+				rowConditions.add("(" + rowCondition + ")");
+				select.append("case when ").append(rowCondition).append(" then 1 else 0 end");
+			}
+			select.append(" as \"").append(ROUTE_COLUMN_PREFIX).append(i).append("\"");
+		}
+		List<String> conditions = new ArrayList<>(2);
+		if(!first.getSharedCondition().isEmpty())
+			conditions.add(first.getSharedCondition());
+		if(!selectsAllRows)
+			conditions.add(rowConditions.size() == 1 ? rowConditions.get(0) : "(" + String.join(" or ", rowConditions) + ")");
+		select
+			.append(" ")
+			.append(first.getSource())
+			.append(" ");
+		if(!conditions.isEmpty())
+			select.append("where ").append(String.join(" and ", conditions));
+		return select.append(";").toString();
+	}
+
+	@Override
+	public String getDescription() {
+		return new StringBuilder()
+				.append("DB: ")
+				.append(dbName)
+				.append(", Table: ")
+				.append(tableName)
+				.append(", Datasets: ")
+				.append(datasetName)
+				.append(sliceName != null && !sliceName.isEmpty() ? ", Slice: " + sliceName : "")
+				.append("Sql: ")
+				.append(query)
+				.toString();
+	}
+}
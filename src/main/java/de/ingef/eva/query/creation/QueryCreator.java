@@ -5,7 +5,10 @@ import java.util.List;
 import de.ingef.eva.configuration.export.JoinType;
 import de.ingef.eva.configuration.export.WhereOperator;
 import de.ingef.eva.configuration.export.WhereType;
+import de.ingef.eva.configuration.export.sql.PartitionSliceNode;
 import de.ingef.eva.configuration.export.sql.YearSliceNode;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.transformers.Transformer;
 import de.ingef.eva.query.Query;
 
 public interface QueryCreator {
@@ -31,7 +34,26 @@ public interface QueryCreator {
 	
 	public void setYearSlice(YearSliceNode slice);
 	
+	/**
+	 * splits the slices of the next built table into parts. The setting is reset after building the queries.
+	 * @param slice null if slices are not split
+	 */
+	public void setPartitionSlice(PartitionSliceNode slice);
+	
 	public void setDatasetName(String datasetName);
 
+	/**
+	 * sets filters that are added to the where clause of all following queries whose main table selects the filtered column
+	 * @param filters
+	 */
+	public void setPushdownFilters(List<Filter> filters);
+
+	/**
+	 * sets the transformers of the exported rows. Following queries compute their columns
+	 * if every transformer that changes rows of the main table supports it.
+	 * @param transformers
+	 */
+	public void setTransformers(List<Transformer> transformers);
+
 	public void addGlobalWhere(String table, String column, List<String> values, WhereOperator symbol, WhereType name);
 }
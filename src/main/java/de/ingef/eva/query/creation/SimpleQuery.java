@@ -16,6 +16,31 @@ public class SimpleQuery implements Query {
 	private String tableName;
 	private String sliceName;
 	private String datasetName;
+	/*
+	 * parts of the query that are used to merge queries reading the same rows. Null if the query cannot be merged.
+	 */
+	private String selectList;
+	/**
+	 * from clause including joins
+	 */
+	private String source;
+	/**
+	 * conditions that select the rows of the dataset
+	 */
+	private String rowCondition;
+	/**
+	 * conditions that are applied to the rows of every dataset, i.e. filters and slice
+	 */
+	private String sharedCondition;
+	
+	/**
+	 * @return identifies queries that read the same table, slice and columns or null if the query cannot be merged
+	 */
+	public String createScanKey() {
+		if(selectList == null || source == null || rowCondition == null || sharedCondition == null)
+			return null;
+		return String.join("\n", dbName, tableName, sliceName, selectList, source, sharedCondition);
+	}
 	
 	public String getDescription() {
 		StringBuilder description =
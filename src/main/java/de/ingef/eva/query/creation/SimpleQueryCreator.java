@@ -8,13 +8,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import de.ingef.eva.configuration.export.JoinType;
 import de.ingef.eva.configuration.export.WhereOperator;
 import de.ingef.eva.configuration.export.WhereType;
+import de.ingef.eva.configuration.export.sql.PartitionSliceNode;
+import de.ingef.eva.configuration.export.sql.SlicePartition;
 import de.ingef.eva.configuration.export.sql.YearSliceNode;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.database.Column;
 import de.ingef.eva.database.DatabaseSchema;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.transformers.ComputedColumn;
+import de.ingef.eva.etl.transformers.SqlColumn;
+import de.ingef.eva.etl.transformers.Transformer;
 import de.ingef.eva.query.Query;
 import de.ingef.eva.utility.Alias;
 import lombok.Builder;
@@ -36,11 +44,15 @@ public class SimpleQueryCreator implements QueryCreator {
 	private OrGroup.OrGroupBuilder currentGroup;
 
 	private List<String> selectedColumns = new ArrayList<>();
+	private List<TeradataColumnType> selectedColumnTypes = new ArrayList<>();
 	private List<String> selectedTables = new ArrayList<>();
 	private List<JoinInfo> joinColumns = new ArrayList<>();
 	private List<OrGroup> conditions = new ArrayList<>();
 	private List<OrGroup> globalConditions = new ArrayList<>();
 	private YearSliceNode yearSlice;
+	private PartitionSliceNode partitionSlice;
+	private List<Filter> pushdownFilters = Collections.emptyList();
+	private List<Transformer> transformers = Collections.emptyList();
 	
 	@Getter
 	@RequiredArgsConstructor
@@ -98,6 +110,18 @@ public class SimpleQueryCreator implements QueryCreator {
 		}
 	}
 
+	/**
+	 * Parts of the built query that are kept for merging queries which read the same rows
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	private static class QueryParts {
+		private final String columnList;
+		private final String source;
+		private final String rowCondition;
+		private final String filterCondition;
+	}
+
 	@Getter
 	@Builder
 	private static class OrGroup {
@@ -141,6 +165,13 @@ public class SimpleQueryCreator implements QueryCreator {
 	@Override
 	public void addColumn(String table, String name) {
 		selectedColumns.add(createOrFindAlias(table) + "." + name);
+		selectedColumnTypes.add(
+			schema.findDatabaseByName(database)
+				.flatMap(db -> db.findTableByName(table))
+				.flatMap(t -> t.findColumnByName(name))
+				.map(Column::getType)
+				.orElse(TeradataColumnType.UNKNOWN)
+		);
 	}
 
 	@Override
@@ -183,45 +214,84 @@ public class SimpleQueryCreator implements QueryCreator {
 	private void clearCreator() {
 		selectedTables.clear();
 		selectedColumns.clear();
+		selectedColumnTypes.clear();
 		joinColumns.clear();
 		conditions.clear();
 		globalConditions.clear();
 		tableAlias.clear();
+		partitionSlice = null;
 		if(aliaser != null) aliaser.reset();
 	}
 
 	private List<Query> buildSelect() {
-		String selectClause = createColumnSelect();
+		String columnList = pushDownTransformers().stream().collect(Collectors.joining(", "));
 		String fromClause = createFromClause();
 		String joinClause = createJoins();
-		String whereClause = createWhereConditions();
+		String rowCondition = createRowCondition();
+		String filterCondition = createFilterConditions().stream().collect(Collectors.joining(" and "));
+		String whereClause = joinConditions(rowCondition, filterCondition);
 		StringBuilder baseQuery =
 				new StringBuilder()
-					.append(selectClause)
+					.append("select ")
+					.append(columnList)
 					.append(" ")
 					.append(fromClause)
 					.append(" ")
 					.append(joinClause)
-					.append(" ")
-					.append(whereClause);
-		if(yearSlice != null && tableHasYearColumn(yearSlice.getColumn()))
-			return createSlicedQueries(baseQuery, !whereClause.isEmpty());
+					.append(" ");
+		if(!whereClause.isEmpty())
+			baseQuery.append("where ").append(whereClause);
+		QueryParts parts = new QueryParts(columnList, fromClause + " " + joinClause, rowCondition, filterCondition);
+		List<SlicePartition> slices = createSlices();
+		if(slices.isEmpty())
+			return createUnslicedQuery(baseQuery, parts);
 		else
-			return createUnslicedQuery(baseQuery);
+			return createSlicedQueries(baseQuery, !whereClause.isEmpty(), slices, parts);
+	}
+
+	/**
+	 * combines year slices and the parts of each year
+	 * @return empty list if the table is not sliced
+	 */
+	private List<SlicePartition> createSlices() {
+		List<SlicePartition> slices = new ArrayList<>();
+		if(yearSlice != null && tableHasColumn(yearSlice.getColumn())) {
+			for(int year : yearSlice.calculateYearRange()) {
+				String condition = new Where(
+						selectedTables.get(0),
+						yearSlice.getColumn(),
+						Collections.singletonList(Integer.toString(year)),
+						WhereOperator.EQUAL,
+						WhereType.NUMERIC)
+					.render(tableAlias).get(0);
+				slices.add(new SlicePartition(Integer.toString(year), condition));
+			}
+		}
+		if(partitionSlice == null || !tableHasColumn(partitionSlice.getColumn()))
+			return slices;
+		List<SlicePartition> partitions = partitionSlice.createPartitions(tableAlias.get(selectedTables.get(0)) + "." + partitionSlice.getColumn());
+		if(slices.isEmpty())
+			return partitions;
+		List<SlicePartition> partitionedSlices = new ArrayList<>(slices.size() * partitions.size());
+		for(SlicePartition slice : slices) {
+			for(SlicePartition partition : partitions)
+				partitionedSlices.add(new SlicePartition(slice.getName() + "." + partition.getName(), slice.getCondition() + " and " + partition.getCondition()));
+		}
+		return partitionedSlices;
 	}
 
-	private boolean tableHasYearColumn(String yearColumnName) {
+	private boolean tableHasColumn(String columnName) {
 		return schema.findDatabaseByName(database)
 				.flatMap(db -> db.findTableByName(selectedTables.get(0)))
-				.flatMap(t -> t.findColumnByName(yearColumnName))
+				.flatMap(t -> t.findColumnByName(columnName))
 				.isPresent();
 	}
 
-	private List<Query> createUnslicedQuery(StringBuilder baseQuery) {
-		return Collections.singletonList(createFinalQuery(baseQuery.append(";").toString(), ""));
+	private List<Query> createUnslicedQuery(StringBuilder baseQuery, QueryParts parts) {
+		return Collections.singletonList(createFinalQuery(baseQuery.append(";").toString(), "", parts, ""));
 	}
 
-	private SimpleQuery createFinalQuery(String baseQuery, String sliceName) {
+	private SimpleQuery createFinalQuery(String baseQuery, String sliceName, QueryParts parts, String sliceCondition) {
 		return SimpleQuery
 			.builder()
 			.dbName(database)
@@ -229,33 +299,26 @@ public class SimpleQueryCreator implements QueryCreator {
 			.query(baseQuery)
 			.tableName(selectedTables.get(0))
 			.sliceName(sliceName)
+			.selectList(parts.getColumnList())
+			.source(parts.getSource())
+			.rowCondition(parts.getRowCondition())
+			.sharedCondition(joinConditions(parts.getFilterCondition(), sliceCondition))
 			.build();
 	}
 
-	private List<Query> createSlicedQueries(StringBuilder baseQuery, boolean whereClauseExists) {
-		List<Integer> years = yearSlice.calculateYearRange();
-		List<String> queries = new ArrayList<>(years.size());
-		for(int year : years) {
-			queries.add(
+	private List<Query> createSlicedQueries(StringBuilder baseQuery, boolean whereClauseExists, List<SlicePartition> slices, QueryParts parts) {
+		return slices
+				.stream()
+				.map(slice -> createFinalQuery(
 						new StringBuilder(baseQuery)
-						.append(whereClauseExists ? " and " : "where ")
-						.append(
-							new Where(
-									selectedTables.get(0),
-									yearSlice.getColumn(),
-									Collections.singletonList(Integer.toString(year)),
-									WhereOperator.EQUAL,
-									WhereType.NUMERIC)
-							.render(tableAlias).get(0)
-						)
-						.append(";")
-						.toString()
-			);
-		}
-		
-		return IntStream
-				.range(0, years.size())
-				.mapToObj(index -> createFinalQuery(queries.get(index), Integer.toString(years.get(index))))
+							.append(whereClauseExists ? " and " : "where ")
+							.append(slice.getCondition())
+							.append(";")
+							.toString(),
+						slice.getName(),
+						parts,
+						slice.getCondition())
+				)
 				.collect(Collectors.toList());
 	}
 
@@ -271,11 +334,42 @@ public class SimpleQueryCreator implements QueryCreator {
 						.toString();
 	}
 
-	private String createColumnSelect() {
-		return new StringBuilder()
-						.append("select ")
-						.append(selectedColumns.stream().collect(Collectors.joining(", ")))
-						.toString();
+	/**
+	 * adds the columns of the transformers to the select list.
+	 * Transformers are applied to the layout in order, so the exported columns are the same as if the rows were transformed after the export.
+	 * @return selected columns only if any transformer that changes rows of the main table cannot be computed by the database
+	 */
+	private List<String> pushDownTransformers() {
+		if(transformers.isEmpty() || selectedTables.isEmpty())
+			return selectedColumns;
+		String mainTable = selectedTables.get(0);
+		List<String> columnNames = new ArrayList<>(selectedColumns.size());
+		Map<String, SqlColumn> columns = new HashMap<>();
+		for(int i = 0; i < selectedColumns.size(); i++) {
+			String column = selectedColumns.get(i);
+			//exported rows name their columns by the lowercase label
+			String name = column.substring(column.indexOf('.') + 1).toLowerCase();
+			columnNames.add(name);
+			columns.put(name, new SqlColumn(column, selectedColumnTypes.get(i)));
+		}
+		RowSchema layout = RowSchema.of(columnNames);
+		List<String> selectList = new ArrayList<>(selectedColumns);
+		for(Transformer transformer : transformers) {
+			ComputedColumn computed = transformer.pushDown(database, mainTable, layout, columns);
+			if(computed == null)
+				return selectedColumns;
+			if(computed == ComputedColumn.SKIP)
+				continue;
+			if(computed.isPrepended()) {
+				selectList.add(0, computed.render());
+				layout = layout.prepend(computed.getName());
+			} else {
+				selectList.add(computed.render());
+				layout = layout.append(computed.getName());
+			}
+			columns.put(computed.getName(), new SqlColumn("(" + computed.getValue().getExpression() + ")", computed.getValue().getType()));
+		}
+		return selectList;
 	}
 
 	private String createJoins() {
@@ -285,20 +379,59 @@ public class SimpleQueryCreator implements QueryCreator {
 				.collect(Collectors.joining(" "));
 	}
 	
-	private String createWhereConditions() {
-		if(conditions.isEmpty() && globalConditions.isEmpty())
-			return "";
-		StringBuilder whereClause =
+	/**
+	 * @return conditions of the view and the dataset or an empty string if all rows are selected
+	 */
+	private String createRowCondition() {
+		StringBuilder rowCondition =
 				new StringBuilder()
 					.append(conditions.stream().map(condition -> condition.render(tableAlias)).collect(Collectors.joining(" and ")));
 		if(globalConditions != null && !globalConditions.isEmpty()) {
-			if(whereClause.length() > 0)
-				whereClause.append(" and ");
-			whereClause
+			if(rowCondition.length() > 0)
+				rowCondition.append(" and ");
+			rowCondition
 				.append(globalConditions.stream().map(condition -> condition.render(tableAlias)).collect(Collectors.joining(" and ")));
 		}
-		whereClause.insert(0, "where ");
-		return whereClause.toString();
+		return rowCondition.toString();
+	}
+
+	private static String joinConditions(String first, String second) {
+		if(first.isEmpty())
+			return second;
+		if(second.isEmpty())
+			return first;
+		return first + " and " + second;
+	}
+
+	/**
+	 * translates the pushdown filters that apply to the selected columns of the main table.
+	 * The filters record whether the rows of the main table are filtered by the database,
+	 * e.g. the column of a joined table is still checked after the export.
+	 * @return sql conditions of the filters
+	 */
+	private List<String> createFilterConditions() {
+		if(pushdownFilters.isEmpty() || selectedTables.isEmpty())
+			return Collections.emptyList();
+		String mainTable = selectedTables.get(0);
+		String columnPrefix = tableAlias.get(mainTable) + ".";
+		List<String> filterConditions = new ArrayList<>(pushdownFilters.size());
+		for(Filter filter : pushdownFilters) {
+			if(filter.getColumn() == null || !filter.appliesTo(database, mainTable))
+				continue;
+			String condition = selectedColumns
+				.stream()
+				.filter(column -> column.startsWith(columnPrefix) && column.substring(columnPrefix.length()).equalsIgnoreCase(filter.getColumn()))
+				.findFirst()
+				.map(filter::createSqlCondition)
+				.orElse(null);
+			if(condition != null) {
+				filterConditions.add(condition);
+				filter.addPushedDownTable(database, mainTable);
+			} else if(selectedColumns.stream().anyMatch(column -> column.substring(column.indexOf('.') + 1).equalsIgnoreCase(filter.getColumn()))) {
+				filter.addCheckedTable(database, mainTable);
+			}
+		}
+		return filterConditions;
 	}
 
 	private String createOrFindAlias(String name) {
@@ -341,6 +474,21 @@ public class SimpleQueryCreator implements QueryCreator {
 		yearSlice = slice;
 	}
 
+	@Override
+	public void setPartitionSlice(PartitionSliceNode slice) {
+		partitionSlice = slice;
+	}
+
+	@Override
+	public void setPushdownFilters(List<Filter> filters) {
+		pushdownFilters = new ArrayList<>(filters);
+	}
+
+	@Override
+	public void setTransformers(List<Transformer> transformers) {
+		this.transformers = new ArrayList<>(transformers);
+	}
+
 	@Override
 	public void setDatasetName(String name) {
 		datasetName = name;
@@ -1,30 +1,101 @@
 package de.ingef.eva.services;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
 
+import de.ingef.eva.configuration.ConnectionPoolConfig;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
 /**
- * Creates jdbc connections
+ * Creates jdbc connections and keeps them open for reuse.
+ * At most {@link ConnectionPoolConfig#getMaxSessions()} connections are handed out at the same time.
+ * Idle connections are validated before they are handed out again and closed once they exceeded the idle timeout.
+ * Instances are thread-safe.
  */
 @Log4j2
-@RequiredArgsConstructor
 public abstract class ConnectionFactory {
 
+	/**
+	 * Settings that are reset when a connection is returned. Connections whose other settings were changed are closed instead.
+	 */
+	private static final Set<String> RESETTABLE_SETTINGS = new HashSet<>(Arrays.asList("setAutoCommit", "setReadOnly"));
+
 	protected final String username;
 	protected final String password;
 	protected final String connectionUrl;
 	private final String jdbcDriver;
-	private int connectionCount = 0;
+	private final ConnectionPoolConfig poolConfig;
+	private final Semaphore sessions;
+	/**
+	 * Idle connections with the most recently used first
+	 */
+	private final Deque<IdleConnection> idleConnections = new ArrayDeque<>();
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong openedConnectionCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+	/**
+	 * Set by {@link #close()}. Guarded by the lock of the idle connections.
+	 */
+	private boolean isClosed = false;
+
+	public ConnectionFactory(String username, String password, String connectionUrl, String jdbcDriver) {
+		this(username, password, connectionUrl, jdbcDriver, new ConnectionPoolConfig());
+	}
+
+	public ConnectionFactory(String username, String password, String connectionUrl, String jdbcDriver, ConnectionPoolConfig poolConfig) {
+		this.username = username;
+		this.password = password;
+		this.connectionUrl = connectionUrl;
+		this.jdbcDriver = jdbcDriver;
+		this.poolConfig = poolConfig;
+		int maxSessions = poolConfig.getMaxSessions() < 1 ? Integer.MAX_VALUE : poolConfig.getMaxSessions();
+		sessions = new Semaphore(maxSessions, true);
+	}
+
 	/**
-	 * creates a new db connection. Factory must be initialized by calling {@link #initialize()} first
+	 * hands out an open db connection. Closing the connection returns it to the factory.
+	 * Factory must be initialized by calling {@link #initialize()} first
 	 * @return
+	 * @throws SQLException if no session became free in time, the connection could not be opened or the factory was closed
 	 */
-	public synchronized Connection createConnection() throws SQLException {
-		++connectionCount;
-		return instantiateConnection();
+	public Connection createConnection() throws SQLException {
+		synchronized(idleConnections) {
+			if(isClosed)
+				throw new SQLException("Connection factory was closed.");
+		}
+		acquireSession();
+		try {
+			Connection connection = pollValidIdleConnection();
+			if(connection == null) {
+				connection = instantiateConnection();
+				openedConnectionCount.incrementAndGet();
+			}
+			return wrap(connection);
+		} catch (SQLException | RuntimeException e) {
+			sessions.release();
+			throw e;
+		}
 	}
 	
 	protected abstract Connection instantiateConnection() throws SQLException;
@@ -32,6 +103,55 @@ public abstract class ConnectionFactory {
 	public boolean initialize() {
 		return loadDriver();
 	}
+
+	/**
+	 * closes all idle connections and logs the usage of the pool.
+	 * Connections that are still in use are closed when they are returned.
+	 */
+	public void close() {
+		List<IdleConnection> connections;
+		synchronized(idleConnections) {
+			isClosed = true;
+			connections = new ArrayList<>(idleConnections);
+			idleConnections.clear();
+		}
+		connections.forEach(idle -> closeQuietly(idle.getConnection()));
+		log.info("Connection pool: {} connections handed out, {} sessions opened, {} timeouts, average wait {} ms, maximum wait {} ms",
+				getBorrowCount(), getOpenedConnectionCount(), getTimeoutCount(), getAverageWaitMillis(), getMaxWaitMillis());
+	}
+
+	/**
+	 * @return number of connections that were handed out
+	 */
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	/**
+	 * @return number of physical connections that were opened
+	 */
+	public long getOpenedConnectionCount() {
+		return openedConnectionCount.get();
+	}
+
+	/**
+	 * @return number of callers that gave up waiting for a free session
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * @return average time callers waited for a free session including callers that gave up
+	 */
+	public long getAverageWaitMillis() {
+		long waits = borrowCount.get() + timeoutCount.get();
+		return waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / waits);
+	}
+
+	public long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
 		
 	private boolean loadDriver() {
 		try {
@@ -42,4 +162,173 @@ public abstract class ConnectionFactory {
 			return false;
 		}
 	}
+
+	private void acquireSession() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if(poolConfig.getMaxWaitSeconds() < 1) {
+				sessions.acquire();
+			} else if(!sessions.tryAcquire(poolConfig.getMaxWaitSeconds(), TimeUnit.SECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLException("No database session became free within " + poolConfig.getMaxWaitSeconds() + " seconds.");
+			}
+			borrowCount.incrementAndGet();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database session.", e);
+		} finally {
+			long waitNanos = System.nanoTime() - start;
+			totalWaitNanos.addAndGet(waitNanos);
+			maxWaitNanos.accumulate(waitNanos);
+		}
+	}
+
+	/**
+	 * takes the most recently used idle connection that is still usable
+	 * @return null if there is no usable idle connection
+	 */
+	private Connection pollValidIdleConnection() {
+		while(true) {
+			IdleConnection idle;
+			synchronized(idleConnections) {
+				evictExpiredConnections();
+				idle = idleConnections.pollFirst();
+			}
+			if(idle == null)
+				return null;
+			if(isValid(idle.getConnection()))
+				return idle.getConnection();
+			log.warn("Discarding invalid database connection.");
+			closeQuietly(idle.getConnection());
+		}
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(poolConfig.getValidationTimeoutSeconds());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * called when a handed out connection is closed. The connection is closed if the factory was closed in the meantime
+	 * or if its settings cannot be reset.
+	 * @param connection physical connection
+	 * @param changedSettings names of the setters the user called
+	 */
+	private void release(Connection connection, Set<String> changedSettings) {
+		try {
+			if(!resetSettings(connection, changedSettings)) {
+				closeQuietly(connection);
+				return;
+			}
+			synchronized(idleConnections) {
+				if(!isClosed) {
+					idleConnections.addFirst(new IdleConnection(connection, System.nanoTime()));
+					evictExpiredConnections();
+					return;
+				}
+			}
+			closeQuietly(connection);
+		} finally {
+			sessions.release();
+		}
+	}
+
+	/**
+	 * restores the default settings of a new connection. Open transactions are rolled back.
+	 * @param connection
+	 * @param changedSettings
+	 * @return false if the connection is closed or the settings could not be reset
+	 */
+	private boolean resetSettings(Connection connection, Set<String> changedSettings) {
+		if(!RESETTABLE_SETTINGS.containsAll(changedSettings))
+			return false;
+		try {
+			if(connection.isClosed())
+				return false;
+			if(changedSettings.contains("setAutoCommit") && !connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			if(changedSettings.contains("setReadOnly"))
+				connection.setReadOnly(false);
+			return true;
+		} catch (SQLException e) {
+			log.warn("Discarding database connection whose settings could not be reset. {}", e);
+			return false;
+		}
+	}
+
+	/**
+	 * closes connections that were idle for longer than the idle timeout. Must be called while holding the lock of the idle connections.
+	 */
+	private void evictExpiredConnections() {
+		long oldestAllowed = System.nanoTime() - TimeUnit.SECONDS.toNanos(poolConfig.getIdleTimeoutSeconds());
+		while(!idleConnections.isEmpty() && idleConnections.peekLast().getReleaseTime() - oldestAllowed < 0)
+			closeQuietly(idleConnections.pollLast().getConnection());
+	}
+
+	private void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.error("Could not close database connection. {}", e);
+		}
+	}
+
+	private Connection wrap(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class },
+				new PooledConnection(connection)
+			);
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class IdleConnection {
+		private final Connection connection;
+		private final long releaseTime;
+	}
+
+	/**
+	 * Forwards calls to the physical connection until the connection is closed by its user
+	 */
+	@RequiredArgsConstructor
+	private class PooledConnection implements InvocationHandler {
+		private final Connection connection;
+		private final AtomicBoolean isReturned = new AtomicBoolean(false);
+		private final Set<String> changedSettings = ConcurrentHashMap.newKeySet();
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+				case "close":
+					if(isReturned.compareAndSet(false, true))
+						release(connection, changedSettings);
+					return null;
+				case "isClosed":
+					return isReturned.get() || connection.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + connection;
+				default:
+					if(isReturned.get())
+						throw new SQLException("Connection was already closed.");
+					//savepoints belong to the transaction, which is rolled back with the auto commit setting
+					if(method.getName().startsWith("set") && !method.getName().equals("setSavepoint"))
+						changedSettings.add(method.getName());
+					try {
+						return method.invoke(connection, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+			}
+		}
+	}
 }
@@ -0,0 +1,32 @@
+package de.ingef.eva.services;
+
+import java.sql.Connection;
+
+import de.ingef.eva.configuration.ConnectionPoolConfig;
+import de.ingef.eva.configuration.SyntheticDataConfig;
+import de.ingef.eva.datasource.synthetic.SyntheticDatabase;
+
+/**
+ * Hands out connections to generated data so that the export can run without a Teradata database
+ */
+public class SyntheticConnectionFactory extends ConnectionFactory {
+
+	private final SyntheticDatabase database;
+
+	public SyntheticConnectionFactory(SyntheticDataConfig config, ConnectionPoolConfig poolConfig) {
+		super("", "", "synthetic", SyntheticDatabase.class.getName(), poolConfig);
+		database = new SyntheticDatabase(config);
+	}
+
+	@Override
+	protected Connection instantiateConnection() {
+		return database.connect();
+	}
+
+	/**
+	 * @return number of rows that were generated for all connections
+	 */
+	public long getRowCount() {
+		return database.getRowCount();
+	}
+}
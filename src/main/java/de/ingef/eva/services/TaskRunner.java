@@ -3,10 +3,13 @@ package de.ingef.eva.services;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import de.ingef.eva.error.TaskExecutionException;
 import de.ingef.eva.tasks.Task;
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -19,10 +22,25 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class TaskRunner {
 
+	/**
+	 * Limits the wait before a retry to 2^10 times the initial wait
+	 */
+	private static final int MAX_BACKOFF_DOUBLINGS = 10;
+
 	private ExecutorService threadpool;
+	/**
+	 * Resubmits failed tasks to the pool once their wait is over
+	 */
+	private final ScheduledExecutorService retryTimer;
+	/**
+	 * Number of tasks that run at the same time
+	 */
+	@Getter
+	private final int poolSize;
 	
 	public TaskRunner(int poolSize) {
-		threadpool = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+		this.poolSize = poolSize;
+		ThreadFactory daemonThreads = new ThreadFactory() {
 			
 			@Override
 			public Thread newThread(Runnable r) {
@@ -30,7 +48,9 @@ public class TaskRunner {
 				t.setDaemon(true);
 				return t;
 			}
-		});
+		};
+		threadpool = Executors.newFixedThreadPool(poolSize, daemonThreads);
+		retryTimer = Executors.newSingleThreadScheduledExecutor(daemonThreads);
 	}
 	
 	/**
@@ -49,19 +69,50 @@ public class TaskRunner {
 	 * @return
 	 */
 	public <T> CompletableFuture<T> run(Task<T> task, int repetitions) {
-		return CompletableFuture.supplyAsync(() -> {
-			for(int repetition = 0; repetition < repetitions; repetition++) {
-				log.info("Executing task '{}' (iteration {}): {}", task.getName(), repetition, task.getDescription());
-				try {
-					T result = task.execute();
-					log.info("Task '{}' completed: {}", task.getName(), task.getDescription());
-					return result;
-				} catch (TaskExecutionException e) {
-					log.error(e);
-					continue;
-				}
+		return run(task, repetitions, 0);
+	}
+
+	/**
+	 * retries the given task on failure. The wait before a retry doubles with every failed attempt.
+	 * Retries are scheduled by a timer, so no thread of the pool is blocked while waiting.
+	 * @param task
+	 * @param repetitions maximum number of attempts
+	 * @param backoffMillis wait before the first retry
+	 * @return fails with the error of the last attempt as cause if all attempts failed
+	 */
+	public <T> CompletableFuture<T> run(Task<T> task, int repetitions, long backoffMillis) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		runAttempt(task, 0, repetitions, backoffMillis, null, result);
+		return result;
+	}
+
+	private <T> void runAttempt(Task<T> task, int repetition, int repetitions, long backoffMillis, TaskExecutionException lastError, CompletableFuture<T> result) {
+		if(repetition >= repetitions) {
+			result.completeExceptionally(new TaskExecutionException("Maximum number of retries reached. Task '" + task.getName() + "' will not be retried.", lastError));
+			return;
+		}
+		threadpool.execute(() -> {
+			log.info("Executing task '{}' (iteration {}): {}", task.getName(), repetition, task.getDescription());
+			try {
+				T value = task.execute();
+				log.info("Task '{}' completed: {}", task.getName(), task.getDescription());
+				result.complete(value);
+			} catch (TaskExecutionException e) {
+				log.error(e);
+				scheduleRetry(task, repetition + 1, repetitions, backoffMillis, e, result);
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
 			}
-			throw new RuntimeException("Maximum number of retries reached. Task '" + task.getName() + "' will not be retried.");
-		}, threadpool);
+		});
+	}
+
+	private <T> void scheduleRetry(Task<T> task, int repetition, int repetitions, long backoffMillis, TaskExecutionException lastError, CompletableFuture<T> result) {
+		long waitMillis = backoffMillis << Math.min(repetition - 1, MAX_BACKOFF_DOUBLINGS);
+		if(waitMillis <= 0 || repetition >= repetitions) {
+			runAttempt(task, repetition, repetitions, backoffMillis, lastError, result);
+			return;
+		}
+		log.info("Retrying task '{}' in {} ms", task.getName(), waitMillis);
+		retryTimer.schedule(() -> runAttempt(task, repetition, repetitions, backoffMillis, lastError, result), waitMillis, TimeUnit.MILLISECONDS);
 	}
 }
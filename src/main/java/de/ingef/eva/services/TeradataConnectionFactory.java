@@ -4,12 +4,18 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
+import de.ingef.eva.configuration.ConnectionPoolConfig;
+
 public class TeradataConnectionFactory extends ConnectionFactory {
 
 	public TeradataConnectionFactory(String username, String password, String connectionUrl) {
 		super(username, password, connectionUrl, "com.teradata.jdbc.TeraDriver");
 	}
 
+	public TeradataConnectionFactory(String username, String password, String connectionUrl, ConnectionPoolConfig poolConfig) {
+		super(username, password, connectionUrl, "com.teradata.jdbc.TeraDriver", poolConfig);
+	}
+
 	@Override
 	protected Connection instantiateConnection() throws SQLException {
 		return DriverManager.getConnection(
@@ -18,7 +24,4 @@ public class TeradataConnectionFactory extends ConnectionFactory {
 				password
 		);
 	}
-
-	
-
 }
@@ -10,6 +10,7 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import de.ingef.eva.error.PartialSliceException;
 import de.ingef.eva.error.TaskExecutionException;
 import de.ingef.eva.etl.Row;
 import de.ingef.eva.query.Query;
@@ -41,12 +42,11 @@ public class SqlTask extends Task<Stream<Row>> {
 			conn = connectionFactory.createConnection();
 			statement = conn.prepareStatement(query.getQuery());
 			result = statement.executeQuery();
+			ResultSetIterator rows = new ResultSetIterator(conn, statement, result, createConverterWithQueryData(query, resultConverter), query.getDescription());
 			return StreamSupport.stream(
-					Spliterators.spliteratorUnknownSize(
-							new ResultSetIterator(conn, statement, result, createConverterWithQueryData(query, resultConverter)),
-							0
-					),
-					false);
+					Spliterators.spliteratorUnknownSize(rows, 0),
+					false)
+				.onClose(rows::close);
 		} catch (SQLException e) {
 			log.error("{}, Error: {}", createErrorMessage(), e);
 				try {
@@ -94,15 +94,20 @@ public class SqlTask extends Task<Stream<Row>> {
 		private final PreparedStatement statement;
 		private final ResultSet resultSet;
 		private final Function<ResultSet, Row> rowConverter;
+		private final String description;
+		private long rowCount = 0;
 		
+		/**
+		 * @throws PartialSliceException if the result set fails before its last row
+		 */
 		@Override
 		public boolean hasNext() {
 			boolean hasNext = false;
 			try {
 				hasNext = resultSet.next();
 			} catch (SQLException e) {
-				log.error("Could not move to next row. {}", e);
 				close();
+				throw new PartialSliceException("Rows stopped after " + rowCount + " rows. " + description, e);
 			}
 			if(!hasNext)
 				close();
@@ -111,6 +116,7 @@ public class SqlTask extends Task<Stream<Row>> {
 
 		@Override
 		public Row next() {
+			rowCount++;
 			return rowConverter.apply(resultSet);
 		}
 		
@@ -118,8 +124,12 @@ public class SqlTask extends Task<Stream<Row>> {
 			try {
 				resultSet.close();
 				statement.close();
-				if(connection.isValid(5))
-					connection.close();
+			} catch(SQLException e) {
+				log.error("Could not close resources in iterator. {}", e);
+			}
+			try {
+				//broken pooled connections are discarded when they would be handed out again
+				connection.close();
 			} catch(SQLException e) {
 				log.error("Could not close resources in iterator. {}", e);
 			}
@@ -1,13 +1,15 @@
 package de.ingef.eva.tasks;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import de.ingef.eva.data.RowElement;
 import de.ingef.eva.error.TaskExecutionException;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import de.ingef.eva.utility.io.CsvWriter;
 import lombok.extern.log4j.Log4j2;
 
@@ -37,24 +39,34 @@ public class WriteFileTask extends Task<Boolean> {
 	public WriteFileTask(CsvWriter writer, Stream<Row> rows, Predicate<Row> rowFilter, Function<Row, Row> rowTransformer) {
 		this("WriteFileTask", "Write to file: " + writer.getAttachedFile() + "'", writer, rows, rowFilter, rowTransformer);
 	}
+	
+	/**
+	 * writes rows that were already filtered and transformed
+	 * @param writer
+	 * @param rows
+	 */
+	public WriteFileTask(CsvWriter writer, Stream<Row> rows) {
+		this(writer, rows, row -> true, Function.identity());
+	}
 
 	@Override
 	public Boolean execute() {
-		rows
-		.filter(rowFilter)
-		.map(rowTransformer)
-		.forEach(row -> {
-			try {
-				if(!writer.isNewFile()) {
-					writeColumns(writer, row);
-				} else {
-					writeHeader(writer, row.getColumnName2Index());
-					writeColumns(writer, row);
+		try {
+			rows
+			.filter(rowFilter)
+			.map(rowTransformer)
+			.forEach(row -> {
+				try {
+					writeRow(writer, row);
+				} catch (IOException e) {
+					throw new TaskExecutionException("File creation failed.", e);
 				}
-			} catch (IOException e) {
-				throw new TaskExecutionException("File creation failed.", e);
-			}
-		});
+			});
+		} catch (RuntimeException e) {
+			//release the file. Its content is incomplete and is discarded by the caller.
+			closeQuietly();
+			throw e;
+		}
 		try {
 			writer.close();
 		} catch (IOException e) {
@@ -64,19 +76,37 @@ public class WriteFileTask extends Task<Boolean> {
 		return true;
 	}
 	
-	private void writeColumns(CsvWriter writer, Row row) throws IOException {
-		row.getColumns()
-		.stream()
-		.map(e -> e.getContent())
-		.forEachOrdered(value -> writer.addEntry(value));
+	private void closeQuietly() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			log.error("Could not close writer. {}", e);
+		}
+	}
+
+	/**
+	 * writes the row. The header is written in front of the first row of a file and ends the first block of block gzip files.
+	 * @param writer
+	 * @param row
+	 * @throws IOException
+	 */
+	public static void writeRow(CsvWriter writer, Row row) throws IOException {
+		if(writer.isNewFile())
+			writeHeader(writer, row.getSchema());
+		writeColumns(writer, row);
+	}
+
+	private static void writeColumns(CsvWriter writer, Row row) throws IOException {
+		List<RowElement> columns = row.getColumns();
+		for(int i = 0; i < columns.size(); i++)
+			writer.addEntry(columns.get(i).getContent());
 		writer.writeLine();
 	}
 
-	private void writeHeader(CsvWriter writer, Map<String, Integer> columnName2Index) throws IOException {
-		String[] header = new String[columnName2Index.size()];
-		columnName2Index.forEach((name, index) -> header[index] = name);
-		for(String h : header)
+	private static void writeHeader(CsvWriter writer, RowSchema schema) throws IOException {
+		for(String h : schema.getColumnNames())
 			writer.addEntry(h);
 		writer.writeLine();
+		writer.finishBlock();
 	}
 }
@@ -0,0 +1,157 @@
+package de.ingef.eva.utility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import de.ingef.eva.utility.io.CsvReader;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Measures duration, throughput and garbage collection of consecutive stages
+ */
+@Log4j2
+public class Benchmark {
+
+	private final List<StageResult> results = new ArrayList<>();
+
+	/**
+	 * runs the stage and records its duration and the garbage collection time spent meanwhile
+	 * @param stage name of the stage
+	 * @param action work of the stage
+	 * @param rows number of rows processed so far. Read before and after the stage, outside of the measured time.
+	 * @param bytes number of bytes written so far. Read before and after the stage, outside of the measured time.
+	 * @return measurement of the stage
+	 */
+	public StageResult measure(String stage, Runnable action, LongSupplier rows, LongSupplier bytes) {
+		long rowsBefore = rows.getAsLong();
+		long bytesBefore = bytes.getAsLong();
+		long gcMillisBefore = sumGcMillis();
+		long gcCountBefore = sumGcCount();
+		long start = System.nanoTime();
+		action.run();
+		long durationNanos = System.nanoTime() - start;
+		long gcMillis = sumGcMillis() - gcMillisBefore;
+		long gcCount = sumGcCount() - gcCountBefore;
+		StageResult result = new StageResult(
+				stage,
+				durationNanos / 1_000_000,
+				rows.getAsLong() - rowsBefore,
+				bytes.getAsLong() - bytesBefore,
+				gcMillis,
+				gcCount
+		);
+		results.add(result);
+		return result;
+	}
+
+	public List<StageResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * logs one line per measured stage
+	 */
+	public void logReport() {
+		log.info(String.format("%-12s %10s %14s %12s %12s %10s %8s", "stage", "time [s]", "rows", "rows/s", "MB/s", "gc [ms]", "gc runs"));
+		for(StageResult result : results)
+			log.info(String.format("%-12s %10.1f %14d %12.0f %12.2f %10d %8d",
+					result.getStage(), result.getMillis() / 1000.0, result.getRows(), result.getRowsPerSecond(), result.getMegabytesPerSecond(), result.getGcMillis(), result.getGcCount()));
+	}
+
+	/**
+	 * @param directory
+	 * @return total size of all files below the directory. 0 if it does not exist.
+	 */
+	public static long sizeOf(Path directory) {
+		if(!Files.exists(directory))
+			return 0;
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files
+					.filter(Files::isRegularFile)
+					.mapToLong(file -> {
+						try {
+							return Files.size(file);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					})
+					.sum();
+		} catch (IOException | UncheckedIOException e) {
+			log.error("Could not determine size of '{}'. {}", directory, e);
+			return 0;
+		}
+	}
+
+	/**
+	 * @param directory
+	 * @param filter selects the csv files whose rows are counted
+	 * @return number of rows without headers of all selected csv files below the directory. 0 if it does not exist.
+	 */
+	public static long countRows(Path directory, Predicate<Path> filter) {
+		if(!Files.exists(directory))
+			return 0;
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files
+					.filter(Files::isRegularFile)
+					.filter(filter)
+					.mapToLong(Benchmark::countRows)
+					.sum();
+		} catch (IOException | UncheckedIOException e) {
+			log.error("Could not count rows below '{}'. {}", directory, e);
+			return 0;
+		}
+	}
+
+	private static long countRows(Path csvFile) {
+		try {
+			CsvReader reader = csvFile.toString().endsWith(".gz") ? CsvReader.createGzipReader(csvFile) : CsvReader.createReader(csvFile);
+			long[] rows = { 0 };
+			//skip header
+			if(reader.nextRow() != null)
+				reader.forEachRow(row -> rows[0]++);
+			reader.close();
+			return rows[0];
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long sumGcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+	}
+
+	private static long sumGcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class StageResult {
+		private final String stage;
+		private final long millis;
+		private final long rows;
+		private final long bytes;
+		private final long gcMillis;
+		private final long gcCount;
+
+		public double getRowsPerSecond() {
+			return millis == 0 ? 0 : rows * 1000.0 / millis;
+		}
+
+		public double getMegabytesPerSecond() {
+			return millis == 0 ? 0 : bytes / (1024.0 * 1024.0) * 1000.0 / millis;
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.util.function.Function;
 
 import de.ingef.eva.data.RowElement;
 import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -29,9 +30,9 @@ public class SqlRunner {
 			ResultSet results = statement.executeQuery();
 		) {
 			List<Row> rows = new ArrayList<>();
-			Map<String, Integer> indices = indexMapper.apply(results.getMetaData());
+			RowSchema schema = RowSchema.of(indexMapper.apply(results.getMetaData()));
 			while(results.next()) {
-				rows.add(new Row(db, table, converter.apply(results), indices));
+				rows.add(new Row(db, table, converter.apply(results), schema));
 			}
 						
 			return rows;
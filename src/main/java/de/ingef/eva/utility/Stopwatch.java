@@ -13,8 +13,16 @@ public class Stopwatch {
 	}
 	
 	public String createReadableDelta() {
+		return formatDuration(stopTime - startTime);
+	}
+	
+	/**
+	 * formats the given duration as days, hours, minutes and seconds
+	 * @param delta duration in milliseconds
+	 * @return
+	 */
+	public static String formatDuration(long delta) {
 		StringBuilder deltaString = new StringBuilder();
-		long delta = stopTime - startTime;
 
 		long secondsInMilli = 1000;
 		long minutesInMilli = secondsInMilli * 60;
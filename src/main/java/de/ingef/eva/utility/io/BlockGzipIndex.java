@@ -0,0 +1,122 @@
+package de.ingef.eva.utility.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import de.ingef.eva.constant.OutputDirectory;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Sidecar index of a block gzip file. For every gzip member the compressed file offset and the offset within the uncompressed data is stored.
+ * An additional terminal entry holds the total compressed and uncompressed sizes.
+ */
+@Getter
+@RequiredArgsConstructor
+public class BlockGzipIndex {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final long[] compressedOffsets;
+	private final long[] uncompressedOffsets;
+
+	public int getBlockCount() {
+		return compressedOffsets.length - 1;
+	}
+
+	public long getCompressedSize(int block) {
+		return compressedOffsets[block + 1] - compressedOffsets[block];
+	}
+
+	public int getUncompressedSize(int block) {
+		return (int) (uncompressedOffsets[block + 1] - uncompressedOffsets[block]);
+	}
+
+	/**
+	 * finds the block that contains the given uncompressed position
+	 * @param uncompressedPosition
+	 * @return block index
+	 */
+	public int findBlock(long uncompressedPosition) {
+		int low = 0;
+		int high = getBlockCount() - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(uncompressedOffsets[middle] <= uncompressedPosition)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	public void write(Path dataFile) throws IOException {
+		Path indexFile = resolveIndexFile(dataFile);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(compressedOffsets.length);
+			for(int i = 0; i < compressedOffsets.length; i++) {
+				out.writeLong(compressedOffsets[i]);
+				out.writeLong(uncompressedOffsets[i]);
+			}
+		}
+	}
+
+	/**
+	 * loads the index of the given data file
+	 * @param dataFile block gzip file
+	 * @return empty if no index exists or if it does not match the data file
+	 * @throws IOException
+	 */
+	public static Optional<BlockGzipIndex> read(Path dataFile) throws IOException {
+		Path indexFile = resolveIndexFile(dataFile);
+		if(Files.notExists(indexFile))
+			return Optional.empty();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if(in.readInt() != FORMAT_VERSION)
+				return Optional.empty();
+			int entryCount = in.readInt();
+			long[] compressed = new long[entryCount];
+			long[] uncompressed = new long[entryCount];
+			for(int i = 0; i < entryCount; i++) {
+				compressed[i] = in.readLong();
+				uncompressed[i] = in.readLong();
+			}
+			//stale index of a replaced file
+			if(entryCount == 0 || compressed[entryCount - 1] != Files.size(dataFile))
+				return Optional.empty();
+			return Optional.of(new BlockGzipIndex(compressed, uncompressed));
+		}
+	}
+
+	public static Path resolveIndexFile(Path dataFile) {
+		return Paths.get(dataFile.toString() + OutputDirectory.BLOCK_INDEX_FILE_EXTENSION);
+	}
+
+	public static void deleteIfExists(Path dataFile) throws IOException {
+		Files.deleteIfExists(resolveIndexFile(dataFile));
+	}
+
+	/**
+	 * moves the index along with its data file
+	 * @param source original data file
+	 * @param target new data file location
+	 * @throws IOException
+	 */
+	public static void move(Path source, Path target) throws IOException {
+		Path sourceIndex = resolveIndexFile(source);
+		Path targetIndex = resolveIndexFile(target);
+		if(Files.exists(sourceIndex))
+			Files.move(sourceIndex, targetIndex, StandardCopyOption.REPLACE_EXISTING);
+		else
+			Files.deleteIfExists(targetIndex);
+	}
+}
@@ -0,0 +1,132 @@
+package de.ingef.eva.utility.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a block gzip file by decompressing several members concurrently.
+ * Members are located with the {@link BlockGzipIndex} of the file and returned in file order.
+ */
+public class BlockGzipInputStream extends InputStream {
+
+	private final Path file;
+	private final FileChannel channel;
+	private final BlockGzipIndex index;
+	private final ExecutorService decompressors;
+	private final int readAhead;
+	private final Deque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+	private int nextBlock;
+	private byte[] current = new byte[0];
+	private int position = 0;
+
+	/**
+	 * @param file block gzip file
+	 * @param index member offsets of the file
+	 * @param firstBlock member at which reading starts
+	 * @param decompressors threads used for decompression
+	 * @param readAhead number of members that are decompressed ahead of the reader
+	 * @throws IOException
+	 */
+	public BlockGzipInputStream(Path file, BlockGzipIndex index, int firstBlock, ExecutorService decompressors, int readAhead) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.index = index;
+		this.decompressors = decompressors;
+		this.readAhead = Math.max(1, readAhead);
+		this.nextBlock = firstBlock;
+		fillReadAhead();
+	}
+
+	public BlockGzipInputStream(Path file, BlockGzipIndex index, ExecutorService decompressors, int readAhead) throws IOException {
+		this(file, index, 0, decompressors, readAhead);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!ensureData())
+			return -1;
+		return current[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0)
+			return 0;
+		if(!ensureData())
+			return -1;
+		int copied = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, copied);
+		position += copied;
+		return copied;
+	}
+
+	@Override
+	public int available() {
+		return current.length - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pendingBlocks.forEach(block -> block.cancel(false));
+		pendingBlocks.clear();
+		channel.close();
+	}
+
+	private boolean ensureData() throws IOException {
+		while(position == current.length) {
+			CompletableFuture<byte[]> next = pendingBlocks.poll();
+			if(next == null)
+				return false;
+			try {
+				current = next.join();
+			} catch (CompletionException e) {
+				throw new IOException("Could not decompress block of '" + file + "'.", e.getCause());
+			}
+			position = 0;
+			fillReadAhead();
+		}
+		return true;
+	}
+
+	private void fillReadAhead() {
+		while(pendingBlocks.size() < readAhead && nextBlock < index.getBlockCount()) {
+			int block = nextBlock++;
+			pendingBlocks.add(CompletableFuture.supplyAsync(() -> decompress(block), decompressors));
+		}
+	}
+
+	private byte[] decompress(int block) {
+		try {
+			ByteBuffer compressed = ByteBuffer.allocate((int) index.getCompressedSize(block));
+			long offset = index.getCompressedOffsets()[block];
+			while(compressed.hasRemaining()) {
+				if(channel.read(compressed, offset + compressed.position()) < 0)
+					throw new IOException("Unexpected end of file.");
+			}
+			byte[] data = new byte[index.getUncompressedSize(block)];
+			try(GZIPInputStream member = new GZIPInputStream(new ByteArrayInputStream(compressed.array()))) {
+				int read = 0;
+				while(read < data.length) {
+					int count = member.read(data, read, data.length - read);
+					if(count < 0)
+						throw new IOException("Member " + block + " is shorter than indexed.");
+					read += count;
+				}
+			}
+			return data;
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		}
+	}
+}
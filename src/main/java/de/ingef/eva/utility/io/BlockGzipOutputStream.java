@@ -0,0 +1,167 @@
+package de.ingef.eva.utility.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Writes data as a sequence of independent gzip members of a fixed uncompressed block size.
+ * Blocks are compressed concurrently and written in order. The result is a regular multi-member gzip file
+ * that can be read by gunzip or {@link java.util.zip.GZIPInputStream}.
+ * On close the member offsets are stored in a {@link BlockGzipIndex} next to the file.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final Path file;
+	private final OutputStream out;
+	private final ExecutorService compressors;
+	private final int maxPendingBlocks;
+	private final Deque<CompletableFuture<CompressedBlock>> pendingBlocks = new ArrayDeque<>();
+	private final LongList compressedOffsets = new LongList();
+	private final LongList uncompressedOffsets = new LongList();
+	private byte[] block;
+	private int blockLength = 0;
+	private long compressedPosition = 0;
+	private long uncompressedPosition = 0;
+	private boolean isClosed = false;
+
+	/**
+	 * @param file target file
+	 * @param compressors threads used for compression
+	 * @param blockSize uncompressed size of a gzip member
+	 * @param maxPendingBlocks number of blocks that may be compressed at the same time
+	 * @throws IOException
+	 */
+	public BlockGzipOutputStream(Path file, ExecutorService compressors, int blockSize, int maxPendingBlocks) throws IOException {
+		this.file = file;
+		this.out = Files.newOutputStream(file);
+		this.compressors = compressors;
+		this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+		this.block = new byte[blockSize];
+	}
+
+	public BlockGzipOutputStream(Path file, ExecutorService compressors, int maxPendingBlocks) throws IOException {
+		this(file, compressors, DEFAULT_BLOCK_SIZE, maxPendingBlocks);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		block[blockLength++] = (byte) b;
+		if(blockLength == block.length)
+			submitBlock();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while(len > 0) {
+			int copied = Math.min(len, block.length - blockLength);
+			System.arraycopy(b, off, block, blockLength, copied);
+			blockLength += copied;
+			off += copied;
+			len -= copied;
+			if(blockLength == block.length)
+				submitBlock();
+		}
+	}
+
+	/**
+	 * ends the current gzip member so that the following data starts a new one
+	 * @throws IOException
+	 */
+	public void finishBlock() throws IOException {
+		if(blockLength > 0)
+			submitBlock();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(isClosed)
+			return;
+		isClosed = true;
+		try {
+			//an empty file still consists of one empty member to remain valid gzip
+			if(blockLength > 0 || (pendingBlocks.isEmpty() && compressedPosition == 0))
+				submitBlock();
+			while(!pendingBlocks.isEmpty())
+				writeBlock(pendingBlocks.poll());
+			compressedOffsets.add(compressedPosition);
+			uncompressedOffsets.add(uncompressedPosition);
+		} finally {
+			out.close();
+		}
+		new BlockGzipIndex(compressedOffsets.toArray(), uncompressedOffsets.toArray()).write(file);
+	}
+
+	private void submitBlock() throws IOException {
+		if(pendingBlocks.size() >= maxPendingBlocks)
+			writeBlock(pendingBlocks.poll());
+		byte[] data = block;
+		int length = blockLength;
+		pendingBlocks.add(CompletableFuture.supplyAsync(() -> compress(data, length), compressors));
+		block = new byte[block.length];
+		blockLength = 0;
+	}
+
+	private void writeBlock(CompletableFuture<CompressedBlock> pendingBlock) throws IOException {
+		CompressedBlock compressed;
+		try {
+			compressed = pendingBlock.join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not compress block of '" + file + "'.", e.getCause());
+		}
+		compressedOffsets.add(compressedPosition);
+		uncompressedOffsets.add(uncompressedPosition);
+		compressed.getData().writeTo(out);
+		compressedPosition += compressed.getData().size();
+		uncompressedPosition += compressed.getUncompressedLength();
+	}
+
+	private static CompressedBlock compress(byte[] data, int length) {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+		try(GZIPOutputStream gzip = new GZIPOutputStream(member, 8192)) {
+			gzip.write(data, 0, length);
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		}
+		return new CompressedBlock(member, length);
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class CompressedBlock {
+		private final ByteArrayOutputStream data;
+		private final int uncompressedLength;
+	}
+
+	/**
+	 * Growable primitive list of offsets
+	 */
+	private static class LongList {
+		private long[] values = new long[64];
+		private int size = 0;
+
+		public void add(long value) {
+			if(size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		public long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -5,23 +5,39 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.GZIPInputStream;
 
 import de.ingef.eva.constant.OutputDirectory;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Streaming csv reader. Lines are read into a reused buffer and split into fields without regular expressions.
+ * Empty lines are skipped and the delimiter is matched literally.
+ */
 @RequiredArgsConstructor
 public class CsvReader {
 
 	@Getter
 	private final BufferedReader reader;
 	private final String delimiter;
+	private final CsvRow row = new CsvRow();
+	private char[] buffer = new char[8192];
+	private int start = 0;
+	private int end = 0;
+	private int scanPosition = 0;
+	private boolean isEndOfInput = false;
 	
 	/**
 	 * creats a gzipped csv file reader
@@ -42,6 +58,26 @@ public class CsvReader {
 		return createGzipReader(csvFile, ";");
 	}
 	
+	/**
+	 * creates a gzipped csv file reader that decompresses the members of block gzip files concurrently.
+	 * Files without an index are read sequentially.
+	 * @param csvFile path to file
+	 * @param delimiter delimiter used to separate columns
+	 * @param decompressors threads used for decompression
+	 * @param readAhead number of members that are decompressed ahead of the reader
+	 * @return reader instance
+	 * @throws IOException
+	 */
+	public static CsvReader createGzipReader(Path csvFile, String delimiter, ExecutorService decompressors, int readAhead) throws IOException {
+		Optional<BlockGzipIndex> index = BlockGzipIndex.read(csvFile);
+		if(!index.isPresent())
+			return createGzipReader(csvFile, delimiter);
+		return new CsvReader(
+			new BufferedReader(new InputStreamReader(new BlockGzipInputStream(csvFile, index.get(), decompressors, readAhead), OutputDirectory.DATA_CHARSET)),
+			delimiter
+		);
+	}
+	
 	/**
 	 * creates a regular csv file reader
 	 * @param csvFile path to uncompressed csv file
@@ -65,14 +101,97 @@ public class CsvReader {
 		reader.close();
 	}
 	
+	/**
+	 * lazily reads the remaining lines. In contrast to {@link #forEachRow(Consumer)} each line is copied into its own list.
+	 * @return stream of field values
+	 */
 	public Stream<List<String>> lines() {
-		return reader
-			.lines()
-			.filter(line -> !line.isEmpty())
-			.map(line -> Arrays.asList(line.split(delimiter)))
-			.collect(Collectors.toList())
-			.stream();
+		Spliterator<List<String>> rows = new Spliterators.AbstractSpliterator<List<String>>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super List<String>> action) {
+				try {
+					CsvRow next = nextRow();
+					if(next == null)
+						return false;
+					action.accept(Arrays.asList(next.toArray(new String[next.size()])));
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(rows, false);
 	}
 	
+	/**
+	 * passes the remaining lines to the callback. The row is reused and must not be kept after the callback returns.
+	 * @param callback
+	 * @throws IOException
+	 */
+	public void forEachRow(Consumer<CsvRow> callback) throws IOException {
+		CsvRow next;
+		while((next = nextRow()) != null)
+			callback.accept(next);
+	}
 	
+	/**
+	 * reads the next non-empty line
+	 * @return reused row view or null if the end of input was reached
+	 * @throws IOException
+	 */
+	public CsvRow nextRow() throws IOException {
+		while(fillLine()) {
+			int lineEnd = scanPosition - 1;
+			if(lineEnd > start && buffer[lineEnd - 1] == '\r')
+				lineEnd--;
+			int lineStart = start;
+			start = scanPosition;
+			if(lineEnd > lineStart) {
+				row.reset(buffer, lineStart, lineEnd, delimiter);
+				return row;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * moves the scan position behind the next line break or the end of input
+	 * @return false if no characters are left
+	 * @throws IOException
+	 */
+	private boolean fillLine() throws IOException {
+		while(true) {
+			for(int i = scanPosition; i < end; i++) {
+				if(buffer[i] == '\n') {
+					scanPosition = i + 1;
+					return true;
+				}
+			}
+			scanPosition = end;
+			if(isEndOfInput) {
+				if(start == end)
+					return false;
+				//last line without line break
+				if(end == buffer.length)
+					buffer = Arrays.copyOf(buffer, buffer.length + 1);
+				buffer[end] = '\n';
+				end++;
+				scanPosition = end;
+				return true;
+			}
+			if(start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, end - start);
+				end -= start;
+				scanPosition -= start;
+				start = 0;
+			}
+			if(end == buffer.length)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			int count = reader.read(buffer, end, buffer.length - end);
+			if(count < 0)
+				isEndOfInput = true;
+			else
+				end += count;
+		}
+	}
 }
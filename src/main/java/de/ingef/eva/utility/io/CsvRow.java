@@ -0,0 +1,116 @@
+package de.ingef.eva.utility.io;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Field view onto the current line of a {@link CsvReader}.
+ * The view is reused for every line and thus only valid until the next line is read.
+ * Field values are created only when they are accessed by {@link #get(int)}.
+ */
+public class CsvRow extends AbstractList<String> {
+
+	private char[] line;
+	private int[] fieldStarts = new int[32];
+	private int[] fieldEnds = new int[32];
+	private int fieldCount = 0;
+
+	/**
+	 * splits the line into fields. Empty fields, also trailing ones, are kept.
+	 * @param buffer line content
+	 * @param start first character of the line
+	 * @param end position after the last character of the line
+	 * @param delimiter field separator
+	 */
+	void reset(char[] buffer, int start, int end, String delimiter) {
+		line = buffer;
+		fieldCount = 0;
+		int fieldStart = start;
+		if(delimiter.length() == 1) {
+			char separator = delimiter.charAt(0);
+			for(int i = start; i < end; i++) {
+				if(buffer[i] == separator) {
+					addField(fieldStart, i);
+					fieldStart = i + 1;
+				}
+			}
+		} else {
+			int i = start;
+			while(i <= end - delimiter.length()) {
+				if(matches(buffer, i, delimiter)) {
+					addField(fieldStart, i);
+					i += delimiter.length();
+					fieldStart = i;
+				} else {
+					i++;
+				}
+			}
+		}
+		addField(fieldStart, end);
+	}
+
+	@Override
+	public String get(int index) {
+		checkIndex(index);
+		return new String(line, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+	}
+
+	@Override
+	public int size() {
+		return fieldCount;
+	}
+
+	public int length(int index) {
+		checkIndex(index);
+		return fieldEnds[index] - fieldStarts[index];
+	}
+
+	public char charAt(int index, int position) {
+		checkIndex(index);
+		return line[fieldStarts[index] + position];
+	}
+
+	/**
+	 * compares a field with the given value without creating the field value
+	 * @param index field index
+	 * @param value
+	 * @return true if both are equal ignoring case
+	 */
+	public boolean equalsIgnoreCase(int index, String value) {
+		checkIndex(index);
+		int length = fieldEnds[index] - fieldStarts[index];
+		if(length != value.length())
+			return false;
+		int offset = fieldStarts[index];
+		for(int i = 0; i < length; i++) {
+			char left = line[offset + i];
+			char right = value.charAt(i);
+			if(left != right && Character.toUpperCase(left) != Character.toUpperCase(right) && Character.toLowerCase(left) != Character.toLowerCase(right))
+				return false;
+		}
+		return true;
+	}
+
+	private void addField(int start, int end) {
+		if(fieldCount == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+			fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		fieldCount++;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= fieldCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fieldCount);
+	}
+
+	private static boolean matches(char[] buffer, int position, String delimiter) {
+		for(int i = 0; i < delimiter.length(); i++) {
+			if(buffer[position + i] != delimiter.charAt(i))
+				return false;
+		}
+		return true;
+	}
+}
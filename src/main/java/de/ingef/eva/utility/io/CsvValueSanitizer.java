@@ -0,0 +1,45 @@
+package de.ingef.eva.utility.io;
+
+/**
+ * Makes database values safe for semicolon separated files.
+ * Semicolons are replaced by underscores, quotation marks are removed and the result is trimmed.
+ * Instances reuse an internal buffer and must not be shared between threads.
+ */
+public class CsvValueSanitizer {
+
+	private char[] buffer = new char[256];
+
+	/**
+	 * scans the value once and only creates a new string if it has to be changed
+	 * @param value
+	 * @return cleaned value
+	 */
+	public String clean(String value) {
+		int length = value.length();
+		if(length == 0)
+			return value;
+		boolean isClean = value.charAt(0) > ' ' && value.charAt(length - 1) > ' ';
+		for(int i = 0; i < length && isClean; i++) {
+			char c = value.charAt(i);
+			isClean = c != ';' && c != '"';
+		}
+		if(isClean)
+			return value;
+		if(buffer.length < length)
+			buffer = new char[Math.max(length, buffer.length * 2)];
+		int size = 0;
+		for(int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if(c == '"')
+				continue;
+			buffer[size++] = c == ';' ? '_' : c;
+		}
+		//same whitespace definition as String.trim
+		int start = 0;
+		while(start < size && buffer[start] <= ' ')
+			start++;
+		while(size > start && buffer[size - 1] <= ' ')
+			size--;
+		return new String(buffer, start, size - start);
+	}
+}
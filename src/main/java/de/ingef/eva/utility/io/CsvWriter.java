@@ -1,62 +1,150 @@
 package de.ingef.eva.utility.io;
 
-import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPOutputStream;
 
 import de.ingef.eva.constant.OutputDirectory;
 import lombok.Getter;
 
+/**
+ * Writes delimited lines. Values are encoded as UTF-8 ({@link OutputDirectory#DATA_CHARSET}) directly into a byte buffer.
+ * Complete lines are handed over to the underlying stream once the buffer is full.
+ */
 public class CsvWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	//longest UTF-8 sequence of a single char or surrogate pair
+	private static final int MAX_BYTES_PER_CHAR = 4;
+	private static final byte UNMAPPABLE_CHARACTER = '?';
+
 	@Getter
 	private String delimiter;
 	private String newLine;
-	private BufferedWriter writer;
+	private OutputStream out;
 	@Getter
 	private Path attachedFile;
 	@Getter
 	private boolean isNewFile = true;
-	private List<String> columnValues = new ArrayList<>(30);
-		
-	public CsvWriter(BufferedWriter writer, String delimiter, String newLine, Path file) {
+	/**
+	 * Number of written lines including the header
+	 */
+	@Getter
+	private long lineCount = 0;
+	private final CRC32 checksum = new CRC32();
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPosition = 0;
+	//end of the last complete line
+	private int lineEnd = 0;
+	private boolean isFirstEntry = true;
+
+	public CsvWriter(OutputStream out, String delimiter, String newLine, Path file) {
 		this.delimiter = delimiter;
 		this.newLine = newLine;
-		this.writer = writer;
+		this.out = out;
 		this.attachedFile = file;
 	}
-			
+
 	public void close() throws IOException {
-		writer.close();
+		try {
+			//values of an unfinished line are discarded
+			bufferPosition = lineEnd;
+			flushBuffer();
+		} finally {
+			out.close();
+		}
 	}
-	
+
 	/**
 	 * adds a column value
 	 * @param value
 	 */
 	public void addEntry(String value) {
-		columnValues.add(value);
+		if(!isFirstEntry)
+			encode(delimiter);
+		isFirstEntry = false;
+		encode(value == null ? "null" : value);
 	}
-	
+
 	/**
-	 * writes collected values to file. The values are delimited by the specified character.
+	 * terminates the current line. The values are delimited by the specified character.
 	 * @throws IOException
 	 */
 	public void writeLine() throws IOException {
-		writer.write(String.join(delimiter, columnValues));
-		writer.write(newLine);
-		columnValues.clear();
+		encode(newLine);
+		isFirstEntry = true;
+		lineEnd = bufferPosition;
+		lineCount++;
+		if(bufferPosition >= BUFFER_SIZE - MAX_BYTES_PER_CHAR)
+			flushBuffer();
 		//since compressed files have header information their size is not zero
 		//thus, the isNewFile flag is used to determined whether or not data is already present
 		if(isNewFile)
 			isNewFile = false;
 	}
-	
+
+	/**
+	 * hands over the written lines and, for block gzip files, compresses them into a gzip member of their own.
+	 * Used to keep the header apart from the data so that files can be merged without decompression.
+	 * @throws IOException
+	 */
+	public void finishBlock() throws IOException {
+		flushBuffer();
+		if(out instanceof BlockGzipOutputStream)
+			((BlockGzipOutputStream) out).finishBlock();
+	}
+
+	/**
+	 * @return CRC32 of the uncompressed content that was handed over to the underlying stream
+	 */
+	public long getChecksum() {
+		return checksum.getValue();
+	}
+
+	private void encode(String value) {
+		int length = value.length();
+		for(int i = 0; i < length; i++) {
+			//lines longer than the buffer enlarge it
+			if(buffer.length - bufferPosition < MAX_BYTES_PER_CHAR)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			char c = value.charAt(i);
+			if(c < 0x80) {
+				buffer[bufferPosition++] = (byte) c;
+			} else if(c < 0x800) {
+				buffer[bufferPosition++] = (byte) (0xC0 | (c >> 6));
+				buffer[bufferPosition++] = (byte) (0x80 | (c & 0x3F));
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[bufferPosition++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[bufferPosition++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[bufferPosition++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[bufferPosition++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if(Character.isSurrogate(c)) {
+				//same replacement as the charset encoder of an OutputStreamWriter
+				buffer[bufferPosition++] = UNMAPPABLE_CHARACTER;
+			} else {
+				buffer[bufferPosition++] = (byte) (0xE0 | (c >> 12));
+				buffer[bufferPosition++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[bufferPosition++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if(bufferPosition == 0)
+			return;
+		out.write(buffer, 0, bufferPosition);
+		checksum.update(buffer, 0, bufferPosition);
+		bufferPosition = 0;
+		lineEnd = 0;
+	}
+
 	/**
 	 * creates a gzipped csv file writer. The written file uses semicolons to separate values and linux line endings
 	 * @param file path to file
@@ -67,16 +155,34 @@ public class CsvWriter {
 	public static CsvWriter createGzipWriter(Path file) throws FileNotFoundException, IOException {
 		return createGzipWriter(file, ";", "\n");
 	}
-	
+
 	public static CsvWriter createGzipWriter(Path file, String delimiter, String newline) throws FileNotFoundException, IOException {
 		return new CsvWriter(
-				new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file.toFile())), OutputDirectory.DATA_CHARSET)),
+				new GZIPOutputStream(new FileOutputStream(file.toFile()), BUFFER_SIZE),
 				delimiter,
 				newline,
 				file
 			);
 	}
-	
+
+	/**
+	 * creates a block gzip csv file writer. Blocks of the file are compressed concurrently as independent gzip members
+	 * and their offsets are stored in an index file next to it.
+	 * @param file path to file
+	 * @param compressors threads used for compression
+	 * @param maxPendingBlocks number of blocks that may be compressed at the same time
+	 * @return writer instance
+	 * @throws IOException
+	 */
+	public static CsvWriter createBlockGzipWriter(Path file, ExecutorService compressors, int maxPendingBlocks) throws IOException {
+		return new CsvWriter(
+				new BlockGzipOutputStream(file, compressors, maxPendingBlocks),
+				";",
+				"\n",
+				file
+			);
+	}
+
 	/**
 	 * creates an uncompressed csv file writer. The written file uses semicolons to separate values and linux line endings
 	 * @param file path to file
@@ -87,10 +193,10 @@ public class CsvWriter {
 	public static CsvWriter createUncompressedWriter(Path file, boolean appendToFile) throws FileNotFoundException {
 		return createUncompressedWriter(file, appendToFile, ";", "\n");
 	}
-	
+
 	public static CsvWriter createUncompressedWriter(Path file, boolean appendToFile, String delimiter, String newline) throws FileNotFoundException {
 		return new CsvWriter(
-				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file.toFile(), appendToFile), OutputDirectory.DATA_CHARSET)),
+				new FileOutputStream(file.toFile(), appendToFile),
 				delimiter,
 				newline,
 				file
@@ -0,0 +1,256 @@
+package de.ingef.eva.utility.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Sorts more records than fit into memory. Records are buffered up to a fixed number, sorted and written to temporary runs
+ * that are merged while the sorted records are read. If there are more runs than can be merged at once, consecutive runs are merged in intermediate passes.
+ * Equal records keep the order they were added in.
+ * @param <T> record type
+ */
+public class ExternalSorter<T> implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Serializes records into runs
+	 */
+	public interface RecordCodec<T> {
+		void write(DataOutput out, T record) throws IOException;
+		T read(DataInput in) throws IOException;
+	}
+
+	/**
+	 * Sequential access to sorted records
+	 */
+	public interface RecordReader<T> extends Closeable {
+		/**
+		 * @return next record or null if all records were read
+		 * @throws IOException
+		 */
+		T next() throws IOException;
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class Run {
+		private final Path file;
+		private final long recordCount;
+	}
+
+	private final Path directory;
+	private final Comparator<T> order;
+	private final RecordCodec<T> codec;
+	private final int bufferSize;
+	private final int maxFanIn;
+	private List<T> buffer = new ArrayList<>();
+	private List<Run> runs = new ArrayList<>();
+	private int createdRuns = 0;
+
+	/**
+	 * @param parentDirectory directory in which a temporary directory for the runs is created
+	 * @param order
+	 * @param codec
+	 * @param bufferSize number of records that are sorted in memory
+	 * @param maxFanIn number of runs that are merged at once
+	 * @throws IOException
+	 */
+	public ExternalSorter(Path parentDirectory, Comparator<T> order, RecordCodec<T> codec, int bufferSize, int maxFanIn) throws IOException {
+		Files.createDirectories(parentDirectory);
+		this.directory = Files.createTempDirectory(parentDirectory, "sort");
+		this.order = order;
+		this.codec = codec;
+		this.bufferSize = Math.max(1, bufferSize);
+		this.maxFanIn = Math.max(2, maxFanIn);
+	}
+
+	public void add(T record) throws IOException {
+		buffer.add(record);
+		if(buffer.size() >= bufferSize)
+			spill();
+	}
+
+	/**
+	 * finishes adding records
+	 * @return reader over all records in sorted order
+	 * @throws IOException
+	 */
+	public RecordReader<T> sort() throws IOException {
+		if(runs.isEmpty()) {
+			List<T> records = buffer;
+			buffer = new ArrayList<>();
+			records.sort(order);
+			return new MemoryReader<>(records);
+		}
+		spill();
+		while(runs.size() > maxFanIn) {
+			List<Run> mergedRuns = new ArrayList<>();
+			for(int start = 0; start < runs.size(); start += maxFanIn)
+				mergedRuns.add(mergeRuns(runs.subList(start, Math.min(runs.size(), start + maxFanIn))));
+			runs = mergedRuns;
+		}
+		return new MergingReader(runs);
+	}
+
+	/**
+	 * removes all runs and the temporary directory. Closing twice has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer = new ArrayList<>();
+		runs = new ArrayList<>();
+		if(Files.notExists(directory))
+			return;
+		try(Stream<Path> files = Files.list(directory)) {
+			for(Path file : (Iterable<Path>) files::iterator)
+				Files.deleteIfExists(file);
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	private void spill() throws IOException {
+		if(buffer.isEmpty())
+			return;
+		buffer.sort(order);
+		Path file = createRunFile();
+		try(DataOutputStream out = openRun(file)) {
+			for(T record : buffer)
+				codec.write(out, record);
+		}
+		runs.add(new Run(file, buffer.size()));
+		buffer = new ArrayList<>();
+	}
+
+	private Run mergeRuns(List<Run> inputs) throws IOException {
+		Path merged = createRunFile();
+		long recordCount = 0;
+		try(MergingReader reader = new MergingReader(inputs); DataOutputStream out = openRun(merged)) {
+			for(T record = reader.next(); record != null; record = reader.next()) {
+				codec.write(out, record);
+				recordCount++;
+			}
+		}
+		for(Run input : inputs)
+			Files.deleteIfExists(input.getFile());
+		return new Run(merged, recordCount);
+	}
+
+	private Path createRunFile() {
+		return directory.resolve("run" + createdRuns++);
+	}
+
+	private DataOutputStream openRun(Path file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+	}
+
+	@RequiredArgsConstructor
+	private static class MemoryReader<T> implements RecordReader<T> {
+		private final List<T> records;
+		private int position = 0;
+
+		@Override
+		public T next() {
+			return position < records.size() ? records.get(position++) : null;
+		}
+
+		@Override
+		public void close() {}
+	}
+
+	/**
+	 * Current record of a run
+	 */
+	@Getter
+	private class RunHead {
+		private final int runIndex;
+		private final DataInputStream in;
+		private long remaining;
+		private T record;
+
+		public RunHead(int runIndex, Run run) throws IOException {
+			this.runIndex = runIndex;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.getFile()), BUFFER_SIZE));
+			this.remaining = run.getRecordCount();
+		}
+
+		/**
+		 * @return false if the run is exhausted
+		 * @throws IOException
+		 */
+		public boolean advance() throws IOException {
+			if(remaining == 0) {
+				record = null;
+				return false;
+			}
+			record = codec.read(in);
+			remaining--;
+			return true;
+		}
+	}
+
+	/**
+	 * Merges sorted runs. Ties are resolved by the order of the runs.
+	 */
+	private class MergingReader implements RecordReader<T> {
+		private final PriorityQueue<RunHead> heads;
+		private final List<RunHead> openHeads = new ArrayList<>();
+
+		public MergingReader(List<Run> inputs) throws IOException {
+			Comparator<RunHead> headOrder = Comparator.comparing(RunHead::getRecord, order);
+			heads = new PriorityQueue<>(Math.max(1, inputs.size()), headOrder.thenComparingInt(RunHead::getRunIndex));
+			try {
+				for(int i = 0; i < inputs.size(); i++) {
+					RunHead head = new RunHead(i, inputs.get(i));
+					openHeads.add(head);
+					if(head.advance())
+						heads.add(head);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public T next() throws IOException {
+			RunHead head = heads.poll();
+			if(head == null)
+				return null;
+			T record = head.getRecord();
+			if(head.advance())
+				heads.add(head);
+			return record;
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOException failure = null;
+			for(RunHead head : openHeads) {
+				try {
+					head.getIn().close();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			if(failure != null)
+				throw failure;
+		}
+	}
+}
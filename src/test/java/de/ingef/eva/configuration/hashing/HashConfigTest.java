@@ -0,0 +1,291 @@
+package de.ingef.eva.configuration.hashing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.constant.OutputDirectory;
+import de.ingef.eva.etl.MergeManifest.SliceFingerprint;
+import de.ingef.eva.services.TaskRunner;
+import de.ingef.eva.utility.io.CsvReader;
+import de.ingef.eva.utility.io.CsvWriter;
+
+public class HashConfigTest {
+
+	private static final String BASE_TABLE = "ACC_ADB_AVK_ADB_T_Vers_Stamm";
+	private static final String KGS_TABLE = "ACC_ADB_AVK_ADB_T_Vers_Region";
+	private static final String ICD_TABLE = "ACC_ADB_AVK_ADB_T_Arzt_Diagnose";
+	private static final String PZN_TABLE = "ACC_ADB_AVK_ADB_T_AM_EVO";
+	private static final int PID_COUNT = 60;
+	private static final int ROW_COUNT = 150;
+	private static final String INCREMENTAL = "\"incremental\": true,";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void partsOfYearSlicesAreCombined() throws IOException {
+		Path slices = createDataset("slices");
+		Path parts = createDataset("parts");
+		for(int year = 2015; year <= 2016; year++) {
+			writeYear(slices, year, year, 1);
+			writeYear(parts, year, year, 3);
+		}
+		hash("");
+
+		Map<String, String> expected = readHashes(slices);
+		assertEquals(PID_COUNT, expected.size());
+		assertFalse(expected.containsValue(""));
+		assertEquals(expected, readHashes(parts));
+	}
+
+	@Test
+	public void slicesWithoutYearAreRejected() throws IOException {
+		Path parts = createDataset("parts");
+		writeYear(parts, 2015, 1, 1);
+		Files.move(parts.resolve(PZN_TABLE + ".2015.csv.gz"), parts.resolve(PZN_TABLE + ".p0.csv.gz"));
+		hash("");
+
+		try(Stream<Path> files = Files.list(parts)) {
+			assertTrue(files.noneMatch(file -> file.toString().endsWith(".orig")));
+		}
+	}
+
+	@Test
+	public void externalSortWritesTheSameHashesAsInMemory() throws IOException {
+		Path memory = createDataset("memory");
+		for(int year = 2015; year <= 2016; year++)
+			writeYear(memory, year, year, 1);
+		hash("\"mode\": \"IN_MEMORY\", \"incremental\": false,");
+		Map<String, String> expected = readHashes(memory);
+
+		Path sorted = createDataset("sorted");
+		for(int year = 2015; year <= 2016; year++)
+			writeYear(sorted, year, year, 2);
+		Path runs = folder.newFolder("runs").toPath();
+		//tiny buffers spill many runs and merge them in several passes
+		hash("\"mode\": \"EXTERNAL_SORT\", \"sortBufferSize\": 10, \"maxFanIn\": 2, \"sortDirectory\": \"" + escape(runs) + "\",");
+
+		assertEquals(PID_COUNT, expected.size());
+		assertEquals(expected, readHashes(sorted));
+		assertEquals(expected, readHashes(memory));
+		try(Stream<Path> files = Files.list(runs)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	public void restoredSnapshotWithNewestYearEqualsFullRun() throws IOException {
+		Path incremental = createDataset("incremental");
+		for(int year = 2014; year <= 2016; year++)
+			writeYear(incremental, year, year, 2);
+		hash(INCREMENTAL);
+		List<String> collectedFiles = PidHashSnapshot
+				.load(incremental)
+				.get()
+				.getCollectedFiles()
+				.stream()
+				.map(SliceFingerprint::getFileName)
+				.collect(Collectors.toList());
+		//all parts of the newest year are read again
+		assertEquals(16, collectedFiles.size());
+		assertTrue(collectedFiles.stream().noneMatch(file -> file.contains(".2016.")));
+
+		writeYear(incremental, 2016, 99, 2);
+		hash(INCREMENTAL);
+		Map<String, String> hashes = readHashes(incremental);
+
+		assertEquals(hashFully(2014, 2016, 2016, 99), hashes);
+	}
+
+	@Test
+	public void changedOlderSliceInvalidatesSnapshot() throws IOException {
+		Path incremental = createDataset("incremental");
+		for(int year = 2014; year <= 2016; year++)
+			writeYear(incremental, year, year, 1);
+		hash(INCREMENTAL);
+
+		writeYear(incremental, 2014, 99, 1);
+		hash(INCREMENTAL);
+		Map<String, String> hashes = readHashes(incremental);
+
+		assertEquals(hashFully(2014, 2016, 2014, 99), hashes);
+	}
+
+	@Test
+	public void unchangedDatasetIsNotRewritten() throws IOException {
+		Path incremental = createDataset("incremental");
+		for(int year = 2014; year <= 2016; year++)
+			writeYear(incremental, year, year, 1);
+		hash(INCREMENTAL);
+		Map<Path, FileTime> modified = readModificationTimes(incremental);
+
+		//up to date datasets return before the snapshot is saved again
+		hash(INCREMENTAL);
+		assertEquals(modified, readModificationTimes(incremental));
+
+		//without the snapshot every file is checked, unchanged hashes are still not rewritten
+		Files.delete(incremental.resolve(PidHashSnapshot.FILE_NAME));
+		hash(INCREMENTAL);
+		modified.remove(incremental.resolve(PidHashSnapshot.FILE_NAME));
+		Map<Path, FileTime> rechecked = readModificationTimes(incremental);
+		rechecked.remove(incremental.resolve(PidHashSnapshot.FILE_NAME));
+		assertEquals(modified, rechecked);
+	}
+
+	/**
+	 * hashes the years of a new dataset without a snapshot
+	 * @param minYear
+	 * @param maxYear
+	 * @param changedYear year that is written with another seed
+	 * @param changedSeed
+	 * @return hashes of the dataset
+	 * @throws IOException
+	 */
+	private Map<String, String> hashFully(int minYear, int maxYear, int changedYear, int changedSeed) throws IOException {
+		Path full = createDataset("full");
+		for(int year = minYear; year <= maxYear; year++)
+			writeYear(full, year, year == changedYear ? changedSeed : year, 1);
+		hash("");
+		return readHashes(full);
+	}
+
+	private static Map<Path, FileTime> readModificationTimes(Path dataset) throws IOException {
+		Map<Path, FileTime> modificationTimes = new TreeMap<>();
+		try(Stream<Path> files = Files.list(dataset)) {
+			for(Path file : (Iterable<Path>) files::iterator)
+				modificationTimes.put(file, Files.getLastModifiedTime(file));
+		}
+		return modificationTimes;
+	}
+
+	private Path createDataset(String name) throws IOException {
+		return folder.newFolder("cache", "ADB", name).toPath();
+	}
+
+	/**
+	 * writes the rows of all categories of a year
+	 * @param dataset
+	 * @param year
+	 * @param seed
+	 * @param partCount number of parts the rows are split into by pid. Slices are not split if this is 1.
+	 * @throws IOException
+	 */
+	private void writeYear(Path dataset, int year, int seed, int partCount) throws IOException {
+		Random random = new Random(seed);
+		List<List<String>> baseRows = new ArrayList<>();
+		List<List<String>> kgsRows = new ArrayList<>();
+		List<List<String>> icdRows = new ArrayList<>();
+		List<List<String>> pznRows = new ArrayList<>();
+		for(int pid = 0; pid < PID_COUNT; pid++)
+			baseRows.add(row(pid, year, (1930 + random.nextInt(80)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10), Integer.toString(1 + random.nextInt(2)), random.nextInt(10) == 0 ? year + "-12-31" : ""));
+		for(int i = 0; i < ROW_COUNT; i++) {
+			kgsRows.add(row(random.nextInt(PID_COUNT), year, String.format("%08d", random.nextInt(100_000_000))));
+			icdRows.add(row(random.nextInt(PID_COUNT), year, (char) ('A' + random.nextInt(26)) + Integer.toString(random.nextInt(100)), random.nextBoolean() ? "G" : "V", random.nextInt(4) == 0 ? "other" : "KV"));
+			pznRows.add(row(random.nextInt(PID_COUNT), year, String.format("%08d", random.nextInt(5_000))));
+		}
+		writeSlices(dataset, BASE_TABLE, year, partCount, "bezugsjahr;pid;dob;gender;dod", baseRows);
+		writeSlices(dataset, KGS_TABLE, year, partCount, "bezugsjahr;pid;kgs", kgsRows);
+		writeSlices(dataset, ICD_TABLE, year, partCount, "bezugsjahr;pid;icd;confidence;contract", icdRows);
+		writeSlices(dataset, PZN_TABLE, year, partCount, "bezugsjahr;pid;pzn", pznRows);
+	}
+
+	private static List<String> row(int pid, int year, String... values) {
+		List<String> row = new ArrayList<>();
+		row.add(Integer.toString(year));
+		//pids with a leading zero are not stored as numbers
+		row.add(pid % 7 == 0 ? "0" + pid : Integer.toString(10_000_000 + pid));
+		for(String value : values)
+			row.add(value);
+		return row;
+	}
+
+	private static void writeSlices(Path dataset, String table, int year, int partCount, String header, List<List<String>> rows) throws IOException {
+		for(int part = 0; part < partCount; part++) {
+			String slice = partCount == 1 ? Integer.toString(year) : year + ".p" + part;
+			CsvWriter writer = CsvWriter.createGzipWriter(dataset.resolve(table + "." + slice + OutputDirectory.CACHE_FILE_EXTENSION));
+			writeLine(writer, Arrays.asList(header.split(";")));
+			for(List<String> row : rows) {
+				if(Math.floorMod(row.get(1).hashCode(), partCount) == part)
+					writeLine(writer, row);
+			}
+			writer.close();
+		}
+	}
+
+	private static void writeLine(CsvWriter writer, List<String> values) throws IOException {
+		values.forEach(writer::addEntry);
+		writer.writeLine();
+	}
+
+	/**
+	 * calculates the hashes of all datasets of the cache directory
+	 * @param settings additional hash settings, each followed by a comma
+	 * @throws IOException
+	 */
+	private void hash(String settings) throws IOException {
+		Path configFile = folder.getRoot().toPath().resolve("config.json");
+		String json = "{" +
+				"\"cacheDirectory\": \"" + escape(folder.getRoot().toPath().resolve("cache")) + "\"," +
+				"\"threadCount\": 2," +
+				"\"hashing\": {" + settings +
+					"\"minYear\": 2010, \"maxYear\": 2020, \"fileDescriptors\": {" +
+					"\"" + BASE_TABLE + "\": {\"pidIndex\": 1, \"dobIndex\": 2, \"genderIndex\": 3, \"dodIndex\": 4}," +
+					"\"" + KGS_TABLE + "\": {\"pidIndex\": 1, \"kgsIndex\": 2}," +
+					"\"" + ICD_TABLE + "\": {\"pidIndex\": 1, \"icdIndex\": 2, \"confidenceIndex\": 3, \"contractIndex\": 4}," +
+					"\"" + PZN_TABLE + "\": {\"pidIndex\": 1, \"pznIndex\": 2}" +
+				"}}}";
+		Files.write(configFile, json.getBytes(OutputDirectory.DATA_CHARSET));
+		Configuration config = Configuration.loadFromJson(configFile.toString());
+		config.getHashing().calculateHashes(config, new TaskRunner(config.getThreadCount()), null);
+	}
+
+	/**
+	 * @param dataset
+	 * @return hash of each pid in the base data files
+	 * @throws IOException
+	 */
+	private static Map<String, String> readHashes(Path dataset) throws IOException {
+		List<Path> baseFiles;
+		try(Stream<Path> files = Files.list(dataset)) {
+			baseFiles = files
+					.filter(file -> file.getFileName().toString().startsWith(BASE_TABLE) && file.toString().endsWith(OutputDirectory.CACHE_FILE_EXTENSION))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		Map<String, String> hashes = new TreeMap<>();
+		for(Path file : baseFiles) {
+			CsvReader reader = CsvReader.createGzipReader(file);
+			assertEquals("pid_hash", reader.nextRow().get(5));
+			reader.forEachRow(row -> {
+				String previous = hashes.put(row.get(1), row.get(5));
+				if(previous != null)
+					assertEquals(previous, row.get(5));
+			});
+			reader.close();
+		}
+		return hashes;
+	}
+
+	private static String escape(Path path) {
+		return path.toString().replace("\\", "\\\\");
+	}
+}
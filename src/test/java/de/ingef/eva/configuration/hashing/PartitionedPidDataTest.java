@@ -0,0 +1,145 @@
+package de.ingef.eva.configuration.hashing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ingef.eva.utility.Helper;
+
+public class PartitionedPidDataTest {
+
+	private static final int PID_COUNT = 200;
+
+	private ExecutorService readers;
+	private ExecutorService updaters;
+
+	@Before
+	public void setUp() {
+		readers = Helper.createThreadPool(4, true);
+		updaters = Helper.createThreadPool(4, true);
+	}
+
+	@After
+	public void tearDown() {
+		readers.shutdown();
+		updaters.shutdown();
+	}
+
+	@Test
+	public void batchesAreAppliedInFileOrder() throws InterruptedException {
+		PidDataStore expected = new PidDataStore();
+		//small chunks hand over rows while the files are still being read
+		PartitionedPidData data = new PartitionedPidData(3, 8, 1_000);
+		//the first file is read last, its rows must still come first
+		CountDownLatch laterFilesStarted = new CountDownLatch(2);
+		List<CompletableFuture<Void>> files = new ArrayList<>();
+		for(int file = 0; file < 3; file++) {
+			int fileIndex = file;
+			for(int i = 0; i < PID_COUNT; i++)
+				fill(expected, fileIndex, i);
+			PartitionedPidData.Batch rows = data.createBatch(updaters);
+			readers.execute(() -> {
+				if(fileIndex == 0)
+					await(laterFilesStarted);
+				for(int i = 0; i < PID_COUNT; i++) {
+					fill(rows, fileIndex, i);
+					if(fileIndex > 0 && i == 10)
+						laterFilesStarted.countDown();
+				}
+				rows.complete();
+			});
+			files.add(rows.getApplied());
+		}
+		files.forEach(CompletableFuture::join);
+
+		assertEquals(PID_COUNT, data.size());
+		assertEquals(0, data.getPendingRows());
+		for(int i = 0; i < PID_COUNT; i++) {
+			String pid = createPid(i);
+			PidDataStore partition = data.getPartition(pid);
+			assertEquals(expected.createHashInput(expected.find(pid)), partition.createHashInput(partition.find(pid)));
+		}
+	}
+
+	@Test
+	public void pendingRowsAreLimited() throws InterruptedException {
+		PartitionedPidData data = new PartitionedPidData(3, 8, 32);
+		CountDownLatch secondFileRead = new CountDownLatch(1);
+		AtomicInteger readPids = new AtomicInteger();
+		PartitionedPidData.Batch first = data.createBatch(updaters);
+		PartitionedPidData.Batch second = data.createBatch(updaters);
+		readers.execute(() -> {
+			for(int i = 0; i < PID_COUNT; i++) {
+				fill(second, 1, i);
+				readPids.incrementAndGet();
+			}
+			second.complete();
+			secondFileRead.countDown();
+		});
+		//the second file cannot be applied before the first, so its reader has to wait
+		assertFalse(secondFileRead.await(200, TimeUnit.MILLISECONDS));
+		assertTrue(readPids.get() < PID_COUNT);
+		assertTrue(data.getPendingRows() <= 32);
+
+		for(int i = 0; i < PID_COUNT; i++)
+			fill(first, 0, i);
+		first.complete();
+		second.getApplied().join();
+		assertEquals(PID_COUNT, readPids.get());
+		assertEquals(0, data.getPendingRows());
+	}
+
+	@Test
+	public void failedBatchFailsLaterBatches() {
+		PartitionedPidData data = new PartitionedPidData(3, 8, 1_000);
+		PartitionedPidData.Batch first = data.createBatch(updaters);
+		PartitionedPidData.Batch second = data.createBatch(updaters);
+		for(int i = 0; i < PID_COUNT; i++)
+			fill(second, 1, i);
+		second.complete();
+		first.fail(new IllegalStateException("unreadable"));
+		try {
+			second.getApplied().join();
+			fail("Batch after a failed batch must fail");
+		} catch (CompletionException e) {
+			assertEquals("unreadable", e.getCause().getMessage());
+		}
+		assertEquals(0, data.getPendingRows());
+	}
+
+	private static void fill(HashDataSink data, int file, int pidNumber) {
+		String pid = createPid(pidNumber);
+		data.acceptBaseData(pid, (char) ('1' + file), LocalDate.of(1950 + file, 1, 1), null);
+		data.acceptKgs(pid, "0" + (5_000_000 + 1_000 * file));
+		data.acceptIcd(pid, "E1" + file);
+		data.acceptPzn(pid, "0100037" + file);
+	}
+
+	private static String createPid(int pidNumber) {
+		//non-numeric pids are kept apart from numeric ones
+		return pidNumber % 10 == 0 ? "0" + pidNumber : Integer.toString(10_000_000 + pidNumber);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package de.ingef.eva.configuration.hashing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+public class PidDataStoreTest {
+
+	@Test
+	public void unchangedEntryUsesDefaults() {
+		PidDataStore data = new PidDataStore();
+		int slot = data.add("10000042");
+		assertEquals("1900-01-01_2999-12-31_0_00000_00000_0000_00000000", data.createHashInput(slot));
+	}
+
+	@Test
+	public void updatesKeepMinimumAndRange() {
+		PidDataStore data = new PidDataStore();
+		int slot = data.add("10000042");
+		data.updateGender(data.add("10000042"), '2');
+		data.updateGender(slot, '1');
+		data.updateGender(slot, '9');
+		data.updateDob(slot, LocalDate.of(1950, 4, 1));
+		data.updateDob(slot, LocalDate.of(1949, 12, 31));
+		data.updateDod(slot, LocalDate.of(2017, 3, 14));
+		data.updateKgs(slot, "08111000");
+		data.updateKgs(slot, "05315000");
+		data.updateKgs(slot, "09162000");
+		data.addIcd(slot, "E11");
+		data.addIcd(slot, "I10");
+		data.addIcd(slot, "E11");
+		data.addPzn(slot, "01000370");
+		assertEquals("1949-12-31_2017-03-14_1_05315000_09162000_E11_I10_E11_01000370", data.createHashInput(slot));
+	}
+
+	@Test
+	public void codesKeepInsertionOrderPerInsurant() {
+		PidDataStore data = new PidDataStore();
+		int first = data.add("1");
+		int second = data.add("2");
+		List<String> expectedFirst = new ArrayList<>();
+		List<String> expectedSecond = new ArrayList<>();
+		//spans several segments of interleaved sequences
+		for(int i = 0; i < 3000; i++) {
+			String icd = "C" + (i % 97);
+			data.addIcd(first, icd);
+			expectedFirst.add(icd);
+			if(i % 3 == 0) {
+				data.addIcd(second, icd);
+				expectedSecond.add(icd);
+			}
+		}
+		assertEquals("1900-01-01_2999-12-31_0_00000_00000_" + String.join("_", expectedFirst) + "_00000000", data.createHashInput(first));
+		assertEquals("1900-01-01_2999-12-31_0_00000_00000_" + String.join("_", expectedSecond) + "_00000000", data.createHashInput(second));
+	}
+
+	@Test
+	public void pidsAreDistinguishedByTheirText() {
+		PidDataStore data = new PidDataStore();
+		int numeric = data.add("7");
+		int leadingZeros = data.add("007");
+		int text = data.add("A7");
+		assertNotEquals(numeric, leadingZeros);
+		assertEquals(numeric, data.find("7"));
+		assertEquals(leadingZeros, data.find("007"));
+		assertEquals(text, data.find("A7"));
+		assertEquals(-1, data.find("07"));
+		assertEquals(-1, data.find("8"));
+	}
+
+	@Test
+	public void storeGrowsBeyondInitialCapacity() {
+		PidDataStore data = new PidDataStore();
+		for(int i = 0; i < 200_000; i++)
+			assertEquals(i, data.add(Integer.toString(10_000_000 + i)));
+		data.addPzn(data.find("10199999"), "01000370");
+		assertEquals(200_000, data.size());
+		assertEquals(199_999, data.find("10199999"));
+		assertEquals("1900-01-01_2999-12-31_0_00000_00000_0000_01000370", data.createHashInput(199_999));
+	}
+
+	@Test
+	public void combinedEntriesEqualSingleStore() {
+		PidDataStore single = new PidDataStore();
+		PidDataStore earlier = new PidDataStore();
+		PidDataStore later = new PidDataStore();
+		fillYear(single, 2015, "05315000", "E11");
+		fillYear(single, 2016, "09162000", "I10");
+		fillYear(earlier, 2015, "05315000", "E11");
+		fillYear(later, 2016, "09162000", "I10");
+		assertEquals(single.createHashInput(single.find("10000042")), earlier.createHashInput(earlier.find("10000042"), later, later.find("10000042")));
+	}
+
+	@Test
+	public void hashIsRecalculatedAfterUpdate() {
+		PidDataStore data = new PidDataStore();
+		int slot = data.add("10000042");
+		assertEquals(DigestUtils.sha256Hex(data.createHashInput(slot)), data.hash(slot));
+		data.addIcd(slot, "E11");
+		assertEquals(DigestUtils.sha256Hex(data.createHashInput(slot)), data.hash(slot));
+	}
+
+	@Test
+	public void writtenEntriesAreRestored() throws IOException {
+		PidDataStore data = new PidDataStore();
+		fillYear(data, 2015, "05315000", "E11");
+		int hashed = data.find("10000042");
+		String hash = data.hash(hashed);
+		int unhashed = data.add("007");
+		data.addPzn(unhashed, "01000370");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		data.writeEntries(out);
+		out.flush();
+
+		PidDataStore restored = new PidDataStore();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for(int i = 0; i < data.size(); i++)
+			restored.readEntry(in.readUTF(), in);
+		assertEquals(2, restored.size());
+		assertEquals(data.createHashInput(hashed), restored.createHashInput(restored.find("10000042")));
+		assertEquals(data.createHashInput(unhashed), restored.createHashInput(restored.find("007")));
+		assertEquals(hash, restored.hash(restored.find("10000042")));
+	}
+
+	private static void fillYear(PidDataStore data, int year, String kgs, String icd) {
+		int slot = data.add("10000042");
+		data.updateGender(slot, year % 2 == 0 ? '2' : '1');
+		data.updateDob(slot, LocalDate.of(1950, 1, year % 28 + 1));
+		data.updateKgs(slot, kgs);
+		data.addIcd(slot, icd);
+		data.addPzn(slot, "0100037" + year % 10);
+	}
+}
@@ -0,0 +1,52 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.query.Query;
+import de.ingef.eva.query.creation.SimpleQuery;
+
+public class ExportManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void completedSliceIsRecognizedAfterReload() throws IOException {
+		Path cache = folder.getRoot().toPath();
+		Path slice = Files.createDirectories(cache.resolve("ADB/dataset")).resolve("ACC_ADB_AVK_ADB_T_Vers_Stamm.2015.csv.gz");
+		Files.write(slice, new byte[] {1, 2, 3});
+		Query q = createQuery("select * from vers_stamm where year = 2015");
+
+		ExportManifest.load(cache).record(q, slice, 3, 42);
+
+		ExportManifest reloaded = ExportManifest.load(cache);
+		assertTrue(reloaded.isComplete(q, slice));
+		assertFalse(reloaded.isComplete(createQuery("select * from vers_stamm where year = 2016"), slice));
+		Files.write(slice, new byte[] {1, 2});
+		assertFalse(reloaded.isComplete(q, slice));
+	}
+
+	@Test
+	public void emptySliceIsCompleteWithoutFile() {
+		Path cache = folder.getRoot().toPath();
+		Path slice = cache.resolve("ADB/dataset/empty.2015.csv.gz");
+		Query q = createQuery("select * from empty");
+		ExportManifest manifest = ExportManifest.load(cache);
+		assertFalse(manifest.isComplete(q, slice));
+		manifest.record(q, slice, 0, 0);
+		assertTrue(ExportManifest.load(cache).isComplete(q, slice));
+	}
+
+	private Query createQuery(String sql) {
+		return SimpleQuery.builder().query(sql).dbName("ACC_ADB").tableName("AVK_ADB_T_Vers_Stamm").sliceName("2015").datasetName("dataset").build();
+	}
+}
@@ -0,0 +1,83 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.query.creation.SimpleQuery;
+
+public class ExportSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void longestJobsStartFirstWithinTableLimit() {
+		ExportJob amEvo2015 = createJob("AM_EVO", "2015", 100);
+		ExportJob amEvo2016 = createJob("AM_EVO", "2016", 90);
+		ExportJob versStamm = createJob("Vers_Stamm", "2016", 10);
+		ExportScheduler scheduler = new ExportScheduler(Arrays.asList(versStamm, amEvo2016, amEvo2015), 2, 1, 0);
+		assertEquals(190, scheduler.predictMakespan());
+
+		List<ExportJob> started = new ArrayList<>();
+		scheduler.start(started::add);
+		assertEquals(Arrays.asList(amEvo2015, versStamm), started);
+		scheduler.finish(versStamm);
+		assertEquals(2, started.size());
+		scheduler.finish(amEvo2015);
+		assertEquals(Arrays.asList(amEvo2015, versStamm, amEvo2016), started);
+	}
+
+	@Test
+	public void partsOfYearSlicesAreLimitedPerYear() {
+		ExportJob first2015 = createJob("AM_EVO", "2015.p0", 40);
+		ExportJob second2015 = createJob("AM_EVO", "2015.p1", 30);
+		ExportJob first2016 = createJob("AM_EVO", "2016.p0", 20);
+		ExportScheduler scheduler = new ExportScheduler(Arrays.asList(first2015, second2015, first2016), 3, 1, 0);
+
+		List<ExportJob> started = new ArrayList<>();
+		scheduler.start(started::add);
+		assertEquals(Arrays.asList(first2015, first2016), started);
+		scheduler.finish(first2015);
+		assertEquals(Arrays.asList(first2015, first2016, second2015), started);
+	}
+
+	@Test
+	public void durationsAreEstimatedFromPreviousExports() {
+		Path cache = folder.getRoot().toPath();
+		ExportManifest manifest = ExportManifest.load(cache);
+		ExportJob amEvo2015 = createJob("AM_EVO", "2015", 0);
+		ExportJob amEvo2016 = createJob("AM_EVO", "2016", 0);
+		ExportJob versStamm = createJob("Vers_Stamm", "2016", 0);
+		ExportJob unknown = createJob("KH_Fall", "2016", 0);
+		manifest.record(amEvo2015.getQuery(), amEvo2015.getSliceFile(), 1000, 0, 5000);
+		manifest.record(versStamm.getQuery(), versStamm.getSliceFile(), 200, 0, 0);
+		List<ExportJob> jobs = Arrays.asList(amEvo2015, amEvo2016, versStamm, unknown);
+
+		new SliceCostEstimator(manifest, Collections.singletonMap("kh_fall", 4000L)).estimate(jobs);
+
+		assertEquals(Arrays.asList(5000L, 5000L, 1000L, 20000L), jobs.stream().map(ExportJob::getExpectedMillis).collect(Collectors.toList()));
+		assertFalse(amEvo2015.isEstimated());
+		assertTrue(amEvo2016.isEstimated());
+		assertFalse(versStamm.isEstimated());
+		assertTrue(unknown.isEstimated());
+	}
+
+	private ExportJob createJob(String table, String slice, long expectedMillis) {
+		SimpleQuery q = SimpleQuery.builder().query("select * from " + table).dbName("ACC_ADB").tableName(table).sliceName(slice).datasetName("dataset").build();
+		ExportJob job = new ExportJob(q, folder.getRoot().toPath().resolve("ADB/dataset/ACC_ADB_" + table + "." + slice + ".csv.gz"));
+		job.setExpectedMillis(expectedMillis);
+		return job;
+	}
+}
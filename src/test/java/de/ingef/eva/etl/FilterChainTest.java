@@ -0,0 +1,77 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.filters.Filter.FilterMode;
+import de.ingef.eva.etl.filters.FilterStrategy;
+import de.ingef.eva.etl.filters.RegExFilterStrategy;
+import de.ingef.eva.etl.filters.SetFilterStrategy;
+
+public class FilterChainTest {
+
+	private final List<Filter> filters = Arrays.asList(
+			createFilter(null, null, "pid", new SetFilterStrategy(new HashSet<>(Arrays.asList("13"))), FilterMode.EXCLUDE),
+			createFilter("ACC_ADB", "AM_EVO", "fg", createPattern("[0-9]{2}"), FilterMode.INCLUDE),
+			Filter.NOP_FILTER
+	);
+
+	@Test
+	public void compiledFiltersMatchRowFilters() {
+		FilterChain chain = new FilterChain(filters);
+		List<Row> rows = Arrays.asList(
+				createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid", "fg"), "1", "12"),
+				createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid", "fg"), "1", "1x"),
+				createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid", "fg"), "13", "12"),
+				createRow("ACC_ADB", "KH_Fall", Arrays.asList("fg", "pid"), "1x", "1"),
+				createRow("ACC_ADB", "AM_EVO", Arrays.asList("kg_tage"), "5")
+		);
+		List<Boolean> compiled = rows.stream().map(chain::test).collect(Collectors.toList());
+		List<Boolean> interpreted = rows.stream().map(row -> filters.stream().allMatch(f -> f.isValid(row))).collect(Collectors.toList());
+		assertEquals(Arrays.asList(true, false, false, true, true), compiled);
+		assertEquals(interpreted, compiled);
+	}
+
+	@Test
+	public void filtersOfOtherTablesIgnoreMissingColumns() {
+		Filter tableFilter = createFilter("ACC_ADB", "AM_EVO", "fg", createPattern("[0-9]{2}"), FilterMode.INCLUDE);
+		Row row = createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid"), "1");
+		assertTrue(tableFilter.isValid(row));
+		assertTrue(new FilterChain(Arrays.asList(tableFilter)).test(row));
+		assertFalse(new FilterChain(Arrays.asList(tableFilter)).test(createRow("acc_adb", "am_evo", Arrays.asList("fg"), "x")));
+	}
+
+	private static RegExFilterStrategy createPattern(String pattern) {
+		RegExFilterStrategy strategy = new RegExFilterStrategy();
+		strategy.setRegexPattern(pattern);
+		strategy.initialize(null, null);
+		return strategy;
+	}
+
+	private static Filter createFilter(String db, String table, String column, FilterStrategy strategy, FilterMode mode) {
+		Filter filter = new Filter();
+		filter.setDatabase(db);
+		filter.setTable(table);
+		filter.setColumn(column);
+		filter.setFilterStrategy(strategy);
+		filter.setMode(mode);
+		return filter;
+	}
+
+	private Row createRow(String db, String table, List<String> columnNames, String... values) {
+		List<RowElement> columns = Arrays.stream(values).map(value -> new SimpleRowElement(value, TeradataColumnType.CHARACTER)).collect(Collectors.toList());
+		return new Row(db, table, columns, RowSchema.of(columnNames));
+	}
+}
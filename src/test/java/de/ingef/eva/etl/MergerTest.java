@@ -0,0 +1,181 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.constant.OutputDirectory;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.tasks.WriteFileTask;
+import de.ingef.eva.utility.Helper;
+import de.ingef.eva.utility.io.BlockGzipIndex;
+import de.ingef.eva.utility.io.CsvWriter;
+import de.ingef.eva.utility.io.IOManager;
+
+public class MergerTest {
+
+	private static final String TABLE = "ACC_ADB_AVK_ADB_T_AM_EVO";
+	private static final String EXPECTED =
+			"pid;pzn\n" +
+			"2015_0;00001\n2015_1;00001\n2015_2;00001\n" +
+			"2016_0;00001\n2016_1;00001\n2016_2;00001\n" +
+			"2017_0;00001\n2017_1;00001\n2017_2;00001\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExecutorService compressors;
+	private Path sliceDirectory;
+	private Path productionDirectory;
+
+	@Before
+	public void setUp() throws IOException {
+		compressors = Helper.createThreadPool(2, true);
+		sliceDirectory = folder.newFolder("cache", "ADB", "Bosch").toPath();
+		productionDirectory = folder.getRoot().toPath().resolve("out").resolve("ADB").resolve("Bosch");
+		writeSlice(CsvWriter.createBlockGzipWriter(sliceDirectory.resolve(TABLE + ".2015.csv.gz"), compressors, 2), "2015");
+		writeSlice(CsvWriter.createGzipWriter(sliceDirectory.resolve(TABLE + ".2016.csv.gz")), "2016");
+		writeSlice(CsvWriter.createBlockGzipWriter(sliceDirectory.resolve(TABLE + ".2017.csv.gz"), compressors, 2), "2017");
+	}
+
+	@After
+	public void tearDown() {
+		compressors.shutdown();
+	}
+
+	@Test
+	public void mergeLines() throws IOException {
+		merge("LINES");
+		assertEquals(EXPECTED, new String(Files.readAllBytes(productionDirectory.resolve(TABLE + OutputDirectory.OUTPUT_FILE_EXTENSION)), OutputDirectory.DATA_CHARSET));
+	}
+
+	@Test
+	public void streamDecompressedBytes() throws IOException {
+		merge("STREAM");
+		assertEquals(EXPECTED, new String(Files.readAllBytes(productionDirectory.resolve(TABLE + OutputDirectory.OUTPUT_FILE_EXTENSION)), OutputDirectory.DATA_CHARSET));
+	}
+
+	@Test
+	public void concatenateGzipMembers() throws IOException {
+		merge("GZIP");
+		Path merged = productionDirectory.resolve(TABLE + OutputDirectory.COMPRESSED_OUTPUT_FILE_EXTENSION);
+		assertEquals(EXPECTED, new String(readFully(new GZIPInputStream(Files.newInputStream(merged))), OutputDirectory.DATA_CHARSET));
+	}
+
+	@Test
+	public void partsAreRemovedAfterMerge() throws IOException {
+		merge("STREAM");
+		try(Stream<Path> files = Files.list(productionDirectory)) {
+			assertEquals(Arrays.asList(TABLE + OutputDirectory.OUTPUT_FILE_EXTENSION), files.map(file -> file.getFileName().toString()).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void dataMembersAreCopiedWithoutRecompression() throws IOException {
+		Files.delete(sliceDirectory.resolve(TABLE + ".2016.csv.gz"));
+		merge("GZIP");
+		Path first = sliceDirectory.resolve(TABLE + ".2015.csv.gz");
+		Path second = sliceDirectory.resolve(TABLE + ".2017.csv.gz");
+		long headerMemberSize = BlockGzipIndex.read(second).get().getCompressedSize(0);
+		Path merged = productionDirectory.resolve(TABLE + OutputDirectory.COMPRESSED_OUTPUT_FILE_EXTENSION);
+		assertEquals(Files.size(first) + Files.size(second) - headerMemberSize, Files.size(merged));
+	}
+
+	@Test
+	public void unchangedFileIsSkipped() throws IOException {
+		merge("STREAM");
+		Path merged = productionDirectory.resolve(TABLE + OutputDirectory.OUTPUT_FILE_EXTENSION);
+		Files.setLastModifiedTime(merged, FileTime.fromMillis(0));
+		merge("STREAM");
+		assertEquals(0, Files.getLastModifiedTime(merged).toMillis());
+	}
+
+	@Test
+	public void addedSliceIsAppended() throws IOException {
+		merge("STREAM");
+		Path merged = productionDirectory.resolve(TABLE + OutputDirectory.OUTPUT_FILE_EXTENSION);
+		//a rebuild would restore the header
+		byte[] content = Files.readAllBytes(merged);
+		content[0] = 'P';
+		Files.write(merged, content);
+		writeSlice(CsvWriter.createBlockGzipWriter(sliceDirectory.resolve(TABLE + ".2018.csv.gz"), compressors, 2), "2018");
+		merge("STREAM");
+		assertEquals(
+				"P" + EXPECTED.substring(1) + "2018_0;00001\n2018_1;00001\n2018_2;00001\n",
+				new String(Files.readAllBytes(merged), OutputDirectory.DATA_CHARSET)
+		);
+	}
+
+	@Test
+	public void changedSliceRebuildsFile() throws IOException {
+		merge("GZIP");
+		writeSlice(CsvWriter.createGzipWriter(sliceDirectory.resolve(TABLE + ".2016.csv.gz")), "2016_new");
+		merge("GZIP");
+		Path merged = productionDirectory.resolve(TABLE + OutputDirectory.COMPRESSED_OUTPUT_FILE_EXTENSION);
+		assertEquals(
+				EXPECTED.replace("2016_", "2016_new_"),
+				new String(readFully(new GZIPInputStream(Files.newInputStream(merged))), OutputDirectory.DATA_CHARSET)
+		);
+	}
+
+	private void merge(String mode) throws IOException {
+		Path configFile = folder.getRoot().toPath().resolve("config.json");
+		String json = "{" +
+				"\"cacheDirectory\": \"" + escape(folder.getRoot().toPath().resolve("cache")) + "\"," +
+				"\"outputDirectory\": \"" + escape(folder.getRoot().toPath().resolve("out")) + "\"," +
+				"\"reportDirectory\": \"" + escape(folder.getRoot().toPath().resolve("report")) + "\"," +
+				"\"threadCount\": 2," +
+				"\"merge\": {\"mode\": \"" + mode + "\"}," +
+				"\"sources\": [{\"type\": \"DB\", \"db\": \"ACC_ADB\", \"datasetName\": \"ADB\", \"views\": [{\"type\": \"TABLE\", \"name\": \"AVK_ADB_T_AM_EVO\"}]}]" +
+				"}";
+		Files.write(configFile, json.getBytes(OutputDirectory.DATA_CHARSET));
+		Configuration config = Configuration.loadFromJson(configFile.toString());
+		new Merger().run(config, IOManager.of(config));
+	}
+
+	private void writeSlice(CsvWriter writer, String year) throws IOException {
+		RowSchema schema = RowSchema.of(Arrays.asList("pid", "pzn"));
+		for(int i = 0; i < 3; i++) {
+			RowElement[] columns = {
+					new SimpleRowElement(year + "_" + i, TeradataColumnType.CHARACTER),
+					new SimpleRowElement("00001", TeradataColumnType.CHARACTER)
+			};
+			WriteFileTask.writeRow(writer, new Row("ACC_ADB", "AVK_ADB_T_AM_EVO", Arrays.asList(columns), schema));
+		}
+		writer.close();
+	}
+
+	private static String escape(Path path) {
+		return path.toString().replace("\\", "\\\\");
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		try(InputStream input = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int count;
+			while((count = input.read(buffer)) > 0)
+				out.write(buffer, 0, count);
+			return out.toByteArray();
+		}
+	}
+}
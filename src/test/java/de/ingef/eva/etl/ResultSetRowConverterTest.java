@@ -0,0 +1,121 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import de.ingef.eva.data.DateRowElement;
+import de.ingef.eva.data.DecimalRowElement;
+import de.ingef.eva.data.IntRowElement;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.TeradataColumnType;
+
+public class ResultSetRowConverterTest {
+
+	private static final String[] LABELS = {"PID", "Geburtsjahr", "Datum", "Menge", "Name", "Leer"};
+	private static final int[] TYPES = {Types.BIGINT, Types.SMALLINT, Types.DATE, Types.DECIMAL, Types.VARCHAR, Types.INTEGER};
+	private static final String[] TYPE_NAMES = {"BIGINT", "SMALLINT", "DATE", "DECIMAL", "VARCHAR", "INTEGER"};
+
+	/**
+	 * creates a single row result set. Null entries are reported as sql null.
+	 */
+	private static ResultSet createResultSet(Object... values) {
+		ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+				case "getColumnCount":
+					return LABELS.length;
+				case "getColumnLabel":
+					return LABELS[(int) args[0] - 1];
+				case "getColumnType":
+					return TYPES[(int) args[0] - 1];
+				case "getColumnTypeName":
+					return TYPE_NAMES[(int) args[0] - 1];
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		boolean[] wasNull = new boolean[1];
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+				case "getMetaData":
+					return metaData;
+				case "wasNull":
+					return wasNull[0];
+				case "getInt":
+				case "getLong":
+				case "getDate":
+				case "getBigDecimal":
+				case "getString":
+					Object value = values[(int) args[0] - 1];
+					wasNull[0] = value == null;
+					if(value == null)
+						return method.getReturnType().isPrimitive() ? 0 : null;
+					if(method.getName().equals("getInt"))
+						return ((Number) value).intValue();
+					if(method.getName().equals("getLong"))
+						return ((Number) value).longValue();
+					return value;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	@Test
+	public void readsColumnsWithTypedGetters() {
+		ResultSet result = createResultSet(
+				123456789012L,
+				1950,
+				Date.valueOf(LocalDate.of(2017, 3, 31)),
+				new BigDecimal("-12.50"),
+				"Meier; \"Hans\"",
+				null
+		);
+		Row row = new ResultSetRowConverter().apply(result);
+		List<RowElement> columns = row.getColumns();
+		assertEquals(Arrays.asList("pid", "geburtsjahr", "datum", "menge", "name", "leer"), row.getSchema().getColumnNames());
+		assertEquals(
+				Arrays.asList("123456789012", "1950", "2017-03-31", "-12.50", "Meier_ Hans", ""),
+				columns.stream().map(RowElement::getContent).collect(Collectors.toList())
+		);
+		assertEquals(TeradataColumnType.BIGINT, columns.get(0).getType());
+		assertTrue(columns.get(1) instanceof IntRowElement);
+		assertEquals(TeradataColumnType.SMALLINT, columns.get(1).getType());
+		assertTrue(columns.get(2) instanceof DateRowElement);
+		assertEquals(LocalDate.of(2017, 3, 31), columns.get(2).asDate());
+		assertTrue(columns.get(3) instanceof DecimalRowElement);
+		assertEquals(-12.5, columns.get(3).asDouble(), 0.0);
+		assertEquals(TeradataColumnType.VARCHAR, columns.get(4).getType());
+		assertEquals(TeradataColumnType.INTEGER, columns.get(5).getType());
+	}
+
+	@Test
+	public void decimalsExceedingLongKeepText() {
+		ResultSet result = createResultSet(1L, 1, null, new BigDecimal("123456789012345678901234.5"), null, 1);
+		List<RowElement> columns = new ResultSetRowConverter().apply(result).getColumns();
+		assertEquals("123456789012345678901234.5", columns.get(3).getContent());
+		assertEquals("", columns.get(2).getContent());
+		assertEquals(TeradataColumnType.DATE, columns.get(2).getType());
+	}
+
+	@Test
+	public void decimalsWithLargeScaleAreWrittenWithoutExponent() {
+		ResultSet result = createResultSet(1L, 1, null, BigDecimal.valueOf(1, 7), null, 1);
+		assertEquals("0.0000001", new ResultSetRowConverter().apply(result).getColumns().get(3).getContent());
+		result = createResultSet(1L, 1, null, new BigDecimal(new BigInteger("123456789012345678901234"), 30), null, 1);
+		assertEquals("0.000000123456789012345678901234", new ResultSetRowConverter().apply(result).getColumns().get(3).getContent());
+	}
+}
@@ -0,0 +1,48 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RowSchemaTest {
+
+	@Test
+	public void equalColumnNamesResolveToSameInstance() {
+		RowSchema schema = RowSchema.of(Arrays.asList("pid", "bezugsjahr"));
+		assertSame(schema, RowSchema.of(Arrays.asList("pid", "bezugsjahr")));
+	}
+
+	@Test
+	public void indexMapIsConvertedIntoOrderedColumns() {
+		Map<String, Integer> indices = new HashMap<>();
+		indices.put("bezugsjahr", 1);
+		indices.put("pid", 0);
+		RowSchema schema = RowSchema.of(indices);
+		assertEquals(Arrays.asList("pid", "bezugsjahr"), schema.getColumnNames());
+		assertSame(RowSchema.of(Arrays.asList("pid", "bezugsjahr")), schema);
+	}
+
+	@Test
+	public void appendedSchemaIsCached() {
+		RowSchema schema = RowSchema.of(Arrays.asList("pid"));
+		RowSchema appended = schema.append("kv");
+		assertSame(appended, schema.append("kv"));
+		assertEquals(1, appended.indexOf("kv"));
+		assertEquals(0, appended.indexOf("pid"));
+		assertEquals(-1, schema.indexOf("kv"));
+	}
+
+	@Test
+	public void prependShiftsExistingColumns() {
+		RowSchema schema = RowSchema.of(Arrays.asList("pid", "bezugsjahr")).prepend("h2ik");
+		assertEquals(0, schema.indexOf("h2ik"));
+		assertEquals(1, schema.indexOf("pid"));
+		assertEquals(2, schema.indexOf("bezugsjahr"));
+		assertEquals(3, schema.size());
+	}
+}
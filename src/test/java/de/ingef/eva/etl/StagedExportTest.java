@@ -0,0 +1,136 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.configuration.export.PipelineConfig;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.error.PartialSliceException;
+import de.ingef.eva.utility.io.CsvReader;
+import de.ingef.eva.utility.io.CsvWriter;
+
+public class StagedExportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsFetchOrderAcrossBatches() throws IOException {
+		PipelineConfig config = new PipelineConfig();
+		config.setBatchSize(7);
+		config.setQueueCapacity(2);
+		config.setTransformThreadCount(4);
+		config.setWriteThreadCount(1);
+		StagedExport stages = new StagedExport(config);
+		Path file = folder.getRoot().toPath().resolve("slice.csv.gz");
+
+		boolean isWritten = stages.export(createRows(100), row -> true, Function.identity(), CsvWriter.createGzipWriter(file));
+		stages.shutdown();
+
+		assertTrue(isWritten);
+		List<String> lines = readLines(file);
+		assertEquals(101, lines.size());
+		assertEquals("pid", lines.get(0));
+		for(int i = 0; i < 100; i++)
+			assertEquals(Integer.toString(i), lines.get(i + 1));
+	}
+
+	@Test
+	public void appliesFilterAndTransformerInWorkers() throws IOException {
+		PipelineConfig config = new PipelineConfig();
+		config.setBatchSize(3);
+		config.setWriteThreadCount(1);
+		StagedExport stages = new StagedExport(config);
+		Path file = folder.getRoot().toPath().resolve("slice.csv.gz");
+
+		stages.export(
+				createRows(10),
+				row -> Integer.parseInt(row.getColumns().get(0).getContent()) % 2 == 0,
+				row -> new Row(row.getDb(), row.getTable(), Arrays.asList(row.getColumns().get(0), new SimpleRowElement("x", TeradataColumnType.CHARACTER)), row.getSchema().append("flag")),
+				CsvWriter.createGzipWriter(file)
+		);
+		stages.shutdown();
+
+		assertEquals(Arrays.asList("pid;flag", "0;x", "2;x", "4;x", "6;x", "8;x"), readLines(file));
+	}
+
+	@Test
+	public void releasesFileWhenRowsStopEarly() throws IOException {
+		PipelineConfig config = new PipelineConfig();
+		config.setBatchSize(7);
+		config.setWriteThreadCount(1);
+		StagedExport stages = new StagedExport(config);
+		Path file = folder.getRoot().toPath().resolve("slice.csv.gz");
+		Stream<Row> brokenRows = Stream.concat(
+				createRows(20),
+				Stream.of(1).map(i -> { throw new PartialSliceException("Connection reset", null); })
+		);
+
+		try {
+			stages.export(brokenRows, row -> true, Function.identity(), CsvWriter.createGzipWriter(file));
+			fail("Rows that stop early must fail the export");
+		} catch (PartialSliceException e) {
+			//expected
+		}
+		stages.shutdown();
+
+		//the writer closed the file before the failure was reported
+		assertEquals("pid", readLines(file).get(0));
+	}
+
+	@Test
+	public void routesRowsIntoFilesOfTheirDatasets() throws IOException {
+		PipelineConfig config = new PipelineConfig();
+		config.setBatchSize(4);
+		config.setTransformThreadCount(2);
+		config.setWriteThreadCount(1);
+		StagedExport stages = new StagedExport(config);
+		Path even = folder.getRoot().toPath().resolve("even.csv.gz");
+		Path small = folder.getRoot().toPath().resolve("small.csv.gz");
+		RowSchema schema = RowSchema.of(Arrays.asList("pid", "eva_route_0", "eva_route_1"));
+		Stream<Row> rows = IntStream
+				.range(0, 10)
+				.mapToObj(i -> new Row("db", "table", Arrays.asList(
+						new SimpleRowElement(Integer.toString(i), TeradataColumnType.INTEGER),
+						new SimpleRowElement(i % 2 == 0 ? "1" : "0", TeradataColumnType.INTEGER),
+						new SimpleRowElement(i < 3 ? "1" : "0", TeradataColumnType.INTEGER)
+				), schema));
+
+		boolean isWritten = stages.export(rows, new FanOutRouter(2), row -> !row.getColumns().get(0).getContent().equals("2"), Function.identity(), Arrays.asList(CsvWriter.createGzipWriter(even), CsvWriter.createGzipWriter(small)));
+		stages.shutdown();
+
+		assertTrue(isWritten);
+		assertEquals(Arrays.asList("pid", "0", "4", "6", "8"), readLines(even));
+		assertEquals(Arrays.asList("pid", "0", "1"), readLines(small));
+	}
+
+	private Stream<Row> createRows(int count) {
+		RowSchema schema = RowSchema.of(Collections.singletonList("pid"));
+		return IntStream
+				.range(0, count)
+				.mapToObj(i -> new Row("db", "table", Collections.singletonList(new SimpleRowElement(Integer.toString(i), TeradataColumnType.INTEGER)), schema));
+	}
+
+	private List<String> readLines(Path file) throws IOException {
+		CsvReader reader = CsvReader.createGzipReader(file);
+		List<String> lines = reader.lines().map(columns -> String.join(";", columns)).collect(Collectors.toList());
+		reader.close();
+		return lines;
+	}
+}
@@ -0,0 +1,74 @@
+package de.ingef.eva.etl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import de.ingef.eva.configuration.append.AppendOrder;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
+import de.ingef.eva.etl.transformers.BsKvMapperTransformer;
+import de.ingef.eva.etl.transformers.PharmacyTypeTransformer;
+import de.ingef.eva.etl.transformers.StartDateTransformer;
+import de.ingef.eva.etl.transformers.StaticColumnAppenderTransformer;
+import de.ingef.eva.etl.transformers.Transformer;
+
+public class TransformerChainTest {
+
+	private final List<Transformer> transformers = Arrays.asList(
+			new StaticColumnAppenderTransformer("ADB", "", "h2ik", "108036123", AppendOrder.FIRST, Collections.emptyList()),
+			new BsKvMapperTransformer(),
+			new StartDateTransformer("ADB", "AM_EVO", "verordnungsdatum", "kg_tage", "kg_beginn"),
+			new StaticColumnAppenderTransformer("ADB", "", "flag", "x", AppendOrder.LAST, Collections.emptyList()),
+			new PharmacyTypeTransformer("ADB", "AM_EVO")
+	);
+
+	@Test
+	public void compiledRowsMatchTransformedRows() {
+		Row row = createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid", "bs_nr", "verordnungsdatum", "kg_tage", "apothekenik"), "1", "7200000", "2015-03-10", "5", "261234567");
+		Row compiled = new TransformerChain(transformers).apply(row);
+		Row interpreted = interpret(row);
+		assertEquals(Arrays.asList("h2ik", "pid", "bs_nr", "verordnungsdatum", "kg_tage", "apothekenik", "kv", "kg_beginn", "flag", "apo_typ"), compiled.getSchema().getColumnNames());
+		assertSame(interpreted.getSchema(), compiled.getSchema());
+		assertEquals(contents(interpreted), contents(compiled));
+		assertEquals(Arrays.asList("108036123", "1", "7200000", "2015-03-10", "5", "261234567", "72", "2015-03-06", "x", "26"), contents(compiled));
+	}
+
+	@Test
+	public void plansAreBoundToTableAndLayout() {
+		TransformerChain chain = new TransformerChain(transformers);
+		Row evoRow = createRow("ACC_ADB", "AM_EVO", Arrays.asList("pid", "verordnungsdatum", "kg_tage"), "1", "2015-03-10", "");
+		Row otherRow = createRow("ACC_ADB", "AVK_ADB_T_Vers_Stamm", Arrays.asList("pid"), "2");
+		Row foreignRow = createRow("ACC_FDB", "FDB_Vers_Stamm", Arrays.asList("pid"), "3");
+		for(Row row : Arrays.asList(evoRow, otherRow, foreignRow, evoRow)) {
+			Row compiled = chain.apply(row);
+			Row interpreted = interpret(row);
+			assertSame(interpreted.getSchema(), compiled.getSchema());
+			assertEquals(contents(interpreted), contents(compiled));
+		}
+		assertSame(foreignRow, chain.apply(foreignRow));
+	}
+
+	private Row interpret(Row row) {
+		Row transformed = row;
+		for(Transformer t : transformers)
+			transformed = t.transform(transformed);
+		return transformed;
+	}
+
+	private Row createRow(String db, String table, List<String> columnNames, String... values) {
+		List<RowElement> columns = Arrays.stream(values).map(value -> new SimpleRowElement(value, TeradataColumnType.CHARACTER)).collect(Collectors.toList());
+		return new Row(db, table, columns, RowSchema.of(columnNames));
+	}
+
+	private List<String> contents(Row row) {
+		return row.getColumns().stream().map(RowElement::getContent).collect(Collectors.toList());
+	}
+}
@@ -11,7 +11,7 @@ public class RegExFilterStrategyTest {
 		RegExFilterStrategy strategy = new RegExFilterStrategy();
 		String emptyOrTwoDigits = "^$|[0-9]{2}";
 		strategy.setRegexPattern(emptyOrTwoDigits);
-		strategy.initialize(null);
+		strategy.initialize(null, null);
 		assertTrue(strategy.isValid("23"));
 	}
 	
@@ -20,7 +20,7 @@ public class RegExFilterStrategyTest {
 		RegExFilterStrategy strategy = new RegExFilterStrategy();
 		String emptyOrTwoDigits = "^$|[0-9]{2}";
 		strategy.setRegexPattern(emptyOrTwoDigits);
-		strategy.initialize(null);
+		strategy.initialize(null, null);
 		assertFalse(strategy.isValid("{23"));
 	}
 	
@@ -29,7 +29,7 @@ public class RegExFilterStrategyTest {
 		RegExFilterStrategy strategy = new RegExFilterStrategy();
 		String emptyOrTwoDigits = "^$|[0-9]{2}";
 		strategy.setRegexPattern(emptyOrTwoDigits);
-		strategy.initialize(null);
+		strategy.initialize(null, null);
 		assertFalse(strategy.isValid("{"));
 	}
 }
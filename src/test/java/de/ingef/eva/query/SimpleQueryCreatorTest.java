@@ -3,22 +3,49 @@ package de.ingef.eva.query;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import de.ingef.eva.configuration.Configuration;
+import de.ingef.eva.configuration.FilterStrategyType;
+import de.ingef.eva.configuration.append.AppendOrder;
 import de.ingef.eva.configuration.export.JoinType;
 import de.ingef.eva.configuration.export.WhereOperator;
 import de.ingef.eva.configuration.export.WhereType;
+import de.ingef.eva.configuration.export.sql.FixedYearSlice;
+import de.ingef.eva.configuration.export.sql.HashPartitionSlice;
+import de.ingef.eva.configuration.export.sql.QuarterSlice;
+import de.ingef.eva.data.RowElement;
+import de.ingef.eva.data.SimpleRowElement;
+import de.ingef.eva.data.TeradataColumnType;
 import de.ingef.eva.database.Column;
 import de.ingef.eva.database.Database;
 import de.ingef.eva.database.DatabaseSchema;
 import de.ingef.eva.database.Table;
+import de.ingef.eva.etl.Row;
+import de.ingef.eva.etl.RowSchema;
+import de.ingef.eva.etl.TransformerChain;
+import de.ingef.eva.etl.filters.Filter;
+import de.ingef.eva.etl.filters.Filter.FilterMode;
+import de.ingef.eva.etl.filters.FilterStrategy;
+import de.ingef.eva.etl.transformers.BsKvMapperTransformer;
+import de.ingef.eva.etl.transformers.PharmacyTypeTransformer;
+import de.ingef.eva.etl.transformers.StartDateTransformer;
+import de.ingef.eva.etl.transformers.StaticColumnAppenderTransformer;
+import de.ingef.eva.etl.transformers.Transformer;
+import de.ingef.eva.query.creation.FanOutQuery;
+import de.ingef.eva.query.creation.SimpleQuery;
 import de.ingef.eva.query.creation.SimpleQueryCreator;
+import de.ingef.eva.services.ConnectionFactory;
 
 public class SimpleQueryCreatorTest {
 
@@ -195,5 +222,196 @@ public class SimpleQueryCreatorTest {
 		assertEquals("DB.table a", q.substring(q.indexOf("from")+ "from".length(), q.indexOf(";")).trim());
 		assertTrue("No terminal semicolon", q.contains(";"));
 	}
-	
+
+	@Test
+	public void splitYearSlicesIntoHashPartitions() {
+		SimpleQueryCreator creator = new SimpleQueryCreator(schema);
+		creator.setDatabase("DB");
+		creator.setYearSlice(new FixedYearSlice("column3", 2015, 2016));
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.setPartitionSlice(new HashPartitionSlice("column", 2));
+		List<Query> queries = creator.buildQueries();
+		assertEquals(Arrays.asList("2015.p0", "2015.p1", "2016.p0", "2016.p1"), queries.stream().map(Query::getSliceName).collect(Collectors.toList()));
+		assertEquals("select a.column from DB.table a  where a.column3 = 2016 and hashbucket(hashrow(a.column)) mod 2 = 1;", queries.get(3).getQuery());
+
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		assertEquals(2, creator.buildQueries().size());
+	}
+
+	@Test
+	public void splitTableIntoQuarters() {
+		SimpleQueryCreator creator = new SimpleQueryCreator(schema);
+		creator.setDatabase("DB");
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.setPartitionSlice(new QuarterSlice("column2"));
+		List<Query> queries = creator.buildQueries();
+		assertEquals(Arrays.asList("q1", "q2", "q3", "q4"), queries.stream().map(Query::getSliceName).collect(Collectors.toList()));
+		assertEquals("select a.column from DB.table a  where (extract(month from a.column2) between 1 and 3 or a.column2 is null);", queries.get(0).getQuery());
+		assertEquals("select a.column from DB.table a  where extract(month from a.column2) between 10 and 12;", queries.get(3).getQuery());
+	}
+
+	@Test
+	public void addPushdownFiltersOfSelectedColumns() {
+		FilterStrategy strategy = new FilterStrategy(FilterStrategyType.UNIQUE_SET) {
+			@Override
+			public boolean isValid(String value) {
+				return false;
+			}
+
+			@Override
+			public String createSqlCondition(String columnReference) {
+				return "exists (select 1 from DB.excluded e where e.id=" + columnReference + ")";
+			}
+		};
+		Filter filter = new Filter();
+		filter.setColumn("COLUMN");
+		filter.setFilterStrategy(strategy);
+		filter.setMode(FilterMode.EXCLUDE);
+		filter.setPushdown(true);
+		Filter otherTableFilter = new Filter();
+		otherTableFilter.setTable("table2");
+		otherTableFilter.setColumn("column2");
+		otherTableFilter.setFilterStrategy(strategy);
+		otherTableFilter.setMode(FilterMode.INCLUDE);
+		otherTableFilter.setPushdown(true);
+
+		SimpleQueryCreator creator = new SimpleQueryCreator(schema);
+		creator.setPushdownFilters(Arrays.asList(filter, otherTableFilter));
+		creator.setDatabase("DB");
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.addColumn("table", "column2");
+		creator.addGlobalWhere("table", "column3", Collections.singletonList("1"), WhereOperator.EQUAL, WhereType.NUMERIC);
+		assertEquals("select a.column, a.column2 from DB.table a  where (a.column3 = 1) and not exists (select 1 from DB.excluded e where e.id=a.column);", creator.buildQueries().get(0).getQuery());
+
+		creator.addTable("table");
+		creator.addColumn("table", "column2");
+		assertEquals("select a.column2 from DB.table a  ;", creator.buildQueries().get(0).getQuery());
+	}
+
+	@Test
+	public void pushedDownFiltersOnlyCheckTablesWithoutCondition() {
+		int[] initializations = { 0 };
+		FilterStrategy strategy = new FilterStrategy(FilterStrategyType.UNIQUE_SET) {
+			@Override
+			public boolean isValid(String value) {
+				return false;
+			}
+
+			@Override
+			public String createSqlCondition(String columnReference) {
+				return "exists (select 1 from DB.excluded e where e.id=" + columnReference + ")";
+			}
+
+			@Override
+			public void initialize(Configuration config, ConnectionFactory connectionFactory) {
+				initializations[0]++;
+			}
+		};
+		Filter filter = new Filter();
+		filter.setColumn("column");
+		filter.setFilterStrategy(strategy);
+		filter.setMode(FilterMode.EXCLUDE);
+		filter.setPushdown(true);
+		RowSchema rowSchema = RowSchema.of(Arrays.asList("column", "column2"));
+
+		SimpleQueryCreator creator = new SimpleQueryCreator(schema);
+		creator.setPushdownFilters(Collections.singletonList(filter));
+		creator.setDatabase("DB");
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.buildQueries();
+		filter.initialize(null, null);
+		assertEquals(0, initializations[0]);
+		assertNull(filter.compile("DB", "table", rowSchema));
+
+		//the column of a joined table is not filtered by the database
+		creator.addTable("table2");
+		creator.addColumn("table2", "column2");
+		creator.addColumn("table", "column");
+		creator.addJoin("table2", "table", Collections.singletonList("column2"), JoinType.INNER);
+		creator.buildQueries();
+		filter.initialize(null, null);
+		assertEquals(1, initializations[0]);
+		assertNull(filter.compile("DB", "table", rowSchema));
+		assertNotNull(filter.compile("DB", "table2", rowSchema));
+	}
+
+	@Test
+	public void computeTransformedColumnsInQuery() {
+		Database db = new Database("ACC_ADB");
+		Table evo = new Table("AM_EVO");
+		evo.addColumn(new Column("pid", TeradataColumnType.CHARACTER));
+		evo.addColumn(new Column("bs_nr", TeradataColumnType.CHARACTER));
+		evo.addColumn(new Column("verordnungsdatum", TeradataColumnType.DATE));
+		evo.addColumn(new Column("kg_tage", TeradataColumnType.SMALLINT));
+		evo.addColumn(new Column("apothekenik", TeradataColumnType.INTEGER));
+		db.addTable(evo);
+		DatabaseSchema evoSchema = new DatabaseSchema();
+		evoSchema.addDatabase(db);
+		List<Transformer> transformers = Arrays.asList(
+				new StaticColumnAppenderTransformer("ADB", "", "h2ik", "108036123", AppendOrder.FIRST, Collections.emptyList()),
+				new BsKvMapperTransformer(),
+				new StartDateTransformer("ADB", "AM_EVO", "Verordnungsdatum", "kg_tage", "kg_beginn"),
+				new PharmacyTypeTransformer("ADB", "AM_EVO")
+		);
+		transformers.forEach(t -> t.setPushdown(true));
+
+		SimpleQueryCreator creator = new SimpleQueryCreator(evoSchema);
+		creator.setTransformers(transformers);
+		creator.setDatabase("ACC_ADB");
+		creator.addTable("AM_EVO");
+		creator.addAllKnownColumns("AM_EVO");
+		String q = creator.buildQueries().get(0).getQuery();
+		assertTrue(q, q.startsWith("select '108036123' as \"h2ik\", a.pid, a.bs_nr, a.verordnungsdatum, a.kg_tage, a.apothekenik, case when substr(trim(a.bs_nr), 1, 2) in ('01') then '01' "));
+		assertTrue(q, q.contains(" else '' end as \"kv\", case when a.kg_tage > 0 then a.verordnungsdatum - a.kg_tage + 1 else a.verordnungsdatum end as \"kg_beginn\", "));
+		assertTrue(q, q.endsWith("then substr(trim(cast(a.apothekenik as varchar(20))), 1, 2) else '00' end as \"apo_typ\" from ACC_ADB.AM_EVO a  ;"));
+
+		//exported rows already contain the computed columns
+		RowSchema exported = RowSchema.of(Arrays.asList("h2ik", "pid", "bs_nr", "verordnungsdatum", "kg_tage", "apothekenik", "kv", "kg_beginn", "apo_typ"));
+		List<RowElement> values = exported.getColumnNames().stream().map(name -> new SimpleRowElement("", TeradataColumnType.CHARACTER)).collect(Collectors.toList());
+		Row row = new Row("ACC_ADB", "AM_EVO", values, exported);
+		assertSame(row, new TransformerChain(transformers).apply(row));
+
+		//transformers without pushdown are applied after the export
+		transformers.get(2).setPushdown(false);
+		creator.setTransformers(transformers);
+		creator.addTable("AM_EVO");
+		creator.addAllKnownColumns("AM_EVO");
+		assertEquals("select a.pid, a.bs_nr, a.verordnungsdatum, a.kg_tage, a.apothekenik from ACC_ADB.AM_EVO a  ;", creator.buildQueries().get(0).getQuery());
+	}
+
+	@Test
+	public void mergeQueriesOfSameScan() {
+		SimpleQueryCreator creator = new SimpleQueryCreator(schema);
+		creator.setDatabase("DB");
+		creator.setDatasetName("First");
+		creator.setYearSlice(new FixedYearSlice("column3", 2015, 2015));
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.startOrGroup();
+		creator.addWhere("table", "column2", Collections.singletonList("1"), WhereOperator.EQUAL, WhereType.NUMERIC);
+		creator.endOrGroup();
+		SimpleQuery first = (SimpleQuery) creator.buildQueries().get(0);
+
+		creator.setDatasetName("Second");
+		creator.addTable("table");
+		creator.addColumn("table", "column");
+		creator.startOrGroup();
+		creator.addWhere("table", "column2", Collections.singletonList("2"), WhereOperator.EQUAL, WhereType.NUMERIC);
+		creator.endOrGroup();
+		SimpleQuery second = (SimpleQuery) creator.buildQueries().get(0);
+
+		assertEquals(first.createScanKey(), second.createScanKey());
+		FanOutQuery merged = FanOutQuery.of(Arrays.asList(first, second));
+		assertEquals("First+Second", merged.getDatasetName());
+		assertEquals("2015", merged.getSliceName());
+		assertEquals(
+				"select a.column, case when (a.column2 = 1) then 1 else 0 end as \"eva_route_0\", case when (a.column2 = 2) then 1 else 0 end as \"eva_route_1\" "
+				+ "from DB.table a  where a.column3 = 2015 and (((a.column2 = 1)) or ((a.column2 = 2)));",
+				merged.getQuery());
+	}
 }
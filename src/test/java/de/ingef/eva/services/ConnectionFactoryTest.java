@@ -0,0 +1,151 @@
+package de.ingef.eva.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.ingef.eva.configuration.ConnectionPoolConfig;
+
+public class ConnectionFactoryTest {
+
+	private static class FakeSession {
+		private boolean isClosed = false;
+		private boolean isValid = true;
+		private boolean autoCommit = true;
+		private boolean readOnly = false;
+		private boolean isRolledBack = false;
+	}
+
+	private static class FakeConnectionFactory extends ConnectionFactory {
+		private final List<FakeSession> sessions = new ArrayList<>();
+
+		public FakeConnectionFactory(ConnectionPoolConfig poolConfig) {
+			super("user", "password", "jdbc:fake", "java.lang.Object", poolConfig);
+		}
+
+		@Override
+		protected Connection instantiateConnection() throws SQLException {
+			FakeSession session = new FakeSession();
+			sessions.add(session);
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				switch(method.getName()) {
+					case "close":
+						session.isClosed = true;
+						return null;
+					case "isClosed":
+						return session.isClosed;
+					case "isValid":
+						return session.isValid;
+					case "getAutoCommit":
+						return session.autoCommit;
+					case "setAutoCommit":
+						session.autoCommit = (Boolean) args[0];
+						return null;
+					case "setReadOnly":
+						session.readOnly = (Boolean) args[0];
+						return null;
+					case "rollback":
+						session.isRolledBack = true;
+						return null;
+					default:
+						return null;
+				}
+			});
+		}
+	}
+
+	@Test
+	public void returnedConnectionsAreReused() throws SQLException {
+		FakeConnectionFactory factory = new FakeConnectionFactory(new ConnectionPoolConfig());
+		Connection first = factory.createConnection();
+		first.close();
+		assertTrue(first.isClosed());
+		try {
+			first.getAutoCommit();
+			fail("Closed connection must not be usable");
+		} catch (SQLException e) {
+			//expected
+		}
+		Connection second = factory.createConnection();
+		assertTrue(second.getAutoCommit());
+		assertEquals(1, factory.getOpenedConnectionCount());
+		assertEquals(2, factory.getBorrowCount());
+
+		second.close();
+		factory.sessions.get(0).isValid = false;
+		factory.createConnection().close();
+		assertEquals(2, factory.getOpenedConnectionCount());
+		assertTrue(factory.sessions.get(0).isClosed);
+
+		factory.close();
+		assertTrue(factory.sessions.get(1).isClosed);
+	}
+
+	@Test
+	public void connectionsInUseAreClosedAfterFactoryClose() throws SQLException {
+		FakeConnectionFactory factory = new FakeConnectionFactory(new ConnectionPoolConfig());
+		Connection connection = factory.createConnection();
+		factory.close();
+		assertFalse(factory.sessions.get(0).isClosed);
+		connection.close();
+		assertTrue(factory.sessions.get(0).isClosed);
+		try {
+			factory.createConnection();
+			fail("Closed factory must not hand out connections");
+		} catch (SQLException e) {
+			//expected
+		}
+		assertEquals(1, factory.getOpenedConnectionCount());
+	}
+
+	@Test
+	public void changedSettingsAreResetOnReturn() throws SQLException {
+		FakeConnectionFactory factory = new FakeConnectionFactory(new ConnectionPoolConfig());
+		Connection connection = factory.createConnection();
+		connection.setAutoCommit(false);
+		connection.setReadOnly(true);
+		connection.close();
+		FakeSession session = factory.sessions.get(0);
+		assertTrue(session.isRolledBack);
+		assertTrue(session.autoCommit);
+		assertFalse(session.readOnly);
+		assertFalse(session.isClosed);
+
+		connection = factory.createConnection();
+		connection.setCatalog("other");
+		connection.close();
+		assertTrue(session.isClosed);
+		factory.createConnection().close();
+		assertEquals(2, factory.getOpenedConnectionCount());
+	}
+
+	@Test
+	public void sessionLimitIsEnforced() throws SQLException {
+		ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+		poolConfig.setMaxSessions(1);
+		poolConfig.setMaxWaitSeconds(1);
+		FakeConnectionFactory factory = new FakeConnectionFactory(poolConfig);
+		Connection connection = factory.createConnection();
+		try {
+			factory.createConnection();
+			fail("Second session must not be opened");
+		} catch (SQLException e) {
+			//expected
+		}
+		assertEquals(1, factory.getTimeoutCount());
+		assertTrue(factory.getMaxWaitMillis() >= 1000);
+		connection.close();
+		Connection next = factory.createConnection();
+		assertFalse(next.isClosed());
+		assertEquals(1, factory.getOpenedConnectionCount());
+	}
+}
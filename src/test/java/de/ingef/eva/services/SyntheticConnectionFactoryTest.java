@@ -0,0 +1,74 @@
+package de.ingef.eva.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.ingef.eva.configuration.ConnectionPoolConfig;
+import de.ingef.eva.configuration.SyntheticDataConfig;
+
+public class SyntheticConnectionFactoryTest {
+
+	private static final String QUERY = "select a.PID, a.Verordnungsdatum, a.Bruttobetrag, 'x' as \"quelle\", 1 as \"eva_route_0\" from ACC_ADB.AVK_ADB_T_AM_EVO a  where a.bezugsjahr = 2016;";
+
+	@Test
+	public void describesAndGeneratesTables() throws SQLException {
+		SyntheticDataConfig config = new SyntheticDataConfig();
+		config.setTableRows(Collections.singletonMap("am_evo", 3L));
+		SyntheticConnectionFactory factory = new SyntheticConnectionFactory(config, new ConnectionPoolConfig());
+		assertTrue(factory.initialize());
+		try (Connection connection = factory.createConnection()) {
+			try (Statement statement = connection.createStatement();
+					ResultSet columns = statement.executeQuery("help column ACC_ADB.AVK_ADB_T_AM_EVO.*")) {
+				assertTrue(columns.next());
+				assertEquals("Bezugsjahr", columns.getString(1));
+				assertEquals("I2", columns.getString(2));
+			}
+			List<String> first = readRows(connection);
+			assertEquals(3, first.size());
+			assertEquals(first, readRows(connection));
+			assertTrue(first.get(0).matches("\\d+;2016-\\d\\d-\\d\\d;\\d+\\.\\d\\d;x;1"));
+		}
+		assertEquals(6, factory.getRowCount());
+	}
+
+	@Test
+	public void unknownTablesFail() throws SQLException {
+		SyntheticConnectionFactory factory = new SyntheticConnectionFactory(new SyntheticDataConfig(), new ConnectionPoolConfig());
+		try (Connection connection = factory.createConnection();
+				PreparedStatement statement = connection.prepareStatement("select a.x from DB.unknown a;")) {
+			statement.executeQuery();
+			fail("Unknown tables must be reported");
+		} catch (SQLException e) {
+			assertEquals(0, factory.getRowCount());
+		}
+	}
+
+	private List<String> readRows(Connection connection) throws SQLException {
+		List<String> rows = new ArrayList<>();
+		try (PreparedStatement statement = connection.prepareStatement(QUERY);
+				ResultSet result = statement.executeQuery()) {
+			assertEquals(5, result.getMetaData().getColumnCount());
+			assertEquals(Types.DATE, result.getMetaData().getColumnType(2));
+			assertEquals("eva_route_0", result.getMetaData().getColumnLabel(5));
+			while(result.next()) {
+				assertFalse(result.wasNull());
+				rows.add(result.getString(1) + ";" + result.getDate(2) + ";" + result.getBigDecimal(3) + ";" + result.getString(4) + ";" + result.getInt(5));
+			}
+		}
+		return rows;
+	}
+}
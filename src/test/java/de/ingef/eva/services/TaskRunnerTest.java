@@ -1,6 +1,12 @@
 package de.ingef.eva.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.junit.Test;
 
@@ -61,5 +67,35 @@ public class TaskRunnerTest {
 		CounterWithExceptions c = new CounterWithExceptions(3);
 		runner.run(c, 2).join();
 	}
-	
+
+	@Test
+	public void waitsLongerBeforeEachRetry() {
+		TaskRunner runner = new TaskRunner(1);
+		CounterWithExceptions c = new CounterWithExceptions(2);
+		long start = System.currentTimeMillis();
+		runner.run(c, 3, 50).join();
+		assertEquals(3, c.getCallCount());
+		assertTrue(System.currentTimeMillis() - start >= 150);
+	}
+
+	@Test
+	public void waitingRetryDoesNotBlockThePool() {
+		TaskRunner runner = new TaskRunner(1);
+		CompletableFuture<Integer> retried = runner.run(new CounterWithExceptions(1), 2, 500);
+		Counter other = new Counter();
+		runner.run(other).join();
+		assertFalse(retried.isDone());
+		assertEquals(1337, (int) retried.join());
+	}
+
+	@Test
+	public void failureKeepsErrorOfLastAttempt() {
+		TaskRunner runner = new TaskRunner(1);
+		try {
+			runner.run(new CounterWithExceptions(3), 2).join();
+			fail("Task must fail");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause().getCause() instanceof TaskExecutionException);
+		}
+	}
 }
@@ -0,0 +1,93 @@
+package de.ingef.eva.utility.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.utility.Helper;
+
+public class BlockGzipOutputStreamTest {
+
+	private static final int BLOCK_SIZE = 64;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExecutorService threads;
+	private Path file;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		threads = Helper.createThreadPool(3, true);
+		file = folder.getRoot().toPath().resolve("slice.csv.gz");
+		StringBuilder lines = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			lines.append("pid").append(i).append(";2015-01-01\n");
+		content = lines.toString().getBytes();
+		try(BlockGzipOutputStream out = new BlockGzipOutputStream(file, threads, BLOCK_SIZE, 2)) {
+			out.write(content, 0, 10);
+			out.write(content, 10, content.length - 10);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		threads.shutdown();
+	}
+
+	@Test
+	public void fileIsReadableAsRegularGzip() throws IOException {
+		assertArrayEquals(content, readFully(new GZIPInputStream(Files.newInputStream(file))));
+	}
+
+	@Test
+	public void membersAreDecompressedInParallel() throws IOException {
+		BlockGzipIndex index = BlockGzipIndex.read(file).get();
+		assertEquals((content.length + BLOCK_SIZE - 1) / BLOCK_SIZE, index.getBlockCount());
+		assertArrayEquals(content, readFully(new BlockGzipInputStream(file, index, threads, 4)));
+	}
+
+	@Test
+	public void readingStartsAtIndexedBlock() throws IOException {
+		BlockGzipIndex index = BlockGzipIndex.read(file).get();
+		int block = index.findBlock(500);
+		assertEquals(500 / BLOCK_SIZE, block);
+		byte[] expected = Arrays.copyOfRange(content, block * BLOCK_SIZE, content.length);
+		assertArrayEquals(expected, readFully(new BlockGzipInputStream(file, index, block, threads, 2)));
+	}
+
+	@Test
+	public void indexOfReplacedFileIsIgnored() throws IOException {
+		assertTrue(BlockGzipIndex.read(file).isPresent());
+		Files.write(file, new byte[] {1, 2, 3});
+		assertFalse(BlockGzipIndex.read(file).isPresent());
+	}
+
+	private byte[] readFully(InputStream in) throws IOException {
+		try(InputStream input = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[37];
+			int count;
+			while((count = input.read(buffer)) != -1)
+				out.write(buffer, 0, count);
+			return out.toByteArray();
+		}
+	}
+}
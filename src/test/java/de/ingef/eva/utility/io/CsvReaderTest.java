@@ -0,0 +1,63 @@
+package de.ingef.eva.utility.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class CsvReaderTest {
+
+	@Test
+	public void emptyFieldsAreKept() throws IOException {
+		CsvReader reader = createReader("a;;b;\n;\n");
+		assertEquals(Arrays.asList("a", "", "b", ""), reader.nextRow());
+		assertEquals(Arrays.asList("", ""), reader.nextRow());
+		assertNull(reader.nextRow());
+	}
+
+	@Test
+	public void emptyLinesAndCarriageReturnsAreSkipped() throws IOException {
+		CsvReader reader = createReader("pid;jahr\r\n\r\n\n1;2015\r\n2;2016");
+		List<List<String>> rows = reader.lines().collect(Collectors.toList());
+		assertEquals(Arrays.asList(Arrays.asList("pid", "jahr"), Arrays.asList("1", "2015"), Arrays.asList("2", "2016")), rows);
+	}
+
+	@Test
+	public void linesLongerThanBufferAreRead() throws IOException {
+		String longValue = String.join("", Collections.nCopies(20_000, "x"));
+		CsvReader reader = createReader("1;" + longValue + "\n2;y\n");
+		List<String> values = new ArrayList<>();
+		reader.forEachRow(row -> values.add(row.get(0) + ":" + row.length(1)));
+		assertEquals(Arrays.asList("1:20000", "2:1"), values);
+	}
+
+	@Test
+	public void fieldsAreComparedWithoutCopy() throws IOException {
+		CsvRow row = createReader("A;kv\n").nextRow();
+		assertTrue(row.equalsIgnoreCase(0, "a"));
+		assertFalse(row.equalsIgnoreCase(1, "k"));
+		assertEquals('v', row.charAt(1, 1));
+	}
+
+	@Test
+	public void delimiterIsMatchedLiterally() throws IOException {
+		assertEquals(Arrays.asList("a", "b", "c"), createReader("a|b|c").nextRow());
+		assertEquals(Arrays.asList("a", "b"), new CsvReader(new BufferedReader(new StringReader("a::b")), "::").nextRow());
+	}
+
+	private CsvReader createReader(String content) {
+		String delimiter = content.contains("|") ? "|" : ";";
+		return new CsvReader(new BufferedReader(new StringReader(content)), delimiter);
+	}
+}
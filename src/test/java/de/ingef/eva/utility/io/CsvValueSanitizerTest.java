@@ -0,0 +1,26 @@
+package de.ingef.eva.utility.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CsvValueSanitizerTest {
+
+	private final CsvValueSanitizer sanitizer = new CsvValueSanitizer();
+
+	@Test
+	public void cleanValueIsReturnedUnchanged() {
+		String value = "A01.2";
+		assertSame(value, sanitizer.clean(value));
+	}
+
+	@Test
+	public void matchesRegexReplacement() {
+		String[] values = {"", " ", "a;b", "\"quoted\"", "  \" x;y \"  ", "\t\"\t", ";", "ä;ü "};
+		for(String value : values) {
+			String expected = value.replaceAll(";", "_").replaceAll("\"", "").trim();
+			assertEquals(expected, sanitizer.clean(value));
+		}
+	}
+}
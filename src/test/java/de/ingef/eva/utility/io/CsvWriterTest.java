@@ -0,0 +1,53 @@
+package de.ingef.eva.utility.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.ingef.eva.constant.OutputDirectory;
+
+public class CsvWriterTest {
+
+	@Test
+	public void encodesLikeCharsetWriter() throws IOException {
+		List<List<String>> lines = Arrays.asList(
+				Arrays.asList("pid", "name", "ort"),
+				Arrays.asList("1", "Müller", "Ärztehaus €"),
+				Arrays.asList("2", "😀", ""),
+				Arrays.asList("3", "broken \ud800 surrogate", String.join("", Collections.nCopies(70_000, "x")))
+		);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		CsvWriter writer = new CsvWriter(encoded, ";", "\n", null);
+		assertTrue(writer.isNewFile());
+		for(List<String> line : lines) {
+			line.forEach(writer::addEntry);
+			writer.writeLine();
+		}
+		assertFalse(writer.isNewFile());
+		writer.close();
+
+		StringBuilder expected = new StringBuilder();
+		for(List<String> line : lines)
+			expected.append(String.join(";", line)).append("\n");
+		assertArrayEquals(expected.toString().getBytes(OutputDirectory.DATA_CHARSET), encoded.toByteArray());
+	}
+
+	@Test
+	public void unfinishedLineIsDiscarded() throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		CsvWriter writer = new CsvWriter(encoded, ";", "\n", null);
+		writer.addEntry("a");
+		writer.writeLine();
+		writer.addEntry("b");
+		writer.close();
+		assertArrayEquals("a\n".getBytes(OutputDirectory.DATA_CHARSET), encoded.toByteArray());
+	}
+}
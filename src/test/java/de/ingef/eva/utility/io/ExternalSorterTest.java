@@ -0,0 +1,107 @@
+package de.ingef.eva.utility.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ingef.eva.utility.io.ExternalSorter.RecordCodec;
+import de.ingef.eva.utility.io.ExternalSorter.RecordReader;
+
+public class ExternalSorterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * key to sort by and number of the record in insertion order
+	 */
+	private static final RecordCodec<long[]> CODEC = new RecordCodec<long[]>() {
+		@Override
+		public void write(DataOutput out, long[] record) throws IOException {
+			out.writeLong(record[0]);
+			out.writeLong(record[1]);
+		}
+
+		@Override
+		public long[] read(DataInput in) throws IOException {
+			return new long[] { in.readLong(), in.readLong() };
+		}
+	};
+	private static final Comparator<long[]> BY_KEY = Comparator.comparingLong(record -> record[0]);
+
+	@Test
+	public void recordsAreSortedWithoutSpilling() throws IOException {
+		assertSorted(createRecords(50), 100, 2);
+	}
+
+	@Test
+	public void recordsAreSortedAcrossMergePasses() throws IOException {
+		//30 runs with a fan in of 2 require several intermediate passes
+		assertSorted(createRecords(300), 10, 2);
+	}
+
+	@Test
+	public void emptyInputYieldsNoRecords() throws IOException {
+		try(ExternalSorter<long[]> sorter = new ExternalSorter<>(folder.getRoot().toPath(), BY_KEY, CODEC, 10, 2);
+			RecordReader<long[]> reader = sorter.sort()) {
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void runsAreRemovedOnClose() throws IOException {
+		Path root = folder.getRoot().toPath();
+		try(ExternalSorter<long[]> sorter = new ExternalSorter<>(root, BY_KEY, CODEC, 10, 2)) {
+			for(long[] record : createRecords(100))
+				sorter.add(record);
+			sorter.sort().close();
+		}
+		try(Stream<Path> files = Files.list(root)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	private void assertSorted(List<long[]> records, int bufferSize, int maxFanIn) throws IOException {
+		List<long[]> expected = new ArrayList<>(records);
+		//list sort is stable, so equal keys stay in insertion order
+		expected.sort(BY_KEY);
+		List<long[]> actual = new ArrayList<>();
+		try(ExternalSorter<long[]> sorter = new ExternalSorter<>(folder.getRoot().toPath(), BY_KEY, CODEC, bufferSize, maxFanIn)) {
+			for(long[] record : records)
+				sorter.add(record);
+			try(RecordReader<long[]> reader = sorter.sort()) {
+				for(long[] record = reader.next(); record != null; record = reader.next())
+					actual.add(record);
+			}
+		}
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++)
+			assertArrayEquals(expected.get(i), actual.get(i));
+	}
+
+	/**
+	 * creates records with few distinct keys so that many records are equal
+	 */
+	private static List<long[]> createRecords(int count) {
+		Random random = new Random(42);
+		List<long[]> records = new ArrayList<>(count);
+		for(int i = 0; i < count; i++)
+			records.add(new long[] { random.nextInt(20), i });
+		return records;
+	}
+}